@@ -0,0 +1,113 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+
+/**
+ * Access to the checked-in corpus of DNS wire messages, see src/main/resources/corpus.
+ */
+public final class Corpus {
+
+  private Corpus() {}
+
+  /**
+   * Names of all messages in the corpus, these are also used as JMH params.
+   */
+  public static final String[] MESSAGES = {"query_plain", "query_a", "query_aaaa_ecs",
+      "response_a", "response_ns", "referral_nl", "compressed_chain", "dnssec_signed_a",
+      "dnssec_dnskey", "dnssec_nxdomain", "large_txt", "any_response"};
+
+  public static byte[] load(String name) {
+    String resource = "/corpus/" + name + ".bin";
+    try (InputStream in = Corpus.class.getResourceAsStream(resource)) {
+      if (in == null) {
+        throw new IllegalArgumentException("Unknown corpus message: " + name);
+      }
+      return in.readAllBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot read " + resource, e);
+    }
+  }
+
+  /**
+   * Find the start offsets of all resource records in a message.
+   * 
+   * @param wire message in wire format
+   * @return offset of every RR in the answer, authority and additional section
+   */
+  public static int[] recordOffsets(byte[] wire) {
+    NetworkData buffer = new NetworkData(wire);
+    buffer.setReaderIndex(4);
+    int qdCount = buffer.readUnsignedChar();
+    int rrCount = buffer.readUnsignedChar() + buffer.readUnsignedChar() + buffer.readUnsignedChar();
+
+    for (int i = 0; i < qdCount; i++) {
+      DNSStringUtil.readNameUsingBuffer(buffer);
+      // qtype + qclass
+      buffer.setReaderIndex(buffer.getReaderIndex() + 4);
+    }
+
+    int[] offsets = new int[rrCount];
+    for (int i = 0; i < rrCount; i++) {
+      offsets[i] = buffer.getReaderIndex();
+      DNSStringUtil.readNameUsingBuffer(buffer);
+      // type + class + ttl
+      buffer.setReaderIndex(buffer.getReaderIndex() + 8);
+      int rdLength = buffer.readUnsignedChar();
+      buffer.setReaderIndex(buffer.getReaderIndex() + rdLength);
+    }
+    return offsets;
+  }
+
+  /**
+   * @return the RR type of the record at offset
+   */
+  public static int recordType(byte[] wire, int offset) {
+    NetworkData buffer = new NetworkData(wire);
+    buffer.setReaderIndex(offset);
+    DNSStringUtil.readNameUsingBuffer(buffer);
+    return buffer.readUnsignedChar();
+  }
+
+  /**
+   * Find the first record with the given type in the corpus.
+   * 
+   * @return the message and the offset of the record in the message, as {message, offset}
+   */
+  public static Object[] findRecord(int type) {
+    return Arrays
+        .stream(MESSAGES)
+        .map(Corpus::load)
+        .flatMap(wire -> Arrays
+            .stream(recordOffsets(wire))
+            .filter(offset -> recordType(wire, offset) == type)
+            .mapToObj(offset -> new Object[] {wire, Integer.valueOf(offset)}))
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("No record with type " + type));
+  }
+
+}
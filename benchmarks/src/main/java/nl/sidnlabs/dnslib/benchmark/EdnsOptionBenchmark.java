@@ -0,0 +1,94 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import nl.sidnlabs.dnslib.message.records.edns0.EDNS0Option;
+import nl.sidnlabs.dnslib.message.records.edns0.OPTResourceRecord;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+
+/**
+ * Decoding of the OPT record and its EDNS0 options, for queries with a cookie and with a client
+ * subnet option.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EdnsOptionBenchmark {
+
+  @Param({"query_a", "query_aaaa_ecs"})
+  public String message;
+
+  private NetworkData buffer;
+  private int offset;
+
+  @Setup
+  public void setup() {
+    byte[] wire = Corpus.load(message);
+    int[] offsets = Corpus.recordOffsets(wire);
+    buffer = new NetworkData(wire);
+    // the OPT record is the last record of the queries
+    offset = offsets[offsets.length - 1];
+  }
+
+  @Benchmark
+  public void decodeOptions(Blackhole bh) {
+    buffer.setReaderIndex(offset);
+    OPTResourceRecord opt = new OPTResourceRecord();
+    opt.decode(buffer, false);
+    for (EDNS0Option option : opt.getOptions()) {
+      bh.consume(option);
+    }
+  }
+
+  @Benchmark
+  public Object clientSubnet() {
+    buffer.setReaderIndex(offset);
+    OPTResourceRecord opt = new OPTResourceRecord();
+    opt.decode(buffer, false);
+    return opt.getClientSubnet();
+  }
+
+  @Benchmark
+  public int paddingLength() {
+    buffer.setReaderIndex(offset);
+    OPTResourceRecord opt = new OPTResourceRecord();
+    opt.decode(buffer, false);
+    return opt.getPaddingLength();
+  }
+
+}
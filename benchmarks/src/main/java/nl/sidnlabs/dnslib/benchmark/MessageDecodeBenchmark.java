@@ -0,0 +1,74 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.sidnlabs.dnslib.message.Message;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+
+/**
+ * Full and partial decoding of every message in the corpus.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageDecodeBenchmark {
+
+  @Param({"query_plain", "query_a", "query_aaaa_ecs", "response_a", "response_ns", "referral_nl",
+      "compressed_chain", "dnssec_signed_a", "dnssec_dnskey", "dnssec_nxdomain", "large_txt",
+      "any_response"})
+  public String message;
+
+  private byte[] wire;
+  private NetworkData buffer;
+
+  @Setup
+  public void setup() {
+    wire = Corpus.load(message);
+    buffer = new NetworkData(wire);
+  }
+
+  @Benchmark
+  public Message decodeFull() {
+    return new Message(buffer.update(wire, 0, wire.length), false, false);
+  }
+
+  @Benchmark
+  public Message decodePartial() {
+    return new Message(buffer.update(wire, 0, wire.length), true, false);
+  }
+
+}
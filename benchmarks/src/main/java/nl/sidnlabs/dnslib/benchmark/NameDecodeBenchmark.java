@@ -0,0 +1,88 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+
+/**
+ * Decoding of a single name with DNSStringUtil.readNameUsingBuffer, for a name without
+ * compression, a name that is a single pointer and a name that ends in a chain of pointers.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NameDecodeBenchmark {
+
+  private NetworkData buffer;
+  // www.shop.example.nl in the question
+  private int uncompressed;
+  // owner of the first answer, a pointer to the question name
+  private int pointer;
+  // rdata of the last CNAME, labels followed by a pointer to the rdata of the previous CNAME
+  private int chain;
+
+  @Setup
+  public void setup() {
+    byte[] wire = Corpus.load("compressed_chain");
+    int[] offsets = Corpus.recordOffsets(wire);
+    buffer = new NetworkData(wire);
+
+    uncompressed = 12;
+    pointer = offsets[0];
+    // 4 CNAME records, skip owner (2 byte pointer) and type, class, ttl, rdlength (10 bytes)
+    chain = offsets[3] + 2 + 10;
+  }
+
+  @Benchmark
+  public String uncompressed() {
+    buffer.setReaderIndex(uncompressed);
+    return DNSStringUtil.readNameUsingBuffer(buffer);
+  }
+
+  @Benchmark
+  public String pointer() {
+    buffer.setReaderIndex(pointer);
+    return DNSStringUtil.readNameUsingBuffer(buffer);
+  }
+
+  @Benchmark
+  public String pointerChain() {
+    buffer.setReaderIndex(chain);
+    return DNSStringUtil.readNameUsingBuffer(buffer);
+  }
+
+}
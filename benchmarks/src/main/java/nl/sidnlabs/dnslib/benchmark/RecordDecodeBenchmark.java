@@ -0,0 +1,76 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.ResourceRecordFactory;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+
+/**
+ * Decoding of a single resource record, for every RR type found in the corpus.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordDecodeBenchmark {
+
+  @Param({"A", "AAAA", "NS", "CNAME", "SOA", "MX", "TXT", "DS", "DNSKEY", "RRSIG", "NSEC", "NSEC3",
+      "OPT"})
+  public String type;
+
+  private NetworkData buffer;
+  private int offset;
+  private int typeValue;
+
+  @Setup
+  public void setup() {
+    typeValue = ResourceRecordType.valueOf(type).getValue();
+    Object[] record = Corpus.findRecord(typeValue);
+    buffer = new NetworkData((byte[]) record[0]);
+    offset = ((Integer) record[1]).intValue();
+  }
+
+  @Benchmark
+  public ResourceRecord decode() {
+    buffer.setReaderIndex(offset);
+    ResourceRecord rr = ResourceRecordFactory.getInstance().createResourceRecord(typeValue);
+    rr.decode(buffer, false);
+    return rr;
+  }
+
+}
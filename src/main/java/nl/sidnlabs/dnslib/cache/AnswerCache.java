@@ -0,0 +1,572 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.cache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+import lombok.Setter;
+import nl.sidnlabs.dnslib.message.Message;
+import nl.sidnlabs.dnslib.message.MessageIndex;
+import nl.sidnlabs.dnslib.message.records.edns0.ClientSubnetOption;
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.MessageSection;
+
+/**
+ * Cache for DNS responses, the responses are stored in wire format together with the offsets of the
+ * TTL fields. A cached response is returned as a copy with the ID of the query and all TTLs
+ * decreased by the time the response has been in the cache.
+ * 
+ * Responses are cached by qname (case insensitive), qtype, qclass, the DO and CD bits and the ECS
+ * (RFC 7871) subnet of the response, if the scope prefix length is not 0. A query with an ECS option
+ * matches responses for subnets containing the source address of the query, the ECS option of the
+ * cached response is returned unchanged.
+ * 
+ * Only NOERROR and NXDOMAIN responses are cached. Negative responses (NXDOMAIN and NODATA) are only
+ * cached when the authority section contains the SOA record and are cached for the minimum of the
+ * SOA TTL and the SOA minimum field (RFC 2308), the TTL of the SOA record is lowered to this value.
+ * 
+ * The cache is split in stripes, each with its own lock and CLOCK (second chance) eviction, to limit
+ * contention when used by many threads.
+ */
+public class AnswerCache {
+
+  private static final int HEADER_LENGTH = 12;
+  private static final int TYPE_SOA = 6;
+  private static final int TYPE_OPT = 41;
+  private static final int TYPE_TSIG = 250;
+  private static final int FLAG_DO = 1;
+  private static final int FLAG_CD = 2;
+  // longs needed for a bit for every ECS prefix length (0-128) per address family
+  private static final int SCOPE_WORDS = 3;
+  // initial buffer size for encoding a query, the max size of a DNS message without EDNS
+  private static final int QUERY_SIZE = 512;
+
+  private static final ThreadLocal<NetworkData> BUFFER = ThreadLocal.withInitial(NetworkData::new);
+  private static final ThreadLocal<MessageIndex> INDEX = ThreadLocal.withInitial(MessageIndex::new);
+
+  /**
+   * Maximum time in seconds a positive response is cached.
+   */
+  @Getter
+  @Setter
+  private long maxTtl = 86400;
+
+  /**
+   * Maximum time in seconds a negative response is cached, 3 hours as recommended by RFC 2308.
+   */
+  @Getter
+  @Setter
+  private long maxNegativeTtl = 10800;
+
+  private final Stripe[] stripes;
+  // ECS scope prefix lengths of the cached responses, per address family
+  private final AtomicLongArray scopes = new AtomicLongArray(2 * SCOPE_WORDS);
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * @param maxEntries maximum number of cached responses
+   */
+  public AnswerCache(int maxEntries) {
+    this(maxEntries, 4 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param maxEntries maximum number of cached responses
+   * @param concurrency expected number of threads using the cache, this is rounded up to a power of
+   *        2 to get the number of stripes
+   */
+  public AnswerCache(int maxEntries, int concurrency) {
+    int count = Integer.highestOneBit(Math.max(1, Math.min(concurrency, maxEntries)) * 2 - 1);
+    stripes = new Stripe[count];
+    for (int i = 0; i < count; i++) {
+      stripes[i] = new Stripe(Math.max(1, (maxEntries + count - 1) / count));
+    }
+  }
+
+  /**
+   * Add a response to the cache, the response is not cached when it is not cacheable or when the
+   * TTL is 0.
+   * 
+   * @param response the encoded response
+   * @return true if the response is cached
+   */
+  public boolean put(Message response) {
+    // default size is large enough for most responses, including EDNS responses over UDP
+    NetworkData buffer = new NetworkData();
+    response.encode(buffer);
+    byte[] data = buffer.write();
+    return put(data, 0, data.length);
+  }
+
+  /**
+   * Add a response in wire format to the cache, the bytes are copied.
+   * 
+   * @return true if the response is cached
+   */
+  public boolean put(byte[] response, int offset, int length) {
+    return put(response, offset, length, System.currentTimeMillis());
+  }
+
+  boolean put(byte[] response, int offset, int length, long now) {
+    byte[] data = Arrays.copyOfRange(response, offset, offset + length);
+    NetworkData buffer = BUFFER.get().update(data, 0, length);
+    MessageIndex index = INDEX.get();
+    if (!index.build(buffer) || !isCacheable(data, index)) {
+      return false;
+    }
+
+    int rcode = data[3] & 0x0F;
+    int answers = index.getCount(MessageSection.ANSWER);
+    boolean negative = rcode != 0 || answers == 0;
+    int total = answers + index.getCount(MessageSection.AUTHORITY)
+        + index.getCount(MessageSection.ADDITIONAL);
+
+    int[] ttls = new int[total];
+    int count = 0;
+    boolean soa = false;
+    long ttl = negative ? maxNegativeTtl : maxTtl;
+    for (MessageSection section : MessageSection.values()) {
+      if (section == MessageSection.QUESTION || section == MessageSection.HEADER) {
+        continue;
+      }
+      for (int i = 0; i < index.getCount(section); i++) {
+        int pos = DNSStringUtil.scanName(buffer, index.getOffset(section, i));
+        int type = readChar(data, pos);
+        if (type == TYPE_TSIG) {
+          // signed responses cannot be modified
+          return false;
+        }
+        if (type == TYPE_OPT) {
+          continue;
+        }
+        pos += 4;
+        long rrTtl = readInt(data, pos);
+        if (negative && type == TYPE_SOA && section == MessageSection.AUTHORITY) {
+          // the SOA minimum is the last field of the rdata
+          int end = index.getOffset(section, i) + index.getLength(section, i);
+          rrTtl = Math.min(rrTtl, readInt(data, end - 4));
+          writeInt(data, pos, rrTtl);
+          soa = true;
+        }
+        ttl = Math.min(ttl, rrTtl);
+        ttls[count++] = pos;
+      }
+    }
+    if (ttl <= 0 || (negative && !soa)) {
+      return false;
+    }
+
+    // the id is set for every hit
+    data[0] = 0;
+    data[1] = 0;
+    Key key = key(data, 0, index, buffer, true);
+    if (key == null) {
+      return false;
+    }
+    int qnameLength = index.getLength(MessageSection.QUESTION, 0) - 4;
+    Entry entry = new Entry(key, data, qnameLength, Arrays.copyOf(ttls, count), now, ttl);
+    if (stripe(key).put(entry, now)) {
+      evictions.increment();
+    }
+    return true;
+  }
+
+  /**
+   * Get the cached response for a query.
+   * 
+   * @param query the query
+   * @return decoded response or null when not in cache
+   */
+  public Message get(Message query) {
+    NetworkData buffer = new NetworkData(QUERY_SIZE);
+    query.encode(buffer);
+    byte[] data = buffer.write();
+    byte[] response = get(data, 0, data.length);
+    return response == null ? null : new Message(new NetworkData(response));
+  }
+
+  /**
+   * Get the cached response for a query in wire format.
+   * 
+   * @return new array with the response or null when not in cache
+   */
+  public byte[] get(byte[] query, int offset, int length) {
+    return get(query, offset, length, System.currentTimeMillis());
+  }
+
+  byte[] get(byte[] query, int offset, int length, long now) {
+    NetworkData buffer = BUFFER.get().update(query, offset, offset + length);
+    MessageIndex index = INDEX.get();
+    if (length < HEADER_LENGTH || !index.build(buffer)
+        || index.getCount(MessageSection.QUESTION) != 1) {
+      misses.increment();
+      return null;
+    }
+
+    Key key = key(query, offset, index, buffer, false);
+    Entry entry = null;
+    if (key != null) {
+      entry = stripe(key).get(key, now);
+      if (entry == null && key.family > 0) {
+        entry = getSubnet(query, key, now);
+      }
+    }
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return entry.response(query, offset, now);
+  }
+
+  /**
+   * Find a response for the subnet of the ECS option in the query, trying all scope prefix lengths
+   * used by cached responses, starting with the most specific one.
+   */
+  private Entry getSubnet(byte[] query, Key key, long now) {
+    int base = (key.family - 1) * SCOPE_WORDS;
+    for (int prefix = key.prefix; prefix > 0; prefix--) {
+      if ((scopes.get(base + prefix / 64) & 1L << prefix % 64) != 0) {
+        Key subnet = key.withSubnet(query, prefix);
+        Entry entry = stripe(subnet).get(subnet, now);
+        if (entry != null) {
+          return entry;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the number of responses returned from the cache
+   */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /**
+   * @return the number of queries without cached response
+   */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * @return the number of responses removed before they expired, to make room for new responses
+   */
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * @return the number of cached responses, including expired responses that are not removed yet
+   */
+  public int size() {
+    int size = 0;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.map.size();
+      }
+    }
+    return size;
+  }
+
+  public void clear() {
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        stripe.map.clear();
+        Arrays.fill(stripe.clock, null);
+      }
+    }
+  }
+
+  private Stripe stripe(Key key) {
+    return stripes[(key.hash ^ key.hash >>> 16) & (stripes.length - 1)];
+  }
+
+  private static boolean isCacheable(byte[] data, MessageIndex index) {
+    int opcode = (data[2] >> 3) & 0x0F;
+    int rcode = data[3] & 0x0F;
+    // must be a complete response (QR=1, TC=0) to a standard query
+    return (data[2] & 0x80) != 0 && (data[2] & 0x02) == 0 && opcode == 0 && (rcode == 0 || rcode == 3)
+        && index.getCount(MessageSection.QUESTION) == 1;
+  }
+
+  /**
+   * Create the cache key for the question of a query or response.
+   * 
+   * @param response if true the key includes the ECS subnet using the scope prefix length,
+   *        otherwise the key has no subnet and the source prefix length is kept for lookups
+   * @return key or null if the qname is compressed
+   */
+  private Key key(byte[] data, int offset, MessageIndex index, NetworkData buffer,
+      boolean response) {
+    int start = index.getOffset(MessageSection.QUESTION, 0);
+    int end = start + index.getLength(MessageSection.QUESTION, 0);
+    int flags = (data[offset + 3] & 0x10) != 0 ? FLAG_CD : 0;
+
+    int family = 0;
+    int prefix = 0;
+    int address = -1;
+    for (int i = 0; i < index.getCount(MessageSection.ADDITIONAL); i++) {
+      int rr = index.getOffset(MessageSection.ADDITIONAL, i);
+      int pos = DNSStringUtil.scanName(buffer, rr);
+      if (readChar(data, pos) != TYPE_OPT) {
+        continue;
+      }
+      if ((data[pos + 6] & 0x80) != 0) {
+        flags |= FLAG_DO;
+      }
+      int rdEnd = rr + index.getLength(MessageSection.ADDITIONAL, i);
+      // options: code (16 bits), length (16 bits), data
+      for (int option = pos + 10; option + 4 <= rdEnd; option += 4 + readChar(data, option + 2)) {
+        if (readChar(data, option) == ClientSubnetOption.OPTION_CODE
+            && readChar(data, option + 2) >= 4) {
+          family = readChar(data, option + 4);
+          int source = data[option + 6] & 0xFF;
+          int scope = data[option + 7] & 0xFF;
+          prefix = response ? Math.min(source, scope) : source;
+          address = option + 8;
+          int max = family == ClientSubnetOption.FAMILY_IPV4 ? 32 : 128;
+          if (family != ClientSubnetOption.FAMILY_IPV4 && family != ClientSubnetOption.FAMILY_IPV6
+              || prefix > max || address + (prefix + 7) / 8 > option + 4 + readChar(data, option + 2)) {
+            // unknown family or invalid option, do not use the subnet
+            family = 0;
+            prefix = 0;
+          }
+        }
+      }
+    }
+
+    if (prefix == 0) {
+      // the response is valid for all clients
+      family = 0;
+    } else if (response) {
+      int base = (family - 1) * SCOPE_WORDS;
+      long bit = 1L << prefix % 64;
+      if ((scopes.get(base + prefix / 64) & bit) == 0) {
+        scopes.getAndUpdate(base + prefix / 64, v -> v | bit);
+      }
+    }
+
+    int qnameEnd = end - 4;
+    int qnameLength = qnameEnd - start;
+    for (int pos = start; pos < qnameEnd; pos += (data[pos] & 0xFF) + 1) {
+      if ((data[pos] & 0xC0) != 0) {
+        return null;
+      }
+    }
+    byte[] bytes = new byte[qnameLength + 5];
+    System.arraycopy(data, start, bytes, 0, qnameLength + 4);
+    DNSStringUtil.toLowerCaseAsciiInPlace(bytes, 0, qnameLength);
+    bytes[qnameLength + 4] = (byte) flags;
+    Key key = new Key(bytes);
+    key.family = family;
+    key.prefix = prefix;
+    key.address = address;
+    return response && family > 0 ? key.withSubnet(data, prefix) : key;
+  }
+
+  private static int readChar(byte[] data, int pos) {
+    return (data[pos] & 0xFF) << 8 | (data[pos + 1] & 0xFF);
+  }
+
+  private static long readInt(byte[] data, int pos) {
+    return (long) (data[pos] & 0xFF) << 24 | (data[pos + 1] & 0xFF) << 16
+        | (data[pos + 2] & 0xFF) << 8 | (data[pos + 3] & 0xFF);
+  }
+
+  private static void writeInt(byte[] data, int pos, long value) {
+    data[pos] = (byte) (value >>> 24);
+    data[pos + 1] = (byte) (value >>> 16);
+    data[pos + 2] = (byte) (value >>> 8);
+    data[pos + 3] = (byte) value;
+  }
+
+  /**
+   * Lowercase qname, qtype, qclass, flags and optionally the ECS family, prefix length and the
+   * address bits of the prefix.
+   */
+  private static final class Key {
+
+    private final byte[] bytes;
+    private final int hash;
+    // ECS family, prefix length and offset of the address in the message, not part of the key
+    private int family;
+    private int prefix;
+    private int address;
+
+    private Key(byte[] bytes) {
+      this.bytes = bytes;
+      this.hash = Arrays.hashCode(bytes);
+    }
+
+    /**
+     * @return a key with the ECS family, the prefix length and the first prefix bits of the address
+     */
+    private Key withSubnet(byte[] message, int prefix) {
+      int length = (prefix + 7) / 8;
+      byte[] subnet = Arrays.copyOf(bytes, bytes.length + 2 + length);
+      subnet[bytes.length] = (byte) family;
+      subnet[bytes.length + 1] = (byte) prefix;
+      System.arraycopy(message, address, subnet, bytes.length + 2, length);
+      if (prefix % 8 != 0) {
+        subnet[subnet.length - 1] &= (byte) (0xFF << (8 - prefix % 8));
+      }
+      return new Key(subnet);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return hash == other.hash && Arrays.equals(bytes, other.bytes);
+    }
+  }
+
+  private static final class Entry {
+
+    private final Key key;
+    private final byte[] data;
+    private final int qnameLength;
+    // offset of the TTL field of every RR
+    private final int[] ttls;
+    private final long created;
+    private final long ttl;
+    private final long expires;
+    // CLOCK reference bit and position, guarded by the stripe
+    private boolean referenced;
+    private int slot;
+
+    private Entry(Key key, byte[] data, int qnameLength, int[] ttls, long created, long ttl) {
+      this.key = key;
+      this.data = data;
+      this.qnameLength = qnameLength;
+      this.ttls = ttls;
+      this.created = created;
+      this.ttl = ttl;
+      this.expires = created + ttl * 1000;
+    }
+
+    private boolean isExpired(long now) {
+      return now >= expires;
+    }
+
+    /**
+     * Create the response for a query with the id, RD bit and qname of the query.
+     */
+    private byte[] response(byte[] query, int offset, long now) {
+      byte[] response = data.clone();
+      response[0] = query[offset];
+      response[1] = query[offset + 1];
+      response[2] = (byte) ((response[2] & ~0x01) | (query[offset + 2] & 0x01));
+      // keep the case of the qname used in the query (0x20 encoding)
+      System.arraycopy(query, offset + HEADER_LENGTH, response, HEADER_LENGTH, qnameLength);
+
+      long elapsed = (now - created) / 1000;
+      for (int pos : ttls) {
+        writeInt(response, pos, Math.max(0, Math.min(readInt(response, pos), ttl) - elapsed));
+      }
+      return response;
+    }
+  }
+
+  private static final class Stripe {
+
+    private final Map<Key, Entry> map;
+    private final Entry[] clock;
+    private int hand;
+
+    private Stripe(int capacity) {
+      map = new HashMap<>(capacity * 4 / 3 + 1);
+      clock = new Entry[capacity];
+    }
+
+    private synchronized Entry get(Key key, long now) {
+      Entry entry = map.get(key);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.isExpired(now)) {
+        remove(entry);
+        return null;
+      }
+      entry.referenced = true;
+      return entry;
+    }
+
+    /**
+     * @return true if another entry was evicted
+     */
+    private synchronized boolean put(Entry entry, long now) {
+      Entry old = map.put(entry.key, entry);
+      if (old != null) {
+        entry.slot = old.slot;
+        clock[old.slot] = entry;
+        return false;
+      }
+
+      // find a free slot, an expired entry or an entry that has not been used since the hand
+      // passed it the last time
+      boolean evicted = false;
+      while (true) {
+        Entry current = clock[hand];
+        if (current == null) {
+          break;
+        }
+        if (current.isExpired(now) || !current.referenced) {
+          map.remove(current.key);
+          evicted = !current.isExpired(now);
+          break;
+        }
+        current.referenced = false;
+        hand = (hand + 1) % clock.length;
+      }
+      entry.slot = hand;
+      clock[hand] = entry;
+      hand = (hand + 1) % clock.length;
+      return evicted;
+    }
+
+    private void remove(Entry entry) {
+      map.remove(entry.key);
+      clock[entry.slot] = null;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.exception;
+
+/**
+ * Cause of a failed decode, used to classify malformed DNS messages.
+ */
+public enum DecodeFailureType {
+
+  // label with length > 63 or a name with too many labels
+  LABEL_LENGTH,
+  // label type bits 01 or 10, these are not supported
+  LABEL_TYPE,
+  // total name length > 253
+  NAME_LENGTH,
+  // pointer chain too long or pointing to itself
+  POINTER_LOOP,
+  // pointer pointing forward or outside of the message
+  POINTER_OFFSET,
+  // message ends before all data has been read
+  TRUNCATED,
+  // rdata content does not match the record type
+  INVALID_RDATA,
+  // any other cause
+  OTHER;
+
+  /**
+   * Map an exception thrown while decoding to a failure type.
+   * 
+   * @param e exception thrown by the decoder
+   * @return the failure type, never null
+   */
+  public static DecodeFailureType of(Throwable e) {
+    if (e instanceof DnsDecodeException) {
+      return ((DnsDecodeException) e).getFailureType();
+    }
+    if (e instanceof IndexOutOfBoundsException) {
+      return TRUNCATED;
+    }
+    if (e instanceof NegativeArraySizeException) {
+      return INVALID_RDATA;
+    }
+    return OTHER;
+  }
+
+  /**
+   * Negative int representation of this failure type, for decode methods that report failures
+   * without throwing an exception.
+   * 
+   * @return a value &lt; 0
+   */
+  public int code() {
+    return -1 - ordinal();
+  }
+
+  /**
+   * @param code value returned by {@link #code()}
+   * @return the failure type for the code
+   */
+  public static DecodeFailureType fromCode(int code) {
+    return values()[-1 - code];
+  }
+
+}
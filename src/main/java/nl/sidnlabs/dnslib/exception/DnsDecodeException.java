@@ -24,12 +24,24 @@ public class DnsDecodeException extends RuntimeException {
 
   private static final long serialVersionUID = -2576098971422457470L;
 
+  private final DecodeFailureType failureType;
+
   public DnsDecodeException(String msg) {
-    super(msg);
+    this(DecodeFailureType.OTHER, msg);
   }
 
   public DnsDecodeException(String msg, Exception e) {
     super(msg, e);
+    this.failureType = DecodeFailureType.OTHER;
+  }
+
+  public DnsDecodeException(DecodeFailureType failureType, String msg) {
+    super(msg);
+    this.failureType = failureType;
+  }
+
+  public DecodeFailureType getFailureType() {
+    return failureType;
   }
 
 }
@@ -0,0 +1,53 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.exception;
+
+/**
+ * Error in the text of a master zone file, with the name of the file and the line where the entry
+ * with the error starts.
+ */
+public class ZoneParseException extends RuntimeException {
+
+  private static final long serialVersionUID = 2406263735846146187L;
+
+  private final String file;
+  private final long line;
+
+  public ZoneParseException(String file, long line, String msg) {
+    super(file + ":" + line + ": " + msg);
+    this.file = file;
+    this.line = line;
+  }
+
+  public ZoneParseException(String file, long line, String msg, Exception e) {
+    super(file + ":" + line + ": " + msg, e);
+    this.file = file;
+    this.line = line;
+  }
+
+  public String getFile() {
+    return file;
+  }
+
+  public long getLine() {
+    return line;
+  }
+
+}
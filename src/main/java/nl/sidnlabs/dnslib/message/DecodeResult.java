@@ -0,0 +1,64 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.message;
+
+import lombok.Getter;
+import nl.sidnlabs.dnslib.exception.DecodeFailureType;
+import nl.sidnlabs.dnslib.types.MessageSection;
+
+/**
+ * Result of {@link Message#tryDecode(nl.sidnlabs.dnslib.message.util.NetworkData, boolean)}. When
+ * decoding failed, the message contains everything that was decoded before the failure.
+ */
+@Getter
+public class DecodeResult {
+
+  private final Message message;
+  // null when the message was decoded successfully
+  private final DecodeFailureType failure;
+  // index in the buffer of the name or record that could not be decoded, -1 on success
+  private final int offset;
+  // section that could not be decoded, null on success
+  private final MessageSection section;
+
+  DecodeResult(Message message) {
+    this(message, null, -1, null);
+  }
+
+  DecodeResult(Message message, DecodeFailureType failure, int offset, MessageSection section) {
+    this.message = message;
+    this.failure = failure;
+    this.offset = offset;
+    this.section = section;
+  }
+
+  public boolean isSuccess() {
+    return failure == null;
+  }
+
+  @Override
+  public String toString() {
+    if (isSuccess()) {
+      return "DecodeResult [success]";
+    }
+    return "DecodeResult [failure=" + failure + ", offset=" + offset + ", section=" + section + "]";
+  }
+
+}
@@ -304,6 +304,8 @@ public class Header {
       flags = (char) (flags | 0x4); // 0000 0000 0000 0100
     } else if (rcode == RcodeType.REFUSED) {
       flags = (char) (flags | 0x5); // 0000 0000 0000 0101
+    } else if (rcode == RcodeType.YXDOMAIN) {
+      flags = (char) (flags | 0x6); // 0000 0000 0000 0110
     }
 
     // write the flags
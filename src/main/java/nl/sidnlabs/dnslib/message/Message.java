@@ -28,11 +28,19 @@ import java.util.Map;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.log4j.Log4j2;
+import nl.sidnlabs.dnslib.exception.DecodeFailureType;
 import nl.sidnlabs.dnslib.message.records.ResourceRecord;
 import nl.sidnlabs.dnslib.message.records.ResourceRecordFactory;
 import nl.sidnlabs.dnslib.message.records.edns0.OPTResourceRecord;
+import nl.sidnlabs.dnslib.message.records.edns0.PaddingPolicy;
 import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
 import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.metrics.DecodeMetrics;
+import nl.sidnlabs.dnslib.metrics.MessageDecodeEvent;
+import nl.sidnlabs.dnslib.metrics.MessageEncodeEvent;
+import nl.sidnlabs.dnslib.metrics.RecordDecodeEvent;
+import nl.sidnlabs.dnslib.types.MessageSection;
+import nl.sidnlabs.dnslib.types.MessageType;
 import nl.sidnlabs.dnslib.types.OpcodeType;
 import nl.sidnlabs.dnslib.types.ResourceRecordClass;
 import nl.sidnlabs.dnslib.types.ResourceRecordType;
@@ -42,6 +50,9 @@ import nl.sidnlabs.dnslib.types.ResourceRecordType;
 @Setter
 public class Message {
 
+  // size of the fixed length header in bytes
+  private static final int HEADER_LENGTH = 12;
+
   private boolean partial;
   private boolean allowFail;
 
@@ -62,6 +73,12 @@ public class Message {
 
   private OPTResourceRecord pseudo;
 
+  // receives decode statistics, never null
+  private DecodeMetrics metrics = DecodeMetrics.NOOP;
+
+  // padding added when encoding a message with an OPT record, never null
+  private PaddingPolicy paddingPolicy = PaddingPolicy.NONE;
+
   // Inner class for composite key in RRset lookup
   private static class RRsetKey {
     final String name;
@@ -107,23 +124,123 @@ public class Message {
    * @param allowFail if true, do not throw an exception when decoding fails.
    */
   public Message(NetworkData data, boolean partial, boolean allowFail) {
+    this(data, partial, allowFail, DecodeMetrics.NOOP);
+  }
+
+  /**
+   * Decode network bytes into a DNS Message and report decode statistics to metrics
+   * 
+   * @param data buffer with network data
+   * @param partial do not fully decode the message, only the header, questions and OPT record.
+   * @param allowFail if true, do not throw an exception when decoding fails.
+   * @param metrics receives the decode statistics, use {@link DecodeMetrics#NOOP} to disable
+   */
+  public Message(NetworkData data, boolean partial, boolean allowFail, DecodeMetrics metrics) {
     this.bytes = data.length();
     this.partial = partial;
     this.allowFail = allowFail;
+    this.metrics = metrics;
+    boolean latency = metrics.isLatencyEnabled();
+    long start = latency ? System.nanoTime() : 0;
+    // only create a JFR event when the event is enabled in the running recording
+    MessageDecodeEvent event = MessageDecodeEvent.isActive() ? new MessageDecodeEvent() : null;
+    if (event != null) {
+      event.begin();
+    }
     try {
       decode(data);
+      metrics.messageDecoded(bytes, partial);
 
       if (log.isTraceEnabled()) {
-        String qname = questions.isEmpty() ? "" : questions.get(0).getQName();
+        String qname = questions == null || questions.isEmpty() ? "" : questions.get(0).getQName();
         log.trace("Decoded DNS message type: {} and qname: {}", header.getQr(), qname);
       }
     } catch (Exception e) {
+      DecodeFailureType failure = DecodeFailureType.of(e);
+      metrics.decodeFailed(failure, bytes, allowFail);
+      if (event != null) {
+        event.failed = true;
+        event.failure = failure.name();
+      }
       if (!allowFail) {
         // not allowed to fail, rethrow exception
         throw e;
       }
       // failing is allowed, can be case when incomplete dns message is received
       // e.g. in the case of an ICMP payload
+    } finally {
+      if (latency) {
+        metrics.decodeLatency(System.nanoTime() - start);
+      }
+      if (event != null) {
+        commit(event);
+      }
+    }
+  }
+
+  /**
+   * Decode network bytes into a DNS Message without throwing exceptions for malformed data. Names
+   * and record boundaries are validated before they are decoded, so truncated and malformed messages
+   * are reported in the result and no stack traces are created.
+   * 
+   * @param data buffer with network data
+   * @param partial do not fully decode the message, only the header, questions and OPT record.
+   * @return result with the (partially) decoded message and the cause of a failure
+   */
+  public static DecodeResult tryDecode(NetworkData data, boolean partial) {
+    return tryDecode(data, partial, DecodeMetrics.NOOP);
+  }
+
+  /**
+   * Decode network bytes into a DNS Message without throwing exceptions for malformed data, and
+   * report decode statistics to metrics.
+   * 
+   * @param data buffer with network data
+   * @param partial do not fully decode the message, only the header, questions and OPT record.
+   * @param metrics receives the decode statistics, use {@link DecodeMetrics#NOOP} to disable
+   * @return result with the (partially) decoded message and the cause of a failure
+   */
+  public static DecodeResult tryDecode(NetworkData data, boolean partial, DecodeMetrics metrics) {
+    Message message = new Message();
+    message.bytes = data.length();
+    message.partial = partial;
+    message.allowFail = true;
+    message.metrics = metrics;
+    boolean latency = metrics.isLatencyEnabled();
+    long start = latency ? System.nanoTime() : 0;
+
+    DecodeResult result = message.decodeChecked(data);
+    if (result.isSuccess()) {
+      metrics.messageDecoded(message.bytes, partial);
+    } else {
+      metrics.decodeFailed(result.getFailure(), message.bytes, true);
+    }
+
+    if (latency) {
+      metrics.decodeLatency(System.nanoTime() - start);
+    }
+    return result;
+  }
+
+  private void commit(MessageDecodeEvent event) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.bytes = bytes;
+      event.partial = partial;
+      if (header != null) {
+        event.id = header.getId();
+        event.response = header.getQr() == MessageType.RESPONSE;
+        event.opcode = header.getRawOpcode();
+        event.rcode = header.getRawRcode();
+        event.questions = header.getQdCount();
+        event.answers = header.getAnCount();
+        event.authorities = header.getNsCount();
+        event.additionals = header.getArCount();
+      }
+      if (questions != null && !questions.isEmpty()) {
+        event.qtype = questions.get(0).getQTypeValue();
+      }
+      event.commit();
     }
   }
 
@@ -265,32 +382,33 @@ public class Message {
       for (int i = 0; i < qdCount; i++) {
         Question question = decodeQuestion(buffer);
         questions.add(question);
+        metrics.questionDecoded(question.getQTypeValue());
       }
     }
 
     if (!partial && anCount > 0) {
       ensureAnswerInitialized(anCount);
       for (int i = 0; i < anCount; i++) {
-        ResourceRecord rr = decodeResourceRecord(buffer, false);
+        ResourceRecord rr = decodeResourceRecord(buffer, false, MessageSection.ANSWER);
         addAnswer(rr);
       }
     } else if (partial) {
       // Skip answer section in partial mode
       for (int i = 0; i < anCount; i++) {
-        decodeResourceRecord(buffer, true);
+        decodeResourceRecord(buffer, true, MessageSection.ANSWER);
       }
     }
 
     if (!partial && nsCount > 0) {
       ensureAuthorityInitialized(nsCount);
       for (int i = 0; i < nsCount; i++) {
-        ResourceRecord rr = decodeResourceRecord(buffer, false);
+        ResourceRecord rr = decodeResourceRecord(buffer, false, MessageSection.AUTHORITY);
         addAuthority(rr);
       }
     } else if (partial) {
       // Skip authority section in partial mode
       for (int i = 0; i < nsCount; i++) {
-        decodeResourceRecord(buffer, true);
+        decodeResourceRecord(buffer, true, MessageSection.AUTHORITY);
       }
     }
 
@@ -300,10 +418,11 @@ public class Message {
         ensureAdditionalInitialized(arCount);
       }
       for (int i = 0; i < arCount; i++) {
-        ResourceRecord rr = decodeResourceRecord(buffer, partial);
+        ResourceRecord rr = decodeResourceRecord(buffer, partial, MessageSection.ADDITIONAL);
         if (rr != null) {
           if (rr.getType() == ResourceRecordType.OPT) {
             pseudo = (OPTResourceRecord) rr;
+            pseudo.setMetrics(metrics);
           } else if (!partial) {
             addAdditional(rr);
           }
@@ -312,7 +431,101 @@ public class Message {
     }
   }
 
-  private ResourceRecord decodeResourceRecord(NetworkData buffer, boolean partialDecode) {
+  private DecodeResult decodeChecked(NetworkData buffer) {
+    int offset = buffer.getReaderIndex();
+    if (buffer.length() - offset < HEADER_LENGTH) {
+      return new DecodeResult(this, DecodeFailureType.TRUNCATED, offset, MessageSection.HEADER);
+    }
+    header = new Header();
+    header.decode(buffer);
+    buffer.setReaderIndex(offset);
+
+    if (header.getOpCode() != OpcodeType.STANDARD) {
+      return new DecodeResult(this);
+    }
+
+    // validate the complete message first, only the valid part of the message is decoded
+    MessageIndex index = new MessageIndex();
+    index.build(buffer);
+
+    int qdCount = index.getValidCount(MessageSection.QUESTION);
+    if (qdCount > 0) {
+      ensureQuestionsInitialized(qdCount);
+      for (int i = 0; i < qdCount; i++) {
+        Question question = index.decodeQuestion(buffer, i);
+        questions.add(question);
+        metrics.questionDecoded(question.getQTypeValue());
+      }
+    }
+
+    DecodeResult result = decodeSectionChecked(buffer, index, MessageSection.ANSWER);
+    if (result == null) {
+      result = decodeSectionChecked(buffer, index, MessageSection.AUTHORITY);
+    }
+    if (result == null) {
+      result = decodeSectionChecked(buffer, index, MessageSection.ADDITIONAL);
+    }
+    if (result == null && !index.isValid()) {
+      result = new DecodeResult(this, index.getFailure(), index.getFailureOffset(),
+          index.getFailureSection());
+    }
+    // leave the buffer at the end of the valid part of the message
+    buffer.setReaderIndex(index.getEnd());
+    return result != null ? result : new DecodeResult(this);
+  }
+
+  /**
+   * Decode the valid records of a section.
+   *
+   * @return null when all valid records of the section are decoded, otherwise the failed result
+   */
+  private DecodeResult decodeSectionChecked(NetworkData buffer, MessageIndex index,
+      MessageSection section) {
+    int count = index.getValidCount(section);
+    if (!partial && count > 0) {
+      if (section == MessageSection.ANSWER) {
+        ensureAnswerInitialized(count);
+      } else if (section == MessageSection.AUTHORITY) {
+        ensureAuthorityInitialized(count);
+      }
+    }
+
+    for (int i = 0; i < count; i++) {
+      int type = index.getType(buffer, section, i);
+      metrics.recordDecoded(type, section);
+      if (partial && type != ResourceRecordType.OPT.getValue()) {
+        // only the OPT record is decoded when doing partial decoding
+        continue;
+      }
+
+      int offset = index.getOffset(section, i);
+      buffer.setReaderIndex(offset);
+      ResourceRecord rr = ResourceRecordFactory.getInstance().createResourceRecord(type);
+      try {
+        decodeRecord(buffer, rr, type, partial, section);
+      } catch (RuntimeException e) {
+        // the record boundaries and rdata names are valid but the rest of the rdata is not
+        return new DecodeResult(this, DecodeFailureType.of(e), offset, section);
+      }
+
+      if (rr.getType() == ResourceRecordType.OPT) {
+        if (section == MessageSection.ADDITIONAL) {
+          pseudo = (OPTResourceRecord) rr;
+          pseudo.setMetrics(metrics);
+        }
+      } else if (section == MessageSection.ANSWER) {
+        addAnswer(rr);
+      } else if (section == MessageSection.AUTHORITY) {
+        addAuthority(rr);
+      } else {
+        addAdditional(rr);
+      }
+    }
+    return null;
+  }
+
+  private ResourceRecord decodeResourceRecord(NetworkData buffer, boolean partialDecode,
+      MessageSection section) {
 
     /*
      * read ahead to the type bytes to find out what type of RR needs to be created.
@@ -329,6 +542,8 @@ public class Message {
     // go back bits to the start of the RR
     buffer.resetReaderIndex();
 
+    metrics.recordDecoded(type, section);
+
     ResourceRecord rr = ResourceRecordFactory.getInstance().createResourceRecord(type);
 
     if (partialDecode) {
@@ -338,14 +553,46 @@ public class Message {
         return rr;
       }
       // For other types in partial mode, just skip over them
+      skipResourceRecord(buffer);
       return null;
     }
 
     // decode the entire rr now
-    rr.decode(buffer, false);
+    decodeRecord(buffer, rr, type, false, section);
     return rr;
   }
 
+  private void decodeRecord(NetworkData buffer, ResourceRecord rr, int type,
+      boolean partialDecode, MessageSection section) {
+    if (RecordDecodeEvent.isActive()) {
+      RecordDecodeEvent event = new RecordDecodeEvent();
+      event.begin();
+      rr.decode(buffer, partialDecode);
+      event.end();
+      if (event.shouldCommit()) {
+        event.type = type;
+        event.section = section.name();
+        event.rdLength = rr.getRdLength();
+        event.commit();
+      }
+      return;
+    }
+
+    rr.decode(buffer, partialDecode);
+  }
+
+
+  /**
+   * Move the reader index of the buffer past the RR at the current position, without creating any
+   * objects.
+   */
+  private void skipResourceRecord(NetworkData buffer) {
+    DNSStringUtil.readNameUsingBuffer(buffer);
+    // skip type (16 bits), class (16 bits) and ttl (32 bits)
+    buffer.setReaderIndex(buffer.getReaderIndex() + 8);
+    int rdLength = buffer.readUnsignedChar();
+    buffer.setReaderIndex(buffer.getReaderIndex() + rdLength);
+  }
 
   private Question decodeQuestion(NetworkData buffer) {
 
@@ -404,6 +651,76 @@ public class Message {
     return builder.toString();
   }
 
+  /**
+   * Encode the message to wire format, the counters in the header are updated to match the number
+   * of questions and records in the message. Names are not compressed. When the message has an OPT
+   * record, a padding option is added according to the padding policy.
+   * 
+   * @param buffer the buffer to write the message to
+   */
+  public void encode(NetworkData buffer) {
+    MessageEncodeEvent event = MessageEncodeEvent.isActive() ? new MessageEncodeEvent() : null;
+    if (event != null) {
+      event.begin();
+    }
+    int start = buffer.getWriterIndex();
+
+    header.setQdCount((char) getQuestions().size());
+    header.setAnCount((char) count(answer));
+    header.setNsCount((char) count(authority));
+    header.setArCount((char) (count(additional) + (pseudo != null ? 1 : 0)));
+    header.encode(buffer);
+
+    for (Question question : getQuestions()) {
+      question.encode(buffer);
+    }
+    encode(answer, buffer);
+    encode(authority, buffer);
+    encode(additional, buffer);
+    if (pseudo != null) {
+      if (paddingPolicy == PaddingPolicy.NONE) {
+        pseudo.encode(buffer);
+      } else {
+        // the OPT record is the last record, so the padded size is known before writing it
+        int length = buffer.getWriterIndex() - start + pseudo.getUnpaddedLength();
+        pseudo.encode(buffer, paddingPolicy.padding(length, header.getQr() == MessageType.RESPONSE));
+      }
+    }
+
+    if (event != null) {
+      event.end();
+      if (event.shouldCommit()) {
+        event.bytes = buffer.getWriterIndex() - start;
+        event.response = header.getQr() == MessageType.RESPONSE;
+        event.questions = header.getQdCount();
+        event.answers = header.getAnCount();
+        event.authorities = header.getNsCount();
+        event.additionals = header.getArCount();
+        event.commit();
+      }
+    }
+  }
+
+  private static int count(List<RRset> section) {
+    int count = 0;
+    if (section != null) {
+      for (RRset rrset : section) {
+        count += rrset.size();
+      }
+    }
+    return count;
+  }
+
+  private static void encode(List<RRset> section, NetworkData buffer) {
+    if (section != null) {
+      for (RRset rrset : section) {
+        for (ResourceRecord rr : rrset.getAll()) {
+          rr.encode(buffer);
+        }
+      }
+    }
+  }
+
   public Object toZone() {
     StringBuilder builder = new StringBuilder(512);
     builder.append("; header: ").append(header.toZone()).append("\n");
@@ -0,0 +1,274 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.message;
+
+import nl.sidnlabs.dnslib.exception.DecodeFailureType;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.ResourceRecordFactory;
+import nl.sidnlabs.dnslib.message.util.CanonicalForm;
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.MessageSection;
+
+/**
+ * Index with the start offset of every question and RR in a DNS message, created by a single
+ * validation pass over the message. The pass checks label lengths, compression pointers, rdlength
+ * against the remaining bytes and the section counts in the header, without decoding names or rdata
+ * and without throwing exceptions. The names in the rdata are checked for the types listed in
+ * {@link CanonicalForm#visitNames}, e.g. NS, MX and SOA.
+ * 
+ * After building the index, questions and RRs can be decoded in any order, e.g. only the 3rd RR of
+ * the answer section.
+ * 
+ * When the message is malformed, the index contains all entries before the malformed entry and
+ * {@link #getFailure()} returns the cause.
+ * 
+ * Instances can be reused for multiple messages, but are not thread safe.
+ */
+public class MessageIndex {
+
+  private static final int HEADER_LENGTH = 12;
+  // a question has at least a root name, qtype and qclass
+  private static final int MIN_QUESTION_LENGTH = 5;
+
+  // start offset of every entry (questions, answer, authority and additional RRs), the element
+  // after the last valid entry contains the end offset of that entry
+  private int[] offsets = new int[32];
+  // index in offsets of the first entry of each section and the section count from the header
+  private final int[] sectionStart = new int[MessageSection.values().length];
+  private final int[] sectionCount = new int[MessageSection.values().length];
+  // number of valid entries
+  private int size;
+
+  private DecodeFailureType failure;
+  private MessageSection failureSection;
+  private int failureOffset = -1;
+
+  /**
+   * Validate the message in buffer and create the index, starting at the reader index of the
+   * buffer. The reader index is not changed.
+   * 
+   * @param buffer buffer with network data
+   * @return true if the message is valid
+   */
+  public boolean build(NetworkData buffer) {
+    size = 0;
+    failure = null;
+    failureSection = null;
+    failureOffset = -1;
+
+    int start = buffer.getReaderIndex();
+    int limit = buffer.length();
+    offsets[0] = start;
+    if (limit - start < HEADER_LENGTH) {
+      return fail(DecodeFailureType.TRUNCATED, start, MessageSection.HEADER);
+    }
+
+    buffer.setReaderIndex(start + 4);
+    sectionCount[MessageSection.QUESTION.ordinal()] = buffer.readUnsignedChar();
+    sectionCount[MessageSection.ANSWER.ordinal()] = buffer.readUnsignedChar();
+    sectionCount[MessageSection.AUTHORITY.ordinal()] = buffer.readUnsignedChar();
+    sectionCount[MessageSection.ADDITIONAL.ordinal()] = buffer.readUnsignedChar();
+
+    int total = 0;
+    for (MessageSection section : MessageSection.values()) {
+      sectionStart[section.ordinal()] = total;
+      total += sectionCount[section.ordinal()];
+    }
+
+    // never allocate more entries than can fit in the message, the header counts may be garbage
+    int maxEntries = Math.min(total, (limit - start - HEADER_LENGTH) / MIN_QUESTION_LENGTH);
+    if (offsets.length <= maxEntries) {
+      offsets = new int[maxEntries + 1];
+    }
+
+    int pos = start + HEADER_LENGTH;
+    offsets[0] = pos;
+    boolean valid = true;
+    for (MessageSection section : MessageSection.values()) {
+      int count = sectionCount[section.ordinal()];
+      for (int i = 0; valid && i < count; i++) {
+        int end = recordEnd(buffer, pos, limit, section == MessageSection.QUESTION);
+        if (end < 0) {
+          valid = fail(DecodeFailureType.fromCode(end), pos, section);
+        } else {
+          pos = end;
+          offsets[++size] = pos;
+        }
+      }
+    }
+
+    buffer.setReaderIndex(start);
+    return valid;
+  }
+
+  /**
+   * @return the index of the first byte after the question or RR at pos, or a negative
+   *         {@link DecodeFailureType#code()}
+   */
+  private static int recordEnd(NetworkData buffer, int pos, int limit, boolean question) {
+    int end = DNSStringUtil.scanName(buffer, pos);
+    if (end < 0) {
+      return end;
+    }
+    if (question) {
+      // qtype and qclass
+      end += 4;
+    } else if (end + 10 <= limit) {
+      // type (16 bits), class (16 bits), ttl (32 bits) and rdlength (16 bits)
+      buffer.setReaderIndex(end);
+      int type = buffer.readUnsignedChar();
+      buffer.setReaderIndex(end + 8);
+      int rdata = end + 10;
+      end = rdata + buffer.readUnsignedChar();
+      if (end > limit) {
+        return DecodeFailureType.TRUNCATED.code();
+      }
+      // empty rdata is allowed, e.g. for deleting an RRset with a dynamic update (RFC 2136)
+      int names = end > rdata ? DNSStringUtil.scanRdataNames(buffer, type, rdata, end - rdata) : end;
+      return names < 0 ? names : end;
+    } else {
+      return DecodeFailureType.TRUNCATED.code();
+    }
+    return end > limit ? DecodeFailureType.TRUNCATED.code() : end;
+  }
+
+  private boolean fail(DecodeFailureType failure, int offset, MessageSection section) {
+    this.failure = failure;
+    this.failureOffset = offset;
+    this.failureSection = section;
+    return false;
+  }
+
+  public boolean isValid() {
+    return failure == null;
+  }
+
+  /**
+   * @return the cause of the validation failure, null when the message is valid
+   */
+  public DecodeFailureType getFailure() {
+    return failure;
+  }
+
+  /**
+   * @return index in the buffer of the first invalid question or RR, -1 when the message is valid
+   */
+  public int getFailureOffset() {
+    return failureOffset;
+  }
+
+  /**
+   * @return the section with the first invalid entry, null when the message is valid
+   */
+  public MessageSection getFailureSection() {
+    return failureSection;
+  }
+
+  /**
+   * @return index in the buffer of the first byte after the last valid entry
+   */
+  public int getEnd() {
+    return offsets[size];
+  }
+
+  /**
+   * @return the number of entries in the section according to the header
+   */
+  public int getCount(MessageSection section) {
+    return sectionCount[section.ordinal()];
+  }
+
+  /**
+   * @return the number of valid entries in the section, this is less than
+   *         {@link #getCount(MessageSection)} when validation failed
+   */
+  public int getValidCount(MessageSection section) {
+    int valid = size - sectionStart[section.ordinal()];
+    return Math.max(0, Math.min(valid, sectionCount[section.ordinal()]));
+  }
+
+  /**
+   * @param section the section of the entry
+   * @param i the index of the entry in the section
+   * @return index in the buffer of the first byte of the entry
+   */
+  public int getOffset(MessageSection section, int i) {
+    return offsets[entry(section, i)];
+  }
+
+  /**
+   * @return length of the entry in bytes
+   */
+  public int getLength(MessageSection section, int i) {
+    int entry = entry(section, i);
+    return offsets[entry + 1] - offsets[entry];
+  }
+
+  /**
+   * @return the RR type of the entry, or the qtype for a question
+   */
+  public int getType(NetworkData buffer, MessageSection section, int i) {
+    int current = buffer.getReaderIndex();
+    buffer.setReaderIndex(DNSStringUtil.scanName(buffer, getOffset(section, i)));
+    int type = buffer.readUnsignedChar();
+    buffer.setReaderIndex(current);
+    return type;
+  }
+
+  /**
+   * Decode a single question, the reader index of the buffer is not changed.
+   */
+  public Question decodeQuestion(NetworkData buffer, int i) {
+    int current = buffer.getReaderIndex();
+    buffer.setReaderIndex(getOffset(MessageSection.QUESTION, i));
+    Question question = new Question();
+    question.decode(buffer);
+    buffer.setReaderIndex(current);
+    return question;
+  }
+
+  /**
+   * Decode a single RR, the reader index of the buffer is not changed.
+   * 
+   * @param buffer the buffer that was used to build this index
+   * @param section the section of the RR
+   * @param i the index of the RR in the section
+   * @return the decoded RR
+   */
+  public ResourceRecord decodeRecord(NetworkData buffer, MessageSection section, int i) {
+    int current = buffer.getReaderIndex();
+    ResourceRecord rr =
+        ResourceRecordFactory.getInstance().createResourceRecord(getType(buffer, section, i));
+    buffer.setReaderIndex(getOffset(section, i));
+    rr.decode(buffer, false);
+    buffer.setReaderIndex(current);
+    return rr;
+  }
+
+  private int entry(MessageSection section, int i) {
+    if (i < 0 || i >= getValidCount(section)) {
+      throw new IndexOutOfBoundsException(
+          "No valid entry " + i + " in section " + section + " (" + getValidCount(section) + ")");
+    }
+    return sectionStart[section.ordinal()] + i;
+  }
+
+}
@@ -56,6 +56,15 @@ public class Question {
 
   }
 
+  public void encode(NetworkData buffer) {
+    DNSStringUtil.writeName(qName, buffer);
+
+    // prefer the enum value, the raw value is only set when the question was decoded
+    buffer.writeChar(qType != null && qType.getValue() >= 0 ? qType.getValue() : qTypeValue);
+
+    buffer.writeChar(qClass != null && qClass.getValue() >= 0 ? qClass.getValue() : qClassValue);
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
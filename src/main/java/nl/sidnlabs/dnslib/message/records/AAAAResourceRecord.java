@@ -68,9 +68,13 @@ public class AAAAResourceRecord extends AbstractResourceRecord {
     super.encode(buffer);
 
     // write rdlength
-    buffer.writeChar(rdLength);
+    buffer.writeChar(16);
 
-    buffer.writeBytes(ipv6Bytes);
+    if (ipv6Bytes != null) {
+      buffer.writeBytes(ipv6Bytes);
+    } else {
+      buffer.writeBytes(InetAddresses.forString(address).getAddress());
+    }
   }
 
   @Override
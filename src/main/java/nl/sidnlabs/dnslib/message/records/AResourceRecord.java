@@ -21,6 +21,9 @@ package nl.sidnlabs.dnslib.message.records;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+
+import com.google.common.net.InetAddresses;
+
 import lombok.Getter;
 import lombok.Setter;
 import nl.sidnlabs.dnslib.exception.DnsDecodeException;
@@ -54,11 +57,14 @@ public class AResourceRecord extends AbstractResourceRecord {
     super.encode(buffer);
 
     // write rdlength
-    buffer.writeChar(rdLength);
+    buffer.writeChar(4);
     if (ipv4Bytes != null && ipv4Bytes.length == 4) {
       for (int i = 0; i < 4; i++) {
         buffer.writeByte(ipv4Bytes[i]);
       }
+    } else {
+      // decoded records only have the textual address
+      buffer.writeBytes(InetAddresses.forString(address).getAddress());
     }
   }
 
@@ -33,7 +33,7 @@ import nl.sidnlabs.dnslib.types.ResourceRecordType;
 
 @Getter
 @Setter
-public abstract class AbstractResourceRecord implements ResourceRecord, Serializable {
+public abstract class AbstractResourceRecord implements ResourceRecord, Serializable, Cloneable {
 
   private static final long serialVersionUID = -2781381098732827757L;
   protected String name;
@@ -99,6 +99,17 @@ public abstract class AbstractResourceRecord implements ResourceRecord, Serializ
     return ownerWithPadding + "\t" + ttl + "\t" + classz + "\t" + type;
   }
   
+  @Override
+  public ResourceRecord copy(String name) {
+    try {
+      AbstractResourceRecord copy = (AbstractResourceRecord) clone();
+      copy.setName(name);
+      return copy;
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (this == obj)
@@ -45,7 +45,7 @@ public class CNAMEResourceRecord extends AbstractResourceRecord {
     super.encode(buffer);
 
     // write rdlength
-    buffer.writeChar(cname.length() + 2);
+    buffer.writeChar(DNSStringUtil.nameLength(cname));
 
     DNSStringUtil.writeName(cname, buffer);
 
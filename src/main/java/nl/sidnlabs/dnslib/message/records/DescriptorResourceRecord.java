@@ -0,0 +1,501 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.message.records;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Hex;
+
+import com.google.common.net.InetAddresses;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import nl.sidnlabs.dnslib.exception.DecodeFailureType;
+import nl.sidnlabs.dnslib.exception.DnsDecodeException;
+import nl.sidnlabs.dnslib.message.records.RdataDescriptor.Field;
+import nl.sidnlabs.dnslib.message.records.RdataDescriptor.Kind;
+import nl.sidnlabs.dnslib.message.records.dnssec.NSECTypeDecoder;
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+import nl.sidnlabs.dnslib.types.TypeMap;
+
+/**
+ * RR for all types with a {@link RdataDescriptor}. Decoding only checks the rdata against the
+ * layout of the type and stores the offset of every field, the value of a field is decoded from
+ * the rdata when it is requested.
+ * 
+ * Names in the rdata that use compression are expanded when decoding, so the rdata is always
+ * uncompressed and can be encoded as is.
+ */
+@Getter
+@Setter
+public class DescriptorResourceRecord extends AbstractResourceRecord {
+
+  private static final long serialVersionUID = 1L;
+
+  private static final DateTimeFormatter TIME_FORMAT =
+      DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(ZoneOffset.UTC);
+
+  @Setter(AccessLevel.NONE)
+  private transient RdataDescriptor descriptor;
+  // offset of every field in the rdata, followed by the length of the rdata
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private int[] offsets;
+
+  public DescriptorResourceRecord(RdataDescriptor descriptor) {
+    this.descriptor = descriptor;
+  }
+
+  public RdataDescriptor getDescriptor() {
+    if (descriptor == null) {
+      // not serialized
+      descriptor = RdataDescriptor.forType(rawType);
+    }
+    return descriptor;
+  }
+
+  @Override
+  public void decode(NetworkData buffer, boolean partial) {
+    super.decode(buffer, partial);
+
+    if (!partial) {
+      if (rdata == null) {
+        throw new DnsDecodeException(DecodeFailureType.TRUNCATED, "Rdata truncated");
+      }
+      int start = buffer.getReaderIndex();
+      int end = start + rdLength;
+      offsets = new int[getDescriptor().getFieldCount() + 1];
+      if (index(buffer, start)) {
+        // the compressed names refer to the message, replace them with the complete name
+        expand(buffer, start);
+        index(null, 0);
+      }
+      buffer.setReaderIndex(end);
+    }
+  }
+
+  /**
+   * Check the rdata against the layout of the type and store the offset of every field.
+   * 
+   * @param buffer message the rdata was read from, used to check compressed names
+   * @param start index of the rdata in the message
+   * @return true if the rdata contains compressed names
+   */
+  private boolean index(NetworkData buffer, int start) {
+    RdataDescriptor d = getDescriptor();
+    int end = rdata.length;
+    int pos = 0;
+    boolean compressed = false;
+
+    for (int i = 0; i < d.getFieldCount(); i++) {
+      Field f = d.getField(i);
+      Kind kind = f.getKind();
+      offsets[i] = pos;
+
+      if (f.isSized()) {
+        pos += (int) getLong(f.getLengthField());
+      } else if (kind.size() != -1) {
+        pos += kind.size();
+      } else if (kind == Kind.NAME) {
+        pos = name(pos, buffer, start);
+        if (pos < 0) {
+          compressed = true;
+          pos = ~pos;
+        }
+      } else if (kind == Kind.NAMES) {
+        while (pos < end) {
+          pos = name(pos, buffer, start);
+          if (pos < 0) {
+            compressed = true;
+            pos = ~pos;
+          }
+        }
+      } else if (kind == Kind.CHARACTER_STRING || kind == Kind.TAG) {
+        pos += pos < end ? 1 + (rdata[pos] & 0xFF) : 1;
+      } else if (kind == Kind.CHARACTER_STRINGS) {
+        while (pos < end) {
+          pos += 1 + (rdata[pos] & 0xFF);
+        }
+      } else if (kind == Kind.BITMAP) {
+        while (pos < end) {
+          int length = pos + 1 < end ? rdata[pos + 1] & 0xFF : 0;
+          if (length == 0 || length > 32) {
+            throw new DnsDecodeException(DecodeFailureType.INVALID_RDATA,
+                "Invalid type bitmap window length: " + length);
+          }
+          pos += 2 + length;
+        }
+      } else {
+        // TEXT, HEX and BASE64 use the remaining rdata
+        pos = end;
+      }
+
+      if (pos > end) {
+        throw new DnsDecodeException(DecodeFailureType.INVALID_RDATA,
+            "Rdata field " + f.getName() + " truncated");
+      }
+    }
+
+    if (pos != end) {
+      throw new DnsDecodeException(DecodeFailureType.INVALID_RDATA,
+          "Unexpected data after rdata: " + (end - pos) + " bytes");
+    }
+    offsets[d.getFieldCount()] = end;
+    return compressed;
+  }
+
+  /**
+   * @return index of the first byte after the name in the rdata, or the complement of this index
+   *         if the name is compressed
+   */
+  private int name(int pos, NetworkData buffer, int start) {
+    int first = pos;
+    while (pos < rdata.length) {
+      int length = rdata[pos] & 0xFF;
+      if (length == 0) {
+        return pos + 1;
+      }
+      if ((length & 0xC0) == 0xC0) {
+        if (buffer == null) {
+          throw new DnsDecodeException(DecodeFailureType.POINTER_OFFSET,
+              "Compressed name in rdata");
+        }
+        int end = DNSStringUtil.scanName(buffer, start + first);
+        if (end < 0) {
+          throw new DnsDecodeException(DecodeFailureType.fromCode(end),
+              "Invalid name in rdata");
+        }
+        return ~(end - start);
+      }
+      if ((length & 0xC0) != 0) {
+        throw new DnsDecodeException(DecodeFailureType.LABEL_TYPE, "Invalid label in rdata");
+      }
+      pos += length + 1;
+      if (pos - first > 255) {
+        throw new DnsDecodeException(DecodeFailureType.NAME_LENGTH, "Name in rdata too long");
+      }
+    }
+    throw new DnsDecodeException(DecodeFailureType.INVALID_RDATA, "Name in rdata truncated");
+  }
+
+  private void expand(NetworkData buffer, int start) {
+    RdataDescriptor d = getDescriptor();
+    NetworkData out = new NetworkData(rdata.length + 64);
+    for (int i = 0; i < d.getFieldCount(); i++) {
+      if (d.getField(i).getKind().isName()) {
+        buffer.setReaderIndex(start + offsets[i]);
+        while (buffer.getReaderIndex() < start + offsets[i + 1]) {
+          DNSStringUtil.writeName(DNSStringUtil.readNameUsingBuffer(buffer), out);
+        }
+      } else {
+        out.writeBytes(Arrays.copyOfRange(rdata, offsets[i], offsets[i + 1]));
+      }
+    }
+    rdata = out.write();
+    rdLength = (char) rdata.length;
+  }
+
+  @Override
+  public void encode(NetworkData buffer) {
+    super.encode(buffer);
+
+    buffer.writeChar(rdata.length);
+    buffer.writeBytes(rdata);
+  }
+
+  public int getFieldCount() {
+    return getDescriptor().getFieldCount();
+  }
+
+  /**
+   * @param name name of the field
+   * @return index of the field
+   * @throws IllegalArgumentException if the type has no field with this name
+   */
+  public int indexOf(String name) {
+    int i = getDescriptor().indexOf(name);
+    if (i == -1) {
+      throw new IllegalArgumentException("No field " + name + " for type " + (int) rawType);
+    }
+    return i;
+  }
+
+  private Kind kind(int i) {
+    return getDescriptor().getField(i).getKind();
+  }
+
+  private int offset(int i) {
+    return offsets[i];
+  }
+
+  private int length(int i) {
+    return offsets[i + 1] - offsets[i];
+  }
+
+  /**
+   * @param i index of a fixed size numeric field (U8, U16, U32, TYPE or TIME)
+   * @return the unsigned value of the field
+   */
+  public long getLong(int i) {
+    long value = 0;
+    int offset = offset(i);
+    int end = offset + kind(i).size();
+    for (int pos = offset; pos < end; pos++) {
+      value = value << 8 | (rdata[pos] & 0xFF);
+    }
+    return value;
+  }
+
+  public int getInt(int i) {
+    return (int) getLong(i);
+  }
+
+  /**
+   * @param i index of a field
+   * @return copy of the field in wire format
+   */
+  public byte[] getBytes(int i) {
+    return Arrays.copyOfRange(rdata, offset(i), offsets[i + 1]);
+  }
+
+  /**
+   * @param i index of a NAME field
+   * @return the name in lowercase with trailing dot
+   */
+  public String getName(int i) {
+    return getNames(i).get(0);
+  }
+
+  /**
+   * @param i index of a NAME or NAMES field
+   * @return the names in lowercase with trailing dot
+   */
+  public List<String> getNames(int i) {
+    List<String> names = new ArrayList<>();
+    NetworkData buffer = new NetworkData(rdata, offset(i), offsets[i + 1]);
+    while (buffer.getReaderIndex() < offsets[i + 1]) {
+      names.add(DNSStringUtil.readNameUsingBuffer(buffer));
+    }
+    return names;
+  }
+
+  /**
+   * @param i index of a CHARACTER_STRING, TAG or TEXT field
+   * @return the string
+   */
+  public String getString(int i) {
+    return getStrings(i).get(0);
+  }
+
+  /**
+   * @param i index of a string field
+   * @return the strings of the field, without length prefix
+   */
+  public List<String> getStrings(int i) {
+    List<String> strings = new ArrayList<>();
+    int end = offsets[i + 1];
+    if (kind(i) == Kind.TEXT) {
+      strings.add(new String(rdata, offset(i), length(i), StandardCharsets.UTF_8));
+      return strings;
+    }
+    for (int pos = offset(i); pos < end; pos += 1 + (rdata[pos] & 0xFF)) {
+      strings.add(new String(rdata, pos + 1, rdata[pos] & 0xFF, StandardCharsets.UTF_8));
+    }
+    return strings;
+  }
+
+  /**
+   * @param i index of an IPV4 or IPV6 field
+   * @return the address
+   */
+  public InetAddress getAddress(int i) {
+    try {
+      return InetAddress.getByAddress(getBytes(i));
+    } catch (UnknownHostException e) {
+      // cannot happen, the length of the field is always 4 or 16
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param i index of a BITMAP field
+   * @return the types in the bitmap
+   */
+  public List<TypeMap> getTypes(int i) {
+    List<TypeMap> types = new ArrayList<>();
+    new NSECTypeDecoder().decode(length(i), new NetworkData(rdata, offset(i), offsets[i + 1]),
+        types);
+    return types;
+  }
+
+  /**
+   * @param name name of a field
+   * @return the value of the field in presentation format
+   */
+  public String getValue(String name) {
+    return getValue(indexOf(name));
+  }
+
+  /**
+   * @param i index of a field
+   * @return the value of the field in presentation format
+   */
+  public String getValue(int i) {
+    switch (kind(i)) {
+      case U8:
+      case U16:
+      case U32:
+        return String.valueOf(getLong(i));
+      case TYPE:
+        ResourceRecordType type = ResourceRecordType.fromValue((char) getInt(i));
+        return type == null ? "TYPE" + getInt(i) : type.name();
+      case TIME:
+        return TIME_FORMAT.format(Instant.ofEpochSecond(getLong(i)));
+      case IPV4:
+      case IPV6:
+        return InetAddresses.toAddrString(getAddress(i));
+      case ILNP64:
+        return groups(i, 2, ':');
+      case EUI48:
+      case EUI64:
+        return groups(i, 1, '-');
+      case NAME:
+      case NAMES:
+        return String.join(" ", getNames(i));
+      case TAG:
+        return getString(i);
+      case CHARACTER_STRING:
+      case CHARACTER_STRINGS:
+      case TEXT:
+        StringBuilder b = new StringBuilder();
+        for (String s : getStrings(i)) {
+          if (b.length() > 0) {
+            b.append(' ');
+          }
+          quote(s, b);
+        }
+        return b.toString();
+      case HEX:
+        return Hex.encodeHexString(getBytes(i), false);
+      case BASE64:
+        return Base64.getEncoder().encodeToString(getBytes(i));
+      case BITMAP:
+        StringBuilder types = new StringBuilder();
+        for (TypeMap t : getTypes(i)) {
+          if (types.length() > 0) {
+            types.append(' ');
+          }
+          types.append(t.name());
+        }
+        return types.toString();
+    }
+    throw new IllegalStateException("Unknown field kind: " + kind(i));
+  }
+
+  private String groups(int i, int size, char separator) {
+    StringBuilder b = new StringBuilder();
+    String hex = Hex.encodeHexString(getBytes(i));
+    for (int pos = 0; pos < hex.length(); pos += size * 2) {
+      if (pos > 0) {
+        b.append(separator);
+      }
+      b.append(hex, pos, pos + size * 2);
+    }
+    return b.toString();
+  }
+
+  private static void quote(String s, StringBuilder b) {
+    b.append('"');
+    for (int j = 0; j < s.length(); j++) {
+      char c = s.charAt(j);
+      if (c == '"' || c == '\\') {
+        b.append('\\').append(c);
+      } else if (c < 0x20 || c == 0x7F) {
+        b.append('\\').append(String.format("%03d", (int) c));
+      } else {
+        b.append(c);
+      }
+    }
+    b.append('"');
+  }
+
+  /**
+   * @return the rdata in presentation format, fields that contain the length of another field are
+   *         not part of the presentation format
+   */
+  private String presentation() {
+    RdataDescriptor d = getDescriptor();
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < d.getFieldCount(); i++) {
+      if (d.getField(i).isLength() || length(i) == 0) {
+        continue;
+      }
+      if (b.length() > 0) {
+        b.append(' ');
+      }
+      b.append(getValue(i));
+    }
+    return b.toString();
+  }
+
+  @Override
+  public String toZone(int maxLength) {
+    return super.toZone(maxLength) + "\t" + presentation();
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = super.hashCode();
+    result = prime * result + rawType;
+    result = prime * result + Arrays.hashCode(rdata);
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (!super.equals(obj))
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    DescriptorResourceRecord other = (DescriptorResourceRecord) obj;
+    return rawType == other.rawType && Arrays.equals(rdata, other.rdata);
+  }
+
+  @Override
+  public String rDataToString() {
+    return presentation();
+  }
+
+}
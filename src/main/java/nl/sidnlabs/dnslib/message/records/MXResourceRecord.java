@@ -49,7 +49,7 @@ public class MXResourceRecord extends AbstractResourceRecord {
 
     // write rdlength exchange lentg + prefix and postfix and 2 bytes for preference
 
-    buffer.writeChar(exchange.length() + 2 + 2);
+    buffer.writeChar(DNSStringUtil.nameLength(exchange) + 2);
 
     // write prefs
     buffer.writeChar(preference);
@@ -72,6 +72,8 @@ public class NAPTRResourceRecord extends AbstractResourceRecord {
 
     buffer.writeChar(length);
 
+    buffer.writeChar(order);
+
     buffer.writeChar(preference);
 
     DNSStringUtil.writeLabelData(flags, buffer);
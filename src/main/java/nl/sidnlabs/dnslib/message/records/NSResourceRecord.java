@@ -45,7 +45,7 @@ public class NSResourceRecord extends AbstractResourceRecord {
     super.encode(buffer);
 
     // write rdlength
-    buffer.writeChar(nameserver.length() + 2); // + 2 for leading lenght byte + the terminating root
+    buffer.writeChar(DNSStringUtil.nameLength(nameserver));
 
     DNSStringUtil.writeName(nameserver, buffer);
 
@@ -44,7 +44,7 @@ public class PTRResourceRecord extends AbstractResourceRecord {
   public void encode(NetworkData buffer) {
     super.encode(buffer);
 
-    buffer.writeChar(ptrDname.length() + 2);
+    buffer.writeChar(DNSStringUtil.nameLength(ptrDname));
     DNSStringUtil.writeName(ptrDname, buffer);
   }
 
@@ -0,0 +1,235 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.message.records;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Declarative description of the rdata layout of a RR type, as a list of fields in wire order. The
+ * descriptors are used by {@link DescriptorResourceRecord} to decode, encode and print the rdata of
+ * types that do not need any logic beyond their layout, so these types do not need a class of
+ * their own.
+ * 
+ * Descriptors are immutable and shared.
+ */
+@Getter
+public class RdataDescriptor {
+
+  /**
+   * Wire format of a field.
+   */
+  public enum Kind {
+    U8(1),
+    U16(2),
+    U32(4),
+    // 16 bit RR type, printed as mnemonic
+    TYPE(2),
+    // 32 bit seconds since epoch, printed as YYYYMMDDHHmmSS
+    TIME(4),
+    IPV4(4),
+    IPV6(16),
+    // 64 bit ILNP Node Identifier or Locator (RFC 6742), printed as 4 groups of hex digits
+    ILNP64(8),
+    EUI48(6),
+    EUI64(8),
+    // uncompressed domain name, compression is accepted when decoding
+    NAME(-1),
+    // length prefixed character string
+    CHARACTER_STRING(-1),
+    // length prefixed string printed without quotes, like the CAA tag
+    TAG(-1),
+    // remaining fields are variable length and use the remaining rdata unless sized
+    NAMES(-1),
+    CHARACTER_STRINGS(-1),
+    // string without length prefix
+    TEXT(-1),
+    HEX(-1),
+    BASE64(-1),
+    // NSEC style type bitmap
+    BITMAP(-1);
+
+    private final int size;
+
+    Kind(int size) {
+      this.size = size;
+    }
+
+    /**
+     * @return the size of the field in bytes or -1 if the field is variable length
+     */
+    public int size() {
+      return size;
+    }
+
+    public boolean isName() {
+      return this == NAME || this == NAMES;
+    }
+  }
+
+  /**
+   * Field of the rdata.
+   */
+  @Getter
+  public static class Field {
+
+    private final Kind kind;
+    private final String name;
+    // index of the field holding the length of this field, or -1
+    private final int lengthField;
+    // the value of the field is the length of another field and is not printed
+    private final boolean length;
+
+    private Field(Kind kind, String name, int lengthField, boolean length) {
+      this.kind = kind;
+      this.name = name;
+      this.lengthField = lengthField;
+      this.length = length;
+    }
+
+    public boolean isSized() {
+      return lengthField != -1;
+    }
+  }
+
+  private static final Map<Integer, RdataDescriptor> DESCRIPTORS = new HashMap<>();
+
+  static {
+    for (int type : new int[] {3, 4, 7, 8, 9}) {
+      // MD, MF, MB, MG, MR
+      register(type, field(Kind.NAME, "target"));
+    }
+    register(14, field(Kind.NAME, "rmailbx"), field(Kind.NAME, "emailbx"));
+    register(17, field(Kind.NAME, "mbox"), field(Kind.NAME, "txt"));
+    register(18, field(Kind.U16, "subtype"), field(Kind.NAME, "hostname"));
+    register(19, field(Kind.CHARACTER_STRING, "address"));
+    register(20, field(Kind.CHARACTER_STRING, "address"),
+        field(Kind.CHARACTER_STRINGS, "subaddress"));
+    register(21, field(Kind.U16, "preference"), field(Kind.NAME, "intermediate"));
+    register(24, field(Kind.TYPE, "typeCovered"), field(Kind.U8, "algorithm"),
+        field(Kind.U8, "labels"), field(Kind.U32, "originalTtl"), field(Kind.TIME, "expiration"),
+        field(Kind.TIME, "inception"), field(Kind.U16, "keyTag"), field(Kind.NAME, "signer"),
+        field(Kind.BASE64, "signature"));
+    register(26, field(Kind.U16, "preference"), field(Kind.NAME, "map822"),
+        field(Kind.NAME, "mapx400"));
+    register(27, field(Kind.CHARACTER_STRING, "longitude"),
+        field(Kind.CHARACTER_STRING, "latitude"), field(Kind.CHARACTER_STRING, "altitude"));
+    register(36, field(Kind.U16, "preference"), field(Kind.NAME, "exchanger"));
+    register(37, field(Kind.U16, "certType"), field(Kind.U16, "keyTag"),
+        field(Kind.U8, "algorithm"), field(Kind.BASE64, "certificate"));
+    register(39, field(Kind.NAME, "target"));
+    register(49, field(Kind.BASE64, "digest"));
+    for (int type : new int[] {52, 53}) {
+      // TLSA, SMIMEA
+      register(type, field(Kind.U8, "usage"), field(Kind.U8, "selector"),
+          field(Kind.U8, "matchingType"), field(Kind.HEX, "data"));
+    }
+    register(55, length(Kind.U8, "hitLength"), field(Kind.U8, "algorithm"),
+        length(Kind.U16, "publicKeyLength"), sized(Kind.HEX, "hit", 0),
+        sized(Kind.BASE64, "publicKey", 2), field(Kind.NAMES, "rendezvousServers"));
+    register(56, field(Kind.CHARACTER_STRINGS, "text"));
+    register(58, field(Kind.NAME, "previous"), field(Kind.NAME, "next"));
+    for (int type : new int[] {59, 32768, 32769}) {
+      // CDS, TA, DLV
+      register(type, field(Kind.U16, "keyTag"), field(Kind.U8, "algorithm"),
+          field(Kind.U8, "digestType"), field(Kind.HEX, "digest"));
+    }
+    for (int type : new int[] {25, 57, 60}) {
+      // KEY, RKEY, CDNSKEY
+      register(type, field(Kind.U16, "flags"), field(Kind.U8, "protocol"),
+          field(Kind.U8, "algorithm"), field(Kind.BASE64, "publicKey"));
+    }
+    register(61, field(Kind.BASE64, "publicKey"));
+    register(62, field(Kind.U32, "serial"), field(Kind.U16, "flags"),
+        field(Kind.BITMAP, "types"));
+    register(104, field(Kind.U16, "preference"), field(Kind.ILNP64, "nodeId"));
+    register(105, field(Kind.U16, "preference"), field(Kind.IPV4, "locator"));
+    register(106, field(Kind.U16, "preference"), field(Kind.ILNP64, "locator"));
+    register(107, field(Kind.U16, "preference"), field(Kind.NAME, "fqdn"));
+    register(108, field(Kind.EUI48, "address"));
+    register(109, field(Kind.EUI64, "address"));
+    register(257, field(Kind.U8, "flags"), field(Kind.TAG, "tag"), field(Kind.TEXT, "value"));
+    register(258, field(Kind.CHARACTER_STRINGS, "text"));
+  }
+
+  private final int type;
+  private final Field[] fields;
+  // true if the presentation format can be parsed field by field in wire order
+  private final boolean parsable;
+
+  private RdataDescriptor(int type, Field[] fields) {
+    this.type = type;
+    this.fields = fields;
+
+    boolean canParse = true;
+    for (Field f : fields) {
+      canParse &= !f.length && !f.isSized();
+    }
+    this.parsable = canParse;
+  }
+
+  private static void register(int type, Field... fields) {
+    DESCRIPTORS.put(Integer.valueOf(type), new RdataDescriptor(type, fields));
+  }
+
+  private static Field field(Kind kind, String name) {
+    return new Field(kind, name, -1, false);
+  }
+
+  private static Field length(Kind kind, String name) {
+    return new Field(kind, name, -1, true);
+  }
+
+  private static Field sized(Kind kind, String name, int lengthField) {
+    return new Field(kind, name, lengthField, false);
+  }
+
+  /**
+   * @param type RR type
+   * @return the descriptor for the type or null if the type has no descriptor
+   */
+  public static RdataDescriptor forType(int type) {
+    return DESCRIPTORS.get(Integer.valueOf(type));
+  }
+
+  public int getFieldCount() {
+    return fields.length;
+  }
+
+  public Field getField(int i) {
+    return fields[i];
+  }
+
+  /**
+   * @param name name of the field
+   * @return the index of the field or -1 if there is no field with this name
+   */
+  public int indexOf(String name) {
+    for (int i = 0; i < fields.length; i++) {
+      if (fields[i].name.equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+}
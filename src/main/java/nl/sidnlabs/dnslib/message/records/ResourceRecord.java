@@ -53,4 +53,18 @@ public interface ResourceRecord {
 
   String toZone(int maxLength);
 
+  /**
+   * Create a copy of this record with a different owner name, e.g. for a record expanded from a
+   * wildcard. The rdata is shared with this record and must not be modified.
+   * 
+   * @param name owner name of the copy
+   * @return the copy
+   * @throws UnsupportedOperationException if the record cannot be copied, the default for
+   *         implementations that do not extend {@link AbstractResourceRecord}
+   */
+  default ResourceRecord copy(String name) {
+    throw new UnsupportedOperationException(
+        "Cannot copy " + getClass().getName() + ", copy(String) is not implemented");
+  }
+
 }
@@ -94,6 +94,12 @@ public class ResourceRecordFactory {
         return new NSEC3ResourceRecord();
       case 51:
         return new NSEC3ParamResourceRecord();
+      case 63:
+        return new ZONEMDResourceRecord();
+      case 64:
+        return new SVCBResourceRecord();
+      case 65:
+        return new HTTPSResourceRecord();
       case 99:
         return new SPFResourceRecord();
       case 250:
@@ -104,6 +110,11 @@ public class ResourceRecordFactory {
         return new URIResourceRecord();
     }
 
+    RdataDescriptor descriptor = RdataDescriptor.forType(type);
+    if (descriptor != null) {
+      return new DescriptorResourceRecord(descriptor);
+    }
+
     if (log.isDebugEnabled()) {
       log.debug("Unknown RR with type " + type);
     }
@@ -64,9 +64,10 @@ public class SOAResourceRecord extends AbstractResourceRecord {
     super.encode(buffer);
 
     /*
-     * length is names + leading size byte and terminating zero byte plus 5 4byte fields.
+     * length is names in wire format plus 5 4byte fields.
      */
-    char rdLength = (char) ((mName.length() + 2) + (rName.length() + 2) + (5 * 4));
+    char rdLength =
+        (char) (DNSStringUtil.nameLength(mName) + DNSStringUtil.nameLength(rName) + (5 * 4));
 
     // write rdlength
     buffer.writeChar(rdLength);
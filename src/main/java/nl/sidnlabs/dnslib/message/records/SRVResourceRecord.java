@@ -55,7 +55,7 @@ public class SRVResourceRecord extends AbstractResourceRecord {
   public void encode(NetworkData buffer) {
     super.encode(buffer);
 
-    buffer.writeChar(6 + target.length() + 2);
+    buffer.writeChar(6 + DNSStringUtil.nameLength(target));
 
     buffer.writeChar(priority);
 
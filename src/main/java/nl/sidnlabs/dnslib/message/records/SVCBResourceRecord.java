@@ -0,0 +1,373 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.message.records;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Hex;
+
+import com.google.common.net.InetAddresses;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import nl.sidnlabs.dnslib.exception.DecodeFailureType;
+import nl.sidnlabs.dnslib.exception.DnsDecodeException;
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+
+/**
+ * Service binding RR (RFC 9460).
+ * 
+ * The SvcParams are not decoded, when the record is decoded only the structure of the params is
+ * checked. The first time a param is requested, an index with the key, offset and length of every
+ * param in the rdata is created and the value of the param is decoded from the rdata.
+ */
+@Getter
+@Setter
+public class SVCBResourceRecord extends AbstractResourceRecord {
+
+  private static final long serialVersionUID = 1L;
+
+  public static final int KEY_MANDATORY = 0;
+  public static final int KEY_ALPN = 1;
+  public static final int KEY_NO_DEFAULT_ALPN = 2;
+  public static final int KEY_PORT = 3;
+  public static final int KEY_IPV4HINT = 4;
+  public static final int KEY_ECH = 5;
+  public static final int KEY_IPV6HINT = 6;
+
+  private static final String[] KEY_NAMES =
+      {"mandatory", "alpn", "no-default-alpn", "port", "ipv4hint", "ech", "ipv6hint"};
+
+  // read-only, encode() writes the decoded rdata
+  @Setter(AccessLevel.NONE)
+  private char svcPriority;
+  @Setter(AccessLevel.NONE)
+  private String targetName;
+
+  // offset of the first param in the rdata
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private int paramsOffset;
+  @Setter(AccessLevel.NONE)
+  private int paramCount;
+  // key << 16 | length and offset of every param, created on first access
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private int[] params;
+
+  @Override
+  public void decode(NetworkData buffer, boolean partial) {
+    super.decode(buffer, partial);
+
+    if (!partial) {
+      if (rdata == null) {
+        throw new DnsDecodeException(DecodeFailureType.TRUNCATED, "SVCB rdata truncated");
+      }
+      int start = buffer.getReaderIndex();
+      svcPriority = buffer.readUnsignedChar();
+      targetName = DNSStringUtil.readNameUsingBuffer(buffer);
+      paramsOffset = buffer.getReaderIndex() - start;
+      buffer.setReaderIndex(start + rdLength);
+      paramCount = countParams();
+      params = null;
+    }
+  }
+
+  /**
+   * Check the structure of the params without decoding or allocating anything.
+   * 
+   * @return the number of params
+   */
+  private int countParams() {
+    int count = 0;
+    int pos = paramsOffset;
+    int previous = -1;
+    while (pos < rdLength) {
+      if (pos + 4 > rdLength) {
+        throw new DnsDecodeException(DecodeFailureType.INVALID_RDATA, "Truncated SvcParam");
+      }
+      int key = readChar(pos);
+      if (key <= previous) {
+        // keys must be in strictly increasing order
+        throw new DnsDecodeException(DecodeFailureType.INVALID_RDATA,
+            "SvcParam keys out of order: " + key);
+      }
+      previous = key;
+      pos += 4 + readChar(pos + 2);
+      count++;
+    }
+    if (pos > rdLength) {
+      throw new DnsDecodeException(DecodeFailureType.INVALID_RDATA, "Truncated SvcParam value");
+    }
+    return count;
+  }
+
+  private int[] params() {
+    if (params == null) {
+      int[] index = new int[paramCount * 2];
+      int pos = paramsOffset;
+      for (int i = 0; i < paramCount; i++) {
+        int length = readChar(pos + 2);
+        index[i * 2] = readChar(pos) << 16 | length;
+        index[i * 2 + 1] = pos + 4;
+        pos += 4 + length;
+      }
+      params = index;
+    }
+    return params;
+  }
+
+  private int readChar(int pos) {
+    return (rdata[pos] & 0xFF) << 8 | (rdata[pos + 1] & 0xFF);
+  }
+
+  /**
+   * @return true if this is an AliasMode record (priority 0)
+   */
+  public boolean isAliasMode() {
+    return svcPriority == 0;
+  }
+
+  /**
+   * @param i index of the param, in wire order
+   * @return the key of the param
+   */
+  public int getParamKey(int i) {
+    return params()[i * 2] >>> 16;
+  }
+
+  /**
+   * @param key SvcParamKey
+   * @return index of the param or -1 if the record does not have the param
+   */
+  public int findParam(int key) {
+    int[] index = params();
+    for (int i = 0; i < paramCount; i++) {
+      int k = index[i * 2] >>> 16;
+      if (k == key) {
+        return i;
+      }
+      if (k > key) {
+        // keys are sorted
+        break;
+      }
+    }
+    return -1;
+  }
+
+  public boolean hasParam(int key) {
+    return findParam(key) != -1;
+  }
+
+  /**
+   * @param key SvcParamKey
+   * @return copy of the value of the param in wire format or null if not present
+   */
+  public byte[] getParamValue(int key) {
+    int i = findParam(key);
+    if (i == -1) {
+      return null;
+    }
+    int offset = params()[i * 2 + 1];
+    return Arrays.copyOfRange(rdata, offset, offset + length(i));
+  }
+
+  private int length(int i) {
+    return params()[i * 2] & 0xFFFF;
+  }
+
+  /**
+   * @return the keys of the mandatory param, empty if not present
+   */
+  public int[] getMandatory() {
+    int i = findParam(KEY_MANDATORY);
+    if (i == -1) {
+      return new int[0];
+    }
+    int offset = params()[i * 2 + 1];
+    int[] keys = new int[length(i) / 2];
+    for (int k = 0; k < keys.length; k++) {
+      keys[k] = readChar(offset + k * 2);
+    }
+    return keys;
+  }
+
+  /**
+   * @return the ALPN ids, empty if not present
+   */
+  public List<String> getAlpn() {
+    int i = findParam(KEY_ALPN);
+    if (i == -1) {
+      return Collections.emptyList();
+    }
+    List<String> ids = new ArrayList<>();
+    int pos = params()[i * 2 + 1];
+    int end = pos + length(i);
+    while (pos < end) {
+      int length = Math.min(rdata[pos] & 0xFF, end - pos - 1);
+      ids.add(new String(rdata, pos + 1, length, StandardCharsets.US_ASCII));
+      pos += length + 1;
+    }
+    return ids;
+  }
+
+  public boolean isNoDefaultAlpn() {
+    return hasParam(KEY_NO_DEFAULT_ALPN);
+  }
+
+  /**
+   * @return the port or -1 if not present
+   */
+  public int getPort() {
+    int i = findParam(KEY_PORT);
+    return i == -1 || length(i) != 2 ? -1 : readChar(params()[i * 2 + 1]);
+  }
+
+  /**
+   * @return the IPv4 addresses of the ipv4hint param, empty if not present
+   */
+  public List<String> getIpv4Hint() {
+    return addresses(KEY_IPV4HINT, 4);
+  }
+
+  /**
+   * @return the IPv6 addresses of the ipv6hint param, empty if not present
+   */
+  public List<String> getIpv6Hint() {
+    return addresses(KEY_IPV6HINT, 16);
+  }
+
+  private List<String> addresses(int key, int size) {
+    int i = findParam(key);
+    if (i == -1) {
+      return Collections.emptyList();
+    }
+    int offset = params()[i * 2 + 1];
+    List<String> addresses = new ArrayList<>(length(i) / size);
+    for (int pos = offset; pos + size <= offset + length(i); pos += size) {
+      addresses.add(size == 4 ? ipv4(pos) : ipv6(pos));
+    }
+    return addresses;
+  }
+
+  private String ipv4(int pos) {
+    return (rdata[pos] & 0xFF) + "." + (rdata[pos + 1] & 0xFF) + "." + (rdata[pos + 2] & 0xFF) + "."
+        + (rdata[pos + 3] & 0xFF);
+  }
+
+  private String ipv6(int pos) {
+    try {
+      return InetAddresses
+          .toAddrString(InetAddress.getByAddress(Arrays.copyOfRange(rdata, pos, pos + 16)));
+    } catch (UnknownHostException e) {
+      throw new DnsDecodeException("Invalid IPv6 address", e);
+    }
+  }
+
+  /**
+   * @return the ECHConfigList or null if not present
+   */
+  public byte[] getEch() {
+    return getParamValue(KEY_ECH);
+  }
+
+  @Override
+  public void encode(NetworkData buffer) {
+    super.encode(buffer);
+
+    buffer.writeChar(rdLength);
+    buffer.writeBytes(rdata);
+  }
+
+  @Override
+  public String toZone(int maxLength) {
+    StringBuilder b = new StringBuilder(super.toZone(maxLength));
+    b.append('\t').append((int) svcPriority).append(' ').append(targetName);
+    for (int i = 0; i < paramCount; i++) {
+      int key = getParamKey(i);
+      b.append(' ').append(key < KEY_NAMES.length ? KEY_NAMES[key] : "key" + key);
+      switch (key) {
+        case KEY_NO_DEFAULT_ALPN:
+          break;
+        case KEY_MANDATORY:
+          b.append('=');
+          int[] keys = getMandatory();
+          for (int k = 0; k < keys.length; k++) {
+            b.append(k > 0 ? "," : "");
+            b.append(keys[k] < KEY_NAMES.length ? KEY_NAMES[keys[k]] : "key" + keys[k]);
+          }
+          break;
+        case KEY_ALPN:
+          b.append('=').append(String.join(",", getAlpn()));
+          break;
+        case KEY_PORT:
+          b.append('=').append(getPort());
+          break;
+        case KEY_IPV4HINT:
+          b.append('=').append(String.join(",", getIpv4Hint()));
+          break;
+        case KEY_IPV6HINT:
+          b.append('=').append(String.join(",", getIpv6Hint()));
+          break;
+        case KEY_ECH:
+          b.append('=').append(Base64.getEncoder().encodeToString(getEch()));
+          break;
+        default:
+          b.append("=\\# ").append(Hex.encodeHexString(getParamValue(key)));
+      }
+    }
+    return b.toString();
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = super.hashCode();
+    result = prime * result + Arrays.hashCode(rdata);
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (!super.equals(obj))
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    SVCBResourceRecord other = (SVCBResourceRecord) obj;
+    return Arrays.equals(rdata, other.rdata);
+  }
+
+  @Override
+  public String rDataToString() {
+    return (int) svcPriority + "," + targetName;
+  }
+
+}
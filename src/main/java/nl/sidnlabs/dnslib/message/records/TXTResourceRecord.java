@@ -61,9 +61,8 @@ public class TXTResourceRecord extends AbstractResourceRecord {
   public void encode(NetworkData buffer) {
     super.encode(buffer);
 
-    // write rdlength
-    buffer.writeChar(rdLength);
-    buffer.writeByte(data.length);
+    // data contains the complete rdata, including the length byte of each character-string
+    buffer.writeChar(data.length);
     buffer.writeBytes(data);
 
   }
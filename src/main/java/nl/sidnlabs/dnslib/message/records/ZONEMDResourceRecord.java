@@ -0,0 +1,114 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.message.records;
+
+import java.util.Arrays;
+
+import org.apache.commons.codec.binary.Hex;
+
+import lombok.Getter;
+import lombok.Setter;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+
+/**
+ * Message digest for DNS zones (RFC 8976).
+ * 
+ * <pre>
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |                             Serial                            |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * |    Scheme     |Hash Algorithm |                               |
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+                               |
+ * |                             Digest                            |
+ * /                                                               /
+ * +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+ * </pre>
+ */
+@Getter
+@Setter
+public class ZONEMDResourceRecord extends AbstractResourceRecord {
+
+  private static final long serialVersionUID = 1L;
+
+  private long serial;
+  private short scheme;
+  private short hashAlgorithm;
+  private byte[] digest;
+
+  @Override
+  public void decode(NetworkData buffer, boolean partial) {
+    super.decode(buffer, partial);
+
+    if (!partial) {
+      serial = buffer.readUnsignedInt();
+      scheme = buffer.readUnsignedByte();
+      hashAlgorithm = buffer.readUnsignedByte();
+      digest = new byte[rdLength - 6];
+      buffer.readBytes(digest);
+    }
+  }
+
+  @Override
+  public void encode(NetworkData buffer) {
+    super.encode(buffer);
+
+    buffer.writeChar(6 + digest.length);
+    buffer.writeInt(serial);
+    buffer.writeByte(scheme);
+    buffer.writeByte(hashAlgorithm);
+    buffer.writeBytes(digest);
+  }
+
+  @Override
+  public String toZone(int maxLength) {
+    return super.toZone(maxLength) + "\t" + serial + " " + scheme + " " + hashAlgorithm + " "
+        + Hex.encodeHexString(digest, false);
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = super.hashCode();
+    result = prime * result + Arrays.hashCode(digest);
+    result = prime * result + hashAlgorithm;
+    result = prime * result + scheme;
+    result = prime * result + (int) (serial ^ (serial >>> 32));
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj)
+      return true;
+    if (!super.equals(obj))
+      return false;
+    if (getClass() != obj.getClass())
+      return false;
+    ZONEMDResourceRecord other = (ZONEMDResourceRecord) obj;
+    return serial == other.serial && scheme == other.scheme
+        && hashAlgorithm == other.hashAlgorithm && Arrays.equals(digest, other.digest);
+  }
+
+  @Override
+  public String rDataToString() {
+    return serial + "," + scheme + "," + hashAlgorithm + "," + Hex.encodeHexString(digest);
+  }
+
+}
@@ -24,18 +24,23 @@ import java.security.PublicKey;
 
 import org.apache.commons.codec.CodecPolicy;
 import org.apache.commons.codec.binary.Base64;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import nl.sidnlabs.dnslib.message.records.AbstractResourceRecord;
 import nl.sidnlabs.dnslib.message.util.NetworkData;
 import nl.sidnlabs.dnslib.types.AlgorithmType;
+import nl.sidnlabs.dnslib.types.DigestType;
 import nl.sidnlabs.dnslib.util.KeyUtil;
+import nl.sidnlabs.dnslib.util.PublicKeyCache;
 
 @Getter
 @Setter
 public class DNSKEYResourceRecord extends AbstractResourceRecord {
 
   private static final long serialVersionUID = 1L;
+  // highest supported DS digest type + 1
+  private static final int DIGEST_TYPES = 5;
 
   /*
    * The RDATA for a DNSKEY RR consists of a 2 octet Flags Field, a 1 octet Protocol Field, a 1
@@ -52,8 +57,13 @@ public class DNSKEYResourceRecord extends AbstractResourceRecord {
   private char flags;
   private short protocol;
   private AlgorithmType algorithm;
+  @Getter(AccessLevel.NONE)
   private PublicKey publicKey;
   private byte[] keydata;
+  // DS digests of the key by digest type, created on first use
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private transient byte[][] digests;
 
   private int keytag;
   private boolean isZoneKey;
@@ -75,7 +85,9 @@ public class DNSKEYResourceRecord extends AbstractResourceRecord {
       keydata = new byte[keysize];
       buffer.readBytes(keydata);
 
-      publicKey = KeyUtil.createPublicKey(keydata, alg);
+      // the public key and digests are created on first use
+      publicKey = null;
+      digests = null;
 
       keytag = KeyUtil.createKeyTag(rdata, alg);
 
@@ -85,6 +97,67 @@ public class DNSKEYResourceRecord extends AbstractResourceRecord {
     }
   }
 
+  /**
+   * @return the public key, created on first use and shared with all DNSKEY records with the same
+   *         key data, or null if the algorithm is not supported or the key is invalid
+   */
+  public PublicKey getPublicKey() {
+    if (publicKey == null && keydata != null && algorithm != null) {
+      publicKey = PublicKeyCache.getShared().get(keydata, algorithm.getValue() & 0xFF);
+    }
+    return publicKey;
+  }
+
+  /**
+   * @param digestType digest type of a DS record
+   * @return the digest of this key for a DS record, or null if the digest type is not supported
+   */
+  public byte[] getDigest(DigestType digestType) {
+    byte[][] current = digests;
+    int i = digestType.getValue() & 0xFF;
+    if (current == null || current[i] == null) {
+      byte[] digest = KeyUtil.createDigest(this, digestType);
+      if (digest == null) {
+        return null;
+      }
+      byte[][] updated = current == null ? new byte[DIGEST_TYPES][] : current.clone();
+      updated[i] = digest;
+      digests = updated;
+      return digest;
+    }
+    return current[i];
+  }
+
+  public void setKeydata(byte[] keydata) {
+    this.keydata = keydata;
+    publicKey = null;
+    digests = null;
+  }
+
+  public void setAlgorithm(AlgorithmType algorithm) {
+    this.algorithm = algorithm;
+    publicKey = null;
+    digests = null;
+  }
+
+  // the owner, flags and protocol are part of the DS digest
+
+  @Override
+  public void setName(String name) {
+    super.setName(name);
+    digests = null;
+  }
+
+  public void setFlags(char flags) {
+    this.flags = flags;
+    digests = null;
+  }
+
+  public void setProtocol(short protocol) {
+    this.protocol = protocol;
+    digests = null;
+  }
+
   public boolean isValid() {
 
     if (protocol != 3) {
@@ -21,6 +21,10 @@ package nl.sidnlabs.dnslib.message.records.edns0;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+
+import com.google.common.net.InetAddresses;
+
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import nl.sidnlabs.dnslib.exception.DnsDecodeException;
@@ -28,30 +32,163 @@ import nl.sidnlabs.dnslib.message.util.NetworkData;
 
 /**
  * http://tools.ietf.org/html/draft-vandergaast-edns-client-subnet-02
- *
+ * 
+ * The address is stored as 2 longs, the first 8 bytes of the address in addressHigh and the last 8
+ * bytes in addressLow (big endian). An IPv4 address uses the highest 4 bytes of addressHigh. Missing
+ * address bytes are zero.
  */
 @Getter
 @Setter
 public class ClientSubnetOption extends EDNS0Option {
 
+  public static final int OPTION_CODE = 8;
+
+  public static final int FAMILY_IPV4 = 1;
+  public static final int FAMILY_IPV6 = 2;
+
   private int fam;
   private int sourcenetmask;
   private int scopenetmask;
-  private String address;
-  private InetAddress inetAddress;
+  @Setter(AccessLevel.NONE)
+  private long addressHigh;
+  @Setter(AccessLevel.NONE)
+  private long addressLow;
+  // number of address bytes found in the option
+  @Setter(AccessLevel.NONE)
+  private int addressLength;
 
-  public ClientSubnetOption() {}
+  public ClientSubnetOption() {
+    this.code = OPTION_CODE;
+  }
 
   public ClientSubnetOption(int code, int len, NetworkData buffer) {
     super(code, len, buffer);
   }
 
   public String export() {
-    return (fam == 1 ? "4," : "6,") + address + "/" + sourcenetmask + "," + scopenetmask;
+    StringBuilder b = new StringBuilder(64);
+    b.append(fam == FAMILY_IPV4 ? "4," : "6,");
+    appendAddress(b);
+    return b.append('/').append(sourcenetmask).append(',').append(scopenetmask).toString();
   }
 
   public boolean isIPv4() {
-    return fam == 1;
+    return fam == FAMILY_IPV4;
+  }
+
+  /**
+   * @return the IPv4 address as int
+   */
+  public int getIPv4Address() {
+    return (int) (addressHigh >>> 32);
+  }
+
+  /**
+   * @return the address as text, or null if the option has no address
+   */
+  public String getAddress() {
+    if (!hasAddress()) {
+      return null;
+    }
+    return formatAddress(fam, addressHigh, addressLow);
+  }
+
+  public void setAddress(String address) {
+    setInetAddress(InetAddresses.forString(address));
+  }
+
+  /**
+   * @return the address or null if the option has no address
+   */
+  public InetAddress getInetAddress() {
+    if (!hasAddress()) {
+      return null;
+    }
+    byte[] addr = new byte[fam == FAMILY_IPV4 ? 4 : 16];
+    for (int i = 0; i < addr.length; i++) {
+      addr[i] = (byte) (i < 8 ? addressHigh >>> (56 - i * 8) : addressLow >>> (120 - i * 8));
+    }
+    try {
+      return InetAddress.getByAddress(addr);
+    } catch (UnknownHostException e) {
+      throw new DnsDecodeException("Invalid IP address", e);
+    }
+  }
+
+  public void setInetAddress(InetAddress inetAddress) {
+    byte[] addr = inetAddress.getAddress();
+    fam = addr.length == 4 ? FAMILY_IPV4 : FAMILY_IPV6;
+    addressHigh = 0;
+    addressLow = 0;
+    for (int i = 0; i < addr.length; i++) {
+      setAddressByte(i, addr[i] & 0xFF);
+    }
+    addressLength = addr.length;
+  }
+
+  private boolean hasAddress() {
+    return addressLength > 0 && (fam == FAMILY_IPV4 || fam == FAMILY_IPV6);
+  }
+
+  private void setAddressByte(int i, int value) {
+    if (i < 8) {
+      addressHigh |= (long) value << (56 - i * 8);
+    } else {
+      addressLow |= (long) value << (120 - i * 8);
+    }
+  }
+
+  /**
+   * Append the address in the same format as {@link InetAddress#getHostAddress()}.
+   */
+  private void appendAddress(StringBuilder b) {
+    if (!hasAddress()) {
+      b.append("null");
+    } else {
+      appendAddress(b, fam, addressHigh, addressLow);
+    }
+  }
+
+  /**
+   * Format an address stored as 2 longs, in the same format as {@link InetAddress#getHostAddress()}.
+   * 
+   * @param fam {@link #FAMILY_IPV4} or {@link #FAMILY_IPV6}
+   * @param addressHigh the first 8 bytes of the address
+   * @param addressLow the last 8 bytes of the address
+   * @return the address as text
+   */
+  public static String formatAddress(int fam, long addressHigh, long addressLow) {
+    StringBuilder b = new StringBuilder(fam == FAMILY_IPV4 ? 15 : 39);
+    appendAddress(b, fam, addressHigh, addressLow);
+    return b.toString();
+  }
+
+  private static void appendAddress(StringBuilder b, int fam, long addressHigh, long addressLow) {
+    if (fam == FAMILY_IPV4) {
+      appendIPv4(b, (int) (addressHigh >>> 32));
+    } else if (addressHigh == 0 && (addressLow >>> 32) == 0xFFFF) {
+      // InetAddress converts IPv4-mapped IPv6 addresses to IPv4
+      appendIPv4(b, (int) addressLow);
+    } else {
+      for (int i = 0; i < 8; i++) {
+        long part = i < 4 ? addressHigh >>> (48 - i * 16) : addressLow >>> (112 - i * 16);
+        if (i > 0) {
+          b.append(':');
+        }
+        b.append(Long.toHexString(part & 0xFFFF));
+      }
+    }
+  }
+
+  private static void appendIPv4(StringBuilder b, int address) {
+    b
+        .append(address >>> 24)
+        .append('.')
+        .append((address >>> 16) & 0xFF)
+        .append('.')
+        .append((address >>> 8) & 0xFF)
+        .append('.')
+        .append(address & 0xFF);
   }
 
   @Override
@@ -61,29 +198,34 @@ public class ClientSubnetOption extends EDNS0Option {
     scopenetmask = buffer.readUnsignedByte();
     int addrLength = len - 4; // -4 byte offset for fam+source+scope
 
-    if (addrLength > 0) {
-
-      byte[] addrBytes = null;
-
-      // read available ip bytes, can be less than the bytes
-      // required for a full ip addr.
-      if (fam == 1) { // IP v4, 4 bytes
-        // the ipv4 bytes can be < than the req 4 bytes.
-        addrBytes = buffer.readBytes(4, Math.min(4, addrLength));
-      } else if (fam == 2) { // v6 16 bytes
-        // the ipv6 bytes can be < than the req 16 bytes.
-        addrBytes = buffer.readBytes(16, Math.min(16, addrLength));
+    // read available ip bytes, can be less than the bytes required for a full ip addr.
+    if (addrLength > 0 && (fam == FAMILY_IPV4 || fam == FAMILY_IPV6)) {
+      addressLength = Math.min(fam == FAMILY_IPV4 ? 4 : 16, addrLength);
+      for (int i = 0; i < addressLength; i++) {
+        setAddressByte(i, buffer.readUnsignedByte());
       }
+    }
+  }
 
-      try {
-        if(addrBytes != null) {
-          inetAddress = InetAddress.getByAddress(addrBytes);
-          address = inetAddress.getHostAddress();
-        }
-      } catch (UnknownHostException e) {
-        throw new DnsDecodeException("Invalid IP address", e);
+  @Override
+  public int getDataLength() {
+    // only the significant bytes of the address are included
+    return 4 + (sourcenetmask + 7) / 8;
+  }
+
+  @Override
+  protected void encodeData(NetworkData buffer) {
+    buffer.writeChar(fam);
+    buffer.writeByte(sourcenetmask);
+    buffer.writeByte(scopenetmask);
+    int addrLength = (sourcenetmask + 7) / 8;
+    for (int i = 0; i < addrLength; i++) {
+      int value = (int) (i < 8 ? addressHigh >>> (56 - i * 8) : addressLow >>> (120 - i * 8)) & 0xFF;
+      if (i == addrLength - 1 && sourcenetmask % 8 != 0) {
+        // bits after the source prefix must be zero
+        value &= 0xFF << (8 - sourcenetmask % 8);
       }
-      
+      buffer.writeByte(value);
     }
   }
 
@@ -0,0 +1,91 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.message.records.edns0;
+
+import lombok.Getter;
+import lombok.Setter;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+
+/**
+ * DNS Cookie, consisting of an 8 byte client cookie and an optional server cookie of 8 to 32 bytes.
+ * 
+ * @see <a href="https://tools.ietf.org/html/rfc7873">rfc7873</a>
+ */
+@Getter
+@Setter
+public class CookieOption extends EDNS0Option {
+
+  public static final int OPTION_CODE = 10;
+
+  public static final int CLIENT_COOKIE_LENGTH = 8;
+
+  private byte[] clientCookie;
+  // null if the option only contains a client cookie
+  private byte[] serverCookie;
+
+  public CookieOption() {
+    this.code = OPTION_CODE;
+  }
+
+  public CookieOption(byte[] clientCookie, byte[] serverCookie) {
+    this();
+    this.clientCookie = clientCookie;
+    this.serverCookie = serverCookie;
+  }
+
+  public CookieOption(int code, int len, NetworkData buffer) {
+    super(code, len, buffer);
+  }
+
+  /**
+   * @return true if the option has a valid size, a client cookie and optionally a server cookie
+   */
+  public boolean isValid() {
+    return clientCookie != null && clientCookie.length == CLIENT_COOKIE_LENGTH
+        && (serverCookie == null || (serverCookie.length >= 8 && serverCookie.length <= 32));
+  }
+
+  @Override
+  public void decode(NetworkData buffer) {
+    clientCookie = new byte[Math.min(len, CLIENT_COOKIE_LENGTH)];
+    buffer.readBytes(clientCookie);
+    if (len > CLIENT_COOKIE_LENGTH) {
+      serverCookie = new byte[len - CLIENT_COOKIE_LENGTH];
+      buffer.readBytes(serverCookie);
+    }
+  }
+
+  @Override
+  public int getDataLength() {
+    return (clientCookie != null ? clientCookie.length : 0)
+        + (serverCookie != null ? serverCookie.length : 0);
+  }
+
+  @Override
+  protected void encodeData(NetworkData buffer) {
+    if (clientCookie != null) {
+      buffer.writeBytes(clientCookie);
+    }
+    if (serverCookie != null) {
+      buffer.writeBytes(serverCookie);
+    }
+  }
+
+}
@@ -41,6 +41,11 @@ public class DNSSECOption extends EDNS0Option {
 
   private List<Integer> algs;
 
+  public DNSSECOption(int code, List<Integer> algs) {
+    this.code = code;
+    this.algs = algs;
+  }
+
   public DNSSECOption(int code, int len, NetworkData buffer) {
     super(code, len, buffer);
   }
@@ -58,4 +63,18 @@ public class DNSSECOption extends EDNS0Option {
     }
   }
 
+  @Override
+  public int getDataLength() {
+    return algs != null ? algs.size() : 0;
+  }
+
+  @Override
+  protected void encodeData(NetworkData buffer) {
+    if (algs != null) {
+      for (Integer alg : algs) {
+        buffer.writeByte(alg.intValue());
+      }
+    }
+  }
+
 }
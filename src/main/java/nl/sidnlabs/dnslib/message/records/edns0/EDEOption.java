@@ -32,10 +32,15 @@ import nl.sidnlabs.dnslib.message.util.NetworkData;
 @Setter
 public class EDEOption extends EDNS0Option {
 
+  public static final int OPTION_CODE = 15;
+
+  // the info-code, note that this hides the option code of EDNS0Option
   private int code;
   private byte[] msg;
 
-  public EDEOption() {}
+  public EDEOption() {
+    super.code = OPTION_CODE;
+  }
 
   public EDEOption(int code, int len, NetworkData opt) {
     super(code, len, opt);
@@ -49,4 +54,17 @@ public class EDEOption extends EDNS0Option {
       buffer.readBytes(msg);
     }
   }
+
+  @Override
+  public int getDataLength() {
+    return 2 + (msg != null ? msg.length : 0);
+  }
+
+  @Override
+  protected void encodeData(NetworkData buffer) {
+    buffer.writeChar(code);
+    if (msg != null) {
+      buffer.writeBytes(msg);
+    }
+  }
 }
@@ -29,9 +29,16 @@ public class EDNS0Option {
 
   protected int code;
   protected int len;
+  // option data of options without a specific option class
+  protected byte[] data;
 
   public EDNS0Option() {}
 
+  public EDNS0Option(int code, byte[] data) {
+    this.code = code;
+    this.data = data;
+  }
+
   public EDNS0Option(int code, int len, NetworkData buffer) {
     this.code = code;
     this.len = len;
@@ -39,10 +46,38 @@ public class EDNS0Option {
   }
 
   public void decode(NetworkData buffer) {
-    // catch all, for experimental edns options
-    // read data, but ignore values
-    byte[] data = new byte[len];
+    // catch all, for experimental and vendor edns options
+    data = new byte[len];
     buffer.readBytes(data);
   }
 
+  /**
+   * Encode the option code, option length and option data.
+   * 
+   * @param buffer buffer to write the option to
+   */
+  public void encode(NetworkData buffer) {
+    buffer.writeChar(code);
+    buffer.writeChar(getDataLength());
+    encodeData(buffer);
+  }
+
+  /**
+   * @return the length of the option data when encoded
+   */
+  public int getDataLength() {
+    return data != null ? data.length : 0;
+  }
+
+  /**
+   * Encode the option data, must write exactly {@link #getDataLength()} bytes.
+   * 
+   * @param buffer buffer to write the option data to
+   */
+  protected void encodeData(NetworkData buffer) {
+    if (data != null) {
+      buffer.writeBytes(data);
+    }
+  }
+
 }
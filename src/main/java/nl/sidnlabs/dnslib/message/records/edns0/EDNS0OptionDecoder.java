@@ -0,0 +1,40 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.message.records.edns0;
+
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+
+/**
+ * Creates an option object from the option data, the constructors of the option classes with the
+ * (code, len, buffer) signature can be used as decoder.
+ */
+@FunctionalInterface
+public interface EDNS0OptionDecoder {
+
+  /**
+   * @param code the option code
+   * @param len the length of the option data
+   * @param buffer buffer positioned at the start of the option data, the buffer is reused for the
+   *        next option and must not be kept
+   * @return the decoded option
+   */
+  EDNS0Option decode(int code, int len, NetworkData buffer);
+
+}
@@ -0,0 +1,111 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.message.records.edns0;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+
+/**
+ * Registry with a decoder for every supported EDNS0 option code. Options without a registered
+ * decoder are decoded as a generic {@link EDNS0Option}, which keeps the option data.
+ * 
+ * Applications can register decoders for their own options, this should be done before decoding
+ * messages. Encoding is done by the option objects, see {@link EDNS0Option#encode(NetworkData)}.
+ * 
+ * @see <a href="https://www.iana.org/assignments/dns-parameters/dns-parameters.xhtml#dns-parameters-11">IANA
+ *      EDNS0 option codes</a>
+ */
+public class EDNS0OptionRegistry {
+
+  // decoders for the standardized option codes, higher (local/experimental) codes use the map
+  private static final int MAX_INDEXED_CODE = 255;
+
+  private static EDNS0OptionRegistry instance = new EDNS0OptionRegistry();
+
+  private final EDNS0OptionDecoder[] decoders = new EDNS0OptionDecoder[MAX_INDEXED_CODE + 1];
+  private final Map<Integer, EDNS0OptionDecoder> extendedDecoders = new ConcurrentHashMap<>();
+
+  private EDNS0OptionRegistry() {
+    register(NSidOption.OPTION_CODE, NSidOption::new);
+    // optioncode 5 can be two things:
+    // 1 dnssec DAU http://tools.ietf.org/html/rfc6975
+    // 2 ednsping http://tools.ietf.org/html/draft-hubert-ulevitch-edns-ping-01
+    register(DNSSECOption.OPTION_CODE_DAU, DNSSECOption::new);
+    register(DNSSECOption.OPTION_CODE_DHU, DNSSECOption::new);
+    register(DNSSECOption.OPTION_CODE_N3U, DNSSECOption::new);
+    register(ClientSubnetOption.OPTION_CODE, ClientSubnetOption::new);
+    register(CookieOption.OPTION_CODE, CookieOption::new);
+    register(TcpKeepaliveOption.OPTION_CODE, TcpKeepaliveOption::new);
+    register(PaddingOption.OPTION_CODE, PaddingOption::new);
+    register(KeyTagOption.OPTION_CODE, KeyTagOption::new);
+    register(EDEOption.OPTION_CODE, EDEOption::new);
+  }
+
+  public static EDNS0OptionRegistry getInstance() {
+    return instance;
+  }
+
+  /**
+   * Register the decoder for an option code, replacing the existing decoder.
+   * 
+   * @param code the option code (0-65535)
+   * @param decoder decoder for the option
+   */
+  public void register(int code, EDNS0OptionDecoder decoder) {
+    if (code < 0 || code > 0xFFFF) {
+      throw new IllegalArgumentException("Invalid EDNS0 option code: " + code);
+    }
+    if (code <= MAX_INDEXED_CODE) {
+      decoders[code] = decoder;
+    } else {
+      extendedDecoders.put(Integer.valueOf(code), decoder);
+    }
+  }
+
+  /**
+   * @param code the option code
+   * @return the decoder for the code, or null if no decoder is registered
+   */
+  public EDNS0OptionDecoder getDecoder(int code) {
+    if (code >= 0 && code <= MAX_INDEXED_CODE) {
+      return decoders[code];
+    }
+    return extendedDecoders.get(Integer.valueOf(code));
+  }
+
+  /**
+   * Decode an option with the registered decoder for the code.
+   * 
+   * @param code the option code
+   * @param len the length of the option data
+   * @param buffer buffer positioned at the start of the option data
+   * @return the decoded option
+   */
+  public EDNS0Option decode(int code, int len, NetworkData buffer) {
+    EDNS0OptionDecoder decoder = getDecoder(code);
+    if (decoder == null) {
+      return new EDNS0Option(code, len, buffer);
+    }
+    return decoder.decode(code, len, buffer);
+  }
+
+}
@@ -34,9 +34,13 @@ import nl.sidnlabs.dnslib.message.util.NetworkData;
 @Setter
 public class KeyTagOption extends EDNS0Option {
 
+  public static final int OPTION_CODE = 14;
+
   private List<Integer> keytags;
 
-  public KeyTagOption() {}
+  public KeyTagOption() {
+    this.code = OPTION_CODE;
+  }
 
   public KeyTagOption(int code, int len, NetworkData buffer) {
     super(code, len, buffer);
@@ -56,9 +60,22 @@ public class KeyTagOption extends EDNS0Option {
           keytags.add(Integer.valueOf(buffer.readUnsignedChar()));
         }
       } else {
-        // illegal optionlen size, read data to get pointer in correct loc, ignore data.
-        byte[] data = new byte[len];
-        buffer.readBytes(data);
+        // illegal optionlen size, skip data to get pointer in correct loc, ignore data.
+        buffer.setReaderIndex(buffer.getReaderIndex() + len);
+      }
+    }
+  }
+
+  @Override
+  public int getDataLength() {
+    return keytags != null ? keytags.size() * 2 : 0;
+  }
+
+  @Override
+  protected void encodeData(NetworkData buffer) {
+    if (keytags != null) {
+      for (Integer keytag : keytags) {
+        buffer.writeChar(keytag.intValue());
       }
     }
   }
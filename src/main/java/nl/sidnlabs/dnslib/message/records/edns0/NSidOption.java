@@ -33,9 +33,13 @@ import nl.sidnlabs.dnslib.message.util.NetworkData;
 @Setter
 public class NSidOption extends EDNS0Option {
 
+  public static final int OPTION_CODE = 3;
+
   private String id;
 
-  public NSidOption() {}
+  public NSidOption() {
+    this.code = OPTION_CODE;
+  }
 
   public NSidOption(int code, int len, NetworkData opt) {
     super(code, len, opt);
@@ -51,5 +55,17 @@ public class NSidOption extends EDNS0Option {
     }
   }
 
+  @Override
+  public int getDataLength() {
+    return id != null ? id.length() : 0;
+  }
+
+  @Override
+  protected void encodeData(NetworkData buffer) {
+    if (id != null) {
+      buffer.writeBytes(id.getBytes(StandardCharsets.US_ASCII));
+    }
+  }
+
 
 }
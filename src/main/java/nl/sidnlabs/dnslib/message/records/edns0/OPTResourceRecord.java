@@ -20,14 +20,18 @@
 package nl.sidnlabs.dnslib.message.records.edns0;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.log4j.Log4j2;
+import nl.sidnlabs.dnslib.exception.DecodeFailureType;
 import nl.sidnlabs.dnslib.message.records.AbstractResourceRecord;
 import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
 import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.metrics.DecodeMetrics;
 import nl.sidnlabs.dnslib.types.ResourceRecordType;
 
 /**
@@ -57,7 +61,24 @@ public class OPTResourceRecord extends AbstractResourceRecord {
 
   private boolean dnssecDo;
 
-  private List<EDNS0Option> options = new ArrayList<>();
+  // options are not decoded until requested, see getOptions()
+  private List<EDNS0Option> options;
+
+  // location of the options in the rdata, 2 ints per option: the offset of the option data and the
+  // option code (high 16 bits) combined with the option length (low 16 bits)
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private int[] optionIndex;
+  @Setter(AccessLevel.NONE)
+  private int optionCount;
+  // reused for decoding the options
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private transient NetworkData optionBuffer;
+
+  // receives the failures of options decoded after the message has been decoded, may be null
+  @Getter(AccessLevel.NONE)
+  private transient DecodeMetrics metrics;
 
   public OPTResourceRecord() {
     name = ".";
@@ -83,76 +104,274 @@ public class OPTResourceRecord extends AbstractResourceRecord {
     dnssecDo = (flags & DNSSEC_DO_BIT_MASK) == DNSSEC_DO_BIT_MASK;
 
     rdLeng = buffer.readUnsignedChar();
+    rdLength = rdLeng;
     if (rdLeng > 0) {
-      // not tested yet, add try catch just to be safe
-      try {
-        loadOptions(buffer);
-      } catch (Exception e) {
-        // ignore
-        log.error("Could not decode OPT RR", e);
-      }
+      indexOptions(buffer);
     }
   }
 
-  private void loadOptions(NetworkData buffer) {
+  /**
+   * Copy the rdata and find the code, offset and length of all options, the options are not
+   * decoded. The rdata must be copied because the buffer may be reused for the next message.
+   */
+  private void indexOptions(NetworkData buffer) {
     if (rdLeng > buffer.bytesAvailable()) {
-    	
-    	if(log.isDebugEnabled()) {
-	      log
-	          .debug("Incorrect edns rdata size, rdlength=" + (int) rdLeng + " and bytesavail:"
-	              + buffer.bytesAvailable());
-    	}
+
+      if (log.isDebugEnabled()) {
+        log
+            .debug("Incorrect edns rdata size, rdlength=" + (int) rdLeng + " and bytesavail:"
+                + buffer.bytesAvailable());
+      }
       return;
     }
 
-    byte[] optionBytes = new byte[rdLeng];
-    buffer.readBytes(optionBytes);
+    rdata = new byte[rdLeng];
+    buffer.readBytes(rdata);
+
+    // an option has at least 4 bytes for code and length
+    optionIndex = new int[(rdata.length / 4) * 2];
+    int offset = 0;
+    while (offset + 4 <= rdata.length) {
+      int code = (rdata[offset] & 0xFF) << 8 | (rdata[offset + 1] & 0xFF);
+      int len = (rdata[offset + 2] & 0xFF) << 8 | (rdata[offset + 3] & 0xFF);
+      offset += 4;
+      if (offset + len > rdata.length) {
+        if (log.isDebugEnabled()) {
+          log.debug("Incorrect edns option length, code=" + code + " and length=" + len);
+        }
+        return;
+      }
+      optionIndex[optionCount * 2] = offset;
+      optionIndex[optionCount * 2 + 1] = code << 16 | len;
+      optionCount++;
+      offset += len;
+    }
+  }
+
+  /**
+   * Get all options, decoding them on first use.
+   * 
+   * @return list of options, never null
+   */
+  public List<EDNS0Option> getOptions() {
+    if (options == null) {
+      options = new ArrayList<>(optionCount);
+      for (int i = 0; i < optionCount; i++) {
+        EDNS0Option option = decodeOption(i);
+        if (option != null) {
+          options.add(option);
+        }
+      }
+    }
+    return options;
+  }
+
+  /**
+   * @return the number of options in the decoded rdata
+   */
+  public int getOptionCount() {
+    return options != null ? options.size() : optionCount;
+  }
+
+  /**
+   * @param code option code
+   * @return true if an option with the code is present
+   */
+  public boolean hasOption(int code) {
+    if (options != null) {
+      // use the field, EDEOption hides the option code
+      return options.stream().anyMatch(o -> o.code == code);
+    }
+    return findOption(code) != -1;
+  }
+
+  /**
+   * Decode the first option with the code, without decoding any other options.
+   * 
+   * @param code option code
+   * @return the option or null if not present
+   */
+  public EDNS0Option getOption(int code) {
+    if (options != null) {
+      return options.stream().filter(o -> o.code == code).findFirst().orElse(null);
+    }
+    int i = findOption(code);
+    return i == -1 ? null : decodeOption(i);
+  }
+
+  /**
+   * @return the ECS option or null if not present
+   */
+  public ClientSubnetOption getClientSubnet() {
+    return (ClientSubnetOption) getOption(ClientSubnetOption.OPTION_CODE);
+  }
+
+  /**
+   * Get the address family of the ECS option, without decoding any options.
+   * 
+   * @return {@link ClientSubnetOption#FAMILY_IPV4}, {@link ClientSubnetOption#FAMILY_IPV6}, another
+   *         family or -1 if there is no ECS option
+   */
+  public int getClientSubnetFamily() {
+    if (options != null) {
+      ClientSubnetOption ecs = getClientSubnet();
+      return ecs == null ? -1 : ecs.getFam();
+    }
+    int offset = clientSubnetOffset();
+    return offset == -1 ? -1 : (rdata[offset] & 0xFF) << 8 | (rdata[offset + 1] & 0xFF);
+  }
+
+  /**
+   * Get the source prefix length of the ECS option, without decoding any options.
+   * 
+   * @return the source prefix length or -1 if there is no ECS option
+   */
+  public int getClientSubnetSourcePrefix() {
+    if (options != null) {
+      ClientSubnetOption ecs = getClientSubnet();
+      return ecs == null ? -1 : ecs.getSourcenetmask();
+    }
+    int offset = clientSubnetOffset();
+    return offset == -1 ? -1 : rdata[offset + 2] & 0xFF;
+  }
+
+  /**
+   * Get the scope prefix length of the ECS option, without decoding any options.
+   * 
+   * @return the scope prefix length or -1 if there is no ECS option
+   */
+  public int getClientSubnetScopePrefix() {
+    if (options != null) {
+      ClientSubnetOption ecs = getClientSubnet();
+      return ecs == null ? -1 : ecs.getScopenetmask();
+    }
+    int offset = clientSubnetOffset();
+    return offset == -1 ? -1 : rdata[offset + 3] & 0xFF;
+  }
 
-    NetworkData opt = new NetworkData(optionBytes);
-    while (opt.isBytesAvailable()) {
-      EDNS0Option option = decodeOption(opt);
-      options.add(option);
+  /**
+   * Copy the address of the ECS option to dst, without decoding any options. Address bytes that are
+   * not in the option are set to zero.
+   * 
+   * @param dst destination with room for 4 bytes for IPv4 or 16 bytes for IPv6
+   * @return the number of bytes written (4 or 16), or -1 if there is no ECS option with an IPv4 or
+   *         IPv6 address
+   */
+  public int getClientSubnetAddress(byte[] dst) {
+    int family = getClientSubnetFamily();
+    if (family != ClientSubnetOption.FAMILY_IPV4 && family != ClientSubnetOption.FAMILY_IPV6) {
+      return -1;
+    }
+    int length = family == ClientSubnetOption.FAMILY_IPV4 ? 4 : 16;
+    if (options != null) {
+      ClientSubnetOption ecs = getClientSubnet();
+      if (ecs.getAddressLength() == 0) {
+        return -1;
+      }
+      for (int i = 0; i < length; i++) {
+        dst[i] = (byte) (i < 8 ? ecs.getAddressHigh() >>> (56 - i * 8)
+            : ecs.getAddressLow() >>> (120 - i * 8));
+      }
+      return length;
+    }
+    int i = findOption(ClientSubnetOption.OPTION_CODE);
+    // family, source and scope prefix are followed by the significant bytes of the address
+    int available = Math.min(length, (optionIndex[i * 2 + 1] & 0xFFFF) - 4);
+    if (available <= 0) {
+      return -1;
     }
+    System.arraycopy(rdata, optionIndex[i * 2] + 4, dst, 0, available);
+    Arrays.fill(dst, available, length, (byte) 0);
+    return length;
+  }
+
+  /**
+   * @return offset in the rdata of the data of the ECS option, -1 if there is no ECS option with at
+   *         least the family and prefix lengths
+   */
+  private int clientSubnetOffset() {
+    int i = findOption(ClientSubnetOption.OPTION_CODE);
+    return i == -1 || (optionIndex[i * 2 + 1] & 0xFFFF) < 4 ? -1 : optionIndex[i * 2];
+  }
+
+  /**
+   * @return the cookie option or null if not present
+   */
+  public CookieOption getCookie() {
+    return (CookieOption) getOption(CookieOption.OPTION_CODE);
   }
 
   /**
-   * Detect the code and len of the edns0 option and create the correct option object to return.
+   * Get the length of the padding option, without decoding any options.
    * 
-   * @param opt
-   * @return edns0 option object
-   */
-  private EDNS0Option decodeOption(NetworkData opt) {
-    int optioncode = opt.readUnsignedChar();
-    int optionlen = opt.readUnsignedChar();
-
-    if (optioncode == 3) { // nsid
-      return new NSidOption(optioncode, optionlen, opt);
-    } else if (optioncode == 5) {
-      // optioncode 5 can be two things:
-      // 1 dnssec DAU http://tools.ietf.org/html/rfc6975
-      // 2 ednsping http://tools.ietf.org/html/draft-hubert-ulevitch-edns-ping-01
-
-      return new DNSSECOption(optioncode, optionlen, opt);
-    } else if (optioncode == 6 || optioncode == 7) {
-      // decode dnssec option
-      return new DNSSECOption(optioncode, optionlen, opt);
-    } else if (optioncode == 8) {
-      // decode clientsubnet option
-      return new ClientSubnetOption(optioncode, optionlen, opt);
-    } else if (optioncode == 12) { // Padding
-      return new PaddingOption(optioncode, optionlen, opt);
-    } else if (optioncode == 14) { // dns key
-      return new KeyTagOption(optioncode, optionlen, opt);
-    } else if (optioncode == 15) { // extended errors
-      return new EDEOption(optioncode, optionlen, opt);
+   * @return the number of padding bytes or -1 if there is no padding option
+   */
+  public int getPaddingLength() {
+    if (options != null) {
+      EDNS0Option padding = getOption(PaddingOption.OPTION_CODE);
+      return padding == null ? -1 : padding.getDataLength();
+    }
+    int i = findOption(PaddingOption.OPTION_CODE);
+    return i == -1 ? -1 : optionIndex[i * 2 + 1] & 0xFFFF;
+  }
+
+  private int findOption(int code) {
+    for (int i = 0; i < optionCount; i++) {
+      if (optionIndex[i * 2 + 1] >>> 16 == code) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private EDNS0Option decodeOption(int i) {
+    int offset = optionIndex[i * 2];
+    int optioncode = optionIndex[i * 2 + 1] >>> 16;
+    int optionlen = optionIndex[i * 2 + 1] & 0xFFFF;
+    if (optionBuffer == null) {
+      optionBuffer = new NetworkData(rdata, offset, offset + optionlen);
     } else {
-      return new EDNS0Option(optioncode, optionlen, opt);
+      optionBuffer.update(rdata, offset, offset + optionlen);
+    }
+    try {
+      return EDNS0OptionRegistry.getInstance().decode(optioncode, optionlen, optionBuffer);
+    } catch (RuntimeException e) {
+      // malformed option in untrusted data, do not create a stack trace in the log
+      DecodeFailureType failure = DecodeFailureType.of(e);
+      if (metrics != null) {
+        metrics.optionDecodeFailed(optioncode, failure);
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Could not decode EDNS0 option {}: {} ({})", optioncode, failure,
+            e.getMessage());
+      }
+      return null;
     }
   }
 
+  /**
+   * Add an option, the option is included when encoding this record.
+   * 
+   * @param option option to add
+   * @return this record
+   */
+  public OPTResourceRecord addOption(EDNS0Option option) {
+    getOptions().add(option);
+    return this;
+  }
 
   @Override
   public void encode(NetworkData buffer) {
+    encode(buffer, -1);
+  }
+
+  /**
+   * Encode the record with a padding option, replacing existing padding options.
+   * 
+   * @param buffer buffer to write the record to
+   * @param padding the number of padding bytes, -1 to encode the options unchanged
+   */
+  public void encode(NetworkData buffer, int padding) {
 
     // write the name
     buffer.writeByte(0);
@@ -164,22 +383,62 @@ public class OPTResourceRecord extends AbstractResourceRecord {
     buffer.writeChar(udpPlayloadSize);
 
     // write extended rcode
-    buffer.writeByte(0x0);
+    buffer.writeByte(rcode);
 
     // write version
-    buffer.writeByte(0x0);
-
-    // default all flags off
-    char flags = 0x0;
+    buffer.writeByte(version);
 
-    // dnssec enabled, signal with do bit is on
-    flags = (char) (flags | DNSSEC_DO_BIT_MASK);
+    // signal dnssec support with the do bit
+    char encodedFlags = dnssecDo ? (char) (flags | DNSSEC_DO_BIT_MASK)
+        : (char) (flags & ~DNSSEC_DO_BIT_MASK);
 
     // write all the flags
-    buffer.writeChar(flags);
+    buffer.writeChar(encodedFlags);
+
+    if (options == null && padding < 0) {
+      // options have not been decoded or changed, write the original rdata
+      int length = rdata != null ? rdata.length : 0;
+      buffer.writeChar(length);
+      if (length > 0) {
+        buffer.writeBytes(rdata);
+      }
+      return;
+    }
 
     // write the length of the rdata section
-    buffer.writeChar(rdLeng);
+    buffer.writeChar(optionsLength(padding >= 0) + (padding >= 0 ? 4 + padding : 0));
+
+    for (EDNS0Option option : getOptions()) {
+      if (padding < 0 || option.code != PaddingOption.OPTION_CODE) {
+        option.encode(buffer);
+      }
+    }
+    if (padding >= 0) {
+      new PaddingOption(padding).encode(buffer);
+    }
+  }
+
+  /**
+   * Get the size of the record when encoded with a padding option without padding bytes. Used to
+   * calculate the padding length before encoding.
+   * 
+   * @return size in bytes
+   */
+  public int getUnpaddedLength() {
+    // root name (1), type (2), udp size (2), rcode (1), version (1), flags (2) and rdlength (2)
+    // followed by the options and an empty padding option (4)
+    return 11 + optionsLength(true) + 4;
+  }
+
+  private int optionsLength(boolean skipPadding) {
+    int length = 0;
+    for (EDNS0Option option : getOptions()) {
+      if (!skipPadding || option.code != PaddingOption.OPTION_CODE) {
+        // option code and option length
+        length += 4 + option.getDataLength();
+      }
+    }
+    return length;
   }
 
   @Override
@@ -31,13 +31,41 @@ import nl.sidnlabs.dnslib.message.util.NetworkData;
 @Setter
 public class PaddingOption extends EDNS0Option {
 
+  public static final int OPTION_CODE = 12;
+
   private int length;
 
-  public PaddingOption() {}
+  public PaddingOption() {
+    this.code = OPTION_CODE;
+  }
+
+  public PaddingOption(int length) {
+    this();
+    this.length = length;
+  }
 
   public PaddingOption(int code, int len, NetworkData buffer) {
     super(code, len, buffer);
     this.length = len;
   }
 
+  @Override
+  public void decode(NetworkData buffer) {
+    // padding bytes have no meaning, skip data
+    buffer.setReaderIndex(buffer.getReaderIndex() + len);
+  }
+
+  @Override
+  public int getDataLength() {
+    return length;
+  }
+
+  @Override
+  protected void encodeData(NetworkData buffer) {
+    // padding must consist of zero bytes
+    for (int i = 0; i < length; i++) {
+      buffer.writeByte(0);
+    }
+  }
+
 }
@@ -0,0 +1,76 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.message.records.edns0;
+
+/**
+ * Padding policy for encoding messages with an OPT record, determines the length of the padding
+ * option based on the size of the encoded message.
+ * 
+ * @see <a href="https://tools.ietf.org/html/rfc8467">rfc8467</a>
+ */
+@FunctionalInterface
+public interface PaddingPolicy {
+
+  /**
+   * Do not add a padding option, an existing padding option is encoded unchanged.
+   */
+  PaddingPolicy NONE = (length, response) -> -1;
+
+  /**
+   * The recommended block-length padding strategy: pad queries to a multiple of 128 bytes and
+   * responses to a multiple of 468 bytes.
+   */
+  PaddingPolicy RECOMMENDED = blockLength(128, 468);
+
+  /**
+   * @param length size of the encoded message including an empty padding option
+   * @param response true if the message is a response
+   * @return the number of padding bytes, or -1 to not add a padding option
+   */
+  int padding(int length, boolean response);
+
+  /**
+   * Pad messages to a multiple of the block length.
+   * 
+   * @param queryBlockLength block length for queries
+   * @param responseBlockLength block length for responses
+   * @return the policy
+   */
+  static PaddingPolicy blockLength(int queryBlockLength, int responseBlockLength) {
+    if (queryBlockLength < 1 || responseBlockLength < 1) {
+      throw new IllegalArgumentException("Block length must be at least 1");
+    }
+    return (length, response) -> {
+      int block = response ? responseBlockLength : queryBlockLength;
+      return (block - length % block) % block;
+    };
+  }
+
+  /**
+   * Pad all messages to the maximum message size.
+   * 
+   * @param maxLength the maximum message size, e.g. the EDNS0 UDP payload size
+   * @return the policy
+   */
+  static PaddingPolicy maximal(int maxLength) {
+    return (length, response) -> Math.max(0, maxLength - length);
+  }
+
+}
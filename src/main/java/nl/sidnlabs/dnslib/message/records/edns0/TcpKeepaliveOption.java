@@ -0,0 +1,77 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.message.records.edns0;
+
+import lombok.Getter;
+import lombok.Setter;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+
+/**
+ * edns-tcp-keepalive, the idle timeout is absent in queries and present in responses.
+ * 
+ * @see <a href="https://tools.ietf.org/html/rfc7828">rfc7828</a>
+ */
+@Getter
+@Setter
+public class TcpKeepaliveOption extends EDNS0Option {
+
+  public static final int OPTION_CODE = 11;
+
+  // idle timeout in units of 100 milliseconds, -1 if not present
+  private int timeout;
+
+  public TcpKeepaliveOption() {
+    this.code = OPTION_CODE;
+    this.timeout = -1;
+  }
+
+  public TcpKeepaliveOption(int timeout) {
+    this();
+    this.timeout = timeout;
+  }
+
+  public TcpKeepaliveOption(int code, int len, NetworkData buffer) {
+    super(code, len, buffer);
+  }
+
+  @Override
+  public void decode(NetworkData buffer) {
+    if (len == 2) {
+      timeout = buffer.readUnsignedChar();
+    } else {
+      // no timeout or illegal length, skip data
+      timeout = -1;
+      buffer.setReaderIndex(buffer.getReaderIndex() + len);
+    }
+  }
+
+  @Override
+  public int getDataLength() {
+    return timeout >= 0 ? 2 : 0;
+  }
+
+  @Override
+  protected void encodeData(NetworkData buffer) {
+    if (timeout >= 0) {
+      buffer.writeChar(timeout);
+    }
+  }
+
+}
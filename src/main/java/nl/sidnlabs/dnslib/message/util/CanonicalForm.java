@@ -0,0 +1,287 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.message.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+
+/**
+ * Canonical form of RRs as used for DNSSEC signatures and zone digests (RFC 4034 section 6.2):
+ * uncompressed names, the owner name and the names in the rdata of the types listed in RFC 4034 and
+ * RFC 6840 converted to lowercase.
+ * 
+ * The methods work on wire format, names are only converted from a String for the owner name.
+ */
+public final class CanonicalForm {
+
+  private static final int MAX_LABELS = 128;
+
+  /**
+   * Canonical order of uncompressed names in wire format (RFC 4034 section 6.1).
+   */
+  public static final Comparator<byte[]> NAME_ORDER = (a, b) -> compareNames(a, 0, b, 0);
+
+  private CanonicalForm() {}
+
+  /**
+   * Visitor for the names in rdata, see {@link CanonicalForm#visitNames}.
+   *
+   * @param <T> type of the context passed to the visitor
+   */
+  @FunctionalInterface
+  public interface NameVisitor<T> {
+
+    /**
+     * @param context the context passed to {@link CanonicalForm#visitNames}
+     * @param pos index of the first byte of the name
+     * @param end index of the first byte after the rdata
+     * @return index of the first byte after the name, or a value &lt; 0 to stop visiting
+     */
+    int visit(T context, int pos, int end);
+  }
+
+  /**
+   * @param name domain name, with or without trailing dot
+   * @return the name in lowercase uncompressed wire format
+   */
+  public static byte[] name(String name) {
+    byte[] wire = new byte[DNSStringUtil.nameLength(name)];
+    name(name, wire, 0);
+    return wire;
+  }
+
+  /**
+   * Write the name in lowercase uncompressed wire format.
+   * 
+   * @param name domain name, with or without trailing dot
+   * @param dst destination, must have room for {@link DNSStringUtil#nameLength(String)} bytes
+   * @param offset index in dst to write the name to
+   * @return index in dst of the first byte after the name
+   */
+  public static int name(String name, byte[] dst, int offset) {
+    int pos = offset;
+    int lengthIndex = pos++;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c == '.') {
+        if (pos - lengthIndex > 1) {
+          dst[lengthIndex] = (byte) (pos - lengthIndex - 1);
+          lengthIndex = pos++;
+        }
+      } else {
+        dst[pos++] = (byte) (c >= 'A' && c <= 'Z' ? c + 32 : c);
+      }
+    }
+    if (pos - lengthIndex > 1) {
+      dst[lengthIndex] = (byte) (pos - lengthIndex - 1);
+      lengthIndex = pos++;
+    }
+    // root label
+    dst[lengthIndex] = 0;
+    return pos;
+  }
+
+  /**
+   * Compare uncompressed names in wire format in canonical order (RFC 4034 section 6.1): label by
+   * label starting at the rightmost label, labels are compared as unsigned bytes ignoring ASCII
+   * case and a name with fewer labels is sorted first.
+   * 
+   * @return &lt; 0, 0 or &gt; 0 if name a sorts before, equal to or after name b
+   */
+  public static int compareNames(byte[] a, int offsetA, byte[] b, int offsetB) {
+    int labelsA = labels(a, offsetA);
+    int labelsB = labels(b, offsetB);
+    int labels = Math.min(labelsA, labelsB);
+    for (int i = 1; i <= labels; i++) {
+      // labels are counted from the right, the root label not included
+      int posA = label(a, offsetA, labelsA - i);
+      int posB = label(b, offsetB, labelsB - i);
+      int lengthA = a[posA] & 0xFF;
+      int lengthB = b[posB] & 0xFF;
+      int n = Math.min(lengthA, lengthB);
+      for (int j = 1; j <= n; j++) {
+        int c = lowerCase(a[posA + j] & 0xFF) - lowerCase(b[posB + j] & 0xFF);
+        if (c != 0) {
+          return c;
+        }
+      }
+      if (lengthA != lengthB) {
+        return lengthA - lengthB;
+      }
+    }
+    return labelsA - labelsB;
+  }
+
+  private static int labels(byte[] name, int pos) {
+    int labels = 0;
+    while (name[pos] != 0 && labels < MAX_LABELS) {
+      pos += (name[pos] & 0xFF) + 1;
+      labels++;
+    }
+    return labels;
+  }
+
+  /**
+   * @return index of the length byte of label i, counted from the left
+   */
+  private static int label(byte[] name, int pos, int i) {
+    for (int j = 0; j < i; j++) {
+      pos += (name[pos] & 0xFF) + 1;
+    }
+    return pos;
+  }
+
+  private static int lowerCase(int c) {
+    return c >= 'A' && c <= 'Z' ? c + 32 : c;
+  }
+
+  /**
+   * @param rr the RR
+   * @return the rdata of the RR in canonical form
+   */
+  public static byte[] rdata(ResourceRecord rr) {
+    byte[] rdata = encode(rr);
+    lowerCaseNames(rr.getType().getValue(), rdata, 0, rdata.length);
+    return rdata;
+  }
+
+  /**
+   * @return the uncompressed rdata of the encoded RR
+   */
+  static byte[] encode(ResourceRecord rr) {
+    NetworkData buffer = new NetworkData(512);
+    rr.encode(buffer);
+    byte[] wire = buffer.write();
+    // skip owner name, type, class, ttl and rdlength
+    return Arrays.copyOfRange(wire, DNSStringUtil.nameLength(rr.getName()) + 10, wire.length);
+  }
+
+  /**
+   * Convert the names in uncompressed rdata to lowercase, for the types listed in RFC 4034 section
+   * 6.2, without NSEC (RFC 6840 section 5.1).
+   * 
+   * @param type RR type
+   * @param rdata uncompressed rdata, converted in place
+   */
+  public static void lowerCaseNames(int type, byte[] rdata) {
+    lowerCaseNames(type, rdata, 0, rdata.length);
+  }
+
+  /**
+   * Convert the names in rdata to lowercase, for the types listed in RFC 4034 section 6.2, without
+   * NSEC (RFC 6840 section 5.1).
+   * 
+   * @param type RR type
+   * @param data array with the rdata, converted in place
+   * @param offset index of the rdata in data
+   * @param length length of the rdata
+   * @return false if a name in the rdata is compressed, the rdata must then be decompressed before
+   *         it is in canonical form
+   */
+  public static boolean lowerCaseNames(int type, byte[] data, int offset, int length) {
+    return visitNames(type, data, offset, length, data, CanonicalForm::lowerCaseName) >= 0;
+  }
+
+  /**
+   * Visit the names in rdata, for the types listed in RFC 4034 section 6.2, without NSEC (RFC 6840
+   * section 5.1). The names are visited in order, the position of a name depends on the index
+   * returned by the visitor for the previous name.
+   * 
+   * @param type RR type
+   * @param data array with the rdata
+   * @param offset index of the rdata in data
+   * @param length length of the rdata
+   * @param context context passed to the visitor
+   * @param visitor called for every name
+   * @return index returned by the visitor for the last name, offset for types without names, or the
+   *         value &lt; 0 returned by the visitor
+   */
+  public static <T> int visitNames(int type, byte[] data, int offset, int length, T context,
+      NameVisitor<T> visitor) {
+    int end = offset + length;
+    int pos;
+    switch (type) {
+      case 2: // NS
+      case 3: // MD
+      case 4: // MF
+      case 5: // CNAME
+      case 7: // MB
+      case 8: // MG
+      case 9: // MR
+      case 12: // PTR
+      case 30: // NXT
+      case 39: // DNAME
+        return visitor.visit(context, offset, end);
+      case 6: // SOA
+      case 14: // MINFO
+      case 17: // RP
+        pos = visitor.visit(context, offset, end);
+        return pos < 0 ? pos : visitor.visit(context, pos, end);
+      case 15: // MX
+      case 18: // AFSDB
+      case 21: // RT
+      case 36: // KX
+        return visitor.visit(context, offset + 2, end);
+      case 26: // PX
+        pos = visitor.visit(context, offset + 2, end);
+        return pos < 0 ? pos : visitor.visit(context, pos, end);
+      case 33: // SRV
+        return visitor.visit(context, offset + 6, end);
+      case 24: // SIG
+      case 46: // RRSIG
+        return visitor.visit(context, offset + 18, end);
+      case 35: // NAPTR
+        pos = offset + 4;
+        // flags, services and regexp
+        for (int i = 0; i < 3 && pos < end; i++) {
+          pos += (data[pos] & 0xFF) + 1;
+        }
+        return visitor.visit(context, pos, end);
+      default:
+        // no names or names that are not converted
+        return offset;
+    }
+  }
+
+  /**
+   * @return index of the first byte after the name, or -1 if the name is compressed
+   */
+  private static int lowerCaseName(byte[] data, int pos, int limit) {
+    while (pos < limit) {
+      int length = data[pos] & 0xFF;
+      if (length == 0) {
+        return pos + 1;
+      }
+      if ((length & 0xC0) != 0) {
+        return -1;
+      }
+      int end = Math.min(pos + 1 + length, limit);
+      for (int i = pos + 1; i < end; i++) {
+        if (data[i] >= 'A' && data[i] <= 'Z') {
+          data[i] += 32;
+        }
+      }
+      pos = end;
+    }
+    return pos;
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.message.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import nl.sidnlabs.dnslib.message.RRset;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+
+/**
+ * The RRs of an RRset in canonical form and canonical order (RFC 4034 section 6.3), duplicate RRs
+ * are removed. The owner name and the rdata of all RRs are written to arrays that are reused for
+ * the next RRset, the rdata is sorted by comparing the bytes without creating copies.
+ * 
+ * By default the RRs are encoded to get the rdata. Instances created with
+ * {@link #CanonicalRRset(boolean)} use the rdata of the RRs as it was decoded when the rdata does
+ * not contain compressed names, this is much faster but must only be used for RRs that have not
+ * been changed after decoding.
+ * 
+ * Not thread safe, use an instance per thread.
+ */
+public final class CanonicalRRset {
+
+  // use the decoded rdata of the RRs
+  private final boolean decoded;
+
+  private byte[] owner = new byte[256];
+  private int ownerLength;
+  // canonical rdata of all RRs
+  private byte[] data = new byte[4096];
+  private int length;
+  // offset and length of the rdata of every RR, in the order of the RRset
+  private int[] offsets = new int[16];
+  private int[] lengths = new int[16];
+  private ResourceRecord[] records = new ResourceRecord[16];
+  // indexes of the RRs in canonical order
+  private int[] order = new int[16];
+  private int[] scratch = new int[16];
+  private int size;
+
+  public CanonicalRRset() {
+    this(false);
+  }
+
+  /**
+   * @param decoded true to use the rdata of the RRs as decoded from a message or zone file
+   */
+  public CanonicalRRset(boolean decoded) {
+    this.decoded = decoded;
+  }
+
+  /**
+   * Convert the RRset to canonical form, replacing the previous RRset.
+   * 
+   * @param rrset the RRset
+   * @return this object
+   */
+  public CanonicalRRset set(RRset rrset) {
+    return set(rrset.getOwner(), rrset.getAll());
+  }
+
+  /**
+   * Convert RRs with the same owner, type and class to canonical form, replacing the previous RRs.
+   * 
+   * @param name owner name of the RRs
+   * @param rrs the RRs
+   * @return this object
+   */
+  public CanonicalRRset set(String name, List<ResourceRecord> rrs) {
+    ownerLength = CanonicalForm.name(name, owner, 0);
+    length = 0;
+    int n = rrs.size();
+    if (offsets.length < n) {
+      int capacity = Math.max(n, offsets.length * 2);
+      offsets = new int[capacity];
+      lengths = new int[capacity];
+      records = new ResourceRecord[capacity];
+      order = new int[capacity];
+      scratch = new int[capacity];
+    } else if (n < size) {
+      Arrays.fill(records, n, size, null);
+    }
+
+    for (int i = 0; i < n; i++) {
+      ResourceRecord rr = rrs.get(i);
+      offsets[i] = length;
+      lengths[i] = rdata(rr);
+      records[i] = rr;
+      order[i] = i;
+      length += lengths[i];
+    }
+    size = n;
+    sort();
+    return this;
+  }
+
+  /**
+   * Write the canonical rdata of the RR at the end of the data.
+   * 
+   * @return length of the rdata
+   */
+  private int rdata(ResourceRecord rr) {
+    int type = rr.getType().getValue();
+    byte[] raw = decoded ? rr.getRdata() : null;
+    if (raw != null) {
+      ensure(raw.length);
+      System.arraycopy(raw, 0, data, length, raw.length);
+      if (CanonicalForm.lowerCaseNames(type, data, length, raw.length)) {
+        return raw.length;
+      }
+    }
+    // not decoded or compressed names
+    byte[] encoded = CanonicalForm.encode(rr);
+    CanonicalForm.lowerCaseNames(type, encoded, 0, encoded.length);
+    ensure(encoded.length);
+    System.arraycopy(encoded, 0, data, length, encoded.length);
+    return encoded.length;
+  }
+
+  private void ensure(int n) {
+    if (length + n > data.length) {
+      data = Arrays.copyOf(data, Math.max(data.length * 2, length + n));
+    }
+  }
+
+  private void sort() {
+    if (size < 8) {
+      // insertion sort, most RRsets are small
+      for (int i = 1; i < size; i++) {
+        int current = order[i];
+        int j = i - 1;
+        while (j >= 0 && compare(order[j], current) > 0) {
+          order[j + 1] = order[j];
+          j--;
+        }
+        order[j + 1] = current;
+      }
+    } else {
+      mergeSort();
+    }
+
+    // remove duplicates, these are next to each other after sorting
+    int unique = size == 0 ? 0 : 1;
+    for (int i = 1; i < size; i++) {
+      if (compare(order[unique - 1], order[i]) != 0) {
+        order[unique++] = order[i];
+      }
+    }
+    size = unique;
+  }
+
+  // bottom up merge sort of the order array, stable so the first of the duplicates is kept
+  private void mergeSort() {
+    int[] src = order;
+    int[] dst = scratch;
+    for (int width = 1; width < size; width *= 2) {
+      for (int left = 0; left < size; left += 2 * width) {
+        int middle = Math.min(left + width, size);
+        int right = Math.min(left + 2 * width, size);
+        int i = left;
+        int j = middle;
+        for (int k = left; k < right; k++) {
+          if (i < middle && (j >= right || compare(src[i], src[j]) <= 0)) {
+            dst[k] = src[i++];
+          } else {
+            dst[k] = src[j++];
+          }
+        }
+      }
+      int[] tmp = src;
+      src = dst;
+      dst = tmp;
+    }
+    order = src;
+    scratch = dst;
+  }
+
+  private int compare(int a, int b) {
+    return Arrays.compareUnsigned(data, offsets[a], offsets[a] + lengths[a], data, offsets[b],
+        offsets[b] + lengths[b]);
+  }
+
+  /**
+   * @return the number of unique RRs
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the owner name in canonical form, the first {@link #getOwnerLength()} bytes are used
+   */
+  public byte[] getOwner() {
+    return owner;
+  }
+
+  public int getOwnerLength() {
+    return ownerLength;
+  }
+
+  /**
+   * @return the rdata of all RRs, use {@link #getOffset(int)} and {@link #getLength(int)} to find
+   *         the rdata of an RR
+   */
+  public byte[] getData() {
+    return data;
+  }
+
+  /**
+   * @param i index of the RR in canonical order
+   * @return the offset of the canonical rdata of the RR in {@link #getData()}
+   */
+  public int getOffset(int i) {
+    return offsets[order[i]];
+  }
+
+  /**
+   * @param i index of the RR in canonical order
+   * @return the length of the canonical rdata of the RR
+   */
+  public int getLength(int i) {
+    return lengths[order[i]];
+  }
+
+  /**
+   * @param i index of the RR in canonical order
+   * @return the RR
+   */
+  public ResourceRecord getRecord(int i) {
+    return records[order[i]];
+  }
+
+  /**
+   * @param i index of the RR in canonical order
+   * @return copy of the canonical rdata of the RR
+   */
+  public byte[] getRdata(int i) {
+    int offset = getOffset(i);
+    return Arrays.copyOfRange(data, offset, offset + getLength(i));
+  }
+
+}
@@ -25,8 +25,10 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import org.apache.commons.lang3.StringUtils;
 
+import nl.sidnlabs.dnslib.exception.DecodeFailureType;
 import nl.sidnlabs.dnslib.exception.DnsDecodeException;
 import nl.sidnlabs.dnslib.exception.DnsEncodeException;
+import nl.sidnlabs.dnslib.metrics.NameDecodeEvent;
 
 /**
  * DNS Label Types
@@ -107,12 +109,22 @@ public class DNSStringUtil {
    * @return
    */
   public static String readNameUsingBuffer(NetworkData buffer) {
-    return readNameUsingBuffer(buffer, buffer.getStringDecodeBuffer());
+    if (NameDecodeEvent.isActive()) {
+      NameDecodeEvent event = new NameDecodeEvent();
+      event.begin();
+      String name = readNameUsingBuffer(buffer, buffer.getStringDecodeBuffer(), event);
+      event.commit();
+      return name;
+    }
+    return readNameUsingBuffer(buffer, buffer.getStringDecodeBuffer(), null);
 
   }
 
-  private static String readNameUsingBuffer(NetworkData buffer, byte[] stringBuffer) {
+  private static String readNameUsingBuffer(NetworkData buffer, byte[] stringBuffer,
+      NameDecodeEvent event) {
     int currentPosition = -1;
+    int pointers = 0;
+    int maxChain = 0;
     short length = buffer.readUnsignedByte();
 
     if (length == 0) {
@@ -128,13 +140,14 @@ public class DNSStringUtil {
 
       if (totalLabels == MAX_LABELS) {
         // too many labels used, stop now to prevent possible infinite loop
-        throw new DnsEncodeException(
+        throw new DnsDecodeException(DecodeFailureType.LABEL_LENGTH,
             "Too many labels (max 127) for name: " + toLowerCaseAsciiInPlace(stringBuffer, 0, bufferIndex));
       }
 
       if (bufferIndex > MAX_CHARACTER_STRING_LENGTH) {
         // protection against OOM
-        throw new DnsEncodeException("total name length length exceeding max (253) for name: "
+        throw new DnsDecodeException(DecodeFailureType.NAME_LENGTH,
+            "total name length length exceeding max (253) for name: "
             + toLowerCaseAsciiInPlace(stringBuffer, 0, bufferIndex));
       }
 
@@ -142,7 +155,8 @@ public class DNSStringUtil {
       if (((byte) length & COMPRESSED_NAME_BIT_MASK) == 0) {
 
         if (length > MAX_LABEL_LENGTH) {
-          throw new DnsDecodeException("Unsupported label length found, value: " + length);
+          throw new DnsDecodeException(DecodeFailureType.LABEL_LENGTH,
+              "Unsupported label length found, value: " + length);
         }
 
         buffer.readBytes(stringBuffer, bufferIndex, length);
@@ -159,9 +173,13 @@ public class DNSStringUtil {
           currentPosition = buffer.getReaderIndex();
         }
         // follow 1 or more pointers to the data label.
-        followPointerChain(buffer);
+        int chain = followPointerChain(buffer);
+        pointers += chain;
+        if (chain > maxChain) {
+          maxChain = chain;
+        }
       } else {
-        throw new DnsDecodeException("Unsupported label type found");
+        throw new DnsDecodeException(DecodeFailureType.LABEL_TYPE, "Unsupported label type found");
       }
 
       length = buffer.readUnsignedByte();
@@ -171,7 +189,14 @@ public class DNSStringUtil {
     if (currentPosition >= 0) {
       buffer.setReaderIndex(currentPosition + 1);
     }
-    
+
+    if (event != null) {
+      event.length = bufferIndex;
+      event.labels = totalLabels;
+      event.pointers = pointers;
+      event.maxChain = maxChain;
+    }
+
     return toLowerCaseAsciiInPlace(stringBuffer, 0, bufferIndex);
   }
 
@@ -181,8 +206,9 @@ public class DNSStringUtil {
    * will be at the length byte of a data label.
    * 
    * @param buffer bytes with DNS message
+   * @return the number of pointers followed
    */
-  private static void followPointerChain(NetworkData buffer) {
+  private static int followPointerChain(NetworkData buffer) {
     int length = 0;
     // protected against infinite loop (attack)
     int jumps = 0;
@@ -197,7 +223,8 @@ public class DNSStringUtil {
 
       if (jumps == MAX_POINTER_CHAIN_LENGTH) {
         // protection against infinite loops
-        throw new DnsDecodeException("Illegal pointer chain size: " + jumps);
+        throw new DnsDecodeException(DecodeFailureType.POINTER_LOOP,
+            "Illegal pointer chain size: " + jumps);
       }
 
       // read 16 bits
@@ -207,7 +234,7 @@ public class DNSStringUtil {
       offset = (char) (offset ^ (1 << 15)); // flip bit 15 to 0
 
       if ((byte) offset >= (buffer.getReaderIndex() - 2)) {
-        throw new DnsDecodeException(
+        throw new DnsDecodeException(DecodeFailureType.POINTER_OFFSET,
             "Message compression pointer offset higher than current index");
       }
 
@@ -220,9 +247,113 @@ public class DNSStringUtil {
 
     // go 1 byte because we read the length of the next label already
     buffer.rewind(1);
+    return jumps;
+  }
+
+
+
+  /**
+   * Check the name starting at offset without decoding it and without throwing an exception. Uses
+   * the same limits as {@link #readNameUsingBuffer(NetworkData)}, pointers must point to an earlier
+   * position in the message. The reader index of the buffer is not changed.
+   * 
+   * @param buffer bytes with DNS message
+   * @param offset index of the first byte of the name
+   * @return index of the first byte after the name, or a negative {@link DecodeFailureType#code()}
+   *         when the name is not valid
+   */
+  public static int scanName(NetworkData buffer, int offset) {
+    byte[] data = buffer.array();
+    int limit = buffer.length();
+    int base = buffer.getBaseIndex();
+    int pos = offset;
+    // position after the first pointer, -1 if no pointer found yet
+    int end = -1;
+    int jumps = 0;
+    int labels = 0;
+    int nameLength = 0;
+
+    while (true) {
+      if (pos >= limit) {
+        return DecodeFailureType.TRUNCATED.code();
+      }
+      int length = data[pos] & 0xFF;
+
+      if ((length & 0xC0) == 0) {
+        if (length == 0) {
+          return end == -1 ? pos + 1 : end;
+        }
+        if (labels++ == MAX_LABELS) {
+          return DecodeFailureType.LABEL_LENGTH.code();
+        }
+        if (nameLength > MAX_CHARACTER_STRING_LENGTH) {
+          return DecodeFailureType.NAME_LENGTH.code();
+        }
+        nameLength += length + 1;
+        pos += length + 1;
+
+      } else if ((length & 0xC0) == 0xC0) {
+        if (pos + 1 >= limit) {
+          return DecodeFailureType.TRUNCATED.code();
+        }
+        if (++jumps == MAX_POINTER_CHAIN_LENGTH) {
+          return DecodeFailureType.POINTER_LOOP.code();
+        }
+        int target = base + ((length & 0x3F) << 8 | (data[pos + 1] & 0xFF));
+        if (target >= pos) {
+          return DecodeFailureType.POINTER_OFFSET.code();
+        }
+        if (end == -1) {
+          end = pos + 2;
+        }
+        pos = target;
+
+      } else {
+        return DecodeFailureType.LABEL_TYPE.code();
+      }
+    }
   }
 
+  /**
+   * Check the names in the rdata of an RR with {@link #scanName(NetworkData, int)}, for the types
+   * listed in {@link CanonicalForm#visitNames}. The reader index of the buffer is not changed.
+   * 
+   * @param buffer bytes with DNS message
+   * @param type RR type
+   * @param offset index of the first byte of the rdata
+   * @param length length of the rdata
+   * @return index of the first byte after the last name, offset for types without names, or a
+   *         negative {@link DecodeFailureType#code()} when a name is not valid or not inside the
+   *         rdata
+   */
+  public static int scanRdataNames(NetworkData buffer, int type, int offset, int length) {
+    return CanonicalForm.visitNames(type, buffer.array(), offset, length, buffer,
+        DNSStringUtil::scanRdataName);
+  }
+
+  private static int scanRdataName(NetworkData buffer, int pos, int end) {
+    if (pos >= end) {
+      return DecodeFailureType.INVALID_RDATA.code();
+    }
+    int next = scanName(buffer, pos);
+    return next > end ? DecodeFailureType.INVALID_RDATA.code() : next;
+  }
 
+  /**
+   * Get the length of the name in wire format without compression, as written by
+   * {@link #writeName(String, NetworkData)}.
+   * 
+   * @param name name with or without trailing dot
+   * @return length in bytes, including the terminating zero byte
+   */
+  public static int nameLength(String name) {
+    int length = name.length();
+    if (length == 0 || (length == 1 && name.charAt(0) == '.')) {
+      return 1;
+    }
+    // a length byte for every label replaces the dots, plus the zero byte for the root
+    return name.charAt(length - 1) == '.' ? length + 1 : length + 2;
+  }
 
   public static void writeName(String name, NetworkData buffer) {
 
@@ -267,7 +398,8 @@ public class DNSStringUtil {
   public static String readLabelData(NetworkData buffer) {
     int length = buffer.readUnsignedByte();
     if (length > MAX_CHARACTER_STRING_LENGTH) {
-      throw new DnsDecodeException("Illegal character string length (> 253), length = " + length);
+      throw new DnsDecodeException(DecodeFailureType.INVALID_RDATA,
+          "Illegal character string length (> 253), length = " + length);
     }
     if (length > 0) {
       byte[] characterString = new byte[length];
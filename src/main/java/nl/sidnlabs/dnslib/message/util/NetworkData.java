@@ -231,4 +231,15 @@ public class NetworkData {
     return stringDecodeBuffer;
   }
 
+  /**
+   * @return the backing array, only for validating data in place
+   */
+  byte[] array() {
+    return buf;
+  }
+
+  int getBaseIndex() {
+    return baseIndex;
+  }
+
 }
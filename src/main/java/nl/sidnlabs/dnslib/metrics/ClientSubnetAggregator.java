@@ -0,0 +1,265 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import nl.sidnlabs.dnslib.message.records.edns0.ClientSubnetOption;
+
+/**
+ * Counts queries per ECS (client subnet) prefix. The counts are kept in an open addressing hash
+ * table with linear probing, using primitive arrays for the keys and counts, so adding an option
+ * does not create any objects.
+ * 
+ * The address is masked to the source prefix length of the option, optionally limited to a maximum
+ * prefix length per address family, e.g. to count per /24 and /48 even if the resolver sends longer
+ * prefixes.
+ * 
+ * This class is not thread safe, use an instance per thread and {@link #merge} the results.
+ */
+public class ClientSubnetAggregator {
+
+  private static final int DEFAULT_CAPACITY = 1024;
+
+  /**
+   * Receives every prefix and its count.
+   */
+  @FunctionalInterface
+  public interface PrefixConsumer {
+
+    void accept(int family, int prefix, long addressHigh, long addressLow, long count);
+  }
+
+  private final int maxIPv4Prefix;
+  private final int maxIPv6Prefix;
+
+  // family and prefix length (family << 8 | prefix), 0 for an empty slot
+  private int[] keys;
+  private long[] addressHigh;
+  private long[] addressLow;
+  private long[] counts;
+  private int size;
+  private long total;
+
+  public ClientSubnetAggregator() {
+    this(32, 128);
+  }
+
+  /**
+   * @param maxIPv4Prefix longest IPv4 prefix to count, longer prefixes are shortened
+   * @param maxIPv6Prefix longest IPv6 prefix to count, longer prefixes are shortened
+   */
+  public ClientSubnetAggregator(int maxIPv4Prefix, int maxIPv6Prefix) {
+    if (maxIPv4Prefix < 0 || maxIPv4Prefix > 32 || maxIPv6Prefix < 0 || maxIPv6Prefix > 128) {
+      throw new IllegalArgumentException(
+          "Invalid max prefix length: " + maxIPv4Prefix + ", " + maxIPv6Prefix);
+    }
+    this.maxIPv4Prefix = maxIPv4Prefix;
+    this.maxIPv6Prefix = maxIPv6Prefix;
+    allocate(DEFAULT_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    keys = new int[capacity];
+    addressHigh = new long[capacity];
+    addressLow = new long[capacity];
+    counts = new long[capacity];
+  }
+
+  /**
+   * Count a query with the ECS option, options without a valid family are ignored.
+   * 
+   * @param ecs the option, may be null
+   */
+  public void add(ClientSubnetOption ecs) {
+    if (ecs != null) {
+      add(ecs.getFam(), ecs.getSourcenetmask(), ecs.getAddressHigh(), ecs.getAddressLow(), 1);
+    }
+  }
+
+  /**
+   * Add to the count of a prefix.
+   * 
+   * @param family {@link ClientSubnetOption#FAMILY_IPV4} or {@link ClientSubnetOption#FAMILY_IPV6}
+   * @param prefix the prefix length
+   * @param high the first 8 bytes of the address
+   * @param low the last 8 bytes of the address
+   * @param count the number to add
+   */
+  public void add(int family, int prefix, long high, long low, long count) {
+    int key = key(family, prefix);
+    if (key == 0) {
+      return;
+    }
+    prefix = key & 0xFF;
+    high &= highMask(prefix);
+    low &= lowMask(prefix);
+
+    int mask = keys.length - 1;
+    int slot = hash(key, high, low) & mask;
+    while (keys[slot] != 0) {
+      if (keys[slot] == key && addressHigh[slot] == high && addressLow[slot] == low) {
+        counts[slot] += count;
+        total += count;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    keys[slot] = key;
+    addressHigh[slot] = high;
+    addressLow[slot] = low;
+    counts[slot] = count;
+    total += count;
+    // keep the load factor below 0.5 for short probe sequences
+    if (++size * 2 > keys.length) {
+      resize();
+    }
+  }
+
+  /**
+   * @return the count for a prefix, the address is masked with the prefix
+   */
+  public long getCount(int family, int prefix, long high, long low) {
+    int key = key(family, prefix);
+    if (key == 0) {
+      return 0;
+    }
+    prefix = key & 0xFF;
+    high &= highMask(prefix);
+    low &= lowMask(prefix);
+
+    int mask = keys.length - 1;
+    int slot = hash(key, high, low) & mask;
+    while (keys[slot] != 0) {
+      if (keys[slot] == key && addressHigh[slot] == high && addressLow[slot] == low) {
+        return counts[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return 0;
+  }
+
+  /**
+   * @return the number of different prefixes
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the total of all counts
+   */
+  public long getTotal() {
+    return total;
+  }
+
+  public void forEach(PrefixConsumer consumer) {
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] != 0) {
+        consumer.accept(keys[i] >>> 8, keys[i] & 0xFF, addressHigh[i], addressLow[i], counts[i]);
+      }
+    }
+  }
+
+  /**
+   * Add all counts of another aggregator to this aggregator.
+   */
+  public void merge(ClientSubnetAggregator other) {
+    other.forEach(this::add);
+  }
+
+  /**
+   * @return map with the prefix as text (e.g. 192.0.2.0/24) and the count
+   */
+  public Map<String, Long> toMap() {
+    Map<String, Long> result = new HashMap<>(size * 2);
+    forEach((family, prefix, high, low, count) -> result
+        .put(ClientSubnetOption.formatAddress(family, high, low) + "/" + prefix,
+            Long.valueOf(count)));
+    return result;
+  }
+
+  public void clear() {
+    allocate(DEFAULT_CAPACITY);
+    size = 0;
+    total = 0;
+  }
+
+  private void resize() {
+    int[] oldKeys = keys;
+    long[] oldHigh = addressHigh;
+    long[] oldLow = addressLow;
+    long[] oldCounts = counts;
+    allocate(oldKeys.length * 2);
+
+    int mask = keys.length - 1;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != 0) {
+        int slot = hash(oldKeys[i], oldHigh[i], oldLow[i]) & mask;
+        while (keys[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        addressHigh[slot] = oldHigh[i];
+        addressLow[slot] = oldLow[i];
+        counts[slot] = oldCounts[i];
+      }
+    }
+  }
+
+  /**
+   * @return family and prefix length (limited to the max prefix) as key, 0 for an invalid family
+   */
+  private int key(int family, int prefix) {
+    if (family == ClientSubnetOption.FAMILY_IPV4) {
+      return family << 8 | Math.min(prefix, maxIPv4Prefix);
+    }
+    if (family == ClientSubnetOption.FAMILY_IPV6) {
+      return family << 8 | Math.min(prefix, maxIPv6Prefix);
+    }
+    return 0;
+  }
+
+  private static long highMask(int prefix) {
+    if (prefix >= 64) {
+      return -1L;
+    }
+    return prefix == 0 ? 0 : -1L << (64 - prefix);
+  }
+
+  private static long lowMask(int prefix) {
+    if (prefix <= 64) {
+      return 0;
+    }
+    return prefix == 128 ? -1L : -1L << (128 - prefix);
+  }
+
+  private static int hash(int key, long high, long low) {
+    long h = high * 0x9E3779B97F4A7C15L + low * 0xC2B2AE3D27D4EB4FL + key;
+    // murmur3 finalizer
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.metrics;
+
+import nl.sidnlabs.dnslib.exception.DecodeFailureType;
+import nl.sidnlabs.dnslib.types.MessageSection;
+
+/**
+ * Callback interface used by the decoder to report what it has decoded. Implementations are called
+ * from the decoding thread and must be thread safe when a single instance is shared by multiple
+ * decoding threads.
+ * 
+ * All methods have an empty default implementation, so an implementation only has to override the
+ * callbacks it is interested in.
+ */
+public interface DecodeMetrics {
+
+  /**
+   * Instance that ignores all callbacks, used when no metrics are configured.
+   */
+  DecodeMetrics NOOP = new DecodeMetrics() {};
+
+  /**
+   * @return true if the decoder should measure the decode latency, measuring requires 2 calls to
+   *         System.nanoTime() per message.
+   */
+  default boolean isLatencyEnabled() {
+    return false;
+  }
+
+  /**
+   * Called when a message has been decoded without errors.
+   * 
+   * @param bytes size of the message in bytes
+   * @param partial true if only the header, question and OPT record have been decoded
+   */
+  default void messageDecoded(int bytes, boolean partial) {}
+
+  /**
+   * Called for every question found in the message.
+   * 
+   * @param qtype the numeric query type
+   */
+  default void questionDecoded(int qtype) {}
+
+  /**
+   * Called for every resource record found in the message, also for records that are skipped when
+   * doing a partial decode.
+   * 
+   * @param type the numeric RR type
+   * @param section section of the message the record was found in
+   */
+  default void recordDecoded(int type, MessageSection section) {}
+
+  /**
+   * Called when the decoding of a message failed.
+   * 
+   * @param failure cause of the failure
+   * @param bytes size of the message in bytes
+   * @param allowed true if the failure was allowed (allowFail) and the message is returned with
+   *        only the data decoded before the failure
+   */
+  default void decodeFailed(DecodeFailureType failure, int bytes, boolean allowed) {}
+
+  /**
+   * Called when an EDNS0 option could not be decoded. Options are decoded on first use, so this
+   * can be called after {@link #messageDecoded(int, boolean)} for the message.
+   * 
+   * @param code the option code
+   * @param failure cause of the failure
+   */
+  default void optionDecodeFailed(int code, DecodeFailureType failure) {}
+
+  /**
+   * Called with the time it took to decode a message, only when {@link #isLatencyEnabled()} returns
+   * true.
+   * 
+   * @param nanos decode duration in nanoseconds
+   */
+  default void decodeLatency(long nanos) {}
+
+}
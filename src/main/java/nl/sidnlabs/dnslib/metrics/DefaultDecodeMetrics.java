@@ -0,0 +1,241 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import nl.sidnlabs.dnslib.exception.DecodeFailureType;
+import nl.sidnlabs.dnslib.types.MessageSection;
+
+/**
+ * Lock-free {@link DecodeMetrics} implementation, all counters are {@link LongAdder}s so a single
+ * instance can be shared by many decoding threads without contention.
+ * 
+ * Counters for RR types below {@link #TYPE_SLOTS} are kept in an array, the rare types above this
+ * value are kept in a map.
+ */
+public class DefaultDecodeMetrics implements DecodeMetrics {
+
+  // covers all types up to and including URI(256), CAA(257), AVC(258) and DOA(259)
+  private static final int TYPE_SLOTS = 512;
+  // one bucket for every power of 2 of the latency in nanoseconds
+  private static final int LATENCY_BUCKETS = 64;
+
+  private final boolean latencyEnabled;
+
+  private final LongAdder messages = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder partialMessages = new LongAdder();
+  private final LongAdder allowedFailures = new LongAdder();
+  private final LongAdder optionFailures = new LongAdder();
+
+  private final LongAdder[] sections = adders(MessageSection.values().length);
+  private final LongAdder[] failures = adders(DecodeFailureType.values().length);
+  private final LongAdder[] types = adders(TYPE_SLOTS);
+  private final Map<Integer, LongAdder> otherTypes = new ConcurrentHashMap<>();
+  private final LongAdder[] latency;
+
+  public DefaultDecodeMetrics() {
+    this(false);
+  }
+
+  /**
+   * @param latencyEnabled if true, keep a histogram with the decode latency of each message
+   */
+  public DefaultDecodeMetrics(boolean latencyEnabled) {
+    this.latencyEnabled = latencyEnabled;
+    this.latency = latencyEnabled ? adders(LATENCY_BUCKETS) : new LongAdder[0];
+  }
+
+  private static LongAdder[] adders(int size) {
+    LongAdder[] adders = new LongAdder[size];
+    for (int i = 0; i < size; i++) {
+      adders[i] = new LongAdder();
+    }
+    return adders;
+  }
+
+  @Override
+  public boolean isLatencyEnabled() {
+    return latencyEnabled;
+  }
+
+  @Override
+  public void messageDecoded(int size, boolean partial) {
+    messages.increment();
+    bytes.add(size);
+    if (partial) {
+      partialMessages.increment();
+    }
+  }
+
+  @Override
+  public void questionDecoded(int qtype) {
+    sections[MessageSection.QUESTION.ordinal()].increment();
+  }
+
+  @Override
+  public void recordDecoded(int type, MessageSection section) {
+    sections[section.ordinal()].increment();
+    if (type >= 0 && type < TYPE_SLOTS) {
+      types[type].increment();
+    } else {
+      otherTypes.computeIfAbsent(Integer.valueOf(type), k -> new LongAdder()).increment();
+    }
+  }
+
+  @Override
+  public void decodeFailed(DecodeFailureType failure, int size, boolean allowed) {
+    failures[failure.ordinal()].increment();
+    bytes.add(size);
+    if (allowed) {
+      allowedFailures.increment();
+    }
+  }
+
+  @Override
+  public void optionDecodeFailed(int code, DecodeFailureType failure) {
+    optionFailures.increment();
+  }
+
+  @Override
+  public void decodeLatency(long nanos) {
+    if (latencyEnabled) {
+      latency[bucket(nanos)].increment();
+    }
+  }
+
+  private static int bucket(long nanos) {
+    return nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+  }
+
+  /**
+   * @return number of messages decoded without errors
+   */
+  public long getMessages() {
+    return messages.sum();
+  }
+
+  /**
+   * @return total size of all messages, including messages that failed to decode
+   */
+  public long getBytes() {
+    return bytes.sum();
+  }
+
+  public long getPartialMessages() {
+    return partialMessages.sum();
+  }
+
+  /**
+   * @return number of messages that failed to decode but were allowed to fail, these messages are
+   *         returned to the caller with the data decoded up to the failure
+   */
+  public long getAllowedFailures() {
+    return allowedFailures.sum();
+  }
+
+  /**
+   * @return number of EDNS0 options that could not be decoded, these are left out of the options
+   *         of the OPT record
+   */
+  public long getOptionFailures() {
+    return optionFailures.sum();
+  }
+
+  public long getFailures(DecodeFailureType failure) {
+    return failures[failure.ordinal()].sum();
+  }
+
+  public long getFailures() {
+    long total = 0;
+    for (LongAdder adder : failures) {
+      total += adder.sum();
+    }
+    return total;
+  }
+
+  public long getRecords(MessageSection section) {
+    return sections[section.ordinal()].sum();
+  }
+
+  public long getRecordsByType(int type) {
+    if (type >= 0 && type < TYPE_SLOTS) {
+      return types[type].sum();
+    }
+    LongAdder adder = otherTypes.get(Integer.valueOf(type));
+    return adder == null ? 0 : adder.sum();
+  }
+
+  /**
+   * @return counts for all RR types that have been seen at least once, ordered by type
+   */
+  public Map<Integer, Long> getRecordsByType() {
+    Map<Integer, Long> result = new TreeMap<>();
+    for (int i = 0; i < TYPE_SLOTS; i++) {
+      long count = types[i].sum();
+      if (count > 0) {
+        result.put(Integer.valueOf(i), Long.valueOf(count));
+      }
+    }
+    otherTypes.forEach((k, v) -> result.put(k, Long.valueOf(v.sum())));
+    return result;
+  }
+
+  /**
+   * Latency histogram, bucket i contains the number of messages with a decode time in the range
+   * [2^i, 2^(i+1)) nanoseconds. Returns an empty array when latency tracking is disabled.
+   * 
+   * @return copy of the histogram buckets
+   */
+  public long[] getLatencyHistogram() {
+    long[] result = new long[latency.length];
+    for (int i = 0; i < latency.length; i++) {
+      result[i] = latency[i].sum();
+    }
+    return result;
+  }
+
+  /**
+   * Reset all counters, counts added concurrently with the reset may be lost.
+   */
+  public void reset() {
+    messages.reset();
+    bytes.reset();
+    partialMessages.reset();
+    allowedFailures.reset();
+    optionFailures.reset();
+    reset(sections);
+    reset(failures);
+    reset(types);
+    reset(latency);
+    otherTypes.clear();
+  }
+
+  private static void reset(LongAdder[] adders) {
+    for (LongAdder adder : adders) {
+      adder.reset();
+    }
+  }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for the decoding of a complete DNS message. Disabled by default, enable with e.g.
+ * -XX:StartFlightRecording:settings=profile,dnslib.MessageDecode#enabled=true
+ */
+@Name("dnslib.MessageDecode")
+@Label("DNS Message Decode")
+@Category({"DNS", "dnslib"})
+@Description("Decoding of a DNS message from wire format")
+@Enabled(false)
+@StackTrace(false)
+public class MessageDecodeEvent extends Event {
+
+  // used only to check if the event is enabled, without allocating a new event
+  private static final MessageDecodeEvent PROBE = new MessageDecodeEvent();
+
+  @Label("Bytes")
+  @DataAmount
+  public int bytes;
+
+  @Label("Id")
+  public int id;
+
+  @Label("Response")
+  public boolean response;
+
+  @Label("Opcode")
+  public int opcode;
+
+  @Label("Rcode")
+  public int rcode;
+
+  @Label("Query Type")
+  public int qtype;
+
+  @Label("Question Count")
+  public int questions;
+
+  @Label("Answer Count")
+  public int answers;
+
+  @Label("Authority Count")
+  public int authorities;
+
+  @Label("Additional Count")
+  public int additionals;
+
+  @Label("Partial")
+  public boolean partial;
+
+  @Label("Failed")
+  public boolean failed;
+
+  @Label("Failure")
+  public String failure;
+
+  public static boolean isActive() {
+    return PROBE.isEnabled();
+  }
+
+}
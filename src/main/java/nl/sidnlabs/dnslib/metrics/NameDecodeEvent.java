@@ -0,0 +1,62 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for the decoding of a single (compressed) domain name. Disabled by default, this event
+ * is emitted for every name in a message so enabling it has a noticeable overhead.
+ */
+@Name("dnslib.NameDecode")
+@Label("DNS Name Decode")
+@Category({"DNS", "dnslib"})
+@Description("Decoding of a domain name, including the compression pointers followed")
+@Enabled(false)
+@StackTrace(false)
+public class NameDecodeEvent extends Event {
+
+  private static final NameDecodeEvent PROBE = new NameDecodeEvent();
+
+  @Label("Length")
+  public int length;
+
+  @Label("Labels")
+  public int labels;
+
+  @Label("Pointers")
+  @Description("Total number of compression pointers followed")
+  public int pointers;
+
+  @Label("Max Pointer Chain")
+  @Description("Longest chain of pointers pointing to another pointer")
+  public int maxChain;
+
+  public static boolean isActive() {
+    return PROBE.isEnabled();
+  }
+
+}
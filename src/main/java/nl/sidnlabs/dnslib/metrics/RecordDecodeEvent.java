@@ -0,0 +1,62 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for the decoding of a single resource record. Disabled by default, when enabled only
+ * records taking longer than the threshold are recorded so the event can be used to find the RR
+ * types that are expensive to decode.
+ */
+@Name("dnslib.RecordDecode")
+@Label("DNS Record Decode")
+@Category({"DNS", "dnslib"})
+@Description("Decoding of a resource record that took longer than the threshold")
+@Enabled(false)
+@Threshold("10 us")
+@StackTrace(false)
+public class RecordDecodeEvent extends Event {
+
+  private static final RecordDecodeEvent PROBE = new RecordDecodeEvent();
+
+  @Label("Type")
+  public int type;
+
+  @Label("Section")
+  public String section;
+
+  @Label("Rdata Length")
+  @DataAmount
+  public int rdLength;
+
+  public static boolean isActive() {
+    return PROBE.isEnabled();
+  }
+
+}
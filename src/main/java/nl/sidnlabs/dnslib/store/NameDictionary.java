@@ -0,0 +1,185 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.store;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+
+/**
+ * Dictionary assigning an int id to every distinct domain name. The names are stored off-heap in
+ * lowercase uncompressed wire format, prefixed with the length of the name. The ids are sequential,
+ * starting at 0.
+ * 
+ * The hash table with the ids and the table with the address of every name are primitive heap
+ * arrays, these do not add objects the garbage collector has to visit.
+ * 
+ * Not thread safe when adding names, names can be read by multiple threads when no names are added.
+ */
+public class NameDictionary {
+
+  private final PagedMemory memory;
+  // address of the name for every id
+  private long[] addresses = new long[1024];
+  // open addressing hash table with id + 1 of the names, 0 is an empty slot
+  private int[] table = new int[2048];
+  private int size;
+
+  public NameDictionary(Arena arena) {
+    this.memory = new PagedMemory(arena);
+  }
+
+  /**
+   * Get the id of a name, adding the name if not present.
+   * 
+   * @param name domain name, case insensitive
+   * @return id of the name
+   */
+  public int intern(String name) {
+    byte[] wire = DNSStringUtil.writeName(DNSStringUtil.toLowerCaseAscii(name));
+    return intern(wire, 0, wire.length);
+  }
+
+  /**
+   * Get the id of a name in uncompressed wire format, adding the name if not present.
+   * 
+   * @param wire array with the name
+   * @param offset index of the first byte of the name
+   * @param length length of the name in bytes, including the terminating zero byte
+   * @return id of the name
+   */
+  public int intern(byte[] wire, int offset, int length) {
+    byte[] name = Arrays.copyOfRange(wire, offset, offset + length);
+    DNSStringUtil.toLowerCaseAsciiInPlace(name, 0, length);
+    int hash = hash(name);
+    int mask = table.length - 1;
+    for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+      int id = table[slot] - 1;
+      if (id < 0) {
+        return add(name, slot);
+      }
+      if (matches(id, name)) {
+        return id;
+      }
+    }
+  }
+
+  /**
+   * @param name domain name, case insensitive
+   * @return id of the name or -1 if the name is not present
+   */
+  public int find(String name) {
+    byte[] wire = DNSStringUtil.writeName(DNSStringUtil.toLowerCaseAscii(name));
+    int mask = table.length - 1;
+    for (int slot = hash(wire) & mask;; slot = (slot + 1) & mask) {
+      int id = table[slot] - 1;
+      if (id < 0 || matches(id, wire)) {
+        return id;
+      }
+    }
+  }
+
+  private int add(byte[] name, int slot) {
+    int id = size++;
+    long address = memory.allocate(name.length + 1);
+    MemorySegment page = memory.page(address);
+    long offset = PagedMemory.offset(address);
+    page.set(ValueLayout.JAVA_BYTE, offset, (byte) name.length);
+    MemorySegment.copy(name, 0, page, ValueLayout.JAVA_BYTE, offset + 1, name.length);
+
+    if (id == addresses.length) {
+      addresses = Arrays.copyOf(addresses, id * 2);
+    }
+    addresses[id] = address;
+    table[slot] = id + 1;
+    if (size * 2 > table.length) {
+      rehash();
+    }
+    return id;
+  }
+
+  private void rehash() {
+    int[] old = table;
+    table = new int[old.length * 2];
+    int mask = table.length - 1;
+    for (int entry : old) {
+      if (entry != 0) {
+        int slot = hash(getWire(entry - 1)) & mask;
+        while (table[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = entry;
+      }
+    }
+  }
+
+  private boolean matches(int id, byte[] name) {
+    long address = addresses[id];
+    MemorySegment page = memory.page(address);
+    long offset = PagedMemory.offset(address);
+    int length = page.get(ValueLayout.JAVA_BYTE, offset) & 0xFF;
+    return length == name.length
+        && page.asSlice(offset + 1, length).mismatch(MemorySegment.ofArray(name)) == -1;
+  }
+
+  private static int hash(byte[] name) {
+    int hash = Arrays.hashCode(name);
+    return hash ^ hash >>> 16;
+  }
+
+  /**
+   * @param id id of the name
+   * @return the name in lowercase wire format
+   */
+  public byte[] getWire(int id) {
+    long address = addresses[id];
+    MemorySegment page = memory.page(address);
+    long offset = PagedMemory.offset(address);
+    byte[] name = new byte[page.get(ValueLayout.JAVA_BYTE, offset) & 0xFF];
+    MemorySegment.copy(page, ValueLayout.JAVA_BYTE, offset + 1, name, 0, name.length);
+    return name;
+  }
+
+  /**
+   * @param id id of the name
+   * @return the name in lowercase presentation format, with trailing dot
+   */
+  public String getName(int id) {
+    return DNSStringUtil.readNameUsingBuffer(new NetworkData(getWire(id)));
+  }
+
+  /**
+   * @return the number of names
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the number of off-heap bytes used by the names
+   */
+  public long getBytes() {
+    return memory.getUsed();
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.store;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only off-heap memory, allocated in fixed size pages from an {@link Arena}. An allocation
+ * never crosses a page boundary, so every allocation can be accessed using a single page segment.
+ * 
+ * An address is the page number in the high bits and the offset in the page in the low bits.
+ */
+class PagedMemory {
+
+  static final int PAGE_BITS = 20;
+  static final int PAGE_SIZE = 1 << PAGE_BITS;
+  private static final long OFFSET_MASK = PAGE_SIZE - 1;
+
+  private final Arena arena;
+  private final List<MemorySegment> pages = new ArrayList<>();
+  private MemorySegment current;
+  private int position = PAGE_SIZE;
+  private long used;
+
+  PagedMemory(Arena arena) {
+    this.arena = arena;
+  }
+
+  /**
+   * @param size number of bytes, at most {@link #PAGE_SIZE}
+   * @return address of the first allocated byte
+   */
+  long allocate(int size) {
+    if (position + size > PAGE_SIZE) {
+      current = arena.allocate(PAGE_SIZE, 8);
+      pages.add(current);
+      position = 0;
+    }
+    long address = (long) (pages.size() - 1) << PAGE_BITS | position;
+    position += size;
+    used += size;
+    return address;
+  }
+
+  MemorySegment page(long address) {
+    return pages.get((int) (address >>> PAGE_BITS));
+  }
+
+  static long offset(long address) {
+    return address & OFFSET_MASK;
+  }
+
+  /**
+   * @return number of allocated bytes, excluding unused space at the end of the pages
+   */
+  long getUsed() {
+    return used;
+  }
+
+  /**
+   * @return number of bytes reserved from the arena
+   */
+  long getReserved() {
+    return (long) pages.size() * PAGE_SIZE;
+  }
+}
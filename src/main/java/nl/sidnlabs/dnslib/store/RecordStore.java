@@ -0,0 +1,308 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.store;
+
+import java.io.Closeable;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Arrays;
+
+import nl.sidnlabs.dnslib.message.RRset;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.ResourceRecordClass;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+
+/**
+ * Store for large numbers of RRs in off-heap memory, e.g. for large zones or passive DNS data. The
+ * owner names are stored once in a {@link NameDictionary}, every RR uses 18 bytes plus the rdata in
+ * wire format:
+ * 
+ * <pre>
+ * 0  name id (32 bits)
+ * 4  type (16 bits)
+ * 6  class (16 bits)
+ * 8  ttl (32 bits)
+ * 12 id of the next RR of the RRset (32 bits), -1 for the last RR
+ * 16 rdlength (16 bits)
+ * 18 rdata
+ * </pre>
+ * 
+ * Every RR gets a sequential int id, the RRs of an RRset are linked in the order they are added.
+ * RRs are read using a {@link RecordView} flyweight, {@link ResourceRecord} objects are only
+ * created when requested.
+ * 
+ * The memory is allocated from an {@link Arena} and released when the arena is closed. Not thread
+ * safe when adding RRs, after loading the RRs can be read by multiple threads when the arena is a
+ * shared arena.
+ */
+public class RecordStore implements Closeable {
+
+  static final int NAME_OFFSET = 0;
+  static final int TYPE_OFFSET = 4;
+  static final int CLASS_OFFSET = 6;
+  static final int TTL_OFFSET = 8;
+  static final int NEXT_OFFSET = 12;
+  static final int RDLENGTH_OFFSET = 16;
+  static final int RDATA_OFFSET = 18;
+
+  private final Arena arena;
+  private final boolean closeArena;
+  private final PagedMemory memory;
+  private final NameDictionary names;
+
+  // address of every RR
+  private long[] addresses = new long[1024];
+  private int size;
+
+  // open addressing hash table with the RRsets, key is name id, type and class
+  private long[] keys = new long[1024];
+  private int[] first = new int[1024];
+  private int[] last = new int[1024];
+  private int rrsets;
+
+  /**
+   * Create a store using a new shared arena, which is closed when the store is closed.
+   */
+  public RecordStore() {
+    this(Arena.ofShared(), true);
+  }
+
+  /**
+   * Create a store using the arena, the arena is not closed when the store is closed.
+   */
+  public RecordStore(Arena arena) {
+    this(arena, false);
+  }
+
+  private RecordStore(Arena arena, boolean closeArena) {
+    this.arena = arena;
+    this.closeArena = closeArena;
+    this.memory = new PagedMemory(arena);
+    this.names = new NameDictionary(arena);
+    Arrays.fill(keys, -1);
+  }
+
+  /**
+   * Add a RR, the RR is encoded and not referenced by the store.
+   * 
+   * @param rr the RR to add
+   * @return id of the RR
+   */
+  public int add(ResourceRecord rr) {
+    NetworkData buffer = new NetworkData(512);
+    rr.encode(buffer);
+    byte[] wire = buffer.write();
+    int nameLength = DNSStringUtil.nameLength(rr.getName());
+    int name = names.intern(wire, 0, nameLength);
+
+    NetworkData data = new NetworkData(wire);
+    data.setReaderIndex(nameLength);
+    int type = data.readUnsignedChar();
+    int classz = data.readUnsignedChar();
+    long ttl = data.readUnsignedInt();
+    int rdLength = data.readUnsignedChar();
+    return add(name, type, classz, ttl, wire, data.getReaderIndex(), rdLength);
+  }
+
+  /**
+   * Add a RR with rdata in wire format.
+   * 
+   * @param name owner name
+   * @param type RR type
+   * @param classz RR class
+   * @param ttl TTL in seconds
+   * @param rdata uncompressed rdata
+   * @return id of the RR
+   */
+  public int add(String name, ResourceRecordType type, ResourceRecordClass classz, long ttl,
+      byte[] rdata) {
+    return add(names.intern(name), type.getValue(), classz.getValue(), ttl, rdata, 0,
+        rdata.length);
+  }
+
+  /**
+   * Add a RR with rdata in wire format, the owner name is an id from {@link #getNames()}.
+   * 
+   * @return id of the RR
+   */
+  public int add(int name, int type, int classz, long ttl, byte[] rdata, int offset, int length) {
+    int id = size++;
+    long address = memory.allocate(RDATA_OFFSET + length);
+    MemorySegment page = memory.page(address);
+    long pos = PagedMemory.offset(address);
+    page.set(ValueLayout.JAVA_INT_UNALIGNED, pos + NAME_OFFSET, name);
+    page.set(ValueLayout.JAVA_SHORT_UNALIGNED, pos + TYPE_OFFSET, (short) type);
+    page.set(ValueLayout.JAVA_SHORT_UNALIGNED, pos + CLASS_OFFSET, (short) classz);
+    page.set(ValueLayout.JAVA_INT_UNALIGNED, pos + TTL_OFFSET, (int) ttl);
+    page.set(ValueLayout.JAVA_INT_UNALIGNED, pos + NEXT_OFFSET, -1);
+    page.set(ValueLayout.JAVA_SHORT_UNALIGNED, pos + RDLENGTH_OFFSET, (short) length);
+    MemorySegment.copy(rdata, offset, page, ValueLayout.JAVA_BYTE, pos + RDATA_OFFSET, length);
+
+    if (id == addresses.length) {
+      addresses = Arrays.copyOf(addresses, id * 2);
+    }
+    addresses[id] = address;
+    link(key(name, type, classz), id);
+    return id;
+  }
+
+  /**
+   * Add the RR to the end of the RRset.
+   */
+  private void link(long key, int id) {
+    int slot = slot(key);
+    if (keys[slot] == -1) {
+      keys[slot] = key;
+      first[slot] = id;
+      last[slot] = id;
+      if (++rrsets * 2 > keys.length) {
+        rehash();
+      }
+    } else {
+      long previous = addresses[last[slot]];
+      memory
+          .page(previous)
+          .set(ValueLayout.JAVA_INT_UNALIGNED, PagedMemory.offset(previous) + NEXT_OFFSET, id);
+      last[slot] = id;
+    }
+  }
+
+  private int slot(long key) {
+    int mask = keys.length - 1;
+    int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+    while (keys[slot] != -1 && keys[slot] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private void rehash() {
+    long[] oldKeys = keys;
+    int[] oldFirst = first;
+    int[] oldLast = last;
+    keys = new long[oldKeys.length * 2];
+    first = new int[keys.length];
+    last = new int[keys.length];
+    Arrays.fill(keys, -1);
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != -1) {
+        int slot = slot(oldKeys[i]);
+        keys[slot] = oldKeys[i];
+        first[slot] = oldFirst[i];
+        last[slot] = oldLast[i];
+      }
+    }
+  }
+
+  private static long key(int name, int type, int classz) {
+    return (long) name << 32 | (long) type << 16 | classz;
+  }
+
+  /**
+   * Find the first RR of an RRset, the other RRs are found using {@link RecordView#getNext()}.
+   * 
+   * @return id of the first RR or -1 if the RRset is not present
+   */
+  public int find(String name, ResourceRecordType type, ResourceRecordClass classz) {
+    int id = names.find(name);
+    return id == -1 ? -1 : find(id, type.getValue(), classz.getValue());
+  }
+
+  /**
+   * @return id of the first RR or -1 if the RRset is not present
+   */
+  public int find(int name, int type, int classz) {
+    int slot = slot(key(name, type, classz));
+    return keys[slot] == -1 ? -1 : first[slot];
+  }
+
+  /**
+   * Get an RRset, decoding all RRs of the RRset.
+   * 
+   * @return the RRset or null if not present
+   */
+  public RRset getRRset(String name, ResourceRecordType type, ResourceRecordClass classz) {
+    int id = find(name, type, classz);
+    if (id == -1) {
+      return null;
+    }
+    RecordView view = view();
+    RRset rrset = null;
+    for (; id != -1; id = view.getNext()) {
+      ResourceRecord rr = view.moveTo(id).toResourceRecord();
+      if (rrset == null) {
+        rrset = RRset.createAs(rr);
+      } else {
+        rrset.add(rr);
+      }
+    }
+    return rrset;
+  }
+
+  /**
+   * @return a new flyweight for reading RRs, not positioned at a RR
+   */
+  public RecordView view() {
+    return new RecordView(this);
+  }
+
+  MemorySegment page(int id) {
+    return memory.page(addresses[id]);
+  }
+
+  long offset(int id) {
+    return PagedMemory.offset(addresses[id]);
+  }
+
+  public NameDictionary getNames() {
+    return names;
+  }
+
+  /**
+   * @return the number of RRs
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return the number of RRsets
+   */
+  public int getRRsetCount() {
+    return rrsets;
+  }
+
+  /**
+   * @return the number of off-heap bytes used by the RRs and names
+   */
+  public long getBytes() {
+    return memory.getUsed() + names.getBytes();
+  }
+
+  @Override
+  public void close() {
+    if (closeArena) {
+      arena.close();
+    }
+  }
+}
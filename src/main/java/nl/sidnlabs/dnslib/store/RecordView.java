@@ -0,0 +1,160 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.store;
+
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.ResourceRecordFactory;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.ResourceRecordClass;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+
+/**
+ * Flyweight for reading a RR from a {@link RecordStore} without creating objects. A view is
+ * positioned at a RR using {@link #moveTo(int)} and can be reused for any number of RRs.
+ * 
+ * Not thread safe, every thread must use its own view.
+ */
+public class RecordView {
+
+  private final RecordStore store;
+  private MemorySegment page;
+  private long offset;
+  private int id = -1;
+
+  RecordView(RecordStore store) {
+    this.store = store;
+  }
+
+  /**
+   * @param id id of the RR
+   * @return this view
+   */
+  public RecordView moveTo(int id) {
+    if (id < 0 || id >= store.size()) {
+      throw new IndexOutOfBoundsException("No RR with id " + id);
+    }
+    this.id = id;
+    this.page = store.page(id);
+    this.offset = store.offset(id);
+    return this;
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public int getNameId() {
+    return page.get(ValueLayout.JAVA_INT_UNALIGNED, offset + RecordStore.NAME_OFFSET);
+  }
+
+  /**
+   * @return the owner name in lowercase presentation format
+   */
+  public String getName() {
+    return store.getNames().getName(getNameId());
+  }
+
+  public int getTypeValue() {
+    return page.get(ValueLayout.JAVA_SHORT_UNALIGNED, offset + RecordStore.TYPE_OFFSET) & 0xFFFF;
+  }
+
+  /**
+   * @return the type or null for unknown types
+   */
+  public ResourceRecordType getType() {
+    return ResourceRecordType.fromValue(getTypeValue());
+  }
+
+  public int getClassValue() {
+    return page.get(ValueLayout.JAVA_SHORT_UNALIGNED, offset + RecordStore.CLASS_OFFSET) & 0xFFFF;
+  }
+
+  public ResourceRecordClass getClassz() {
+    return ResourceRecordClass.fromValue(getClassValue());
+  }
+
+  public long getTtl() {
+    return page.get(ValueLayout.JAVA_INT_UNALIGNED, offset + RecordStore.TTL_OFFSET) & 0xFFFFFFFFL;
+  }
+
+  /**
+   * @return id of the next RR of the RRset, -1 for the last RR
+   */
+  public int getNext() {
+    return page.get(ValueLayout.JAVA_INT_UNALIGNED, offset + RecordStore.NEXT_OFFSET);
+  }
+
+  public int getRdLength() {
+    return page.get(ValueLayout.JAVA_SHORT_UNALIGNED, offset + RecordStore.RDLENGTH_OFFSET)
+        & 0xFFFF;
+  }
+
+  /**
+   * @return read-only segment with the rdata, valid until the arena of the store is closed
+   */
+  public MemorySegment getRdataSegment() {
+    return page.asSlice(offset + RecordStore.RDATA_OFFSET, getRdLength()).asReadOnly();
+  }
+
+  /**
+   * @return copy of the rdata
+   */
+  public byte[] getRdata() {
+    byte[] rdata = new byte[getRdLength()];
+    MemorySegment
+        .copy(page, ValueLayout.JAVA_BYTE, offset + RecordStore.RDATA_OFFSET, rdata, 0,
+            rdata.length);
+    return rdata;
+  }
+
+  /**
+   * Decode the RR, creating the same {@link ResourceRecord} type as used for decoding messages.
+   * 
+   * @return new RR
+   */
+  public ResourceRecord toResourceRecord() {
+    byte[] name = store.getNames().getWire(getNameId());
+    int rdLength = getRdLength();
+    byte[] wire = new byte[name.length + 10 + rdLength];
+    System.arraycopy(name, 0, wire, 0, name.length);
+    // type, class, ttl, rdlength and rdata, stored in the same order as in wire format
+    int pos = name.length;
+    wire[pos++] = (byte) (getTypeValue() >>> 8);
+    wire[pos++] = (byte) getTypeValue();
+    wire[pos++] = (byte) (getClassValue() >>> 8);
+    wire[pos++] = (byte) getClassValue();
+    long ttl = getTtl();
+    wire[pos++] = (byte) (ttl >>> 24);
+    wire[pos++] = (byte) (ttl >>> 16);
+    wire[pos++] = (byte) (ttl >>> 8);
+    wire[pos++] = (byte) ttl;
+    wire[pos++] = (byte) (rdLength >>> 8);
+    wire[pos++] = (byte) rdLength;
+    MemorySegment
+        .copy(page, ValueLayout.JAVA_BYTE, offset + RecordStore.RDATA_OFFSET, wire, pos, rdLength);
+
+    ResourceRecord rr = ResourceRecordFactory.getInstance().createResourceRecord(getTypeValue());
+    rr.decode(new NetworkData(wire), false);
+    return rr;
+  }
+}
@@ -43,8 +43,10 @@ public enum AlgorithmType {
                                                                                             // alias
                                                                                             // for
                                                                                             // RSASHA1
-  RSASHA256((byte) 8, "SHA256withRSA"), INDIRECT((byte) 252, null), PRIVATEDNS((byte) 253,
-      null), PRIVATEOID((byte) 254, null);
+  RSASHA256((byte) 8, "SHA256withRSA"), RSASHA512((byte) 10, "SHA512withRSA"), ECCGOST((byte) 12,
+      null), ECDSAP256SHA256((byte) 13, "SHA256withECDSA"), ECDSAP384SHA384((byte) 14,
+          "SHA384withECDSA"), ED25519((byte) 15, "Ed25519"), ED448((byte) 16, "Ed448"), INDIRECT(
+              (byte) 252, null), PRIVATEDNS((byte) 253, null), PRIVATEOID((byte) 254, null);
 
   private byte value;
   private String algorithm;
@@ -59,7 +61,8 @@ public enum AlgorithmType {
   static {
     AlgorithmType[] values = values();
     for (AlgorithmType type : values) {
-      types.put(Integer.valueOf(type.getValue()), type);
+      // mask to get the unsigned value for the algorithms > 127
+      types.put(Integer.valueOf(type.getValue() & 0xFF), type);
     }
   }
 
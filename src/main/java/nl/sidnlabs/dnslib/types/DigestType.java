@@ -33,7 +33,8 @@ import java.util.Map;
  */
 public enum DigestType {
 
-  RESERVED((byte) 0, null), SHA1((byte) 1, "SHA-1"), SHA256((byte) 2, "SHA-256");
+  RESERVED((byte) 0, null), SHA1((byte) 1, "SHA-1"), SHA256((byte) 2, "SHA-256"), GOST((byte) 3,
+      null), SHA384((byte) 4, "SHA-384");
 
   private byte value;
   private String name;
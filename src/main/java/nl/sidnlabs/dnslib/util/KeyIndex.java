@@ -0,0 +1,130 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Value;
+import nl.sidnlabs.dnslib.message.records.dnssec.DNSKEYResourceRecord;
+import nl.sidnlabs.dnslib.message.records.dnssec.DSResourceRecord;
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+
+/**
+ * Index of DNSKEY records by owner, key tag and algorithm, used to match DS records with the
+ * DNSKEY records they refer to. Building the index and matching a DS are both constant time per
+ * record, so a DS set can be matched against a DNSKEY set of any size in linear time. The digest of
+ * a DNSKEY is only calculated for keys with the key tag and algorithm of a DS and is cached by the
+ * DNSKEY.
+ * 
+ * Not thread safe while keys are added, after that the index can be used by multiple threads.
+ */
+public final class KeyIndex {
+
+  @Value
+  private static class KeyId {
+    private String owner;
+    private int keytag;
+    private int algorithm;
+  }
+
+  // almost always a single key per id, a list is used for key tag collisions
+  private final Map<KeyId, List<DNSKEYResourceRecord>> keys = new HashMap<>();
+  private int size;
+
+  public KeyIndex() {}
+
+  /**
+   * @param keys the keys to add to the index
+   */
+  public KeyIndex(Collection<DNSKEYResourceRecord> keys) {
+    for (DNSKEYResourceRecord key : keys) {
+      add(key);
+    }
+  }
+
+  public void add(DNSKEYResourceRecord key) {
+    if (key.getAlgorithm() == null) {
+      // unknown algorithm, can never match a DS
+      return;
+    }
+    keys
+        .computeIfAbsent(id(key.getName(), key.getKeytag(), key.getAlgorithm().getValue()),
+            k -> new ArrayList<>(1))
+        .add(key);
+    size++;
+  }
+
+  /**
+   * @return the keys with the owner, key tag and algorithm, without checking the digest
+   */
+  public List<DNSKEYResourceRecord> find(String owner, int keytag, int algorithm) {
+    List<DNSKEYResourceRecord> found = keys.get(id(owner, keytag, algorithm));
+    return found == null ? Collections.emptyList() : found;
+  }
+
+  /**
+   * @param ds the DS
+   * @return the key with the owner, key tag and algorithm of the DS and a matching digest, or null
+   *         if there is no such key or the digest type is not supported
+   */
+  public DNSKEYResourceRecord match(DSResourceRecord ds) {
+    if (ds.getAlgorithm() == null) {
+      return null;
+    }
+    for (DNSKEYResourceRecord key : find(ds.getName(), ds.getKeytag(),
+        ds.getAlgorithm().getValue())) {
+      if (KeyUtil.isKeyandDSDigestMatch(key, ds)) {
+        return key;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param ds DS records
+   * @return the matching key for every DS, in the order of the DS records, null for a DS without
+   *         matching key
+   */
+  public List<DNSKEYResourceRecord> match(List<DSResourceRecord> ds) {
+    List<DNSKEYResourceRecord> result = new ArrayList<>(ds.size());
+    for (DSResourceRecord record : ds) {
+      result.add(match(record));
+    }
+    return result;
+  }
+
+  /**
+   * @return number of keys in the index
+   */
+  public int size() {
+    return size;
+  }
+
+  private static KeyId id(String owner, int keytag, int algorithm) {
+    String lower = DNSStringUtil.toLowerCaseAscii(owner);
+    return new KeyId(lower.endsWith(".") ? lower : lower + ".", keytag, algorithm & 0xFF);
+  }
+
+}
@@ -22,12 +22,19 @@ package nl.sidnlabs.dnslib.util;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.security.KeyFactory;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.RSAPublicKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+
+import com.google.common.io.BaseEncoding;
+
 import nl.sidnlabs.dnslib.message.records.dnssec.DNSKEYResourceRecord;
 import nl.sidnlabs.dnslib.message.records.dnssec.DSResourceRecord;
+import nl.sidnlabs.dnslib.message.util.CanonicalForm;
+import nl.sidnlabs.dnslib.types.DigestType;
 
 public class KeyUtil {
 
@@ -37,33 +44,92 @@ public class KeyUtil {
   private static final char KEY_ZONE_SEP_FLAG_MASK = 0x0101; // 0000 0001 0000 0001
 
 
+  // DER encoded SubjectPublicKeyInfo headers, the raw key from the DNSKEY follows the header
+  private static final byte[] P256_HEADER =
+      header("3059301306072a8648ce3d020106082a8648ce3d030107034200");
+  private static final byte[] P384_HEADER =
+      header("3076301006072a8648ce3d020106052b81040022036200");
+  private static final byte[] ED25519_HEADER = header("302a300506032b6570032100");
+  private static final byte[] ED448_HEADER = header("3043300506032b6571033a00");
+
+  private static byte[] header(String hex) {
+    return BaseEncoding.base16().lowerCase().decode(hex);
+  }
+
+  /**
+   * Create the public key for the key data of a DNSKEY.
+   * 
+   * @param key the public key field of the DNSKEY
+   * @param algorithm DNSSEC algorithm number
+   * @return the key or null if the algorithm is not supported or the key is invalid
+   */
   public static PublicKey createPublicKey(byte[] key, int algorithm) {
-    if (algorithm == 5 || algorithm == 7 || algorithm == 8 || algorithm == 10) {
+    switch (algorithm) {
+      case 5:
+      case 7:
+      case 8:
+      case 10:
+        return createRSAPublicKey(key);
+      case 13:
+        // ECDSA keys are the uncompressed point without the 0x04 prefix (RFC 6605)
+        return key.length == 64 ? createX509PublicKey("EC", P256_HEADER, (byte) 4, key) : null;
+      case 14:
+        return key.length == 96 ? createX509PublicKey("EC", P384_HEADER, (byte) 4, key) : null;
+      case 15:
+        return key.length == 32 ? createX509PublicKey("Ed25519", ED25519_HEADER, null, key)
+            : null;
+      case 16:
+        return key.length == 57 ? createX509PublicKey("Ed448", ED448_HEADER, null, key) : null;
+      default:
+        // no support for DSA, GOST etc
+        return null;
+    }
+  }
 
-      // only create RSA pub keys.
-      ByteBuffer b = ByteBuffer.wrap(key);
+  private static PublicKey createRSAPublicKey(byte[] key) {
+    if (key.length < 3) {
+      return null;
+    }
+    ByteBuffer b = ByteBuffer.wrap(key);
 
-      int exponentLength = b.get() & 0xff;
-      if (exponentLength == 0) {
-        exponentLength = b.getChar();
-      }
-      try {
-        byte[] data = new byte[exponentLength];
-        b.get(data);
-        BigInteger exponent = new BigInteger(1, data);
-        byte[] modulusData = new byte[b.remaining()];
-        b.get(modulusData);
-        BigInteger modulus = new BigInteger(1, modulusData);
-
-        KeyFactory factory = KeyFactory.getInstance("RSA");
-        return factory.generatePublic(new RSAPublicKeySpec(modulus, exponent));
-      } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
-        // problem creating pub key
-      }
+    int exponentLength = b.get() & 0xff;
+    if (exponentLength == 0) {
+      exponentLength = b.getChar();
+    }
+    if (exponentLength > b.remaining()) {
+      return null;
     }
+    try {
+      byte[] data = new byte[exponentLength];
+      b.get(data);
+      BigInteger exponent = new BigInteger(1, data);
+      byte[] modulusData = new byte[b.remaining()];
+      b.get(modulusData);
+      BigInteger modulus = new BigInteger(1, modulusData);
+
+      KeyFactory factory = KeyFactory.getInstance("RSA");
+      return factory.generatePublic(new RSAPublicKeySpec(modulus, exponent));
+    } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+      // problem creating pub key
+      return null;
+    }
+  }
 
-    // no support for Elliptic curves, Ghost etc
-    return null;
+  private static PublicKey createX509PublicKey(String algorithm, byte[] header, Byte prefix,
+      byte[] key) {
+    int offset = header.length + (prefix == null ? 0 : 1);
+    byte[] encoded = new byte[offset + key.length];
+    System.arraycopy(header, 0, encoded, 0, header.length);
+    if (prefix != null) {
+      encoded[header.length] = prefix.byteValue();
+    }
+    System.arraycopy(key, 0, encoded, offset, key.length);
+    try {
+      return KeyFactory.getInstance(algorithm).generatePublic(new X509EncodedKeySpec(encoded));
+    } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+      // invalid point or algorithm not available
+      return null;
+    }
   }
 
 
@@ -121,8 +187,51 @@ public class KeyUtil {
   }
 
   public static boolean isKeyandDSmatch(DNSKEYResourceRecord key, DSResourceRecord ds) {
-    return (key.getAlgorithm() == ds.getAlgorithm() && key.getKeytag() == ds.getKeytag()
+    // records with an unknown algorithm cannot be compared
+    return (key.getAlgorithm() != null && key.getAlgorithm() == ds.getAlgorithm() && key.getKeytag() == ds.getKeytag()
         && key.getName().equalsIgnoreCase(ds.getName()));
   }
 
+  /**
+   * Check if the DS matches the key, including the digest of the key.
+   * 
+   * @param key the DNSKEY
+   * @param ds the DS
+   * @return true if owner, algorithm, key tag and digest match
+   */
+  public static boolean isKeyandDSDigestMatch(DNSKEYResourceRecord key, DSResourceRecord ds) {
+    if (!isKeyandDSmatch(key, ds) || ds.getDigestType() == null) {
+      return false;
+    }
+    byte[] digest = key.getDigest(ds.getDigestType());
+    return digest != null && MessageDigest.isEqual(digest, ds.getDigest());
+  }
+
+  /**
+   * Calculate the digest of a DNSKEY for a DS record: the hash of the canonical owner name followed
+   * by the DNSKEY rdata (RFC 4034 section 5.1.4).
+   * 
+   * @param key the DNSKEY
+   * @param digestType the digest type of the DS
+   * @return the digest or null if the digest type or the algorithm of the key is not supported
+   */
+  public static byte[] createDigest(DNSKEYResourceRecord key, DigestType digestType) {
+    if (digestType.getName() == null || key.getAlgorithm() == null) {
+      return null;
+    }
+    MessageDigest md;
+    try {
+      md = MessageDigest.getInstance(digestType.getName());
+    } catch (NoSuchAlgorithmException e) {
+      return null;
+    }
+    md.update(CanonicalForm.name(key.getName()));
+    md.update((byte) (key.getFlags() >> 8));
+    md.update((byte) key.getFlags());
+    md.update((byte) key.getProtocol());
+    md.update(key.getAlgorithm().getValue());
+    md.update(key.getKeydata());
+    return md.digest();
+  }
+
 }
@@ -0,0 +1,137 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.util;
+
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of the public keys created from the key data of DNSKEY records, so a key that is
+ * seen many times, like the keys of the root and TLDs, is parsed only once. The cache is keyed on
+ * the algorithm and the key data, key data that does not result in a valid key is cached as well.
+ * When the cache is full an arbitrary entry is removed.
+ * 
+ * The key data arrays are not copied, they must not be changed after they are added. Thread safe.
+ */
+public class PublicKeyCache {
+
+  public static final int DEFAULT_MAX_SIZE = 10000;
+
+  private static final PublicKeyCache SHARED = new PublicKeyCache(DEFAULT_MAX_SIZE);
+
+  private static final class Key {
+
+    private final int algorithm;
+    private final byte[] keydata;
+    private final int hash;
+
+    private Key(int algorithm, byte[] keydata) {
+      this.algorithm = algorithm;
+      this.keydata = keydata;
+      this.hash = 31 * algorithm + Arrays.hashCode(keydata);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (!(obj instanceof Key))
+        return false;
+      Key other = (Key) obj;
+      return hash == other.hash && algorithm == other.algorithm
+          && Arrays.equals(keydata, other.keydata);
+    }
+  }
+
+  private final int maxSize;
+  private final Map<Key, Optional<PublicKey>> keys = new ConcurrentHashMap<>();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * @param maxSize max number of keys in the cache
+   */
+  public PublicKeyCache(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @return the cache used by all DNSKEY records
+   */
+  public static PublicKeyCache getShared() {
+    return SHARED;
+  }
+
+  /**
+   * Get the public key from the cache or create it.
+   * 
+   * @param keydata the public key field of the DNSKEY
+   * @param algorithm DNSSEC algorithm number
+   * @return the key or null if the algorithm is not supported or the key is invalid
+   */
+  public PublicKey get(byte[] keydata, int algorithm) {
+    Key key = new Key(algorithm, keydata);
+    Optional<PublicKey> cached = keys.get(key);
+    if (cached != null) {
+      hits.increment();
+      return cached.orElse(null);
+    }
+
+    misses.increment();
+    PublicKey publicKey = KeyUtil.createPublicKey(keydata, algorithm);
+    if (keys.size() >= maxSize) {
+      Iterator<Key> it = keys.keySet().iterator();
+      if (it.hasNext()) {
+        it.next();
+        it.remove();
+      }
+    }
+    keys.put(key, Optional.ofNullable(publicKey));
+    return publicKey;
+  }
+
+  public int size() {
+    return keys.size();
+  }
+
+  public void clear() {
+    keys.clear();
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+}
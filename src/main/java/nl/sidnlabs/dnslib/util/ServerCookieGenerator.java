@@ -0,0 +1,245 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.util;
+
+import nl.sidnlabs.dnslib.message.records.edns0.CookieOption;
+
+/**
+ * Generates and verifies interoperable DNS server cookies (version 1), using SipHash-2-4 with a 128
+ * bit server secret. After {@link #rotate(byte[])} cookies created with the previous secret are
+ * still accepted, so the secret can be rotated without rejecting cookies of active clients.
+ * 
+ * Generating and verifying cookies does not allocate memory, except for
+ * {@link #generate(byte[], byte[], long)} and {@link #createCookie(CookieOption, byte[], long)}
+ * which return a new cookie. Instances use an internal buffer and are not thread safe, use an
+ * instance per thread. The secret may be rotated from another thread.
+ * 
+ * @see <a href="https://tools.ietf.org/html/rfc9018">rfc9018</a>
+ */
+public class ServerCookieGenerator {
+
+  /**
+   * Result of verifying a cookie option.
+   */
+  public enum Status {
+    // server cookie is valid
+    VALID,
+    // server cookie is valid, but a new cookie should be returned to the client because it is
+    // created with the previous secret or is older than 30 minutes
+    VALID_REISSUE,
+    // server cookie is older than 1 hour
+    EXPIRED,
+    // server cookie was not created by this server, or the timestamp is in the future
+    INVALID,
+    // the option only has a client cookie
+    NO_SERVER_COOKIE,
+    // the client cookie is missing or does not have the correct length
+    MALFORMED
+  }
+
+  public static final int SERVER_COOKIE_LENGTH = 16;
+
+  private static final int VERSION = 1;
+  // in seconds
+  private static final int MAX_AGE = 3600;
+  private static final int REISSUE_AGE = 1800;
+  private static final int MAX_CLOCK_SKEW = 300;
+
+  // hash input: client cookie, version, reserved, timestamp and client address (max 16 bytes)
+  private final byte[] input = new byte[CookieOption.CLIENT_COOKIE_LENGTH + 8 + 16];
+
+  // current secret (k0, k1) followed by the previous secret
+  private volatile long[] secrets;
+
+  /**
+   * @param secret 16 byte server secret
+   */
+  public ServerCookieGenerator(byte[] secret) {
+    long[] key = SipHash.key(secret);
+    secrets = new long[] {key[0], key[1], key[0], key[1]};
+  }
+
+  /**
+   * Use a new secret for new cookies, cookies created with the current secret remain valid until
+   * the next rotation.
+   * 
+   * @param secret 16 byte server secret
+   */
+  public void rotate(byte[] secret) {
+    long[] key = SipHash.key(secret);
+    long[] current = secrets;
+    secrets = new long[] {key[0], key[1], current[0], current[1]};
+  }
+
+  /**
+   * Create a new server cookie.
+   * 
+   * @param clientCookie the 8 byte client cookie
+   * @param clientAddress the IPv4 (4 bytes) or IPv6 (16 bytes) address of the client
+   * @param now current time in seconds since the epoch
+   * @return the 16 byte server cookie
+   */
+  public byte[] generate(byte[] clientCookie, byte[] clientAddress, long now) {
+    byte[] cookie = new byte[SERVER_COOKIE_LENGTH];
+    generate(clientCookie, clientAddress, now, cookie, 0);
+    return cookie;
+  }
+
+  /**
+   * Create a new server cookie in dst.
+   * 
+   * @param clientCookie the 8 byte client cookie
+   * @param clientAddress the IPv4 (4 bytes) or IPv6 (16 bytes) address of the client
+   * @param now current time in seconds since the epoch
+   * @param dst array for the cookie
+   * @param offset index in dst for the first byte of the cookie
+   */
+  public void generate(byte[] clientCookie, byte[] clientAddress, long now, byte[] dst,
+      int offset) {
+    long[] keys = secrets;
+    int length = prepare(clientCookie, clientAddress, (int) now);
+    long hash = SipHash.hash(keys[0], keys[1], input, 0, length);
+
+    // version, reserved and timestamp
+    System.arraycopy(input, CookieOption.CLIENT_COOKIE_LENGTH, dst, offset, 8);
+    for (int i = 0; i < 8; i++) {
+      dst[offset + 8 + i] = (byte) (hash >>> (8 * i));
+    }
+  }
+
+  /**
+   * Create the cookie option for a response.
+   * 
+   * @param query the cookie option of the query
+   * @param clientAddress the IPv4 (4 bytes) or IPv6 (16 bytes) address of the client
+   * @param now current time in seconds since the epoch
+   * @return option with the client cookie and a new server cookie
+   */
+  public CookieOption createCookie(CookieOption query, byte[] clientAddress, long now) {
+    return new CookieOption(query.getClientCookie(),
+        generate(query.getClientCookie(), clientAddress, now));
+  }
+
+  /**
+   * Verify the server cookie of a query.
+   * 
+   * @param cookie the cookie option of the query
+   * @param clientAddress the IPv4 (4 bytes) or IPv6 (16 bytes) address of the client
+   * @param now current time in seconds since the epoch
+   * @return the result of the verification
+   */
+  public Status verify(CookieOption cookie, byte[] clientAddress, long now) {
+    return verify(cookie.getClientCookie(), cookie.getServerCookie(), clientAddress, now);
+  }
+
+  /**
+   * Verify a server cookie.
+   * 
+   * @param clientCookie the client cookie
+   * @param serverCookie the server cookie, may be null
+   * @param clientAddress the IPv4 (4 bytes) or IPv6 (16 bytes) address of the client
+   * @param now current time in seconds since the epoch
+   * @return the result of the verification
+   */
+  public Status verify(byte[] clientCookie, byte[] serverCookie, byte[] clientAddress, long now) {
+    if (clientCookie == null || clientCookie.length != CookieOption.CLIENT_COOKIE_LENGTH) {
+      return Status.MALFORMED;
+    }
+    if (serverCookie == null) {
+      return Status.NO_SERVER_COOKIE;
+    }
+    if (serverCookie.length != SERVER_COOKIE_LENGTH || serverCookie[0] != VERSION) {
+      return Status.INVALID;
+    }
+
+    int timestamp = (serverCookie[4] & 0xFF) << 24 | (serverCookie[5] & 0xFF) << 16
+        | (serverCookie[6] & 0xFF) << 8 | (serverCookie[7] & 0xFF);
+    // serial number arithmetic, the timestamp wraps in 2106
+    int age = (int) now - timestamp;
+    if (age < -MAX_CLOCK_SKEW) {
+      return Status.INVALID;
+    }
+    if (age > MAX_AGE) {
+      return Status.EXPIRED;
+    }
+
+    int length = prepare(clientCookie, clientAddress, timestamp);
+    // the server cookie may have non-zero reserved bytes, these are part of the hash
+    System.arraycopy(serverCookie, 0, input, CookieOption.CLIENT_COOKIE_LENGTH, 4);
+    long expected = SipHash.readLong(serverCookie, 8);
+
+    long[] keys = secrets;
+    if (SipHash.hash(keys[0], keys[1], input, 0, length) == expected) {
+      return age > REISSUE_AGE ? Status.VALID_REISSUE : Status.VALID;
+    }
+    if (SipHash.hash(keys[2], keys[3], input, 0, length) == expected) {
+      return Status.VALID_REISSUE;
+    }
+    return Status.INVALID;
+  }
+
+  /**
+   * Verify the cookies of a batch of queries.
+   * 
+   * @param cookies the cookie options, elements may be null for queries without a cookie
+   * @param clientAddresses the client address of every query
+   * @param count the number of queries in the batch
+   * @param now current time in seconds since the epoch
+   * @param results receives the result for every query, null for queries without a cookie
+   * @return the number of valid cookies ({@link Status#VALID} or {@link Status#VALID_REISSUE})
+   */
+  public int verify(CookieOption[] cookies, byte[][] clientAddresses, int count, long now,
+      Status[] results) {
+    int valid = 0;
+    for (int i = 0; i < count; i++) {
+      CookieOption cookie = cookies[i];
+      Status status = cookie == null ? null : verify(cookie, clientAddresses[i], now);
+      if (status == Status.VALID || status == Status.VALID_REISSUE) {
+        valid++;
+      }
+      results[i] = status;
+    }
+    return valid;
+  }
+
+  /**
+   * Write the hash input to the input buffer, with reserved bytes set to 0.
+   * 
+   * @return length of the hash input
+   */
+  private int prepare(byte[] clientCookie, byte[] clientAddress, int timestamp) {
+    if (clientAddress.length != 4 && clientAddress.length != 16) {
+      throw new IllegalArgumentException("Invalid client address length: " + clientAddress.length);
+    }
+    int pos = CookieOption.CLIENT_COOKIE_LENGTH;
+    System.arraycopy(clientCookie, 0, input, 0, pos);
+    input[pos++] = VERSION;
+    input[pos++] = 0;
+    input[pos++] = 0;
+    input[pos++] = 0;
+    input[pos++] = (byte) (timestamp >>> 24);
+    input[pos++] = (byte) (timestamp >>> 16);
+    input[pos++] = (byte) (timestamp >>> 8);
+    input[pos++] = (byte) timestamp;
+    System.arraycopy(clientAddress, 0, input, pos, clientAddress.length);
+    return pos + clientAddress.length;
+  }
+
+}
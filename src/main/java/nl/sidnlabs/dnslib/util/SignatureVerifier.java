@@ -0,0 +1,352 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.util;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import lombok.Value;
+import nl.sidnlabs.dnslib.message.RRset;
+import nl.sidnlabs.dnslib.message.records.dnssec.DNSKEYResourceRecord;
+import nl.sidnlabs.dnslib.message.records.dnssec.RRSIGResourceRecord;
+import nl.sidnlabs.dnslib.message.util.CanonicalForm;
+import nl.sidnlabs.dnslib.message.util.CanonicalRRset;
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+import nl.sidnlabs.dnslib.types.AlgorithmType;
+
+/**
+ * Verifies RRSIG signatures over RRsets (RFC 4034 section 3.1.8.1 and RFC 4035 section 5.3) for
+ * RSA (SHA-1, SHA-256, SHA-512), ECDSA (P-256, P-384) and EdDSA (Ed25519, Ed448).
+ * 
+ * The signed data is not copied into a single buffer, the RRSIG rdata and the RRs in canonical
+ * form and order are passed to the {@link Signature} directly. The rdata of the RRs is used as it
+ * was decoded, so the RRs must not be changed after decoding.
+ * 
+ * Public keys are created by the DNSKEY records using the {@link PublicKeyCache}, {@link Signature}
+ * instances and buffers are reused per thread. Instances are thread safe, a single instance can
+ * be shared by all threads.
+ */
+public class SignatureVerifier {
+
+  /**
+   * Result of verifying a signature.
+   */
+  public enum Result {
+    VALID,
+    // the signature does not match the RRset and key
+    INVALID,
+    // the signature expiration is before the validation time
+    EXPIRED,
+    // the signature inception is after the validation time
+    NOT_YET_VALID,
+    // no zone key with the signer name, key tag and algorithm of the RRSIG
+    NO_KEY,
+    // the algorithm is not supported or the public key cannot be parsed
+    UNSUPPORTED,
+    // the RRSIG does not cover the RRset: other type or class, the owner is not below the signer
+    // name or has fewer labels than the labels field of the RRSIG
+    MISMATCH
+  }
+
+  /**
+   * RRset with an RRSIG and the DNSKEYs that may have created the signature.
+   */
+  @Value
+  public static class Task {
+    private RRset rrset;
+    private RRSIGResourceRecord rrsig;
+    private List<DNSKEYResourceRecord> keys;
+  }
+
+  private static final int DNSSEC_PROTOCOL = 3;
+  // fixed size part of the RRSIG rdata, before the signer name
+  private static final int RRSIG_HEADER_LENGTH = 18;
+
+  // buffers and Signature instances used by a single thread
+  private static class State {
+    private final CanonicalRRset canonical = new CanonicalRRset(true);
+    private final Map<String, Signature> signatures = new HashMap<>();
+    private final byte[] rrsig = new byte[RRSIG_HEADER_LENGTH + 256];
+    private final byte[] owner = new byte[256];
+    // type, class, original TTL and rdlength of an RR
+    private final byte[] rr = new byte[10];
+  }
+
+  private final ThreadLocal<State> state = ThreadLocal.withInitial(State::new);
+
+  /**
+   * Verify the RRSIG with the keys that match the signer name, key tag and algorithm of the RRSIG.
+   * 
+   * @param rrset the signed RRset
+   * @param rrsig RRSIG covering the RRset
+   * @param keys DNSKEYs of the signer
+   * @param now validation time in seconds since the epoch
+   * @return VALID if one of the matching keys validates the signature
+   */
+  public Result verify(RRset rrset, RRSIGResourceRecord rrsig, List<DNSKEYResourceRecord> keys,
+      long now) {
+    Result result = check(rrset, rrsig, now);
+    if (result != null) {
+      return result;
+    }
+    result = Result.NO_KEY;
+    for (DNSKEYResourceRecord key : keys) {
+      if (matches(key, rrsig)) {
+        Result r = verifySignature(rrset, rrsig, key);
+        if (r == Result.VALID) {
+          return r;
+        }
+        if (result != Result.INVALID) {
+          result = r;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Verify the RRSIG with a single key.
+   * 
+   * @param rrset the signed RRset
+   * @param rrsig RRSIG covering the RRset
+   * @param key DNSKEY of the signer
+   * @param now validation time in seconds since the epoch
+   * @return the result
+   */
+  public Result verify(RRset rrset, RRSIGResourceRecord rrsig, DNSKEYResourceRecord key,
+      long now) {
+    Result result = check(rrset, rrsig, now);
+    if (result != null) {
+      return result;
+    }
+    if (!matches(key, rrsig)) {
+      return Result.NO_KEY;
+    }
+    return verifySignature(rrset, rrsig, key);
+  }
+
+  /**
+   * Verify a batch of signatures.
+   * 
+   * @param tasks the RRsets, RRSIGs and DNSKEYs
+   * @param now validation time in seconds since the epoch
+   * @param parallel true to verify the signatures using all processors
+   * @return the result for every task, in the order of the tasks
+   */
+  public Result[] verify(List<Task> tasks, long now, boolean parallel) {
+    IntStream range = IntStream.range(0, tasks.size());
+    if (parallel) {
+      range = range.parallel();
+    }
+    Result[] results = new Result[tasks.size()];
+    range.forEach(i -> {
+      Task task = tasks.get(i);
+      results[i] = verify(task.getRrset(), task.getRrsig(), task.getKeys(), now);
+    });
+    return results;
+  }
+
+  /**
+   * Check the RRSIG fields against the RRset and the validation time.
+   * 
+   * @return null if the signature must be verified, otherwise the result
+   */
+  private Result check(RRset rrset, RRSIGResourceRecord rrsig, long now) {
+    if (rrsig.getTypeCovered().getValue() != rrset.getType().getValue()
+        || rrsig.getClassz() != rrset.getClassz()
+        || !isSubdomain(rrset.getOwner(), rrsig.getSignerName())
+        || rrsig.getLabels() > labels(rrset.getOwner())) {
+      return Result.MISMATCH;
+    }
+    // serial number arithmetic (RFC 4034 section 3.1.5)
+    if ((int) (rrsig.getSignatureExpiration() - now) < 0) {
+      return Result.EXPIRED;
+    }
+    if ((int) (now - rrsig.getSignatureInception()) < 0) {
+      return Result.NOT_YET_VALID;
+    }
+    return null;
+  }
+
+  private static boolean matches(DNSKEYResourceRecord key, RRSIGResourceRecord rrsig) {
+    return key.getAlgorithm() == rrsig.getAlgorithm() && key.getKeytag() == rrsig.getKeytag()
+        && key.getProtocol() == DNSSEC_PROTOCOL && KeyUtil.isZoneKey(key)
+        && isSubdomain(key.getName(), rrsig.getSignerName())
+        && isSubdomain(rrsig.getSignerName(), key.getName());
+  }
+
+  private Result verifySignature(RRset rrset, RRSIGResourceRecord rrsig,
+      DNSKEYResourceRecord key) {
+    String algorithm = signatureAlgorithm(rrsig.getAlgorithm());
+    PublicKey publicKey = key.getPublicKey();
+    if (algorithm == null || publicKey == null) {
+      return Result.UNSUPPORTED;
+    }
+
+    State s = state.get();
+    try {
+      Signature signature = s.signatures.get(algorithm);
+      if (signature == null) {
+        signature = Signature.getInstance(algorithm);
+        s.signatures.put(algorithm, signature);
+      }
+      signature.initVerify(publicKey);
+
+      signature.update(s.rrsig, 0, rrsigRdata(rrsig, s.rrsig));
+
+      CanonicalRRset canonical = s.canonical.set(rrset);
+      int ownerLength = owner(canonical, rrsig.getLabels(), s.owner);
+      byte[] rr = s.rr;
+      write(rr, 0, rrset.getType().getValue(), 2);
+      write(rr, 2, rrset.getClassz().getValue(), 2);
+      write(rr, 4, rrsig.getOriginalTtl(), 4);
+      byte[] data = canonical.getData();
+      for (int i = 0; i < canonical.size(); i++) {
+        write(rr, 8, canonical.getLength(i), 2);
+        signature.update(s.owner, 0, ownerLength);
+        signature.update(rr);
+        signature.update(data, canonical.getOffset(i), canonical.getLength(i));
+      }
+      return signature.verify(rrsig.getSignature()) ? Result.VALID : Result.INVALID;
+    } catch (GeneralSecurityException e) {
+      // invalid key or malformed signature
+      return Result.INVALID;
+    }
+  }
+
+  /**
+   * Write the RRSIG rdata without the signature, with the signer name in canonical form.
+   * 
+   * @return the length of the rdata
+   */
+  private static int rrsigRdata(RRSIGResourceRecord rrsig, byte[] dst) {
+    write(dst, 0, rrsig.getTypeCovered().getValue(), 2);
+    write(dst, 2, rrsig.getAlgorithm().getValue() & 0xFF, 1);
+    write(dst, 3, rrsig.getLabels(), 1);
+    write(dst, 4, rrsig.getOriginalTtl(), 4);
+    write(dst, 8, rrsig.getSignatureExpiration(), 4);
+    write(dst, 12, rrsig.getSignatureInception(), 4);
+    write(dst, 16, rrsig.getKeytag(), 2);
+    return CanonicalForm.name(rrsig.getSignerName(), dst, RRSIG_HEADER_LENGTH);
+  }
+
+  /**
+   * Write the owner name used in the signed data to dst, for an RRset created from a wildcard the
+   * owner is the wildcard name (RFC 4035 section 5.3.2).
+   * 
+   * @return the length of the owner name
+   */
+  private static int owner(CanonicalRRset canonical, int labels, byte[] dst) {
+    byte[] owner = canonical.getOwner();
+    int length = canonical.getOwnerLength();
+    int ownerLabels = 0;
+    for (int pos = 0; owner[pos] != 0; pos += (owner[pos] & 0xFF) + 1) {
+      ownerLabels++;
+    }
+    if (ownerLabels > 0 && owner[0] == 1 && owner[1] == '*') {
+      // the wildcard label is not counted in the labels field of the RRSIG
+      ownerLabels--;
+    }
+    if (labels >= ownerLabels) {
+      System.arraycopy(owner, 0, dst, 0, length);
+      return length;
+    }
+
+    int pos = 0;
+    for (int i = 0; i < ownerLabels - labels; i++) {
+      pos += (owner[pos] & 0xFF) + 1;
+    }
+    dst[0] = 1;
+    dst[1] = '*';
+    System.arraycopy(owner, pos, dst, 2, length - pos);
+    return 2 + length - pos;
+  }
+
+  private static void write(byte[] dst, int offset, long value, int size) {
+    for (int i = size - 1; i >= 0; i--) {
+      dst[offset + i] = (byte) value;
+      value >>>= 8;
+    }
+  }
+
+  /**
+   * @return the JCA signature algorithm or null if the algorithm is not supported
+   */
+  private static String signatureAlgorithm(AlgorithmType algorithm) {
+    if (algorithm == null) {
+      return null;
+    }
+    switch (algorithm) {
+      case RSASHA1:
+      case RSASHA1_NSEC3_SHA1:
+      case RSASHA256:
+      case RSASHA512:
+      case ED25519:
+      case ED448:
+        return algorithm.getAlgorithm();
+      case ECDSAP256SHA256:
+      case ECDSAP384SHA384:
+        // DNSSEC ECDSA signatures are r and s concatenated (RFC 6605), not DER encoded
+        return algorithm.getAlgorithm() + "inP1363Format";
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * @return number of labels of the name, not counting the root label and a leading wildcard
+   */
+  private static int labels(String name) {
+    int labels = 0;
+    int length = name.endsWith(".") ? name.length() - 1 : name.length();
+    for (int i = 0; i < length; i++) {
+      if (i == 0 || name.charAt(i - 1) == '.') {
+        labels++;
+      }
+    }
+    if (name.startsWith("*.")) {
+      labels--;
+    }
+    return labels;
+  }
+
+  /**
+   * @return true if name is equal to or below parent, ignoring case
+   */
+  private static boolean isSubdomain(String name, String parent) {
+    String n = normalize(name);
+    String p = normalize(parent);
+    if (p.equals(".")) {
+      return true;
+    }
+    return n.equals(p) || n.endsWith("." + p);
+  }
+
+  private static String normalize(String name) {
+    String lower = DNSStringUtil.toLowerCaseAscii(name);
+    return lower.endsWith(".") ? lower : lower + ".";
+  }
+
+}
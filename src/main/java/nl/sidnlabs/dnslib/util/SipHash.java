@@ -0,0 +1,139 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.util;
+
+/**
+ * SipHash-2-4 with a 128 bit key and 64 bit output, without allocating any objects.
+ * 
+ * @see <a href="https://www.aumasson.jp/siphash/siphash.pdf">SipHash: a fast short-input PRF</a>
+ */
+public class SipHash {
+
+  private SipHash() {}
+
+  /**
+   * Read a 128 bit key as 2 longs.
+   * 
+   * @param key 16 byte key
+   * @return the key as {k0, k1}
+   */
+  public static long[] key(byte[] key) {
+    if (key == null || key.length != 16) {
+      throw new IllegalArgumentException("SipHash key must be 16 bytes");
+    }
+    return new long[] {readLong(key, 0), readLong(key, 8)};
+  }
+
+  /**
+   * Calculate SipHash-2-4.
+   * 
+   * @param k0 first 8 bytes of the key (little endian)
+   * @param k1 last 8 bytes of the key (little endian)
+   * @param data the data to hash
+   * @param offset index of the first byte to hash
+   * @param length number of bytes to hash
+   * @return the hash
+   */
+  public static long hash(long k0, long k1, byte[] data, int offset, int length) {
+    long v0 = 0x736f6d6570736575L ^ k0;
+    long v1 = 0x646f72616e646f6dL ^ k1;
+    long v2 = 0x6c7967656e657261L ^ k0;
+    long v3 = 0x7465646279746573L ^ k1;
+
+    int end = offset + (length & ~7);
+    for (int i = offset; i < end; i += 8) {
+      long m = readLong(data, i);
+      v3 ^= m;
+      // 2 compression rounds
+      for (int r = 0; r < 2; r++) {
+        v0 += v1;
+        v1 = Long.rotateLeft(v1, 13);
+        v1 ^= v0;
+        v0 = Long.rotateLeft(v0, 32);
+        v2 += v3;
+        v3 = Long.rotateLeft(v3, 16);
+        v3 ^= v2;
+        v0 += v3;
+        v3 = Long.rotateLeft(v3, 21);
+        v3 ^= v0;
+        v2 += v1;
+        v1 = Long.rotateLeft(v1, 17);
+        v1 ^= v2;
+        v2 = Long.rotateLeft(v2, 32);
+      }
+      v0 ^= m;
+    }
+
+    // last block, remaining bytes with the length in the highest byte
+    long m = ((long) length) << 56;
+    for (int i = 0; i < (length & 7); i++) {
+      m |= (data[end + i] & 0xFFL) << (8 * i);
+    }
+    v3 ^= m;
+    for (int r = 0; r < 2; r++) {
+      v0 += v1;
+      v1 = Long.rotateLeft(v1, 13);
+      v1 ^= v0;
+      v0 = Long.rotateLeft(v0, 32);
+      v2 += v3;
+      v3 = Long.rotateLeft(v3, 16);
+      v3 ^= v2;
+      v0 += v3;
+      v3 = Long.rotateLeft(v3, 21);
+      v3 ^= v0;
+      v2 += v1;
+      v1 = Long.rotateLeft(v1, 17);
+      v1 ^= v2;
+      v2 = Long.rotateLeft(v2, 32);
+    }
+    v0 ^= m;
+
+    // 4 finalization rounds
+    v2 ^= 0xFF;
+    for (int r = 0; r < 4; r++) {
+      v0 += v1;
+      v1 = Long.rotateLeft(v1, 13);
+      v1 ^= v0;
+      v0 = Long.rotateLeft(v0, 32);
+      v2 += v3;
+      v3 = Long.rotateLeft(v3, 16);
+      v3 ^= v2;
+      v0 += v3;
+      v3 = Long.rotateLeft(v3, 21);
+      v3 ^= v0;
+      v2 += v1;
+      v1 = Long.rotateLeft(v1, 17);
+      v1 ^= v2;
+      v2 = Long.rotateLeft(v2, 32);
+    }
+    return v0 ^ v1 ^ v2 ^ v3;
+  }
+
+  /**
+   * Read 8 bytes as little endian long.
+   */
+  static long readLong(byte[] data, int offset) {
+    return (data[offset] & 0xFFL) | (data[offset + 1] & 0xFFL) << 8
+        | (data[offset + 2] & 0xFFL) << 16 | (data[offset + 3] & 0xFFL) << 24
+        | (data[offset + 4] & 0xFFL) << 32 | (data[offset + 5] & 0xFFL) << 40
+        | (data[offset + 6] & 0xFFL) << 48 | (data[offset + 7] & 0xFFL) << 56;
+  }
+
+}
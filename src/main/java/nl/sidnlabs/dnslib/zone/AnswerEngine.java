@@ -0,0 +1,478 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.zone;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Base32;
+
+import lombok.Getter;
+import lombok.Setter;
+import nl.sidnlabs.dnslib.message.Header;
+import nl.sidnlabs.dnslib.message.Message;
+import nl.sidnlabs.dnslib.message.Question;
+import nl.sidnlabs.dnslib.message.RRset;
+import nl.sidnlabs.dnslib.message.records.CNAMEResourceRecord;
+import nl.sidnlabs.dnslib.message.records.NSResourceRecord;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.dnssec.NSEC3ParamResourceRecord;
+import nl.sidnlabs.dnslib.message.records.edns0.OPTResourceRecord;
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.OpcodeType;
+import nl.sidnlabs.dnslib.types.RcodeType;
+import nl.sidnlabs.dnslib.types.ResourceRecordClass;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+
+/**
+ * Creates authoritative responses for queries using the data of a {@link Zone}, following RFC 1034
+ * section 4.3.2: CNAME chains within the zone, DNAME substitution (RFC 6672), wildcards (RFC
+ * 4592), referrals with glue and NXDOMAIN/NODATA responses with the SOA record.
+ * 
+ * When the query has the DO bit set, RRSIGs are added for all RRsets from a signed zone together
+ * with the NSEC (RFC 4035) or NSEC3 (RFC 5155) records proving non-existence, wildcard expansion
+ * and the absence of a DS RRset at a zone cut.
+ * 
+ * RRsets in responses are shared with the zone, only RRs synthesized from a wildcard or DNAME are
+ * created for a response. An engine can be used by multiple threads at the same time, as long as
+ * the zone is not modified. Truncation is left to the caller, e.g. when encoding the response for
+ * UDP.
+ */
+@Getter
+@Setter
+public class AnswerEngine {
+
+  // max number of CNAME and DNAME records followed for a single query
+  private static final int MAX_CHAIN_LENGTH = 8;
+  private static final int MAX_NAME_LENGTH = 255;
+
+  private static final ThreadLocal<ZoneLookup> LOOKUP = ThreadLocal.withInitial(ZoneLookup::new);
+  private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-1 not supported", e);
+    }
+  });
+
+  private final Zone zone;
+  private final Base32 base32hex = Base32.builder().setHexEncodeTable(true).get();
+
+  /**
+   * EDNS0 UDP payload size of responses to queries with an OPT record.
+   */
+  private char udpPayloadSize = 1232;
+
+  public AnswerEngine(Zone zone) {
+    this.zone = zone;
+  }
+
+  /**
+   * Create the response for a query.
+   * 
+   * @param query decoded query
+   * @return response, not encoded
+   */
+  public Message answer(Message query) {
+    Message response = new Message();
+    Header header = Header.createResponseHeader((char) query.getHeader().getId());
+    header.setOpCode(query.getHeader().getOpCode());
+    header.setRd(query.getHeader().isRd());
+    header.setCd(query.getHeader().isCd());
+    header.setRcode(RcodeType.NO_ERROR);
+    response.setHeader(header);
+
+    boolean dnssec = false;
+    if (query.getPseudo() != null) {
+      OPTResourceRecord opt = new OPTResourceRecord();
+      opt.setUdpPlayloadSize(udpPayloadSize);
+      dnssec = query.getPseudo().isDnssecDo();
+      opt.setDnssecDo(dnssec);
+      response.setPseudo(opt);
+    }
+
+    if (query.getQuestions().size() != 1) {
+      header.setRcode(RcodeType.FORMAT_ERROR);
+      return response;
+    }
+    Question question = query.getQuestions().get(0);
+    response.addQuestion(question);
+
+    if (header.getOpCode() != OpcodeType.STANDARD) {
+      header.setRcode(RcodeType.NOT_IMPLEMENTED);
+      return response;
+    }
+    if (question.getQClass() != ResourceRecordClass.IN
+        && question.getQClass() != ResourceRecordClass.ANY) {
+      header.setRcode(RcodeType.REFUSED);
+      return response;
+    }
+
+    // names are sliced on the length of node names, which always have a trailing dot
+    String qname = question.getQName();
+    if (!qname.endsWith(".")) {
+      qname = qname + ".";
+    }
+    new Resolution(response, question.getQType(), dnssec).resolve(qname);
+    return response;
+  }
+
+  /**
+   * State of the resolution of a single query.
+   */
+  private class Resolution {
+
+    private final Message response;
+    private final Header header;
+    private final ResourceRecordType qtype;
+    private final boolean dnssec;
+    private final ZoneLookup lookup = LOOKUP.get();
+    // NSEC/NSEC3 nodes already added to the response
+    private final List<ZoneNode> proofs = new ArrayList<>(4);
+    // NSEC3 parameters of the zone, null without the DO bit or when the zone does not use NSEC3
+    private final NSEC3ParamResourceRecord nsec3param;
+
+    private Resolution(Message response, ResourceRecordType qtype, boolean dnssec) {
+      this.response = response;
+      this.header = response.getHeader();
+      this.qtype = qtype;
+      this.dnssec = dnssec;
+      RRset param = dnssec ? zone.getApex().getRRset(ResourceRecordType.NSEC3PARAM) : null;
+      this.nsec3param = param == null || param.size() == 0 ? null
+          : (NSEC3ParamResourceRecord) param.getAll().get(0);
+    }
+
+    private void resolve(String qname) {
+      header.setAa(true);
+      for (int chain = 0; chain < MAX_CHAIN_LENGTH; chain++) {
+        zone.lookup(qname, lookup);
+        ZoneNode node = lookup.getNode();
+
+        switch (lookup.getMatch()) {
+          case NOT_IN_ZONE:
+            if (chain == 0) {
+              // not authoritative for the name
+              header.setAa(false);
+              header.setRcode(RcodeType.REFUSED);
+            }
+            return;
+
+          case DELEGATION:
+            if (lookup.isExact() && qtype == ResourceRecordType.DS) {
+              // DS is authoritative data of the parent side of the zone cut
+              answer(node, qname, false);
+            } else {
+              referral(node);
+            }
+            return;
+
+          case DNAME:
+            qname = dname(node, qname);
+            if (qname == null) {
+              return;
+            }
+            break;
+
+          case NXDOMAIN:
+            header.setRcode(RcodeType.NXDOMAIN);
+            addSoa();
+            if (dnssec) {
+              denyName(qname, lookup.getClosestEncloser());
+            }
+            return;
+
+          default:
+            // exact or wildcard match
+            boolean wildcard = lookup.getMatch() == ZoneLookup.Match.WILDCARD;
+            RRset cname = node.getRRset(ResourceRecordType.CNAME);
+            if (cname == null || qtype == ResourceRecordType.CNAME
+                || qtype == ResourceRecordType.ANY) {
+              answer(node, qname, wildcard);
+              return;
+            }
+            addAnswer(node, cname, qname, wildcard);
+            if (dnssec && wildcard) {
+              proveWildcard(qname, lookup.getClosestEncloser());
+            }
+            qname = ((CNAMEResourceRecord) cname.getAll().get(0)).getCname();
+        }
+      }
+    }
+
+    /**
+     * Add the RRset(s) for qtype from the node to the answer section, or create a NODATA
+     * response.
+     */
+    private void answer(ZoneNode node, String qname, boolean wildcard) {
+      ZoneNode encloser = lookup.getClosestEncloser();
+      boolean found = false;
+      if (qtype == ResourceRecordType.ANY) {
+        for (RRset rrset : node.getRRsets()) {
+          if (rrset.getType() != ResourceRecordType.RRSIG) {
+            addAnswer(node, rrset, qname, wildcard);
+            found = true;
+          }
+        }
+      } else {
+        RRset rrset = node.getRRset(qtype);
+        if (rrset != null) {
+          addAnswer(node, rrset, qname, wildcard);
+          found = true;
+        }
+      }
+
+      if (found) {
+        if (dnssec && wildcard) {
+          proveWildcard(qname, encloser);
+        }
+        return;
+      }
+
+      // NODATA
+      addSoa();
+      if (dnssec) {
+        if (wildcard) {
+          proveWildcard(qname, encloser);
+        }
+        proveNoData(node, qname);
+      }
+    }
+
+    private void referral(ZoneNode cut) {
+      header.setAa(!response.getAnswer().isEmpty());
+      RRset ns = cut.getRRset(ResourceRecordType.NS);
+      response.addAuthority(ns);
+      if (dnssec) {
+        RRset ds = cut.getRRset(ResourceRecordType.DS);
+        if (ds != null) {
+          response.addAuthority(ds);
+          addSignatures(response, cut, ResourceRecordType.DS, false);
+        } else {
+          // prove there is no DS, the child zone is not signed
+          proveNoData(cut, cut.getName());
+        }
+      }
+
+      // glue, including names below the zone cut
+      for (ResourceRecord rr : ns.getAll()) {
+        ZoneNode target = zone.find(((NSResourceRecord) rr).getNameserver());
+        if (target != null) {
+          addAdditional(target, ResourceRecordType.A);
+          addAdditional(target, ResourceRecordType.AAAA);
+        }
+      }
+    }
+
+    private void addAdditional(ZoneNode node, ResourceRecordType type) {
+      RRset rrset = node.getRRset(type);
+      if (rrset != null) {
+        response.addAdditional(rrset);
+      }
+    }
+
+    /**
+     * Add the DNAME and a synthesized CNAME for qname to the answer.
+     * 
+     * @return the new qname, or null if the new name is too long
+     */
+    private String dname(ZoneNode node, String qname) {
+      RRset dname = node.getRRset(ResourceRecordType.DNAME);
+      addAnswer(node, dname, null, false);
+
+      ResourceRecord rr = dname.getAll().get(0);
+      String target = DNSStringUtil.readNameUsingBuffer(new NetworkData(rr.getRdata()));
+      String prefix = qname.substring(0, qname.length() - node.getName().length());
+      String name = ".".equals(target) ? prefix : prefix + target;
+      if (DNSStringUtil.nameLength(name) > MAX_NAME_LENGTH) {
+        header.setRcode(RcodeType.YXDOMAIN);
+        return null;
+      }
+
+      CNAMEResourceRecord cname = new CNAMEResourceRecord();
+      cname.setName(qname);
+      cname.setType(ResourceRecordType.CNAME);
+      cname.setClassz(rr.getClassz());
+      cname.setTtl(rr.getTtl());
+      cname.setCname(name);
+      response.addAnswer(cname);
+      return name;
+    }
+
+    private void addAnswer(ZoneNode node, RRset rrset, String qname, boolean wildcard) {
+      if (wildcard) {
+        response.addAnswer(rename(rrset, qname));
+      } else {
+        response.addAnswer(rrset);
+      }
+      if (dnssec) {
+        ResourceRecordType type = rrset.getType();
+        RRset signatures = node.getSignatures(type);
+        if (signatures != null) {
+          response.addAnswer(wildcard ? rename(signatures, qname) : signatures);
+        }
+      }
+    }
+
+    private void addSoa() {
+      ZoneNode apex = zone.getApex();
+      RRset soa = apex.getRRset(ResourceRecordType.SOA);
+      if (soa != null) {
+        response.addAuthority(soa);
+        if (dnssec) {
+          addSignatures(response, apex, ResourceRecordType.SOA, false);
+        }
+      }
+    }
+
+    private void addSignatures(Message message, ZoneNode node, ResourceRecordType type,
+        boolean answer) {
+      RRset signatures = node.getSignatures(type);
+      if (signatures != null) {
+        if (answer) {
+          message.addAnswer(signatures);
+        } else {
+          message.addAuthority(signatures);
+        }
+      }
+    }
+
+    /**
+     * Add NSEC(3) records proving that qname does not exist.
+     */
+    private void denyName(String qname, ZoneNode encloser) {
+      String encloserName = encloser.getName();
+      if (isNsec3()) {
+        // closest encloser proof and no wildcard at the closest encloser
+        addNsec3(encloserName, true);
+        addNsec3(nextCloser(qname, encloserName), false);
+        addNsec3(wildcard(encloserName), false);
+      } else {
+        addNsec(qname);
+        addNsec(wildcard(encloserName));
+      }
+    }
+
+    /**
+     * Add NSEC(3) records proving that qname does not exist and the answer is expanded from a
+     * wildcard.
+     */
+    private void proveWildcard(String qname, ZoneNode encloser) {
+      if (isNsec3()) {
+        addNsec3(nextCloser(qname, encloser.getName()), false);
+      } else {
+        addNsec(qname);
+      }
+    }
+
+    /**
+     * Add NSEC(3) records proving the name exists but has no RRset of the query type.
+     */
+    private void proveNoData(ZoneNode node, String qname) {
+      if (isNsec3()) {
+        if (node.isWildcard()) {
+          addNsec3(lookup.getClosestEncloser().getName(), true);
+        }
+        addNsec3(node.getName(), !node.hasRRset(ResourceRecordType.NS));
+      } else {
+        addProof(node, ResourceRecordType.NSEC);
+      }
+    }
+
+    private boolean isNsec3() {
+      return nsec3param != null;
+    }
+
+    private void addNsec(String name) {
+      ZoneNode node = zone.findCovering(name, ResourceRecordType.NSEC);
+      if (node != null) {
+        addProof(node, ResourceRecordType.NSEC);
+      }
+    }
+
+    /**
+     * Add the NSEC3 record matching or covering the hash of the name.
+     * 
+     * @param exact only add a matching NSEC3 record
+     */
+    private void addNsec3(String name, boolean exact) {
+      String hashed = hash(name) + "." + zone.getOrigin();
+      ZoneNode node = zone.findCovering(hashed, ResourceRecordType.NSEC3);
+      if (node != null && (!exact || zone.find(hashed) == node)) {
+        addProof(node, ResourceRecordType.NSEC3);
+      }
+    }
+
+    private void addProof(ZoneNode node, ResourceRecordType type) {
+      if (proofs.contains(node)) {
+        return;
+      }
+      proofs.add(node);
+      response.addAuthority(node.getRRset(type));
+      addSignatures(response, node, type, false);
+    }
+
+    /**
+     * NSEC3 hash of the name (RFC 5155 section 5) as base32hex label.
+     */
+    private String hash(String name) {
+      byte[] salt = nsec3param.getSalt() == null ? new byte[0] : nsec3param.getSalt();
+      MessageDigest digest = SHA1.get();
+      digest.update(DNSStringUtil.writeName(DNSStringUtil.toLowerCaseAscii(name)));
+      digest.update(salt);
+      byte[] hash = digest.digest();
+      for (int i = 0; i < nsec3param.getIterations(); i++) {
+        digest.update(hash);
+        digest.update(salt);
+        hash = digest.digest();
+      }
+      return DNSStringUtil.toLowerCaseAscii(base32hex.encodeAsString(hash));
+    }
+  }
+
+  /**
+   * Name one label longer than the closest encloser on the path to qname.
+   */
+  private static String nextCloser(String qname, String encloser) {
+    int end = qname.length() - encloser.length() - 1;
+    if (".".equals(encloser)) {
+      end = qname.length() - 1;
+    }
+    return qname.substring(qname.lastIndexOf('.', end - 1) + 1);
+  }
+
+  private static String wildcard(String encloser) {
+    return ".".equals(encloser) ? "*." : "*." + encloser;
+  }
+
+  /**
+   * Copy the RRset with a new owner name, for RRs expanded from a wildcard. Only the record objects
+   * are copied, the rdata is shared with the RRs in the zone.
+   */
+  private static RRset rename(RRset rrset, String owner) {
+    RRset result = new RRset(owner, rrset.getClassz(), rrset.getType());
+    for (ResourceRecord rr : rrset.getAll()) {
+      result.getAll().add(rr.copy(owner));
+    }
+    return result;
+  }
+}
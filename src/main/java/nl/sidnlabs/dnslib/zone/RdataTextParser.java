@@ -0,0 +1,918 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.zone;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.apache.commons.codec.binary.Base32;
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.net.InetAddresses;
+
+import nl.sidnlabs.dnslib.message.records.RdataDescriptor;
+import nl.sidnlabs.dnslib.types.AlgorithmType;
+import nl.sidnlabs.dnslib.types.ResourceRecordClass;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+
+/**
+ * Converts the text fields of a master file entry to wire format. Names, numbers and rdata are
+ * written directly from the token bytes of the {@link ZoneTokenizer} into a {@link WireBuffer},
+ * the presentation formats are those of the RFCs defining each type.
+ * 
+ * Types without a known presentation format must use the generic RFC 3597 format ("\# len hex").
+ * 
+ * Not thread safe.
+ */
+class RdataTextParser {
+
+  private static final int MAX_NAME_LENGTH = 255;
+  private static final int MAX_LABEL_LENGTH = 63;
+  private static final int MAX_CHARACTER_STRING_LENGTH = 255;
+  // RFC 1876 LOC defaults in centimeters
+  private static final long LOC_DEFAULT_SIZE = 100;
+  private static final long LOC_DEFAULT_HP = 1000000;
+  private static final long LOC_DEFAULT_VP = 1000;
+  private static final long LOC_ALTITUDE_BASE = 10000000;
+  private static final long LOC_EQUATOR = 1L << 31;
+
+  private final Base32 base32hex = Base32.builder().setHexEncodeTable(true).get();
+
+  private ZoneTokenizer t;
+  private WireBuffer out;
+  private byte[] origin;
+  // index of the next token to parse
+  private int i;
+
+  private byte[] scratch = new byte[256];
+  private int[] types = new int[16];
+  // value of the last escape sequence decoded by escape()
+  private int escaped;
+
+  void reset(ZoneTokenizer t, WireBuffer out, byte[] origin) {
+    this.t = t;
+    this.out = out;
+    this.origin = origin;
+  }
+
+  /**
+   * Write the rdata for an RR of the type, using all tokens starting at token first.
+   */
+  void parse(int type, int first) {
+    i = first;
+    if (i < t.count() && t.is(i, "\\#")) {
+      generic();
+      return;
+    }
+
+    switch (type) {
+      case 1:
+        ipv4();
+        break;
+      case 28:
+        ipv6();
+        break;
+      case 2: // NS
+      case 3: // MD
+      case 4: // MF
+      case 5: // CNAME
+      case 7: // MB
+      case 8: // MG
+      case 9: // MR
+      case 12: // PTR
+      case 39: // DNAME
+        name();
+        break;
+      case 15: // MX
+      case 18: // AFSDB
+      case 21: // RT
+      case 36: // KX
+        u16();
+        name();
+        break;
+      case 6:
+        name();
+        name();
+        u32();
+        out.writeInt(ttl(next()));
+        out.writeInt(ttl(next()));
+        out.writeInt(ttl(next()));
+        out.writeInt(ttl(next()));
+        break;
+      case 13:
+        characterString();
+        characterString();
+        break;
+      case 16: // TXT
+      case 99: // SPF
+        characterString();
+        while (i < t.count()) {
+          characterString();
+        }
+        break;
+      case 29:
+        loc();
+        break;
+      case 33:
+        u16();
+        u16();
+        u16();
+        name();
+        break;
+      case 35:
+        u16();
+        u16();
+        characterString();
+        characterString();
+        characterString();
+        name();
+        break;
+      case 43: // DS
+      case 59: // CDS
+      case 32768: // TA
+      case 32769: // DLV
+        u16();
+        algorithm();
+        u8();
+        hex(true);
+        break;
+      case 44:
+        u8();
+        u8();
+        hex(true);
+        break;
+      case 63: // ZONEMD
+        u32();
+        u8();
+        u8();
+        hex(true);
+        break;
+      case 52: // TLSA
+      case 53: // SMIMEA
+        u8();
+        u8();
+        u8();
+        hex(true);
+        break;
+      case 24: // SIG
+      case 46: // RRSIG
+        out.writeChar(typeOrFail(next()));
+        algorithm();
+        u8();
+        u32();
+        time();
+        time();
+        u16();
+        name();
+        base64();
+        break;
+      case 47:
+        name();
+        typeBitmap();
+        break;
+      case 25: // KEY
+      case 48: // DNSKEY
+      case 60: // CDNSKEY
+        u16();
+        u8();
+        algorithm();
+        base64();
+        break;
+      case 50:
+        u8();
+        u8();
+        u16();
+        salt();
+        base32hex();
+        typeBitmap();
+        break;
+      case 51:
+        u8();
+        u8();
+        u16();
+        salt();
+        break;
+      case 61: // OPENPGPKEY
+        base64();
+        break;
+      case 256:
+        u16();
+        u16();
+        string(next());
+        break;
+      case 257: // CAA
+        u8();
+        characterString();
+        string(next());
+        break;
+      default:
+        RdataDescriptor descriptor = RdataDescriptor.forType(type);
+        if (descriptor == null || !descriptor.isParsable()) {
+          throw t.error("No presentation format known for type " + type + ", use \\# format");
+        }
+        fields(descriptor);
+    }
+
+    if (i < t.count()) {
+      throw t.error("Unexpected data after rdata: " + t.getString(i));
+    }
+  }
+
+  /**
+   * Write the rdata for a type without a specific presentation format, every field of the
+   * descriptor is parsed from the next token(s).
+   */
+  private void fields(RdataDescriptor descriptor) {
+    for (int f = 0; f < descriptor.getFieldCount(); f++) {
+      switch (descriptor.getField(f).getKind()) {
+        case U8:
+          u8();
+          break;
+        case U16:
+          u16();
+          break;
+        case U32:
+          u32();
+          break;
+        case TYPE:
+          out.writeChar(typeOrFail(next()));
+          break;
+        case TIME:
+          time();
+          break;
+        case IPV4:
+          ipv4();
+          break;
+        case IPV6:
+          ipv6();
+          break;
+        case ILNP64:
+          hexGroups(4, 4, ':');
+          break;
+        case EUI48:
+          hexGroups(6, 2, '-');
+          break;
+        case EUI64:
+          hexGroups(8, 2, '-');
+          break;
+        case NAME:
+          name();
+          break;
+        case NAMES:
+          while (i < t.count()) {
+            name();
+          }
+          break;
+        case CHARACTER_STRING:
+        case TAG:
+          characterString();
+          break;
+        case CHARACTER_STRINGS:
+          while (i < t.count()) {
+            characterString();
+          }
+          break;
+        case TEXT:
+          string(next());
+          break;
+        case HEX:
+          hex(false);
+          break;
+        case BASE64:
+          base64();
+          break;
+        case BITMAP:
+          typeBitmap();
+          break;
+      }
+    }
+  }
+
+  // ILNP64 (RFC 6742) and EUI-48/EUI-64 (RFC 7043) addresses are written as groups of hex digits
+  private void hexGroups(int groups, int digits, char separator) {
+    int token = next();
+    String value = t.getString(token);
+    String[] parts = StringUtils.splitPreserveAllTokens(value, separator);
+    if (parts.length != groups) {
+      throw t.error("Invalid address: " + value);
+    }
+    for (String part : parts) {
+      if (part.length() != digits) {
+        throw t.error("Invalid address: " + value);
+      }
+      int v;
+      try {
+        v = Integer.parseInt(part, 16);
+      } catch (NumberFormatException e) {
+        throw t.error("Invalid address: " + value);
+      }
+      if (digits == 4) {
+        out.writeChar(v);
+      } else {
+        out.writeByte(v);
+      }
+    }
+  }
+
+  // RFC 3597 generic rdata
+  private void generic() {
+    i++;
+    int length = (int) number(next(), 0xFFFF);
+    int start = out.length();
+    if (i < t.count()) {
+      hex(false);
+    }
+    if (out.length() - start != length) {
+      throw t.error("Generic rdata length " + length + " does not match data");
+    }
+  }
+
+  private int next() {
+    if (i == t.count()) {
+      throw t.error("Missing rdata field");
+    }
+    return i++;
+  }
+
+  private void u8() {
+    out.writeByte((int) number(next(), 0xFF));
+  }
+
+  private void u16() {
+    out.writeChar((int) number(next(), 0xFFFF));
+  }
+
+  private void u32() {
+    out.writeInt(number(next(), 0xFFFFFFFFL));
+  }
+
+  private void name() {
+    writeName(next());
+  }
+
+  private void characterString() {
+    int lengthOffset = out.length();
+    out.writeByte(0);
+    int length = string(next());
+    if (length > MAX_CHARACTER_STRING_LENGTH) {
+      throw t.error("Character string too long");
+    }
+    out.setByte(lengthOffset, length);
+  }
+
+  private void algorithm() {
+    int token = next();
+    if (isDigit(t.data()[t.start(token)])) {
+      out.writeByte((int) number(token, 0xFF));
+      return;
+    }
+    try {
+      String name = StringUtils.upperCase(StringUtils.replaceChars(t.getString(token), '-', '_'));
+      out.writeByte(AlgorithmType.valueOf(name).getValue());
+    } catch (IllegalArgumentException e) {
+      throw t.error("Unknown algorithm: " + t.getString(token));
+    }
+  }
+
+  private void salt() {
+    int token = next();
+    if (t.is(token, "-")) {
+      out.writeByte(0);
+      return;
+    }
+    int lengthOffset = out.length();
+    out.writeByte(0);
+    writeHex(token, token + 1);
+    int length = out.length() - lengthOffset - 1;
+    if (length > 0xFF) {
+      throw t.error("Salt too long");
+    }
+    out.setByte(lengthOffset, length);
+  }
+
+  /**
+   * Signature time in YYYYMMDDHHmmSS format (UTC) or as number of seconds since epoch.
+   */
+  private void time() {
+    int token = next();
+    if (t.length(token) != 14) {
+      out.writeInt(number(token, 0xFFFFFFFFL));
+      return;
+    }
+    byte[] d = t.data();
+    int s = t.start(token);
+    number(token, Long.MAX_VALUE);
+    try {
+      LocalDateTime time = LocalDateTime.of(digits(d, s, 4), digits(d, s + 4, 2),
+          digits(d, s + 6, 2), digits(d, s + 8, 2), digits(d, s + 10, 2), digits(d, s + 12, 2));
+      out.writeInt(time.toEpochSecond(ZoneOffset.UTC));
+    } catch (DateTimeException e) {
+      throw t.error("Invalid time: " + t.getString(token));
+    }
+  }
+
+  private static int digits(byte[] d, int offset, int len) {
+    int v = 0;
+    for (int j = offset; j < offset + len; j++) {
+      v = v * 10 + (d[j] - '0');
+    }
+    return v;
+  }
+
+  private void ipv4() {
+    int token = next();
+    byte[] d = t.data();
+    int octets = 0;
+    int value = -1;
+    for (int j = t.start(token); j <= t.end(token); j++) {
+      int c = j < t.end(token) ? d[j] : '.';
+      if (c == '.') {
+        if (value < 0 || ++octets > 4) {
+          throw t.error("Invalid IPv4 address: " + t.getString(token));
+        }
+        out.writeByte(value);
+        value = -1;
+      } else if (isDigit(c)) {
+        value = (value < 0 ? 0 : value * 10) + (c - '0');
+        if (value > 255) {
+          throw t.error("Invalid IPv4 address: " + t.getString(token));
+        }
+      } else {
+        throw t.error("Invalid IPv4 address: " + t.getString(token));
+      }
+    }
+    if (octets != 4) {
+      throw t.error("Invalid IPv4 address: " + t.getString(token));
+    }
+  }
+
+  private void ipv6() {
+    int token = next();
+    String text = t.getString(token);
+    if (text.indexOf(':') == -1 || !InetAddresses.isInetAddress(text)) {
+      throw t.error("Invalid IPv6 address: " + text);
+    }
+    InetAddress address = InetAddresses.forString(text);
+    byte[] bytes = address.getAddress();
+    if (bytes.length == 4) {
+      // IPv4-mapped address is returned as IPv4 address
+      out.writeInt(0);
+      out.writeInt(0);
+      out.writeInt(0xFFFF);
+    }
+    out.writeBytes(bytes);
+  }
+
+  private void loc() {
+    long latitude = locCoordinate('N', 'S');
+    long longitude = locCoordinate('E', 'W');
+    long altitude = Math.round(meters(next()) * 100) + LOC_ALTITUDE_BASE;
+    long size = i < t.count() ? Math.round(meters(next()) * 100) : LOC_DEFAULT_SIZE;
+    long hp = i < t.count() ? Math.round(meters(next()) * 100) : LOC_DEFAULT_HP;
+    long vp = i < t.count() ? Math.round(meters(next()) * 100) : LOC_DEFAULT_VP;
+    if (altitude < 0 || altitude > 0xFFFFFFFFL) {
+      throw t.error("LOC altitude out of range");
+    }
+    out.writeByte(0);
+    out.writeByte(locPrecision(size));
+    out.writeByte(locPrecision(hp));
+    out.writeByte(locPrecision(vp));
+    out.writeInt(latitude);
+    out.writeInt(longitude);
+    out.writeInt(altitude);
+  }
+
+  private long locCoordinate(char positive, char negative) {
+    long degrees = number(next(), 180);
+    long minutes = 0;
+    double seconds = 0;
+    if (!isHemisphere(i, positive, negative)) {
+      minutes = number(next(), 59);
+      if (!isHemisphere(i, positive, negative)) {
+        seconds = decimal(next());
+      }
+    }
+    int token = next();
+    if (!isHemisphere(token, positive, negative)) {
+      throw t.error("Expected " + positive + " or " + negative);
+    }
+    long value = ((degrees * 60 + minutes) * 60) * 1000 + Math.round(seconds * 1000);
+    return t.is(token, String.valueOf(positive)) ? LOC_EQUATOR + value : LOC_EQUATOR - value;
+  }
+
+  private boolean isHemisphere(int token, char positive, char negative) {
+    return token < t.count()
+        && (t.is(token, String.valueOf(positive)) || t.is(token, String.valueOf(negative)));
+  }
+
+  private double meters(int token) {
+    String text = t.getString(token);
+    if (text.endsWith("m") || text.endsWith("M")) {
+      text = text.substring(0, text.length() - 1);
+    }
+    try {
+      return Double.parseDouble(text);
+    } catch (NumberFormatException e) {
+      throw t.error("Invalid distance: " + t.getString(token));
+    }
+  }
+
+  private double decimal(int token) {
+    try {
+      return Double.parseDouble(t.getString(token));
+    } catch (NumberFormatException e) {
+      throw t.error("Invalid number: " + t.getString(token));
+    }
+  }
+
+  /**
+   * RFC 1876 precision format, 4 bits mantissa and 4 bits power of 10 exponent.
+   */
+  private int locPrecision(long cm) {
+    int exponent = 0;
+    while (cm >= 10 && exponent < 9) {
+      cm /= 10;
+      exponent++;
+    }
+    if (cm > 9) {
+      throw t.error("LOC precision out of range");
+    }
+    return (int) (cm << 4 | exponent);
+  }
+
+  private void typeBitmap() {
+    int n = 0;
+    while (i < t.count()) {
+      if (n == types.length) {
+        types = Arrays.copyOf(types, n * 2);
+      }
+      types[n++] = typeOrFail(next());
+    }
+    Arrays.sort(types, 0, n);
+
+    int j = 0;
+    while (j < n) {
+      int window = types[j] >>> 8;
+      int windowStart = out.length();
+      out.writeByte(window);
+      out.writeByte(0);
+      int bitmapStart = out.length();
+      int bitmapLength = 0;
+      while (j < n && types[j] >>> 8 == window) {
+        int bit = types[j] & 0xFF;
+        int octet = bit >>> 3;
+        while (bitmapLength <= octet) {
+          out.writeByte(0);
+          bitmapLength++;
+        }
+        int offset = bitmapStart + octet;
+        out.setByte(offset, out.data()[offset] | (0x80 >>> (bit & 7)));
+        j++;
+      }
+      out.setByte(windowStart + 1, bitmapLength);
+    }
+  }
+
+  /**
+   * Write hex of all remaining tokens.
+   */
+  private void hex(boolean required) {
+    if (required && i == t.count()) {
+      throw t.error("Missing rdata field");
+    }
+    writeHex(i, t.count());
+    i = t.count();
+  }
+
+  private void writeHex(int from, int to) {
+    byte[] d = t.data();
+    int high = -1;
+    for (int token = from; token < to; token++) {
+      for (int j = t.start(token); j < t.end(token); j++) {
+        int v = Character.digit(d[j], 16);
+        if (v < 0) {
+          throw t.error("Invalid hex: " + t.getString(token));
+        }
+        if (high < 0) {
+          high = v;
+        } else {
+          out.writeByte(high << 4 | v);
+          high = -1;
+        }
+      }
+    }
+    if (high >= 0) {
+      throw t.error("Odd number of hex digits");
+    }
+  }
+
+  /**
+   * Write base64 of all remaining tokens.
+   */
+  private void base64() {
+    int length = concat(next(), t.count());
+    try {
+      ByteBuffer decoded = Base64.getDecoder().decode(ByteBuffer.wrap(scratch, 0, length));
+      out.writeBytes(decoded.array(), decoded.arrayOffset(), decoded.remaining());
+    } catch (IllegalArgumentException e) {
+      throw t.error("Invalid base64: " + e.getMessage());
+    }
+  }
+
+  private void base32hex() {
+    int token = next();
+    int length = concat(token, token + 1);
+    if (!base32hex.isInAlphabet(Arrays.copyOf(scratch, length), false)) {
+      throw t.error("Invalid base32hex: " + t.getString(token));
+    }
+    byte[] decoded = base32hex.decode(Arrays.copyOf(scratch, length));
+    if (decoded.length > 0xFF) {
+      throw t.error("Hash too long");
+    }
+    out.writeByte(decoded.length);
+    out.writeBytes(decoded);
+  }
+
+  private int concat(int from, int to) {
+    int length = 0;
+    for (int token = from; token < to; token++) {
+      int len = t.length(token);
+      if (length + len > scratch.length) {
+        scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, length + len));
+      }
+      System.arraycopy(t.data(), t.start(token), scratch, length, len);
+      length += len;
+    }
+    i = to;
+    return length;
+  }
+
+  /**
+   * Write the token with escape sequences decoded, without length byte.
+   * 
+   * @return the number of bytes written
+   */
+  private int string(int token) {
+    byte[] d = t.data();
+    int start = out.length();
+    int end = t.end(token);
+    for (int j = t.start(token); j < end; j++) {
+      int c = d[j] & 0xFF;
+      if (c == '\\') {
+        j = escape(d, j + 1, end);
+        c = escaped;
+      }
+      out.writeByte(c);
+    }
+    return out.length() - start;
+  }
+
+  /**
+   * Decode \X or \DDD escape, the index is the position after the backslash.
+   * 
+   * @return index of the last byte of the escape sequence
+   */
+  private int escape(byte[] d, int j, int end) {
+    if (j == end) {
+      throw t.error("Escape at end of field");
+    }
+    if (!isDigit(d[j])) {
+      escaped = d[j] & 0xFF;
+      return j;
+    }
+    if (j + 2 >= end || !isDigit(d[j + 1]) || !isDigit(d[j + 2])) {
+      throw t.error("Invalid \\DDD escape");
+    }
+    escaped = digits(d, j, 3);
+    if (escaped > 255) {
+      throw t.error("Invalid \\DDD escape");
+    }
+    return j + 2;
+  }
+
+  /**
+   * Write the name in token in wire format, without compression. Relative names are completed
+   * with the origin and "@" is the origin itself.
+   */
+  void writeName(int token) {
+    if (t.is(token, "@")) {
+      writeOrigin();
+      return;
+    }
+    byte[] d = t.data();
+    int end = t.end(token);
+    int j = t.start(token);
+    int nameStart = out.length();
+    if (end - j == 1 && d[j] == '.') {
+      out.writeByte(0);
+      return;
+    }
+
+    int labelStart = out.length();
+    out.writeByte(0);
+    int labelLength = 0;
+    boolean absolute = false;
+    for (; j < end; j++) {
+      int c = d[j] & 0xFF;
+      if (c == '.') {
+        if (labelLength == 0) {
+          throw t.error("Empty label in name: " + t.getString(token));
+        }
+        out.setByte(labelStart, labelLength);
+        if (j == end - 1) {
+          absolute = true;
+          break;
+        }
+        labelStart = out.length();
+        out.writeByte(0);
+        labelLength = 0;
+        continue;
+      }
+      if (c == '\\') {
+        j = escape(d, j + 1, end);
+        c = escaped;
+      }
+      if (++labelLength > MAX_LABEL_LENGTH) {
+        throw t.error("Label too long in name: " + t.getString(token));
+      }
+      out.writeByte(c);
+    }
+
+    if (absolute) {
+      out.writeByte(0);
+    } else {
+      if (labelLength == 0) {
+        throw t.error("Empty label in name: " + t.getString(token));
+      }
+      out.setByte(labelStart, labelLength);
+      writeOrigin();
+    }
+    if (out.length() - nameStart > MAX_NAME_LENGTH) {
+      throw t.error("Name too long: " + t.getString(token));
+    }
+  }
+
+  private void writeOrigin() {
+    if (origin == null) {
+      throw t.error("Relative name used without origin");
+    }
+    out.writeBytes(origin);
+  }
+
+  /**
+   * Parse a decimal number.
+   */
+  long number(int token, long max) {
+    byte[] d = t.data();
+    if (t.length(token) == 0 || t.isQuoted(token)) {
+      throw t.error("Invalid number: " + t.getString(token));
+    }
+    long value = 0;
+    for (int j = t.start(token); j < t.end(token); j++) {
+      if (!isDigit(d[j])) {
+        throw t.error("Invalid number: " + t.getString(token));
+      }
+      value = value * 10 + (d[j] - '0');
+      if (value > max) {
+        throw t.error("Number out of range: " + t.getString(token));
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Parse a TTL, as number of seconds or using BIND units (e.g. 1w2d3h4m5s).
+   */
+  long ttl(int token) {
+    byte[] d = t.data();
+    if (t.length(token) == 0 || !isDigit(d[t.start(token)])) {
+      throw t.error("Invalid TTL: " + t.getString(token));
+    }
+    long total = 0;
+    long value = 0;
+    boolean digits = false;
+    for (int j = t.start(token); j < t.end(token); j++) {
+      int c = d[j];
+      if (isDigit(c)) {
+        value = value * 10 + (c - '0');
+        digits = true;
+        if (value > 0xFFFFFFFFL) {
+          throw t.error("TTL out of range: " + t.getString(token));
+        }
+        continue;
+      }
+      if (!digits) {
+        throw t.error("Invalid TTL: " + t.getString(token));
+      }
+      total += value * ttlUnit(c, token);
+      value = 0;
+      digits = false;
+    }
+    total += value;
+    if (total > 0xFFFFFFFFL) {
+      throw t.error("TTL out of range: " + t.getString(token));
+    }
+    return total;
+  }
+
+  private long ttlUnit(int c, int token) {
+    switch (c | 0x20) {
+      case 's':
+        return 1;
+      case 'm':
+        return 60;
+      case 'h':
+        return 3600;
+      case 'd':
+        return 86400;
+      case 'w':
+        return 604800;
+      default:
+        throw t.error("Invalid TTL unit: " + t.getString(token));
+    }
+  }
+
+  boolean isTtl(int token) {
+    return !t.isQuoted(token) && isDigit(t.data()[t.start(token)]);
+  }
+
+  /**
+   * @return the class value for a mnemonic or CLASSnnn token, or -1 if the token is not a class
+   */
+  int classz(int token) {
+    if (t.isQuoted(token)) {
+      return -1;
+    }
+    if (t.is(token, "IN")) {
+      return ResourceRecordClass.IN.getValue();
+    }
+    if (t.length(token) > 5 && t.startsWith(token, "CLASS")) {
+      return unknownValue(token, 5);
+    }
+    ResourceRecordClass classz = ResourceRecordClass.fromString(t.getString(token));
+    return classz != null && classz.getValue() > 0 ? classz.getValue() : -1;
+  }
+
+  /**
+   * @return the type value for a mnemonic or TYPEnnn token, or -1 if the token is not a type
+   */
+  int type(int token) {
+    if (t.isQuoted(token)) {
+      return -1;
+    }
+    if (t.length(token) > 4 && t.startsWith(token, "TYPE")) {
+      return unknownValue(token, 4);
+    }
+    ResourceRecordType type = ResourceRecordType.fromString(t.getString(token));
+    return type != null && type.getValue() >= 0 ? type.getValue() : -1;
+  }
+
+  private int typeOrFail(int token) {
+    int type = type(token);
+    if (type == -1) {
+      throw t.error("Unknown type: " + t.getString(token));
+    }
+    return type;
+  }
+
+  private int unknownValue(int token, int prefix) {
+    byte[] d = t.data();
+    int value = 0;
+    for (int j = t.start(token) + prefix; j < t.end(token); j++) {
+      if (!isDigit(d[j])) {
+        return -1;
+      }
+      value = value * 10 + (d[j] - '0');
+      if (value > 0xFFFF) {
+        throw t.error("Value out of range: " + t.getString(token));
+      }
+    }
+    return value;
+  }
+
+  private static boolean isDigit(int c) {
+    return c >= '0' && c <= '9';
+  }
+}
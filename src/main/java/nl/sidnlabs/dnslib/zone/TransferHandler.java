@@ -0,0 +1,73 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.zone;
+
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.SOAResourceRecord;
+
+/**
+ * Callback for the RRs of a zone transfer read by {@link TransferReader}.
+ * 
+ * For a full transfer (AXFR) all RRs of the zone, including the SOA record, are passed to
+ * {@link #add(ResourceRecord)}. For an incremental transfer (IXFR, RFC 1995) every difference
+ * sequence starts with {@link #startDelete(SOAResourceRecord)}, followed by the deleted RRs, then
+ * {@link #startAdd(SOAResourceRecord)}, followed by the added RRs.
+ */
+public interface TransferHandler {
+
+  /**
+   * Called when the type of the transfer is known.
+   * 
+   * @param soa the SOA record of the new version of the zone
+   * @param incremental true for an incremental transfer
+   */
+  default void start(SOAResourceRecord soa, boolean incremental) {}
+
+  /**
+   * Start of the deleted RRs of a difference sequence.
+   * 
+   * @param from SOA record of the version the RRs are deleted from
+   */
+  default void startDelete(SOAResourceRecord from) {}
+
+  /**
+   * Start of the added RRs of a difference sequence.
+   * 
+   * @param to SOA record of the version the RRs are added to
+   */
+  default void startAdd(SOAResourceRecord to) {}
+
+  /**
+   * A RR deleted from the zone, only used for incremental transfers.
+   */
+  default void delete(ResourceRecord rr) {}
+
+  /**
+   * A RR of the zone for a full transfer, or a RR added to the zone for an incremental transfer.
+   */
+  void add(ResourceRecord rr);
+
+  /**
+   * Called after the last RR of the transfer.
+   * 
+   * @param soa the SOA record of the new version of the zone
+   */
+  default void end(SOAResourceRecord soa) {}
+}
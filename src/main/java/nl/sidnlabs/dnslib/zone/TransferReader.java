@@ -0,0 +1,214 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.zone;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import lombok.Getter;
+import nl.sidnlabs.dnslib.exception.DecodeFailureType;
+import nl.sidnlabs.dnslib.exception.DnsDecodeException;
+import nl.sidnlabs.dnslib.message.MessageIndex;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.SOAResourceRecord;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.MessageSection;
+import nl.sidnlabs.dnslib.types.RcodeType;
+
+/**
+ * Reads the response messages of a zone transfer (AXFR or IXFR) from a TCP stream, where every
+ * message is prefixed with its 2 byte length (RFC 7766). The RRs of the answer sections are
+ * decoded one at a time and passed to a {@link TransferHandler}, no Message objects are created
+ * and a single 64KB buffer is used for all messages, so the memory use does not depend on the size
+ * of the zone.
+ * 
+ * The transfer ends with the SOA record that matches the serial of the first SOA record. A response
+ * to an IXFR query can be a full transfer (second RR is not a SOA record), an incremental transfer
+ * (second RR is a SOA record) or a single SOA record when the zone has not changed, see
+ * {@link #read(TransferHandler, long)}.
+ * 
+ * Not thread safe.
+ */
+@Getter
+public class TransferReader {
+
+  private enum State {
+    FIRST, FULL, DELETE, ADD
+  }
+
+  private static final int TYPE_SOA = 6;
+
+  @Getter(lombok.AccessLevel.NONE)
+  private final DataInputStream in;
+  @Getter(lombok.AccessLevel.NONE)
+  private final byte[] message = new byte[65535];
+  @Getter(lombok.AccessLevel.NONE)
+  private final NetworkData buffer = new NetworkData(message);
+  @Getter(lombok.AccessLevel.NONE)
+  private final MessageIndex index = new MessageIndex();
+
+  private int messages;
+  private long records;
+  private boolean incremental;
+
+  public TransferReader(InputStream in) {
+    this.in = new DataInputStream(in);
+  }
+
+  /**
+   * Read all messages of the transfer, the stream is not closed and is positioned after the last
+   * message of the transfer.
+   * 
+   * @param handler handler for the RRs
+   * @throws IOException when reading from the stream fails
+   * @throws DnsDecodeException when the stream ends before the transfer is complete, a message is
+   *         malformed or a message has an error rcode
+   */
+  public void read(TransferHandler handler) throws IOException {
+    read(handler, -1);
+  }
+
+  /**
+   * Read the response to an IXFR query. When the serial of the first SOA record equals the serial
+   * of the query, the zone has not changed and the transfer ends after this SOA record.
+   * 
+   * @param handler handler for the RRs
+   * @param serial the serial of the SOA record in the IXFR query
+   * @throws IOException when reading from the stream fails
+   * @throws DnsDecodeException when the stream ends before the transfer is complete, a message is
+   *         malformed or a message has an error rcode
+   */
+  public void read(TransferHandler handler, long serial) throws IOException {
+    State state = null;
+    SOAResourceRecord first = null;
+
+    while (true) {
+      int length = readMessage();
+      messages++;
+      if (!index.build(buffer.update(message, 0, length))) {
+        throw new DnsDecodeException(index.getFailure(),
+            "Malformed transfer message " + messages + " at offset " + index.getFailureOffset());
+      }
+      int rcode = message[3] & 0x0F;
+      if (rcode != 0) {
+        throw new DnsDecodeException("Transfer failed with rcode " + RcodeType.fromValue(rcode));
+      }
+
+      int count = index.getCount(MessageSection.ANSWER);
+      for (int i = 0; i < count; i++) {
+        if (state == State.FIRST && first == null) {
+          throw new DnsDecodeException("RR found after the end of the transfer");
+        }
+        boolean soa = index.getType(buffer, MessageSection.ANSWER, i) == TYPE_SOA;
+        ResourceRecord rr = index.decodeRecord(buffer, MessageSection.ANSWER, i);
+        records++;
+
+        if (state == null) {
+          if (!soa) {
+            throw new DnsDecodeException("Transfer does not start with a SOA record");
+          }
+          first = (SOAResourceRecord) rr;
+          state = State.FIRST;
+          if (first.getSerial() == serial) {
+            incremental = true;
+            handler.start(first, true);
+            handler.end(first);
+            first = null;
+          }
+          continue;
+        }
+
+        switch (state) {
+          case FIRST:
+            incremental = soa && !isLast(rr, first);
+            handler.start(first, incremental);
+            if (incremental) {
+              handler.startDelete((SOAResourceRecord) rr);
+              state = State.DELETE;
+              break;
+            }
+            handler.add(first);
+            if (soa) {
+              // zone without other RRs or an IXFR response for an unchanged zone
+              handler.end(first);
+              first = null;
+              break;
+            }
+            handler.add(rr);
+            state = State.FULL;
+            break;
+
+          case FULL:
+            if (soa) {
+              handler.end(first);
+              first = null;
+              state = State.FIRST;
+            } else {
+              handler.add(rr);
+            }
+            break;
+
+          case DELETE:
+            if (soa) {
+              handler.startAdd((SOAResourceRecord) rr);
+              state = State.ADD;
+            } else {
+              handler.delete(rr);
+            }
+            break;
+
+          default:
+            if (!soa) {
+              handler.add(rr);
+            } else if (isLast(rr, first)) {
+              handler.end(first);
+              first = null;
+              state = State.FIRST;
+            } else {
+              handler.startDelete((SOAResourceRecord) rr);
+              state = State.DELETE;
+            }
+        }
+      }
+
+      if (state == State.FIRST && first == null) {
+        return;
+      }
+    }
+  }
+
+  private static boolean isLast(ResourceRecord rr, SOAResourceRecord first) {
+    return ((SOAResourceRecord) rr).getSerial() == first.getSerial();
+  }
+
+  private int readMessage() throws IOException {
+    int length;
+    try {
+      length = in.readUnsignedShort();
+      in.readFully(message, 0, length);
+    } catch (EOFException e) {
+      throw new DnsDecodeException(DecodeFailureType.TRUNCATED,
+          "Stream ended before the end of the transfer, after " + messages + " messages");
+    }
+    return length;
+  }
+}
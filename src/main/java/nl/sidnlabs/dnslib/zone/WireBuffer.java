@@ -0,0 +1,96 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.zone;
+
+import java.util.Arrays;
+
+/**
+ * Growable buffer for creating RR wire data, reused for every RR to prevent allocating a new
+ * buffer for each record.
+ */
+class WireBuffer {
+
+  private byte[] data = new byte[512];
+  private int length;
+
+  void reset() {
+    length = 0;
+  }
+
+  int length() {
+    return length;
+  }
+
+  byte[] data() {
+    return data;
+  }
+
+  void setLength(int length) {
+    this.length = length;
+  }
+
+  void ensure(int n) {
+    if (length + n > data.length) {
+      data = Arrays.copyOf(data, Math.max(data.length * 2, length + n));
+    }
+  }
+
+  void writeByte(int v) {
+    ensure(1);
+    data[length++] = (byte) v;
+  }
+
+  void writeChar(int v) {
+    ensure(2);
+    data[length++] = (byte) (v >>> 8);
+    data[length++] = (byte) v;
+  }
+
+  void writeInt(long v) {
+    ensure(4);
+    data[length++] = (byte) (v >>> 24);
+    data[length++] = (byte) (v >>> 16);
+    data[length++] = (byte) (v >>> 8);
+    data[length++] = (byte) v;
+  }
+
+  void writeBytes(byte[] src) {
+    writeBytes(src, 0, src.length);
+  }
+
+  void writeBytes(byte[] src, int offset, int len) {
+    ensure(len);
+    System.arraycopy(src, offset, data, length, len);
+    length += len;
+  }
+
+  void setChar(int offset, int v) {
+    data[offset] = (byte) (v >>> 8);
+    data[offset + 1] = (byte) v;
+  }
+
+  void setByte(int offset, int v) {
+    data[offset] = (byte) v;
+  }
+
+  byte[] toByteArray(int offset) {
+    return Arrays.copyOfRange(data, offset, length);
+  }
+}
@@ -0,0 +1,433 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.zone;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import nl.sidnlabs.dnslib.message.RRset;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.SOAResourceRecord;
+import nl.sidnlabs.dnslib.message.records.dnssec.RRSIGResourceRecord;
+import nl.sidnlabs.dnslib.message.util.CanonicalForm;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+
+/**
+ * In-memory zone, the RRsets are stored in a tree of {@link ZoneNode}s with one level per label,
+ * starting at the apex. Lookups walk the tree from the rightmost label of the name to the left,
+ * comparing the labels in place without splitting the name, so a lookup takes O(labels) steps.
+ * 
+ * Lookups can be done from multiple threads at the same time, as long as the zone is not
+ * modified.
+ */
+public class Zone {
+
+  private static final byte[] WILDCARD = new byte[] {'*'};
+
+  private final String origin;
+  // origin without trailing dot, empty for the root zone
+  private final String originLabels;
+  private final ZoneNode apex;
+  private int nodes = 1;
+  private long records;
+
+  /**
+   * @param origin name of the zone apex
+   */
+  public Zone(String origin) {
+    String name = origin.endsWith(".") ? origin : origin + ".";
+    this.origin = name.toLowerCase();
+    this.originLabels = this.origin.substring(0, this.origin.length() - 1);
+    this.apex = new ZoneNode(this.origin);
+  }
+
+  /**
+   * Load all RRs from a zone file.
+   */
+  public static Zone load(Path file, String origin) {
+    Zone zone = new Zone(origin);
+    try (ZoneParser parser = new ZoneParser(file, origin)) {
+      parser.parse(zone::add);
+    }
+    return zone;
+  }
+
+  public String getOrigin() {
+    return origin;
+  }
+
+  public ZoneNode getApex() {
+    return apex;
+  }
+
+  public SOAResourceRecord getSoa() {
+    RRset soa = apex.getRRset(ResourceRecordType.SOA);
+    return soa == null || soa.size() == 0 ? null : (SOAResourceRecord) soa.getAll().get(0);
+  }
+
+  /**
+   * @return number of names in the zone, including empty non-terminals
+   */
+  public int getNodeCount() {
+    return nodes;
+  }
+
+  /**
+   * @return number of RRs in the zone
+   */
+  public long getRecordCount() {
+    return records;
+  }
+
+  /**
+   * Add the RR to the RRset for its name and type, the node for the name and empty non-terminals
+   * are created when they do not exist yet.
+   * 
+   * @throws IllegalArgumentException when the name of the RR is not in the zone
+   */
+  public void add(ResourceRecord rr) {
+    ZoneNode node = apex;
+    String name = rr.getName();
+    int pos = labelsStart(name);
+    if (pos == -1) {
+      throw new IllegalArgumentException("Name not in zone " + origin + ": " + name);
+    }
+    while (pos > 0) {
+      int start = labelStart(name, pos);
+      ZoneNode child = child(node, name, start, pos);
+      if (child == null) {
+        child = node.addChild(toLabel(name, start, pos));
+        nodes++;
+      }
+      node = child;
+      pos = start - 1;
+    }
+
+    RRset rrset = node.getRRset(rr.getType());
+    if (rrset == null) {
+      rrset = RRset.createAs(rr);
+      node.addRRset(rrset);
+    } else {
+      rrset.add(rr);
+    }
+    if (rr instanceof RRSIGResourceRecord) {
+      node.addSignature((RRSIGResourceRecord) rr);
+    }
+    records++;
+  }
+
+  public void add(RRset rrset) {
+    for (ResourceRecord rr : rrset.getAll()) {
+      add(rr);
+    }
+  }
+
+  /**
+   * Remove the RR with the same owner, class, type and rdata, ignoring the TTL and the case of
+   * names. Nodes without RRsets and children are removed from the tree.
+   * 
+   * @return true if the RR was found and removed
+   */
+  public boolean remove(ResourceRecord rr) {
+    ZoneNode node = find(rr.getName());
+    RRset rrset = node == null ? null : node.getRRset(rr.getType());
+    int index = rrset == null ? -1 : indexOf(rrset.getAll(), rr);
+    if (index == -1) {
+      return false;
+    }
+    ResourceRecord removed = rrset.getAll().remove(index);
+    records--;
+    if (removed instanceof RRSIGResourceRecord) {
+      node.removeSignature((RRSIGResourceRecord) removed);
+    }
+    if (rrset.size() == 0) {
+      node.removeRRset(rrset);
+    }
+    while (node != apex && node.isEmpty() && node.getChildCount() == 0) {
+      node.getParent().removeChild(node);
+      nodes--;
+      node = node.getParent();
+    }
+    return true;
+  }
+
+  /**
+   * Find the RR in the RRs of an RRset, comparing the rdata in canonical form (RFC 4034 section
+   * 6.2) because the equals method of most record types does not compare the rdata.
+   * 
+   * @return index of the RR in rrs or -1 if not found
+   */
+  static int indexOf(List<ResourceRecord> rrs, ResourceRecord rr) {
+    for (int i = 0; i < rrs.size(); i++) {
+      if (rrs.get(i) == rr) {
+        return i;
+      }
+    }
+    byte[] rdata = CanonicalForm.rdata(rr);
+    for (int i = 0; i < rrs.size(); i++) {
+      ResourceRecord other = rrs.get(i);
+      if (other.getClassz() == rr.getClassz()
+          && Arrays.equals(rdata, CanonicalForm.rdata(other))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Find the node for the name, without taking zone cuts, DNAMEs or wildcards into account. Used
+   * to find e.g. glue below a zone cut.
+   * 
+   * @return the node or null if the name does not exist in the zone
+   */
+  public ZoneNode find(String name) {
+    ZoneNode node = apex;
+    int pos = labelsStart(name);
+    if (pos == -1) {
+      return null;
+    }
+    while (pos > 0 && node != null) {
+      int start = labelStart(name, pos);
+      node = child(node, name, start, pos);
+      pos = start - 1;
+    }
+    return node;
+  }
+
+  public RRset getRRset(String name, ResourceRecordType type) {
+    ZoneNode node = find(name);
+    return node == null ? null : node.getRRset(type);
+  }
+
+  /**
+   * Lookup a name as an authoritative server does (RFC 1034 section 4.3.2), stopping at zone cuts
+   * and DNAMEs and using a wildcard when the name does not exist.
+   */
+  public ZoneLookup lookup(String name) {
+    ZoneLookup result = new ZoneLookup();
+    lookup(name, result);
+    return result;
+  }
+
+  /**
+   * Lookup a name as an authoritative server does (RFC 1034 section 4.3.2), stopping at zone cuts
+   * and DNAMEs and using a wildcard when the name does not exist.
+   * 
+   * @param name name to lookup, case is ignored
+   * @param result object for the result of the lookup
+   */
+  public void lookup(String name, ZoneLookup result) {
+    int pos = labelsStart(name);
+    if (pos == -1) {
+      result.set(ZoneLookup.Match.NOT_IN_ZONE, null, null, false);
+      return;
+    }
+    ZoneNode node = apex;
+    while (pos > 0) {
+      if (node != apex && node.hasRRset(ResourceRecordType.NS)) {
+        result.set(ZoneLookup.Match.DELEGATION, node, node, false);
+        return;
+      }
+      if (node.hasRRset(ResourceRecordType.DNAME)) {
+        result.set(ZoneLookup.Match.DNAME, node, node, false);
+        return;
+      }
+      int start = labelStart(name, pos);
+      ZoneNode child = child(node, name, start, pos);
+      if (child == null) {
+        ZoneNode wildcard = node.getChild(WILDCARD);
+        if (wildcard != null) {
+          result.set(ZoneLookup.Match.WILDCARD, wildcard, node, false);
+        } else {
+          result.set(ZoneLookup.Match.NXDOMAIN, null, node, false);
+        }
+        return;
+      }
+      node = child;
+      pos = start - 1;
+    }
+
+    if (node != apex && node.hasRRset(ResourceRecordType.NS)) {
+      result.set(ZoneLookup.Match.DELEGATION, node, node, true);
+    } else {
+      result.set(ZoneLookup.Match.EXACT, node, node, true);
+    }
+  }
+
+  /**
+   * Find the node with an RRset of the type that has the same name as or comes before the name in
+   * canonical order, e.g. the NSEC record that matches or covers a name. The search wraps around
+   * to the last node with the type when no node before the name has the type, as is done for the
+   * NSEC3 hash order.
+   * 
+   * @return the node or null if no node in the zone has the type
+   */
+  public ZoneNode findCovering(String name, ResourceRecordType type) {
+    int pos = labelsStart(name);
+    if (pos == -1) {
+      return null;
+    }
+    ZoneNode node = apex;
+    while (pos > 0) {
+      int start = labelStart(name, pos);
+      ZoneNode child = child(node, name, start, pos);
+      if (child == null) {
+        ZoneNode lower = lowerChild(node, name, start, pos);
+        node = lower != null ? lower.last() : node;
+        break;
+      }
+      node = child;
+      pos = start - 1;
+    }
+
+    for (ZoneNode n = node; n != null; n = n.previous()) {
+      if (n.hasRRset(type)) {
+        return n;
+      }
+    }
+    // wrap around, start at the last node of the zone
+    for (ZoneNode n = apex.last(); n != node && n != null; n = n.previous()) {
+      if (n.hasRRset(type)) {
+        return n;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Visit all RRsets in canonical order (RFC 4034 section 6.1), including occluded data below
+   * zone cuts.
+   */
+  public void forEach(Consumer<RRset> consumer) {
+    visit(apex, consumer);
+  }
+
+  static void visit(ZoneNode node, Consumer<RRset> consumer) {
+    for (RRset rrset : sorted(node)) {
+      consumer.accept(rrset);
+    }
+    for (ZoneNode child : node.getChildren()) {
+      visit(child, consumer);
+    }
+  }
+
+  /**
+   * @return the RRsets of the node itself, sorted by class and type
+   */
+  static RRset[] sorted(ZoneNode node) {
+    RRset[] rrsets = node.getRRsets().clone();
+    Arrays.sort(rrsets, ZoneWriter.RRSET_ORDER);
+    return rrsets;
+  }
+
+  /**
+   * @return index in name of the end of the label left of the origin, 0 if the name is the
+   *         origin, -1 if the name is not in the zone
+   */
+  private int labelsStart(String name) {
+    int end = name.length();
+    if (end > 0 && name.charAt(end - 1) == '.' && !isEscaped(name, end - 1)) {
+      end--;
+    }
+    int originLength = originLabels.length();
+    if (originLength == 0) {
+      return end;
+    }
+    int pos = end - originLength;
+    if (pos < 0 || !name.regionMatches(true, pos, originLabels, 0, originLength)) {
+      return -1;
+    }
+    if (pos == 0) {
+      return 0;
+    }
+    return name.charAt(pos - 1) == '.' && !isEscaped(name, pos - 1) ? pos - 1 : -1;
+  }
+
+  /**
+   * @return index in name of the start of the label that ends at end (exclusive), a dot escaped
+   *         with a backslash is part of the label
+   */
+  static int labelStart(String name, int end) {
+    int dot = name.lastIndexOf('.', end - 1);
+    while (dot > 0 && isEscaped(name, dot)) {
+      dot = name.lastIndexOf('.', dot - 1);
+    }
+    return dot + 1;
+  }
+
+  /**
+   * @return true if the char at index i is preceded by an odd number of backslashes
+   */
+  private static boolean isEscaped(String name, int i) {
+    int backslashes = 0;
+    while (i - backslashes > 0 && name.charAt(i - backslashes - 1) == '\\') {
+      backslashes++;
+    }
+    return (backslashes & 1) == 1;
+  }
+
+  private static boolean hasEscape(String name, int start, int end) {
+    int i = name.indexOf('\\', start);
+    return i != -1 && i < end;
+  }
+
+  /**
+   * Find the child for the label in name, labels with escapes are converted to bytes first so
+   * the common case of a label without escapes is compared in place.
+   */
+  private static ZoneNode child(ZoneNode node, String name, int start, int end) {
+    return hasEscape(name, start, end) ? node.getChild(toLabel(name, start, end))
+        : node.getChild(name, start, end);
+  }
+
+  private static ZoneNode lowerChild(ZoneNode node, String name, int start, int end) {
+    return hasEscape(name, start, end) ? node.lowerChild(toLabel(name, start, end))
+        : node.lowerChild(name, start, end);
+  }
+
+  /**
+   * @return the label in name between start (inclusive) and end (exclusive) as lowercase bytes,
+   *         with escapes (RFC 1035 section 5.1) replaced by the escaped byte
+   */
+  private static byte[] toLabel(String name, int start, int end) {
+    byte[] label = new byte[end - start];
+    int length = 0;
+    for (int i = start; i < end; i++) {
+      int c = name.charAt(i);
+      if (c == '\\' && i + 1 < end) {
+        if (i + 3 < end && isDigit(name.charAt(i + 1)) && isDigit(name.charAt(i + 2))
+            && isDigit(name.charAt(i + 3))) {
+          c = Integer.parseInt(name.substring(i + 1, i + 4));
+          i += 3;
+        } else {
+          c = name.charAt(++i);
+        }
+      }
+      label[length++] = (byte) ZoneNode.lowerCase((char) c);
+    }
+    return length == label.length ? label : Arrays.copyOf(label, length);
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.zone;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.SOAResourceRecord;
+
+/**
+ * Differences between 2 versions of a zone, as a single RFC 1995 difference sequence: the RRs
+ * deleted from the old version followed by the RRs added to the new version. The SOA records are
+ * not part of the deleted and added RRs. A changed TTL is a delete and an add of the RRs of the
+ * RRset.
+ */
+@Getter
+public class ZoneDelta {
+
+  private final SOAResourceRecord from;
+  private final SOAResourceRecord to;
+  private final List<ResourceRecord> deleted;
+  private final List<ResourceRecord> added;
+
+  public ZoneDelta(SOAResourceRecord from, SOAResourceRecord to) {
+    this(from, to, new ArrayList<>(), new ArrayList<>());
+  }
+
+  ZoneDelta(SOAResourceRecord from, SOAResourceRecord to, List<ResourceRecord> deleted,
+      List<ResourceRecord> added) {
+    this.from = from;
+    this.to = to;
+    this.deleted = deleted;
+    this.added = added;
+  }
+
+  /**
+   * @return true if no RRs are added or deleted, the SOA records may still be different
+   */
+  public boolean isEmpty() {
+    return deleted.isEmpty() && added.isEmpty();
+  }
+
+  /**
+   * Pass the delta to a handler in the same way as {@link TransferReader} does for an IXFR with a
+   * single difference sequence.
+   */
+  public void replay(TransferHandler handler) {
+    handler.start(to, true);
+    handler.startDelete(from);
+    deleted.forEach(handler::delete);
+    handler.startAdd(to);
+    added.forEach(handler::add);
+    handler.end(to);
+  }
+
+  /**
+   * Apply the delta to a zone with the old version, after this the zone contains the new version.
+   * Deleted RRs are matched on their rdata (see {@link Zone#remove(ResourceRecord)}), so the delta
+   * can also be applied to a zone that does not share the record instances, e.g. for an IXFR.
+   */
+  public void apply(Zone zone) {
+    deleted.forEach(zone::remove);
+    if (from != null) {
+      zone.remove(from);
+    }
+    if (to != null) {
+      zone.add(to);
+    }
+    added.forEach(zone::add);
+  }
+
+  @Override
+  public String toString() {
+    return "ZoneDelta [from=" + (from == null ? null : from.getSerial()) + ", to="
+        + (to == null ? null : to.getSerial()) + ", deleted=" + deleted.size() + ", added="
+        + added.size() + "]";
+  }
+}
@@ -0,0 +1,266 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.zone;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import nl.sidnlabs.dnslib.message.RRset;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.SOAResourceRecord;
+import nl.sidnlabs.dnslib.message.util.CanonicalForm;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+
+/**
+ * Computes the differences between 2 versions of a zone as a {@link ZoneDelta}.
+ * 
+ * Both versions are merged in canonical order (RFC 4034 section 6.1), RRsets with the same owner,
+ * type and class are compared using the rdata in wire format. For sorted streams only the current
+ * RRset of each version and the differences are kept in memory. In-memory zones are split in
+ * ranges of the children of the apex, which are compared in parallel.
+ */
+public final class ZoneDiff {
+
+  // number of ranges per available processor, smaller ranges balance the work better
+  private static final int RANGES_PER_PROCESSOR = 4;
+
+  private ZoneDiff() {}
+
+  /**
+   * Compare 2 versions of an in-memory zone, using the common fork/join pool.
+   * 
+   * @param from old version
+   * @param to new version
+   * @return the differences
+   */
+  public static ZoneDelta diff(Zone from, Zone to) {
+    ZoneDelta delta = new ZoneDelta(from.getSoa(), to.getSoa());
+    merge(Arrays.asList(Zone.sorted(from.getApex())).iterator(),
+        Arrays.asList(Zone.sorted(to.getApex())).iterator(), delta);
+
+    // pairs of apex children with the same label, one of both can be null
+    List<ZoneNode[]> pairs = align(from.getApex().getChildren(), to.getApex().getChildren());
+    int ranges = Math.min(pairs.size(),
+        Runtime.getRuntime().availableProcessors() * RANGES_PER_PROCESSOR);
+    List<ZoneDelta> parts = IntStream
+        .range(0, ranges)
+        .parallel()
+        .mapToObj(r -> diffRange(pairs, pairs.size() * r / ranges, pairs.size() * (r + 1) / ranges))
+        .collect(Collectors.toList());
+    // the ranges are in canonical order, so the result is the same as a sequential merge
+    for (ZoneDelta part : parts) {
+      delta.getDeleted().addAll(part.getDeleted());
+      delta.getAdded().addAll(part.getAdded());
+    }
+    return delta;
+  }
+
+  /**
+   * Compare 2 versions of a zone, both as RRsets in canonical order, e.g. read from files created
+   * by a {@link ZoneWriter} with canonical ordering. The SOA records are taken from the streams.
+   * 
+   * @param from old version
+   * @param to new version
+   * @return the differences
+   */
+  public static ZoneDelta diff(Iterator<RRset> from, Iterator<RRset> to) {
+    ZoneDelta delta = new ZoneDelta(null, null);
+    SOAResourceRecord[] soa = new SOAResourceRecord[2];
+    merge(from, to, delta, soa);
+    return new ZoneDelta(soa[0], soa[1], delta.getDeleted(), delta.getAdded());
+  }
+
+  private static ZoneDelta diffRange(List<ZoneNode[]> pairs, int start, int end) {
+    List<RRset> from = new ArrayList<>();
+    List<RRset> to = new ArrayList<>();
+    for (ZoneNode[] pair : pairs.subList(start, end)) {
+      if (pair[0] != null) {
+        Zone.visit(pair[0], from::add);
+      }
+      if (pair[1] != null) {
+        Zone.visit(pair[1], to::add);
+      }
+    }
+    ZoneDelta delta = new ZoneDelta(null, null);
+    merge(from.iterator(), to.iterator(), delta);
+    return delta;
+  }
+
+  private static List<ZoneNode[]> align(ZoneNode[] from, ZoneNode[] to) {
+    List<ZoneNode[]> pairs = new ArrayList<>(Math.max(from.length, to.length));
+    int i = 0;
+    int j = 0;
+    while (i < from.length || j < to.length) {
+      int c = i == from.length ? 1
+          : j == to.length ? -1 : ZoneWriter.compareNames(from[i].getName(), to[j].getName());
+      pairs.add(new ZoneNode[] {c <= 0 ? from[i] : null, c >= 0 ? to[j] : null});
+      if (c <= 0) {
+        i++;
+      }
+      if (c >= 0) {
+        j++;
+      }
+    }
+    return pairs;
+  }
+
+  private static void merge(Iterator<RRset> from, Iterator<RRset> to, ZoneDelta delta) {
+    merge(from, to, delta, null);
+  }
+
+  /**
+   * Merge 2 sorted sequences of RRsets.
+   * 
+   * @param soa array for the old and new SOA record, null if SOA records must only be skipped
+   */
+  private static void merge(Iterator<RRset> from, Iterator<RRset> to, ZoneDelta delta,
+      SOAResourceRecord[] soa) {
+    RRset a = next(from, soa, 0);
+    RRset b = next(to, soa, 1);
+    while (a != null || b != null) {
+      int c = a == null ? 1 : b == null ? -1 : ZoneWriter.RRSET_ORDER.compare(a, b);
+      if (c < 0) {
+        delta.getDeleted().addAll(a.getAll());
+        a = next(from, soa, 0);
+      } else if (c > 0) {
+        delta.getAdded().addAll(b.getAll());
+        b = next(to, soa, 1);
+      } else {
+        compareRecords(a, b, delta);
+        a = next(from, soa, 0);
+        b = next(to, soa, 1);
+      }
+    }
+  }
+
+  /**
+   * @return the next RRset that is not a SOA RRset
+   */
+  private static RRset next(Iterator<RRset> rrsets, SOAResourceRecord[] soa, int version) {
+    while (rrsets.hasNext()) {
+      RRset rrset = rrsets.next();
+      if (rrset.getType() != ResourceRecordType.SOA) {
+        return rrset;
+      }
+      if (soa != null && soa[version] == null) {
+        soa[version] = (SOAResourceRecord) rrset.getAll().get(0);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Compare the RRs of 2 RRsets with the same owner, type and class.
+   */
+  private static void compareRecords(RRset from, RRset to, ZoneDelta delta) {
+    List<ResourceRecord> a = from.getAll();
+    List<ResourceRecord> b = to.getAll();
+    if (a.get(0).getTtl() != b.get(0).getTtl()) {
+      // the TTL is a property of the RRset, all RRs must be replaced
+      delta.getDeleted().addAll(a);
+      delta.getAdded().addAll(b);
+      return;
+    }
+
+    byte[][] rdataA = rdata(a);
+    byte[][] rdataB = rdata(b);
+    Integer[] orderA = order(rdataA);
+    Integer[] orderB = order(rdataB);
+    int i = 0;
+    int j = 0;
+    while (i < orderA.length || j < orderB.length) {
+      int c = i == orderA.length ? 1
+          : j == orderB.length ? -1
+              : Arrays.compareUnsigned(rdataA[orderA[i]], rdataB[orderB[j]]);
+      if (c < 0) {
+        delta.getDeleted().add(a.get(orderA[i++]));
+      } else if (c > 0) {
+        delta.getAdded().add(b.get(orderB[j++]));
+      } else {
+        i++;
+        j++;
+      }
+    }
+  }
+
+  private static Integer[] order(byte[][] rdata) {
+    Integer[] order = new Integer[rdata.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (x, y) -> Arrays.compareUnsigned(rdata[x], rdata[y]));
+    return order;
+  }
+
+  /**
+   * @return the rdata of the RRs in canonical form, compared in the same way as
+   *         {@link Zone#remove(ResourceRecord)} finds the RR to remove
+   */
+  private static byte[][] rdata(List<ResourceRecord> rrs) {
+    byte[][] rdata = new byte[rrs.size()][];
+    for (int i = 0; i < rdata.length; i++) {
+      rdata[i] = CanonicalForm.rdata(rrs.get(i));
+    }
+    return rdata;
+  }
+
+  /**
+   * Group a stream of RRs in canonical order into RRsets, consecutive RRs with the same owner, type
+   * and class are added to the same RRset.
+   * 
+   * @param rrs RRs in canonical order
+   * @return iterator over the RRsets
+   */
+  public static Iterator<RRset> rrsets(Iterator<ResourceRecord> rrs) {
+    return new Iterator<RRset>() {
+
+      private ResourceRecord pending = rrs.hasNext() ? rrs.next() : null;
+
+      @Override
+      public boolean hasNext() {
+        return pending != null;
+      }
+
+      @Override
+      public RRset next() {
+        if (pending == null) {
+          throw new NoSuchElementException();
+        }
+        RRset rrset = RRset.createAs(pending);
+        pending = null;
+        while (rrs.hasNext()) {
+          ResourceRecord rr = rrs.next();
+          if (rr.getType() != rrset.getType() || rr.getClassz() != rrset.getClassz()
+              || !rr.getName().equalsIgnoreCase(rrset.getOwner())) {
+            pending = rr;
+            break;
+          }
+          rrset.add(rr);
+        }
+        return rrset;
+      }
+    };
+  }
+}
@@ -0,0 +1,237 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.zone;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import nl.sidnlabs.dnslib.message.RRset;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.SOAResourceRecord;
+import nl.sidnlabs.dnslib.message.records.ZONEMDResourceRecord;
+import nl.sidnlabs.dnslib.message.util.CanonicalRRset;
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+import nl.sidnlabs.dnslib.types.ResourceRecordClass;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+
+/**
+ * Computes and verifies zone digests (ZONEMD, RFC 8976) using the SIMPLE scheme.
+ * 
+ * The digest is calculated over all RRs of the zone in canonical form and canonical order,
+ * including glue and other data below zone cuts, without the ZONEMD RRset at the apex and the
+ * RRSIGs covering it. Duplicate RRs are only included once.
+ * 
+ * The SIMPLE scheme is a single hash over the zone, so only the conversion to canonical form is
+ * done in parallel for in-memory zones: ranges of apex children are converted by multiple threads
+ * and added to the hash in canonical order. At most one range per processor is kept in memory.
+ */
+public final class ZoneDigest {
+
+  public static final int SCHEME_SIMPLE = 1;
+  public static final int HASH_SHA384 = 1;
+  public static final int HASH_SHA512 = 2;
+
+  // number of apex children per range that is converted by a single thread
+  private static final int RANGE_SIZE = 256;
+  private static final int TYPE_ZONEMD = 63;
+
+  private ZoneDigest() {}
+
+  /**
+   * Calculate the digest of an in-memory zone.
+   * 
+   * @param zone the zone
+   * @param hashAlgorithm {@link #HASH_SHA384} or {@link #HASH_SHA512}
+   * @return the digest
+   */
+  public static byte[] digest(Zone zone, int hashAlgorithm) {
+    MessageDigest digest = messageDigest(hashAlgorithm);
+    WireBuffer apex = new WireBuffer();
+    CanonicalRRset canonical = new CanonicalRRset();
+    for (RRset rrset : Zone.sorted(zone.getApex())) {
+      write(rrset, true, apex, canonical);
+    }
+    digest.update(apex.data(), 0, apex.length());
+
+    ZoneNode[] children = zone.getApex().getChildren();
+    int ranges = (children.length + RANGE_SIZE - 1) / RANGE_SIZE;
+    int batch = Runtime.getRuntime().availableProcessors();
+    for (int first = 0; first < ranges; first += batch) {
+      List<WireBuffer> parts = IntStream
+          .range(first, Math.min(first + batch, ranges))
+          .parallel()
+          .mapToObj(r -> canonical(children, r * RANGE_SIZE,
+              Math.min((r + 1) * RANGE_SIZE, children.length)))
+          .collect(Collectors.toList());
+      for (WireBuffer part : parts) {
+        digest.update(part.data(), 0, part.length());
+      }
+    }
+    return digest.digest();
+  }
+
+  /**
+   * Calculate the digest of a zone using a single pass over the RRsets, only a single RRset is kept
+   * in memory.
+   * 
+   * @param rrsets all RRsets of the zone in canonical order, e.g. read from a file created by a
+   *        {@link ZoneWriter} with canonical ordering and grouped with {@link ZoneDiff#rrsets}
+   * @param origin name of the apex of the zone
+   * @param hashAlgorithm {@link #HASH_SHA384} or {@link #HASH_SHA512}
+   * @return the digest
+   */
+  public static byte[] digest(Iterator<RRset> rrsets, String origin, int hashAlgorithm) {
+    MessageDigest digest = messageDigest(hashAlgorithm);
+    String apex = normalize(origin);
+    WireBuffer buffer = new WireBuffer();
+    CanonicalRRset canonical = new CanonicalRRset();
+    while (rrsets.hasNext()) {
+      RRset rrset = rrsets.next();
+      buffer.reset();
+      write(rrset, apex.equalsIgnoreCase(normalize(rrset.getOwner())), buffer, canonical);
+      digest.update(buffer.data(), 0, buffer.length());
+    }
+    return digest.digest();
+  }
+
+  /**
+   * Create a ZONEMD record for the current version of the zone, the record is not added to the
+   * zone.
+   * 
+   * @param zone the zone, must have a SOA record
+   * @param hashAlgorithm {@link #HASH_SHA384} or {@link #HASH_SHA512}
+   * @return the ZONEMD record with the serial and TTL of the SOA record
+   */
+  public static ZONEMDResourceRecord create(Zone zone, int hashAlgorithm) {
+    SOAResourceRecord soa = zone.getSoa();
+    ZONEMDResourceRecord zonemd = new ZONEMDResourceRecord();
+    zonemd.setName(zone.getApex().getName());
+    zonemd.setType(ResourceRecordType.ZONEMD);
+    zonemd.setClassz(ResourceRecordClass.IN);
+    zonemd.setTtl(soa.getTtl());
+    zonemd.setSerial(soa.getSerial());
+    zonemd.setScheme((short) SCHEME_SIMPLE);
+    zonemd.setHashAlgorithm((short) hashAlgorithm);
+    zonemd.setDigest(digest(zone, hashAlgorithm));
+    return zonemd;
+  }
+
+  /**
+   * Verify the zone using the ZONEMD records at the apex (RFC 8976 section 4).
+   * 
+   * @param zone the zone
+   * @return true if a ZONEMD record with the serial of the SOA record, the SIMPLE scheme and a
+   *         supported hash algorithm matches the digest of the zone
+   */
+  public static boolean verify(Zone zone) {
+    RRset zonemd = zone.getApex().getRRset(ResourceRecordType.ZONEMD);
+    SOAResourceRecord soa = zone.getSoa();
+    if (zonemd == null || soa == null) {
+      return false;
+    }
+    byte[][] digests = new byte[HASH_SHA512 + 1][];
+    for (ResourceRecord rr : zonemd.getAll()) {
+      ZONEMDResourceRecord record = (ZONEMDResourceRecord) rr;
+      int algorithm = record.getHashAlgorithm();
+      if (record.getSerial() != soa.getSerial() || record.getScheme() != SCHEME_SIMPLE
+          || (algorithm != HASH_SHA384 && algorithm != HASH_SHA512)) {
+        continue;
+      }
+      if (digests[algorithm] == null) {
+        digests[algorithm] = digest(zone, algorithm);
+      }
+      if (MessageDigest.isEqual(digests[algorithm], record.getDigest())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static WireBuffer canonical(ZoneNode[] nodes, int start, int end) {
+    WireBuffer buffer = new WireBuffer();
+    CanonicalRRset canonical = new CanonicalRRset();
+    for (int i = start; i < end; i++) {
+      Zone.visit(nodes[i], rrset -> write(rrset, false, buffer, canonical));
+    }
+    return buffer;
+  }
+
+  /**
+   * Write the RRs of the RRset in canonical form and order, without duplicates.
+   * 
+   * @param apex true if the owner of the RRset is the apex of the zone
+   * @param canonical reused for every RRset written by the same thread
+   */
+  private static void write(RRset rrset, boolean apex, WireBuffer buffer,
+      CanonicalRRset canonical) {
+    int type = rrset.getType().getValue();
+    if (apex && type == TYPE_ZONEMD) {
+      return;
+    }
+    canonical.set(rrset);
+    byte[] data = canonical.getData();
+    for (int i = 0; i < canonical.size(); i++) {
+      int offset = canonical.getOffset(i);
+      int length = canonical.getLength(i);
+      if (apex && isZonemdSignature(type, data, offset, length)) {
+        continue;
+      }
+      buffer.writeBytes(canonical.getOwner(), 0, canonical.getOwnerLength());
+      buffer.writeChar(type);
+      buffer.writeChar(rrset.getClassz().getValue());
+      buffer.writeInt(canonical.getRecord(i).getTtl());
+      buffer.writeChar(length);
+      buffer.writeBytes(data, offset, length);
+    }
+  }
+
+  /**
+   * @return true for an RRSIG covering the ZONEMD RRset, type covered is the first rdata field
+   */
+  private static boolean isZonemdSignature(int type, byte[] data, int offset, int length) {
+    return type == ResourceRecordType.RRSIG.getValue() && length >= 2
+        && ((data[offset] & 0xFF) << 8 | (data[offset + 1] & 0xFF)) == TYPE_ZONEMD;
+  }
+
+  private static String normalize(String name) {
+    String lower = DNSStringUtil.toLowerCaseAscii(name);
+    return lower.endsWith(".") ? lower : lower + ".";
+  }
+
+  private static MessageDigest messageDigest(int hashAlgorithm) {
+    String name;
+    if (hashAlgorithm == HASH_SHA384) {
+      name = "SHA-384";
+    } else if (hashAlgorithm == HASH_SHA512) {
+      name = "SHA-512";
+    } else {
+      throw new IllegalArgumentException("Unsupported ZONEMD hash algorithm " + hashAlgorithm);
+    }
+    try {
+      return MessageDigest.getInstance(name);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(name + " not supported", e);
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.zone;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Source of zone file bytes for the {@link ZoneTokenizer}.
+ */
+interface ZoneInput extends Closeable {
+
+  /**
+   * Read at most len bytes into dst.
+   * 
+   * @return the number of bytes read, or -1 at the end of the input
+   */
+  int read(byte[] dst, int off, int len) throws IOException;
+
+  /**
+   * Region of a file, mapped in windows of at most {@link #WINDOW_SIZE} bytes so files larger than
+   * 2GB can be read and only the window being read needs to be resident.
+   */
+  static class Mapped implements ZoneInput {
+
+    static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final boolean closeChannel;
+    private final long end;
+    private long position;
+    private ByteBuffer window;
+
+    Mapped(FileChannel channel, long start, long end, boolean closeChannel) {
+      this.channel = channel;
+      this.position = start;
+      this.end = end;
+      this.closeChannel = closeChannel;
+    }
+
+    @Override
+    public int read(byte[] dst, int off, int len) throws IOException {
+      if (window == null || !window.hasRemaining()) {
+        if (position >= end) {
+          return -1;
+        }
+        long size = Math.min(WINDOW_SIZE, end - position);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        position += size;
+      }
+      int n = Math.min(len, window.remaining());
+      window.get(dst, off, n);
+      return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+      window = null;
+      if (closeChannel) {
+        channel.close();
+      }
+    }
+  }
+
+  /**
+   * Characters from a Reader, encoded as UTF-8.
+   */
+  static class Chars implements ZoneInput {
+
+    private final Reader reader;
+    private final CharBuffer chars = CharBuffer.allocate(8192);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private boolean eof;
+
+    Chars(Reader reader) {
+      this.reader = reader;
+      chars.flip();
+    }
+
+    @Override
+    public int read(byte[] dst, int off, int len) throws IOException {
+      ByteBuffer out = ByteBuffer.wrap(dst, off, len);
+      while (true) {
+        encoder.encode(chars, out, eof);
+        if (out.position() > off) {
+          return out.position() - off;
+        }
+        if (eof) {
+          return -1;
+        }
+        chars.compact();
+        if (reader.read(chars) == -1) {
+          eof = true;
+        }
+        chars.flip();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      reader.close();
+    }
+  }
+}
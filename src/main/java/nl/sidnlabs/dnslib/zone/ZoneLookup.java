@@ -0,0 +1,80 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.zone;
+
+import lombok.Getter;
+
+/**
+ * Result of a {@link Zone#lookup(String, ZoneLookup)}. Instances are reused for multiple lookups
+ * to prevent allocation for every query, an instance must not be shared between threads.
+ */
+@Getter
+public class ZoneLookup {
+
+  public enum Match {
+    /**
+     * The name exists in the zone, the node may be an empty non-terminal.
+     */
+    EXACT,
+    /**
+     * The name does not exist but is covered by a wildcard, the node is the wildcard node.
+     */
+    WILDCARD,
+    /**
+     * The name is at or below a zone cut, the node is the delegation point with the NS RRset.
+     */
+    DELEGATION,
+    /**
+     * The name is below a DNAME, the node is the owner of the DNAME RRset.
+     */
+    DNAME,
+    /**
+     * The name does not exist and there is no wildcard.
+     */
+    NXDOMAIN,
+    /**
+     * The name is not at or below the apex of the zone.
+     */
+    NOT_IN_ZONE
+  }
+
+  private Match match;
+  /**
+   * Node for the match, null for NXDOMAIN and NOT_IN_ZONE.
+   */
+  private ZoneNode node;
+  /**
+   * Deepest existing node that is an ancestor of or equal to the name (RFC 5155 closest
+   * encloser), null for NOT_IN_ZONE. For DELEGATION and DNAME this is the node of the match.
+   */
+  private ZoneNode closestEncloser;
+
+  /**
+   * True if the node of the match has the same name as the lookup name.
+   */
+  private boolean exact;
+
+  void set(Match match, ZoneNode node, ZoneNode closestEncloser, boolean exact) {
+    this.match = match;
+    this.node = node;
+    this.closestEncloser = closestEncloser;
+    this.exact = exact;
+  }
+}
@@ -0,0 +1,465 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.zone;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import nl.sidnlabs.dnslib.message.RRset;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.dnssec.RRSIGResourceRecord;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+
+/**
+ * Node in the name tree of a {@link Zone}, one node for every name in the zone including empty
+ * non-terminals. A node only stores its own label (lowercase, as bytes), the full name is the
+ * label followed by the labels of the parents.
+ * 
+ * Children are kept in a small array that is searched linearly, nodes with many children (e.g.
+ * the apex of a TLD zone) switch to an open addressing hash table so finding a child takes
+ * constant time.
+ */
+public class ZoneNode {
+
+  private static final RRset[] NO_RRSETS = new RRset[0];
+  private static final ZoneNode[] NO_CHILDREN = new ZoneNode[0];
+  // max number of children stored in a linear array
+  private static final int LINEAR_CHILDREN = 8;
+
+  private final byte[] label;
+  private final int hash;
+  private final ZoneNode parent;
+  // name of the zone apex, only set for the apex node
+  private final String apexName;
+
+  private ZoneNode[] children = NO_CHILDREN;
+  private int childCount;
+  // children in canonical order, created when needed and cleared when a child is added or removed
+  private volatile ZoneNode[] sortedChildren;
+  private RRset[] rrsets = NO_RRSETS;
+  // RRSIG records grouped by covered type
+  private RRset[] signatures = NO_RRSETS;
+
+  ZoneNode(ZoneNode parent, byte[] label) {
+    this.parent = parent;
+    this.label = label;
+    this.hash = hash(label, 0, label.length);
+    this.apexName = null;
+  }
+
+  ZoneNode(String apexName) {
+    this.parent = null;
+    this.label = new byte[0];
+    this.hash = 0;
+    this.apexName = apexName;
+  }
+
+  public ZoneNode getParent() {
+    return parent;
+  }
+
+  /**
+   * @return the label of this node as lowercase String, empty for the apex
+   */
+  public String getLabel() {
+    return new String(label, StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * @return the full name of this node with trailing dot, created on every call. Dots and
+   *         backslashes in a label are escaped with a backslash.
+   */
+  public String getName() {
+    if (parent == null) {
+      return apexName;
+    }
+    StringBuilder b = new StringBuilder(64);
+    ZoneNode n = this;
+    for (; n.parent != null; n = n.parent) {
+      for (byte c : n.label) {
+        if (c == '.' || c == '\\') {
+          b.append('\\');
+        }
+        b.append((char) (c & 0xFF));
+      }
+      b.append('.');
+    }
+    if (!".".equals(n.apexName)) {
+      b.append(n.apexName);
+    }
+    return b.toString();
+  }
+
+  public boolean isWildcard() {
+    return label.length == 1 && label[0] == '*';
+  }
+
+  /**
+   * @return true if this node has no RRsets, e.g. an empty non-terminal
+   */
+  public boolean isEmpty() {
+    return rrsets.length == 0;
+  }
+
+  public RRset getRRset(ResourceRecordType type) {
+    for (RRset rrset : rrsets) {
+      if (rrset.getType() == type) {
+        return rrset;
+      }
+    }
+    return null;
+  }
+
+  public boolean hasRRset(ResourceRecordType type) {
+    return getRRset(type) != null;
+  }
+
+  /**
+   * @return the RRsets of this node, the array must not be modified
+   */
+  public RRset[] getRRsets() {
+    return rrsets;
+  }
+
+  public int getChildCount() {
+    return childCount;
+  }
+
+  /**
+   * Get the RRSIG records covering the type, so a response does not have to filter the RRSIG
+   * RRset.
+   * 
+   * @return RRset with the RRSIGs for the type or null if the type is not signed
+   */
+  public RRset getSignatures(ResourceRecordType type) {
+    for (RRset rrset : signatures) {
+      if (coveredType(rrset.getAll().get(0)) == type) {
+        return rrset;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the children of this node sorted in canonical order, the array must not be modified
+   */
+  public ZoneNode[] getChildren() {
+    ZoneNode[] result = sortedChildren;
+    if (result == null) {
+      result = new ZoneNode[childCount];
+      int n = 0;
+      for (ZoneNode child : children) {
+        if (child != null) {
+          result[n++] = child;
+        }
+      }
+      Arrays.sort(result, (a, b) -> Arrays.compareUnsigned(a.label, b.label));
+      sortedChildren = result;
+    }
+    return result;
+  }
+
+  /**
+   * @return the last node below this node in canonical order, or this node if it has no children
+   */
+  ZoneNode last() {
+    ZoneNode node = this;
+    while (node.childCount > 0) {
+      ZoneNode[] sorted = node.getChildren();
+      node = sorted[sorted.length - 1];
+    }
+    return node;
+  }
+
+  /**
+   * @return the node before this node in canonical order, null for the apex
+   */
+  ZoneNode previous() {
+    if (parent == null) {
+      return null;
+    }
+    ZoneNode[] siblings = parent.getChildren();
+    int i = Arrays.binarySearch(siblings, this, (a, b) -> Arrays.compareUnsigned(a.label, b.label));
+    return i > 0 ? siblings[i - 1].last() : parent;
+  }
+
+  /**
+   * Find the child with the highest label lower than the label in name between start (inclusive)
+   * and end (exclusive) in canonical order.
+   * 
+   * @return the child or null if all children have a higher label
+   */
+  ZoneNode lowerChild(String name, int start, int end) {
+    ZoneNode[] sorted = getChildren();
+    int low = 0;
+    int high = sorted.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (sorted[mid].compareLabel(name, start, end) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high >= 0 ? sorted[high] : null;
+  }
+
+  /**
+   * Find the child with the highest label lower than the label in canonical order.
+   * 
+   * @return the child or null if all children have a higher label
+   */
+  ZoneNode lowerChild(byte[] childLabel) {
+    ZoneNode[] sorted = getChildren();
+    int low = 0;
+    int high = sorted.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (Arrays.compareUnsigned(sorted[mid].label, childLabel) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return high >= 0 ? sorted[high] : null;
+  }
+
+  private int compareLabel(String name, int start, int end) {
+    int length = Math.min(label.length, end - start);
+    for (int i = 0; i < length; i++) {
+      int c = (label[i] & 0xFF) - (lowerCase(name.charAt(start + i)) & 0xFF);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return label.length - (end - start);
+  }
+
+  /**
+   * Find the child for the label in name between start (inclusive) and end (exclusive), ignoring
+   * ASCII case.
+   */
+  public ZoneNode getChild(String name, int start, int end) {
+    if (childCount == 0) {
+      return null;
+    }
+    if (children.length <= LINEAR_CHILDREN) {
+      for (int i = 0; i < childCount; i++) {
+        if (children[i].matches(name, start, end)) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+    int mask = children.length - 1;
+    for (int i = hash(name, start, end) & mask;; i = (i + 1) & mask) {
+      ZoneNode child = children[i];
+      if (child == null || child.matches(name, start, end)) {
+        return child;
+      }
+    }
+  }
+
+  ZoneNode getChild(byte[] childLabel) {
+    if (children.length <= LINEAR_CHILDREN) {
+      for (int i = 0; i < childCount; i++) {
+        if (Arrays.equals(children[i].label, childLabel)) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+    int mask = children.length - 1;
+    for (int i = hash(childLabel, 0, childLabel.length) & mask;; i = (i + 1) & mask) {
+      ZoneNode child = children[i];
+      if (child == null || Arrays.equals(child.label, childLabel)) {
+        return child;
+      }
+    }
+  }
+
+  ZoneNode addChild(byte[] childLabel) {
+    ZoneNode child = new ZoneNode(this, childLabel);
+    sortedChildren = null;
+    if (children.length <= LINEAR_CHILDREN && childCount < LINEAR_CHILDREN) {
+      if (childCount == children.length) {
+        children = Arrays.copyOf(children, Math.max(2, childCount * 2));
+      }
+      children[childCount++] = child;
+      return child;
+    }
+    if (children.length <= LINEAR_CHILDREN || (childCount + 1) * 2 > children.length) {
+      rehash(Math.max(LINEAR_CHILDREN * 4, Integer.highestOneBit(childCount) * 4));
+    }
+    insert(children, child);
+    childCount++;
+    return child;
+  }
+
+  void removeChild(ZoneNode child) {
+    sortedChildren = null;
+    if (children.length <= LINEAR_CHILDREN) {
+      for (int i = 0; i < childCount; i++) {
+        if (children[i] == child) {
+          children[i] = children[--childCount];
+          children[childCount] = null;
+          return;
+        }
+      }
+      return;
+    }
+    int mask = children.length - 1;
+    int i = child.hash & mask;
+    while (children[i] != child) {
+      if (children[i] == null) {
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+    // backward shift deletion, move entries that are not at their home position
+    int j = i;
+    while (true) {
+      j = (j + 1) & mask;
+      ZoneNode next = children[j];
+      if (next == null) {
+        break;
+      }
+      int home = next.hash & mask;
+      if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+        children[i] = next;
+        i = j;
+      }
+    }
+    children[i] = null;
+    childCount--;
+  }
+
+  private void rehash(int capacity) {
+    ZoneNode[] table = new ZoneNode[capacity];
+    for (ZoneNode child : children) {
+      if (child != null) {
+        insert(table, child);
+      }
+    }
+    children = table;
+  }
+
+  private static void insert(ZoneNode[] table, ZoneNode child) {
+    int mask = table.length - 1;
+    int i = child.hash & mask;
+    while (table[i] != null) {
+      i = (i + 1) & mask;
+    }
+    table[i] = child;
+  }
+
+  void addRRset(RRset rrset) {
+    rrsets = append(rrsets, rrset);
+  }
+
+  void removeRRset(RRset rrset) {
+    rrsets = remove(rrsets, rrset);
+  }
+
+  void addSignature(RRSIGResourceRecord rrsig) {
+    RRset rrset = getSignatures(coveredType(rrsig));
+    if (rrset == null) {
+      signatures = append(signatures, RRset.createAs(rrsig));
+    } else {
+      rrset.add(rrsig);
+    }
+  }
+
+  /**
+   * Remove the RRSIG record, the record must be the instance that was added.
+   */
+  void removeSignature(RRSIGResourceRecord rrsig) {
+    RRset rrset = getSignatures(coveredType(rrsig));
+    if (rrset != null && rrset.getAll().removeIf(rr -> rr == rrsig) && rrset.size() == 0) {
+      signatures = remove(signatures, rrset);
+    }
+  }
+
+  private static ResourceRecordType coveredType(ResourceRecord rrsig) {
+    return ((RRSIGResourceRecord) rrsig).getTypeCovered().getType();
+  }
+
+  private static RRset[] append(RRset[] array, RRset rrset) {
+    RRset[] result = Arrays.copyOf(array, array.length + 1);
+    result[array.length] = rrset;
+    return result;
+  }
+
+  private static RRset[] remove(RRset[] array, RRset rrset) {
+    for (int i = 0; i < array.length; i++) {
+      if (array[i] == rrset) {
+        if (array.length == 1) {
+          return NO_RRSETS;
+        }
+        RRset[] result = new RRset[array.length - 1];
+        System.arraycopy(array, 0, result, 0, i);
+        System.arraycopy(array, i + 1, result, i, result.length - i);
+        return result;
+      }
+    }
+    return array;
+  }
+
+  private boolean matches(String name, int start, int end) {
+    if (end - start != label.length) {
+      return false;
+    }
+    for (int i = 0; i < label.length; i++) {
+      if ((lowerCase(name.charAt(start + i)) & 0xFF) != (label[i] & 0xFF)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int hash(String name, int start, int end) {
+    int h = 0;
+    for (int i = start; i < end; i++) {
+      h = 31 * h + (lowerCase(name.charAt(i)) & 0xFF);
+    }
+    return spread(h);
+  }
+
+  private static int hash(byte[] label, int start, int end) {
+    int h = 0;
+    for (int i = start; i < end; i++) {
+      h = 31 * h + (label[i] & 0xFF);
+    }
+    return spread(h);
+  }
+
+  private static int spread(int h) {
+    return h ^ (h >>> 16);
+  }
+
+  static int lowerCase(char c) {
+    return c >= 'A' && c <= 'Z' ? c + 32 : c;
+  }
+
+  @Override
+  public String toString() {
+    return "ZoneNode [" + getName() + "]";
+  }
+}
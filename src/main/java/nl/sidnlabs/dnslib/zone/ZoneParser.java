@@ -0,0 +1,504 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.zone;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import nl.sidnlabs.dnslib.exception.DnsDecodeException;
+import nl.sidnlabs.dnslib.exception.ZoneParseException;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.ResourceRecordFactory;
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.ResourceRecordClass;
+
+/**
+ * Streaming parser for master zone files (RFC 1035 section 5), supporting the $ORIGIN, $TTL
+ * (RFC 2308) and $INCLUDE directives, multi-line entries using parentheses, relative names, BIND
+ * style TTL units and generic rdata (RFC 3597).
+ * 
+ * Every entry is converted to wire format and decoded with the {@link ResourceRecord} class for
+ * the type, so the parser returns the same objects as the DNS message decoder. Types without a
+ * specific class are returned as NotImplementedResourceRecord with the rdata.
+ * 
+ * The input is read with a fixed size buffer, large files are memory mapped. Memory use does not
+ * depend on the size of the zone. Changes to $ORIGIN and $TTL in an included file only apply to
+ * that file.
+ * 
+ * Not thread safe, use {@link #parseParallel(Path, String, int, Consumer)} to parse a large file
+ * using multiple threads.
+ */
+public class ZoneParser implements Closeable {
+
+  private static final int MAX_INCLUDE_DEPTH = 16;
+  private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+  private static final int MAX_DIRECTIVE_LENGTH = 4096;
+
+  private final Deque<Include> includes = new ArrayDeque<>();
+  private final RdataTextParser rdata = new RdataTextParser();
+  private final WireBuffer wire = new WireBuffer();
+  private final NetworkData buffer = new NetworkData(new byte[0]);
+
+  private ZoneTokenizer tokenizer;
+  private Path directory;
+  private byte[] origin;
+  // default TTL from $TTL directive
+  private long defaultTtl = -1;
+  // TTL and class of the previous RR, used when not specified
+  private long lastTtl = -1;
+  private int lastClass = -1;
+  private byte[] lastOwner = new byte[256];
+  private int lastOwnerLength = -1;
+
+  /**
+   * Create parser for zone file text.
+   * 
+   * @param reader zone file text
+   * @param origin initial origin, may be null if the zone only uses absolute names or $ORIGIN
+   */
+  public ZoneParser(Reader reader, String origin) {
+    this(new ZoneTokenizer(new ZoneInput.Chars(reader), "<input>", 1), null, toWire(origin));
+  }
+
+  /**
+   * Create parser for a zone file, the file is memory mapped.
+   * 
+   * @param file zone file
+   * @param origin initial origin, may be null if the zone only uses absolute names or $ORIGIN
+   */
+  public ZoneParser(Path file, String origin) {
+    this(open(file, file.toString(), 1), directory(file), toWire(origin));
+  }
+
+  private ZoneParser(ZoneTokenizer tokenizer, Path directory, byte[] origin) {
+    this.tokenizer = tokenizer;
+    this.directory = directory;
+    this.origin = origin;
+  }
+
+  /**
+   * Parse the next RR.
+   * 
+   * @return the next RR or null when the end of the zone has been reached
+   * @throws ZoneParseException when the zone file contains an error
+   */
+  public ResourceRecord next() {
+    while (true) {
+      if (!tokenizer.next()) {
+        if (!endInclude()) {
+          return null;
+        }
+      } else if (!tokenizer.isBlankOwner() && !tokenizer.isQuoted(0)
+          && tokenizer.data()[tokenizer.start(0)] == '$') {
+        directive();
+      } else {
+        return record();
+      }
+    }
+  }
+
+  /**
+   * Parse all RRs and pass them to the consumer.
+   */
+  public void parse(Consumer<ResourceRecord> consumer) {
+    ResourceRecord rr;
+    while ((rr = next()) != null) {
+      consumer.accept(rr);
+    }
+  }
+
+  private ResourceRecord record() {
+    ZoneTokenizer t = tokenizer;
+    wire.reset();
+    rdata.reset(t, wire, origin);
+
+    int i = 0;
+    if (t.isBlankOwner()) {
+      if (lastOwnerLength == -1) {
+        throw t.error("No previous owner name");
+      }
+      wire.writeBytes(lastOwner, 0, lastOwnerLength);
+    } else {
+      rdata.writeName(i++);
+      lastOwnerLength = wire.length();
+      System.arraycopy(wire.data(), 0, lastOwner, 0, lastOwnerLength);
+    }
+
+    // TTL and class are optional and may be in any order
+    long ttl = -1;
+    int classz = -1;
+    int type = -1;
+    for (; i < t.count(); i++) {
+      int c;
+      if (ttl == -1 && rdata.isTtl(i)) {
+        ttl = rdata.ttl(i);
+      } else if (classz == -1 && (c = rdata.classz(i)) != -1) {
+        classz = c;
+      } else {
+        type = rdata.type(i++);
+        if (type == -1) {
+          throw t.error("Unknown type: " + t.getString(i - 1));
+        }
+        break;
+      }
+    }
+    if (type == -1) {
+      throw t.error("Missing type");
+    }
+    if (type == 41 || type >= 249 && type <= 255) {
+      throw t.error("Type " + type + " not allowed in zone file");
+    }
+    if (classz == -1) {
+      classz = lastClass != -1 ? lastClass : ResourceRecordClass.IN.getValue();
+    }
+    if (ttl == -1) {
+      ttl = defaultTtl != -1 ? defaultTtl : lastTtl;
+    }
+
+    int header = wire.length();
+    wire.writeChar(type);
+    wire.writeChar(classz);
+    wire.writeInt(0);
+    wire.writeChar(0);
+    rdata.parse(type, i);
+
+    int rdLength = wire.length() - header - 10;
+    if (rdLength > 0xFFFF) {
+      throw t.error("Rdata too long");
+    }
+    if (ttl == -1) {
+      if (type != 6) {
+        throw t.error("No TTL specified and no $TTL or previous TTL available");
+      }
+      // RFC 1035 zone without $TTL, use SOA minimum
+      byte[] d = wire.data();
+      int m = wire.length() - 4;
+      ttl = ((long) (d[m] & 0xFF) << 24) | (d[m + 1] & 0xFF) << 16 | (d[m + 2] & 0xFF) << 8
+          | (d[m + 3] & 0xFF);
+    }
+    wire.setChar(header + 4, (int) (ttl >>> 16));
+    wire.setChar(header + 6, (int) ttl);
+    wire.setChar(header + 8, rdLength);
+    lastTtl = ttl;
+    lastClass = classz;
+
+    ResourceRecord rr = ResourceRecordFactory.getInstance().createResourceRecord(type);
+    try {
+      rr.decode(buffer.update(wire.data(), 0, wire.length()), false);
+    } catch (DnsDecodeException | IndexOutOfBoundsException e) {
+      throw new ZoneParseException(t.getFile(), t.getLine(), "Invalid rdata for type " + type, e);
+    }
+    return rr;
+  }
+
+  private void directive() {
+    ZoneTokenizer t = tokenizer;
+    if (t.is(0, "$ORIGIN")) {
+      expectTokens(2, 2);
+      origin = name(1);
+    } else if (t.is(0, "$TTL")) {
+      expectTokens(2, 2);
+      rdata.reset(t, wire, origin);
+      defaultTtl = rdata.ttl(1);
+    } else if (t.is(0, "$INCLUDE")) {
+      expectTokens(2, 3);
+      include();
+    } else {
+      throw t.error("Unsupported directive: " + t.getString(0));
+    }
+  }
+
+  private void expectTokens(int min, int max) {
+    if (tokenizer.count() < min || tokenizer.count() > max) {
+      throw tokenizer.error("Invalid number of arguments for " + tokenizer.getString(0));
+    }
+  }
+
+  private byte[] name(int token) {
+    wire.reset();
+    rdata.reset(tokenizer, wire, origin);
+    rdata.writeName(token);
+    return wire.toByteArray(0);
+  }
+
+  private void include() {
+    ZoneTokenizer t = tokenizer;
+    if (includes.size() == MAX_INCLUDE_DEPTH) {
+      throw t.error("Too many nested $INCLUDE directives");
+    }
+    byte[] includeOrigin = t.count() == 3 ? name(2) : origin;
+    Path file = Path.of(t.getString(1));
+    if (!file.isAbsolute() && directory != null) {
+      file = directory.resolve(file);
+    }
+
+    includes.push(new Include(tokenizer, directory, origin, defaultTtl));
+    tokenizer = open(file, t.getFile() + " -> " + file, t.getLine());
+    directory = directory(file);
+    origin = includeOrigin;
+  }
+
+  private boolean endInclude() {
+    tokenizer.close();
+    Include include = includes.poll();
+    if (include == null) {
+      return false;
+    }
+    tokenizer = include.tokenizer;
+    directory = include.directory;
+    origin = include.origin;
+    defaultTtl = include.defaultTtl;
+    return true;
+  }
+
+  @Override
+  public void close() {
+    tokenizer.close();
+    while (!includes.isEmpty()) {
+      includes.pop().tokenizer.close();
+    }
+  }
+
+  private static ZoneTokenizer open(Path file, String name, long line) {
+    try {
+      FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+      return new ZoneTokenizer(new ZoneInput.Mapped(channel, 0, channel.size(), true), name, 1);
+    } catch (IOException e) {
+      throw new ZoneParseException(name, line, "Cannot open file", e);
+    }
+  }
+
+  private static Path directory(Path file) {
+    return file.toAbsolutePath().getParent();
+  }
+
+  private static byte[] toWire(String origin) {
+    return origin == null ? null : DNSStringUtil.writeName(origin);
+  }
+
+  /**
+   * Parse a zone file using multiple threads. The file is split into chunks at the start of lines
+   * with an owner name, the $ORIGIN and $TTL values for each chunk are found by scanning the file
+   * for directives before parsing starts.
+   * 
+   * The file is only split after a $TTL directive, because without $TTL the TTL of an RR may
+   * depend on the previous RR. RRs without class get the class of the first RR in the zone. RRs
+   * are passed to the consumer from multiple threads in no particular order, so the consumer must
+   * be thread safe.
+   * 
+   * @param file zone file
+   * @param origin initial origin, may be null
+   * @param threads number of threads to use
+   * @param consumer consumer for all RRs
+   * @throws ZoneParseException when the zone file contains an error
+   */
+  public static void parseParallel(Path file, String origin, int threads,
+      Consumer<ResourceRecord> consumer) {
+    int zoneClass;
+    try (ZoneParser head = new ZoneParser(file, origin)) {
+      ResourceRecord first = head.next();
+      if (first == null) {
+        return;
+      }
+      zoneClass = head.lastClass;
+      if (threads <= 1) {
+        consumer.accept(first);
+        head.parse(consumer);
+        return;
+      }
+    }
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      List<Chunk> chunks =
+          split(channel, file, toWire(origin), Math.max(MIN_CHUNK_SIZE, size / (threads * 8L)));
+
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        List<Future<?>> futures = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+          Chunk chunk = chunks.get(i);
+          long end = i + 1 < chunks.size() ? chunks.get(i + 1).start : size;
+          futures.add(executor.submit(() -> {
+            ZoneParser parser = new ZoneParser(
+                new ZoneTokenizer(new ZoneInput.Mapped(channel, chunk.start, end, false),
+                    file.toString(), chunk.line),
+                directory(file), chunk.origin);
+            parser.defaultTtl = chunk.defaultTtl;
+            parser.lastClass = zoneClass;
+            try {
+              parser.parse(consumer);
+            } finally {
+              parser.close();
+            }
+          }));
+        }
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw new ZoneParseException(file.toString(), 0, "Error while parsing", e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ZoneParseException(file.toString(), 0, "Interrupted", e);
+      } finally {
+        executor.shutdownNow();
+      }
+    } catch (IOException e) {
+      throw new ZoneParseException(file.toString(), 0, "Error while reading", e);
+    }
+  }
+
+  /**
+   * Scan the file for lines where parsing can start, tracking quotes, comments and parentheses
+   * to find the start of entries, and keep the state of the $ORIGIN and $TTL directives.
+   */
+  private static List<Chunk> split(FileChannel channel, Path file, byte[] origin, long chunkSize)
+      throws IOException {
+    List<Chunk> chunks = new ArrayList<>();
+    chunks.add(new Chunk(0, 1, origin, -1));
+
+    // parser used to apply the directives, the origin and default TTL are its state
+    ZoneParser state = new ZoneParser(null, directory(file), origin);
+    ByteArrayOutputStream directive = null;
+
+    ZoneInput input = new ZoneInput.Mapped(channel, 0, channel.size(), false);
+    byte[] buf = new byte[64 * 1024];
+    long position = 0;
+    long line = 1;
+    long last = 0;
+    int depth = 0;
+    boolean lineStart = true;
+    boolean quote = false;
+    boolean comment = false;
+    boolean escape = false;
+
+    int n;
+    while ((n = input.read(buf, 0, buf.length)) != -1) {
+      for (int j = 0; j < n; j++, position++) {
+        int b = buf[j];
+        if (b == '\n') {
+          line++;
+          comment = false;
+          escape = false;
+          if (directive != null) {
+            state.applyDirective(directive.toString(StandardCharsets.UTF_8), file, line - 1);
+            directive = null;
+          }
+          lineStart = depth == 0 && !quote;
+          continue;
+        }
+        if (lineStart) {
+          lineStart = false;
+          if (b == '$') {
+            directive = new ByteArrayOutputStream();
+          } else if (position - last >= chunkSize && state.defaultTtl != -1 && b != ' '
+              && b != '\t' && b != '\r' && b != ';' && b != '(') {
+            chunks.add(new Chunk(position, line, state.origin, state.defaultTtl));
+            last = position;
+          }
+        }
+        if (directive != null && directive.size() < MAX_DIRECTIVE_LENGTH) {
+          directive.write(b);
+        }
+        if (comment) {
+          continue;
+        }
+        if (escape) {
+          escape = false;
+        } else if (b == '\\') {
+          escape = true;
+        } else if (quote) {
+          quote = b != '"';
+        } else if (b == '"') {
+          quote = true;
+        } else if (b == ';') {
+          comment = true;
+        } else if (b == '(') {
+          depth++;
+        } else if (b == ')' && depth > 0) {
+          depth--;
+        }
+      }
+    }
+    return chunks;
+  }
+
+  /**
+   * Apply a $ORIGIN or $TTL directive found by {@link #split}, other directives are ignored
+   * because they do not change the state of the including file.
+   */
+  private void applyDirective(String text, Path file, long line) {
+    tokenizer = new ZoneTokenizer(new ZoneInput.Chars(new StringReader(text)), file.toString(),
+        line);
+    if (tokenizer.next() && (tokenizer.is(0, "$ORIGIN") || tokenizer.is(0, "$TTL"))) {
+      directive();
+    }
+  }
+
+  private static class Include {
+    private final ZoneTokenizer tokenizer;
+    private final Path directory;
+    private final byte[] origin;
+    private final long defaultTtl;
+
+    private Include(ZoneTokenizer tokenizer, Path directory, byte[] origin, long defaultTtl) {
+      this.tokenizer = tokenizer;
+      this.directory = directory;
+      this.origin = origin;
+      this.defaultTtl = defaultTtl;
+    }
+  }
+
+  private static class Chunk {
+    private final long start;
+    private final long line;
+    private final byte[] origin;
+    private final long defaultTtl;
+
+    private Chunk(long start, long line, byte[] origin, long defaultTtl) {
+      this.start = start;
+      this.line = line;
+      this.origin = origin == null ? null : Arrays.copyOf(origin, origin.length);
+      this.defaultTtl = defaultTtl;
+    }
+  }
+}
@@ -0,0 +1,324 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.zone;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import nl.sidnlabs.dnslib.exception.ZoneParseException;
+
+/**
+ * Splits master file text into entries (RFC 1035 section 5.1). An entry is a single line, or
+ * multiple lines when parentheses are used, and consists of tokens separated by whitespace.
+ * Comments are removed, quoted strings become a single token without the quotes and escape
+ * sequences are kept as-is so the caller can decode them depending on the type of field.
+ * 
+ * The input is read through a fixed size window, so memory use does not depend on the size of the
+ * input. Tokens are stored in a reusable buffer and are only valid until the next call to
+ * {@link #next()}.
+ * 
+ * Not thread safe.
+ */
+class ZoneTokenizer implements Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final ZoneInput input;
+  private final String file;
+
+  private final byte[] buf = new byte[BUFFER_SIZE];
+  private int pos;
+  private int limit;
+  private boolean eof;
+  private long line;
+
+  // tokens of the current entry
+  private byte[] data = new byte[512];
+  private int dataLength;
+  private int[] start = new int[16];
+  private int[] end = new int[16];
+  private boolean[] quoted = new boolean[16];
+  private int count;
+  private boolean blankOwner;
+  private long entryLine;
+
+  ZoneTokenizer(ZoneInput input, String file, long line) {
+    this.input = input;
+    this.file = file;
+    this.line = line;
+  }
+
+  /**
+   * Read the next entry.
+   * 
+   * @return false when the end of the input has been reached
+   */
+  boolean next() {
+    count = 0;
+    dataLength = 0;
+    blankOwner = false;
+    int depth = 0;
+    boolean lineStart = true;
+
+    while (true) {
+      int c = read();
+      switch (c) {
+        case -1:
+          if (depth > 0) {
+            throw error("Unbalanced parentheses");
+          }
+          return count > 0;
+        case ';':
+          // skip comment, newline is handled in next iteration
+          while ((c = read()) != '\n' && c != -1) {
+            // skip
+          }
+          unread(c);
+          break;
+        case '\n':
+          line++;
+          if (depth == 0) {
+            if (count > 0) {
+              return true;
+            }
+            lineStart = true;
+            blankOwner = false;
+          }
+          break;
+        case ' ':
+        case '\t':
+        case '\r':
+          if (lineStart && count == 0) {
+            // entry without owner, use previous owner
+            blankOwner = true;
+          }
+          lineStart = false;
+          break;
+        case '(':
+          depth++;
+          lineStart = false;
+          break;
+        case ')':
+          if (depth == 0) {
+            throw error("Unbalanced parentheses");
+          }
+          depth--;
+          break;
+        case '"':
+          lineStart = false;
+          readQuoted();
+          break;
+        default:
+          lineStart = false;
+          readToken(c);
+      }
+    }
+  }
+
+  private void readQuoted() {
+    int s = beginToken();
+    long quoteLine = line;
+    int c;
+    while ((c = read()) != '"') {
+      if (c == -1) {
+        throw new ZoneParseException(file, quoteLine, "Unterminated quoted string");
+      }
+      if (c == '\n') {
+        line++;
+      }
+      append(c);
+      if (c == '\\') {
+        c = read();
+        if (c == -1) {
+          throw error("Escape at end of input");
+        }
+        append(c);
+      }
+    }
+    endToken(s, true);
+  }
+
+  private void readToken(int c) {
+    int s = beginToken();
+    while (true) {
+      if (c == '\\') {
+        append(c);
+        c = read();
+        if (c == -1 || c == '\n') {
+          throw error("Escape at end of line");
+        }
+      } else if (c == -1 || c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == ';'
+          || c == '(' || c == ')' || c == '"') {
+        unread(c);
+        break;
+      }
+      append(c);
+      c = read();
+    }
+    endToken(s, false);
+  }
+
+  private int beginToken() {
+    if (count == 0) {
+      entryLine = line;
+    }
+    if (count == start.length) {
+      start = Arrays.copyOf(start, count * 2);
+      end = Arrays.copyOf(end, count * 2);
+      quoted = Arrays.copyOf(quoted, count * 2);
+    }
+    return dataLength;
+  }
+
+  private void endToken(int s, boolean q) {
+    start[count] = s;
+    end[count] = dataLength;
+    quoted[count] = q;
+    count++;
+  }
+
+  private void append(int c) {
+    if (dataLength == data.length) {
+      data = Arrays.copyOf(data, dataLength * 2);
+    }
+    data[dataLength++] = (byte) c;
+  }
+
+  private int read() {
+    if (pos == limit) {
+      if (eof) {
+        return -1;
+      }
+      try {
+        int n = input.read(buf, 0, buf.length);
+        if (n <= 0) {
+          eof = true;
+          pos = limit = 0;
+          return -1;
+        }
+        pos = 0;
+        limit = n;
+      } catch (IOException e) {
+        throw new ZoneParseException(file, line, "Error while reading", e);
+      }
+    }
+    return buf[pos++] & 0xFF;
+  }
+
+  private void unread(int c) {
+    if (c != -1) {
+      pos--;
+    }
+  }
+
+  /**
+   * @return number of tokens in the current entry
+   */
+  int count() {
+    return count;
+  }
+
+  /**
+   * @return true when the current entry started with whitespace and has no owner name
+   */
+  boolean isBlankOwner() {
+    return blankOwner;
+  }
+
+  /**
+   * @return line number of the first token of the current entry
+   */
+  long getLine() {
+    return entryLine;
+  }
+
+  String getFile() {
+    return file;
+  }
+
+  byte[] data() {
+    return data;
+  }
+
+  int start(int i) {
+    return start[i];
+  }
+
+  int end(int i) {
+    return end[i];
+  }
+
+  int length(int i) {
+    return end[i] - start[i];
+  }
+
+  boolean isQuoted(int i) {
+    return quoted[i];
+  }
+
+  /**
+   * @return true if token i is unquoted and equal to the ASCII string s, ignoring case
+   */
+  boolean is(int i, String s) {
+    return length(i) == s.length() && startsWith(i, s);
+  }
+
+  /**
+   * @return true if token i is unquoted and starts with the ASCII string s, ignoring case
+   */
+  boolean startsWith(int i, String s) {
+    if (quoted[i] || length(i) < s.length()) {
+      return false;
+    }
+    for (int j = 0; j < s.length(); j++) {
+      int c = data[start[i] + j];
+      if (c >= 'a' && c <= 'z') {
+        c -= 32;
+      }
+      int e = s.charAt(j);
+      if (e >= 'a' && e <= 'z') {
+        e -= 32;
+      }
+      if (c != e) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  String getString(int i) {
+    return new String(data, start[i], length(i), StandardCharsets.UTF_8);
+  }
+
+  ZoneParseException error(String msg) {
+    return new ZoneParseException(file, count > 0 ? entryLine : line, msg);
+  }
+
+  @Override
+  public void close() {
+    try {
+      input.close();
+    } catch (IOException e) {
+      throw new ZoneParseException(file, line, "Error while closing", e);
+    }
+  }
+}
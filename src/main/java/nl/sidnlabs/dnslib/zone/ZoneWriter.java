@@ -0,0 +1,283 @@
+/*
+ * ENTRADA, a big data platform for network data analytics
+ *
+ * Copyright (C) 2016 SIDN [https://www.sidn.nl]
+ * 
+ * This file is part of ENTRADA.
+ * 
+ * ENTRADA is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * ENTRADA is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General
+ * Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along with ENTRADA. If not, see
+ * [<http://www.gnu.org/licenses/].
+ *
+ */
+package nl.sidnlabs.dnslib.zone;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import nl.sidnlabs.dnslib.message.RRset;
+import nl.sidnlabs.dnslib.message.records.AbstractResourceRecord;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.util.CanonicalForm;
+
+/**
+ * Writes RRs in master file format to a Writer or channel, using the toZone format of the
+ * records. Output is buffered and RRs are not kept in memory after they have been written, so
+ * zones of any size can be written.
+ * 
+ * When alignment or canonical ordering is enabled, RRs are collected in blocks of
+ * {@link #getBlockSize()} RRs. The owner column is aligned using the longest owner name in the
+ * block instead of the longest name in the whole zone, and RRs are sorted in canonical order
+ * (RFC 4034 section 6) within the block. For a fully sorted zone the input must already be in
+ * canonical order by owner name, e.g. a zone transfer from a signed zone.
+ * 
+ * Not thread safe.
+ */
+@Getter
+@Setter
+public class ZoneWriter implements Closeable, Flushable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int DEFAULT_BLOCK_SIZE = 4096;
+
+  /**
+   * Order of RRs in canonical output without the rdata: by owner name in canonical order, class and
+   * type.
+   */
+  static final Comparator<ResourceRecord> RR_ORDER =
+      Comparator.comparing(ResourceRecord::getName, ZoneWriter::compareNames)
+          .thenComparingInt(ZoneWriter::classValue)
+          .thenComparingInt(ZoneWriter::typeValue);
+
+  /**
+   * Order of non-empty RRsets in canonical output, also used by {@link Zone} and {@link ZoneDiff} so
+   * zones and files written in canonical order can be merged.
+   */
+  static final Comparator<RRset> RRSET_ORDER =
+      Comparator.comparing((RRset rrset) -> rrset.getAll().get(0), RR_ORDER);
+
+  private static final Comparator<Entry> CANONICAL_ORDER =
+      Comparator.comparing((Entry e) -> e.rr, RR_ORDER)
+          .thenComparing((a, b) -> Arrays.compareUnsigned(a.rdata(), b.rdata()));
+
+  @Getter(AccessLevel.NONE)
+  private final Writer writer;
+
+  /**
+   * Pad owner names to the length of the longest owner name in the block.
+   */
+  private boolean align;
+  /**
+   * Sort RRs in canonical order within each block.
+   */
+  private boolean canonical;
+  /**
+   * Max number of RRs collected before writing, only used with alignment or canonical ordering.
+   */
+  private int blockSize = DEFAULT_BLOCK_SIZE;
+
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private final List<ResourceRecord> block = new ArrayList<>();
+
+  public ZoneWriter(Writer writer) {
+    this.writer = writer instanceof BufferedWriter ? writer : new BufferedWriter(writer, BUFFER_SIZE);
+  }
+
+  public ZoneWriter(WritableByteChannel channel) {
+    this(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), BUFFER_SIZE));
+  }
+
+  /**
+   * Write all RRs of the RRset.
+   */
+  public void write(RRset rrset) throws IOException {
+    for (ResourceRecord rr : rrset.getAll()) {
+      write(rr);
+    }
+  }
+
+  public void write(ResourceRecord rr) throws IOException {
+    if (!align && !canonical) {
+      writeRecord(rr, 0);
+      return;
+    }
+    block.add(rr);
+    if (block.size() >= blockSize) {
+      writeBlock();
+    }
+  }
+
+  /**
+   * Write a comment line, RRs collected for the current block are written first.
+   */
+  public void comment(String comment) throws IOException {
+    writeBlock();
+    writer.write("; ");
+    writer.write(comment);
+    writer.write('\n');
+  }
+
+  /**
+   * Write a directive line such as "$ORIGIN example.nl.", RRs collected for the current block are
+   * written first.
+   */
+  public void directive(String name, String value) throws IOException {
+    writeBlock();
+    writer.write(name);
+    writer.write(' ');
+    writer.write(value);
+    writer.write('\n');
+  }
+
+  private void writeBlock() throws IOException {
+    if (block.isEmpty()) {
+      return;
+    }
+    if (canonical) {
+      sort(block);
+    }
+    int maxLength = 0;
+    if (align) {
+      for (ResourceRecord rr : block) {
+        maxLength = Math.max(maxLength, rr.getName().length());
+      }
+    }
+    for (ResourceRecord rr : block) {
+      writeRecord(rr, maxLength);
+    }
+    block.clear();
+  }
+
+  /**
+   * Sort the RRs in canonical order, the canonical rdata is only created for RRs with the same
+   * owner, class and type and at most once per RR.
+   */
+  private static void sort(List<ResourceRecord> rrs) {
+    Entry[] entries = new Entry[rrs.size()];
+    for (int i = 0; i < entries.length; i++) {
+      entries[i] = new Entry(rrs.get(i));
+    }
+    Arrays.sort(entries, CANONICAL_ORDER);
+    for (int i = 0; i < entries.length; i++) {
+      rrs.set(i, entries[i].rr);
+    }
+  }
+
+  private void writeRecord(ResourceRecord rr, int maxLength) throws IOException {
+    writer.write(rr.toZone(maxLength));
+    writer.write('\n');
+  }
+
+  /**
+   * Write the RRs collected for the current block and flush the output.
+   */
+  @Override
+  public void flush() throws IOException {
+    writeBlock();
+    writer.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * @return the type of the RR, also for types not in ResourceRecordType
+   */
+  private static int typeValue(ResourceRecord rr) {
+    if (rr.getType() != null) {
+      return rr.getType().getValue();
+    }
+    return rr instanceof AbstractResourceRecord ? ((AbstractResourceRecord) rr).getRawType() : 0;
+  }
+
+  /**
+   * @return the class of the RR, also for classes not in ResourceRecordClass
+   */
+  private static int classValue(ResourceRecord rr) {
+    if (rr.getClassz() != null) {
+      return rr.getClassz().getValue();
+    }
+    return rr instanceof AbstractResourceRecord ? ((AbstractResourceRecord) rr).getRawClassz() : 0;
+  }
+
+  /**
+   * Compare names in canonical order, label by label starting at the rightmost label, ignoring
+   * ASCII case.
+   */
+  static int compareNames(String a, String b) {
+    int endA = labelsEnd(a);
+    int endB = labelsEnd(b);
+    while (endA > 0 && endB > 0) {
+      int startA = a.lastIndexOf('.', endA - 1) + 1;
+      int startB = b.lastIndexOf('.', endB - 1) + 1;
+      int lengthA = endA - startA;
+      int lengthB = endB - startB;
+      for (int i = 0; i < Math.min(lengthA, lengthB); i++) {
+        int c = Character.compare(lowerCase(a.charAt(startA + i)), lowerCase(b.charAt(startB + i)));
+        if (c != 0) {
+          return c;
+        }
+      }
+      if (lengthA != lengthB) {
+        return lengthA - lengthB;
+      }
+      endA = startA - 1;
+      endB = startB - 1;
+    }
+    // the name with fewer labels is sorted first
+    return Integer.compare(Math.max(endA, 0), Math.max(endB, 0));
+  }
+
+  private static int labelsEnd(String name) {
+    int end = name.length();
+    return end > 0 && name.charAt(end - 1) == '.' ? end - 1 : end;
+  }
+
+  private static char lowerCase(char c) {
+    return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+  }
+
+  private static final class Entry {
+    private final ResourceRecord rr;
+    // uncompressed rdata with lowercase names (RFC 4034 section 6.2), created when needed
+    private byte[] rdata;
+
+    private Entry(ResourceRecord rr) {
+      this.rr = rr;
+    }
+
+    private byte[] rdata() {
+      if (rdata == null) {
+        rdata = CanonicalForm.rdata(rr);
+      }
+      return rdata;
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package nl.sidnlabs.dnslib.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.message.Header;
+import nl.sidnlabs.dnslib.message.Message;
+import nl.sidnlabs.dnslib.message.Question;
+import nl.sidnlabs.dnslib.message.records.edns0.ClientSubnetOption;
+import nl.sidnlabs.dnslib.message.records.edns0.OPTResourceRecord;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.OpcodeType;
+import nl.sidnlabs.dnslib.types.RcodeType;
+import nl.sidnlabs.dnslib.types.ResourceRecordClass;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+import nl.sidnlabs.dnslib.zone.AnswerEngine;
+import nl.sidnlabs.dnslib.zone.Zone;
+import nl.sidnlabs.dnslib.zone.ZoneTestUtil;
+
+public class AnswerCacheTest {
+
+  private static final String ZONE = String.join("\n",
+      "$ORIGIN example.nl.",
+      "$TTL 60",
+      "@ 300 SOA ns1 hostmaster 1 2 3 4 5",
+      "@ NS ns1",
+      "ns1 A 192.0.2.1",
+      "www 30 A 192.0.2.2",
+      "");
+
+  private static final long NOW = 1_000_000_000L;
+
+  private final AnswerEngine engine = new AnswerEngine(zone());
+
+  private Zone zone() {
+    Zone zone = new Zone("example.nl");
+    ZoneTestUtil.parse(ZONE, zone::add);
+    return zone;
+  }
+
+  private static Message query(int id, String qname, ResourceRecordType qtype, boolean dnssec) {
+    Message query = new Message();
+    Header header = new Header();
+    header.setId((char) id);
+    header.setOpCode(OpcodeType.STANDARD);
+    query.setHeader(header);
+    query.addQuestion(new Question(qname, qtype, ResourceRecordClass.IN));
+    if (dnssec) {
+      OPTResourceRecord opt = new OPTResourceRecord();
+      opt.setDnssecDo(true);
+      query.setPseudo(opt);
+    }
+    return query;
+  }
+
+  private static byte[] encode(Message message) {
+    NetworkData buffer = new NetworkData(512);
+    message.encode(buffer);
+    return buffer.write();
+  }
+
+  private boolean put(AnswerCache cache, Message query, long now) {
+    byte[] response = encode(engine.answer(query));
+    return cache.put(response, 0, response.length, now);
+  }
+
+  private static Message get(AnswerCache cache, Message query, long now) {
+    byte[] data = encode(query);
+    byte[] response = cache.get(data, 0, data.length, now);
+    return response == null ? null : new Message(new NetworkData(response));
+  }
+
+  @Test
+  public void positive() {
+    AnswerCache cache = new AnswerCache(100);
+    assertTrue(put(cache, query(1, "www.example.nl.", ResourceRecordType.A, false), NOW));
+
+    byte[] query = encode(query(2, "WWW.Example.nl.", ResourceRecordType.A, false));
+    byte[] data = cache.get(query, 0, query.length, NOW + 10_500);
+    // the case of the qname in the query is kept
+    assertEquals('W', data[13]);
+    assertEquals('E', data[17]);
+
+    Message response = new Message(new NetworkData(data));
+    assertEquals(2, response.getHeader().getId());
+    assertEquals(20, response.getAnswer().get(0).getAll().get(0).getTtl());
+
+    // different qtype and DO bit
+    assertNull(get(cache, query(3, "www.example.nl.", ResourceRecordType.AAAA, false), NOW));
+    assertNull(get(cache, query(3, "www.example.nl.", ResourceRecordType.A, true), NOW));
+
+    // expired
+    assertNull(get(cache, query(4, "www.example.nl.", ResourceRecordType.A, false), NOW + 30_000));
+    assertEquals(0, cache.size());
+    assertEquals(1, cache.getHits());
+    assertEquals(3, cache.getMisses());
+  }
+
+  @Test
+  public void negative() {
+    AnswerCache cache = new AnswerCache(100);
+    assertTrue(put(cache, query(1, "nope.example.nl.", ResourceRecordType.A, false), NOW));
+
+    Message response = get(cache, query(2, "nope.example.nl.", ResourceRecordType.A, false), NOW);
+    assertEquals(RcodeType.NXDOMAIN, response.getHeader().getRcode());
+    // TTL of the SOA record is the SOA minimum
+    assertEquals(5, response.getAuthority().get(0).getAll().get(0).getTtl());
+    assertNull(get(cache, query(3, "nope.example.nl.", ResourceRecordType.A, false), NOW + 5000));
+
+    // negative response without SOA is not cacheable
+    Message nodata = engine.answer(query(1, "ns1.example.nl.", ResourceRecordType.AAAA, false));
+    nodata.getAuthority().clear();
+    byte[] data = encode(nodata);
+    assertFalse(cache.put(data, 0, data.length, NOW));
+  }
+
+  @Test
+  public void clientSubnet() {
+    AnswerCache cache = new AnswerCache(100);
+    Message response = engine.answer(query(1, "www.example.nl.", ResourceRecordType.A, false));
+    OPTResourceRecord opt = new OPTResourceRecord();
+    opt.addOption(subnet("192.0.2.77", 32, 24));
+    response.setPseudo(opt);
+    byte[] data = encode(response);
+    assertTrue(cache.put(data, 0, data.length, NOW));
+
+    Message query = query(2, "www.example.nl.", ResourceRecordType.A, false);
+    query.setPseudo(new OPTResourceRecord().addOption(subnet("192.0.2.200", 32, 0)));
+    assertNotNull(get(cache, query, NOW));
+
+    query.setPseudo(new OPTResourceRecord().addOption(subnet("192.0.3.1", 32, 0)));
+    assertNull(get(cache, query, NOW));
+    // a query without ECS does not get an answer for a specific subnet
+    assertNull(get(cache, query(3, "www.example.nl.", ResourceRecordType.A, false), NOW));
+  }
+
+  private static ClientSubnetOption subnet(String address, int source, int scope) {
+    ClientSubnetOption option = new ClientSubnetOption();
+    option.setAddress(address);
+    option.setSourcenetmask(source);
+    option.setScopenetmask(scope);
+    return option;
+  }
+
+  @Test
+  public void eviction() {
+    AnswerCache cache = new AnswerCache(2, 1);
+    put(cache, query(1, "www.example.nl.", ResourceRecordType.A, false), NOW);
+    put(cache, query(1, "ns1.example.nl.", ResourceRecordType.A, false), NOW);
+    // referenced entries get a second chance
+    assertNotNull(get(cache, query(2, "www.example.nl.", ResourceRecordType.A, false), NOW));
+
+    put(cache, query(1, "example.nl.", ResourceRecordType.SOA, false), NOW);
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictions());
+    assertNotNull(get(cache, query(2, "www.example.nl.", ResourceRecordType.A, false), NOW));
+    assertNull(get(cache, query(2, "ns1.example.nl.", ResourceRecordType.A, false), NOW));
+  }
+
+}
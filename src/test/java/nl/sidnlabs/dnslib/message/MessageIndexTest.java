@@ -0,0 +1,63 @@
+package nl.sidnlabs.dnslib.message;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.exception.DecodeFailureType;
+import nl.sidnlabs.dnslib.message.records.NSResourceRecord;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.MessageSection;
+
+public class MessageIndexTest {
+
+  @Test
+  public void decodeRecordFromIndex() {
+    byte[] data = bytes("pcap/sample_lookup_sidnlabs_nl_qtype_ns_response.bin");
+    NetworkData buffer = new NetworkData(data);
+    MessageIndex index = new MessageIndex();
+
+    assertTrue(index.build(buffer));
+    assertEquals(0, buffer.getReaderIndex());
+    assertEquals(data.length, index.getEnd());
+
+    Message message = new Message(new NetworkData(data));
+    int answers = index.getCount(MessageSection.ANSWER);
+    assertEquals(message.getAnswer().get(0).getAll().size(), answers);
+
+    // decode the last answer only
+    NSResourceRecord rr =
+        (NSResourceRecord) index.decodeRecord(buffer, MessageSection.ANSWER, answers - 1);
+    assertEquals(message.getAnswer().get(0).getAll().get(answers - 1).getName(), rr.getName());
+    assertEquals(2, index.getType(buffer, MessageSection.ANSWER, answers - 1));
+  }
+
+  @Test
+  public void rdlengthPastEndOfMessage() {
+    byte[] data = bytes("pcap/sample_lookup_sidnlabs_nl_qtype_ns_response.bin");
+    // rdlength of the first answer, after header, question (17) and owner, type, class and ttl (10)
+    data[12 + 17 + 10] = (byte) 0xFF;
+
+    MessageIndex index = new MessageIndex();
+    assertFalse(index.build(new NetworkData(data)));
+    assertEquals(DecodeFailureType.TRUNCATED, index.getFailure());
+    assertEquals(MessageSection.ANSWER, index.getFailureSection());
+    assertEquals(29, index.getFailureOffset());
+    assertEquals(1, index.getValidCount(MessageSection.QUESTION));
+    assertEquals(0, index.getValidCount(MessageSection.ANSWER));
+  }
+
+  private byte[] bytes(String filename) {
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream(filename)) {
+      return in.readAllBytes();
+    } catch (IOException e) {
+      throw new RuntimeException("Cannot load data", e);
+    }
+  }
+
+}
@@ -0,0 +1,123 @@
+package nl.sidnlabs.dnslib.message;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.exception.DecodeFailureType;
+import nl.sidnlabs.dnslib.message.records.AResourceRecord;
+import nl.sidnlabs.dnslib.message.records.NSResourceRecord;
+import nl.sidnlabs.dnslib.message.records.edns0.OPTResourceRecord;
+import nl.sidnlabs.dnslib.message.records.edns0.PaddingOption;
+import nl.sidnlabs.dnslib.message.records.edns0.PaddingPolicy;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.MessageSection;
+import nl.sidnlabs.dnslib.types.MessageType;
+
+public class MessageTest {
+
+  @Test
+  public void encodeDecodedMessage() {
+    Message original = new Message(new NetworkData(bytes("pcap/sample_lookup_sidnlabs_nl_qtype_ns_response.bin")));
+
+    NetworkData buffer = new NetworkData();
+    original.encode(buffer);
+    Message copy = new Message(new NetworkData(buffer.write()));
+
+    assertEquals(original.getQuestions(), copy.getQuestions());
+    assertEquals(original.getAnswer().size(), copy.getAnswer().size());
+    assertEquals(original.getAdditional().size(), copy.getAdditional().size());
+    assertEquals(((NSResourceRecord) original.getAnswer().get(0).getAll().get(0)).getNameserver(),
+        ((NSResourceRecord) copy.getAnswer().get(0).getAll().get(0)).getNameserver());
+    assertEquals(((AResourceRecord) original.getAdditional().get(0).getAll().get(0)).getAddress(),
+        ((AResourceRecord) copy.getAdditional().get(0).getAll().get(0)).getAddress());
+  }
+
+  @Test
+  public void encodeWithBlockPadding() {
+    Message message = new Message(new NetworkData(bytes("pcap/sample_lookup_sidnlabs_nl_qtype_ns_response.bin")));
+    message.setPseudo(new OPTResourceRecord().addOption(new PaddingOption(100)));
+    message.setPaddingPolicy(PaddingPolicy.RECOMMENDED);
+
+    NetworkData buffer = new NetworkData();
+    message.encode(buffer);
+    byte[] data = buffer.write();
+    assertEquals(468, data.length);
+
+    // the existing padding option is replaced
+    Message padded = new Message(new NetworkData(data));
+    assertEquals(1, padded.getPseudo().getOptionCount());
+
+    // a query is padded to a multiple of 128
+    message.getHeader().setQr(MessageType.QUERY);
+    message.setPaddingPolicy(PaddingPolicy.blockLength(128, 468));
+    buffer = new NetworkData();
+    message.encode(buffer);
+    assertEquals(256, buffer.write().length);
+  }
+
+  @Test
+  public void tryDecodeValidMessage() {
+    byte[] data = bytes("pcap/sample_lookup_sidnlabs_nl_qtype_ns_response.bin");
+    DecodeResult result = Message.tryDecode(new NetworkData(data), false);
+    Message expected = new Message(new NetworkData(data));
+
+    assertTrue(result.isSuccess());
+    assertEquals(expected.getQuestions(), result.getMessage().getQuestions());
+    assertEquals(expected.getAnswer().size(), result.getMessage().getAnswer().size());
+    assertEquals(expected.getAdditional().size(), result.getMessage().getAdditional().size());
+  }
+
+  @Test
+  public void tryDecodeTruncatedMessage() {
+    byte[] data = bytes("pcap/sample_lookup_sidnlabs_nl_qtype_ns_response.bin");
+    // header (12) + question for sidnlabs.nl (17) + first 11 bytes of the first answer
+    DecodeResult result = Message.tryDecode(new NetworkData(Arrays.copyOf(data, 40)), false);
+
+    assertFalse(result.isSuccess());
+    assertEquals(DecodeFailureType.TRUNCATED, result.getFailure());
+    assertEquals(MessageSection.ANSWER, result.getSection());
+    assertEquals(29, result.getOffset());
+    assertEquals("sidnlabs.nl.", result.getMessage().getQuestions().get(0).getQName());
+  }
+
+  @Test
+  public void tryDecodePointerLoop() {
+    // query with qname "a" followed by a pointer back to the start of the qname
+    byte[] data = new byte[] {0, 1, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 1, 97, -64, 12, 0, 1, 0, 1};
+    DecodeResult result = Message.tryDecode(new NetworkData(data), false);
+
+    assertEquals(DecodeFailureType.POINTER_LOOP, result.getFailure());
+    assertEquals(MessageSection.QUESTION, result.getSection());
+    assertEquals(12, result.getOffset());
+  }
+
+  @Test
+  public void tryDecodeRdataPointer() {
+    byte[] data = bytes("pcap/sample_lookup_sidnlabs_nl_qtype_ns_response.bin");
+    // the rdata of the first answer is ns2.sidn followed by a pointer, make the pointer point forward
+    data[51] = (byte) 0x7F;
+    DecodeResult result = Message.tryDecode(new NetworkData(data), false);
+
+    assertFalse(result.isSuccess());
+    assertEquals(DecodeFailureType.POINTER_OFFSET, result.getFailure());
+    assertEquals(MessageSection.ANSWER, result.getSection());
+    assertEquals(29, result.getOffset());
+    assertTrue(result.getMessage().getAnswer().isEmpty());
+  }
+
+  private byte[] bytes(String filename) {
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream(filename)) {
+      return in.readAllBytes();
+    } catch (IOException e) {
+      throw new RuntimeException("Cannot load data", e);
+    }
+  }
+
+}
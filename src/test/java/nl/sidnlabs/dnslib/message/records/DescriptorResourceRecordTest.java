@@ -0,0 +1,159 @@
+package nl.sidnlabs.dnslib.message.records;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.exception.DnsDecodeException;
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.zone.ZoneTestUtil;
+
+public class DescriptorResourceRecordTest {
+
+  private static final String ZONE = String.join("\n",
+      "$ORIGIN example.nl.",
+      "$TTL 3600",
+      "@ CAA 0 issue \"ca.example.net; account=230123\"",
+      "_443._tcp TLSA 3 1 1 0c72ac70b745ac19998811b131d662c9ac69dbdbe7cb23e5b514b56664c5d3d6",
+      "old DNAME new.example.com.",
+      "@ CSYNC 66 3 A NS AAAA",
+      "host EUI48 00-00-5e-00-53-2a",
+      "host NID 10 0014:4fff:ff20:ee64",
+      "host L32 10 10.1.2.0",
+      "rp RP mbox.example.nl. txt.example.nl.",
+      "");
+
+  @Test
+  public void fieldAccess() {
+    List<ResourceRecord> rrs = ZoneTestUtil.parse(ZONE);
+
+    DescriptorResourceRecord caa = (DescriptorResourceRecord) rrs.get(0);
+    assertEquals(0, caa.getInt(0));
+    assertEquals("issue", caa.getString(caa.indexOf("tag")));
+    assertEquals("ca.example.net; account=230123", caa.getString(2));
+
+    DescriptorResourceRecord tlsa = (DescriptorResourceRecord) rrs.get(1);
+    assertEquals(3, tlsa.getInt(tlsa.indexOf("usage")));
+    assertEquals(32, tlsa.getBytes(3).length);
+
+    DescriptorResourceRecord dname = (DescriptorResourceRecord) rrs.get(2);
+    assertEquals("new.example.com.", dname.getName(0));
+
+    DescriptorResourceRecord csync = (DescriptorResourceRecord) rrs.get(3);
+    assertEquals(66, csync.getLong(0));
+    assertEquals(3, csync.getTypes(2).size());
+    assertEquals("A NS AAAA", csync.getValue("types"));
+
+    DescriptorResourceRecord rp = (DescriptorResourceRecord) rrs.get(7);
+    assertEquals("txt.example.nl.", rp.getName(1));
+  }
+
+  @Test
+  public void presentationRoundTrip() {
+    List<String> expected = Arrays.asList(
+        "0 issue \"ca.example.net; account=230123\"",
+        "3 1 1 0C72AC70B745AC19998811B131D662C9AC69DBDBE7CB23E5B514B56664C5D3D6",
+        "new.example.com.",
+        "66 3 A NS AAAA",
+        "00-00-5e-00-53-2a",
+        "10 0014:4fff:ff20:ee64",
+        "10 10.1.2.0",
+        "mbox.example.nl. txt.example.nl.");
+
+    List<ResourceRecord> rrs = ZoneTestUtil.parse(ZONE);
+    StringBuilder zone = new StringBuilder();
+    for (int i = 0; i < rrs.size(); i++) {
+      String text = rrs.get(i).toZone(0);
+      assertEquals(expected.get(i), text.substring(text.lastIndexOf('\t') + 1));
+      zone.append(text).append('\n');
+    }
+
+    // parsing the presentation format again must result in the same rdata
+    List<ResourceRecord> again = ZoneTestUtil.parse(zone.toString());
+    for (int i = 0; i < rrs.size(); i++) {
+      assertEquals(rrs.get(i), again.get(i));
+    }
+  }
+
+  @Test
+  public void decodeCompressedName() {
+    NetworkData buffer = new NetworkData(512);
+    DNSStringUtil.writeName("example.nl.", buffer);
+    int rrOffset = buffer.getWriterIndex();
+    // DNAME with owner and target compressed
+    buffer.writeChar(0xC000);
+    buffer.writeChar(39);
+    buffer.writeChar(1);
+    buffer.writeInt(300);
+    buffer.writeChar(6);
+    buffer.writeByte(3);
+    buffer.writeBytes("new".getBytes());
+    buffer.writeChar(0xC000);
+    byte[] wire = buffer.write();
+
+    NetworkData in = new NetworkData(wire);
+    in.setReaderIndex(rrOffset);
+    ResourceRecord rr = ResourceRecordFactory.getInstance().createResourceRecord(39);
+    rr.decode(in, false);
+    assertEquals(wire.length, in.getReaderIndex());
+
+    DescriptorResourceRecord dname = (DescriptorResourceRecord) rr;
+    assertEquals("new.example.nl.", dname.getName(0));
+    // rdata no longer refers to the message
+    assertArrayEquals(DNSStringUtil.writeName("new.example.nl."), dname.getRdata());
+
+    NetworkData out = new NetworkData(512);
+    dname.encode(out);
+    byte[] encoded = out.write();
+    // owner, type, class, ttl and rdlength followed by the uncompressed target
+    assertEquals(12 + 10 + 16, encoded.length);
+  }
+
+  @Test
+  public void decodeSizedFields() {
+    NetworkData rdata = new NetworkData(64);
+    // HIP: HIT length 2, algorithm 2, public key length 3
+    rdata.writeByte(2);
+    rdata.writeByte(2);
+    rdata.writeChar(3);
+    rdata.writeBytes(new byte[] {(byte) 0xAB, (byte) 0xCD, 1, 2, 3});
+    DNSStringUtil.writeName("rvs1.example.nl.", rdata);
+    DNSStringUtil.writeName("rvs2.example.nl.", rdata);
+
+    DescriptorResourceRecord hip = decode(55, rdata.write());
+    assertEquals(2, hip.getNames(hip.indexOf("rendezvousServers")).size());
+    assertTrue(hip.toZone(0).endsWith("\t2 ABCD AQID rvs1.example.nl. rvs2.example.nl."));
+  }
+
+  @Test
+  public void rejectInvalidRdata() {
+    // CSYNC without flags
+    assertThrows(DnsDecodeException.class, () -> decode(62, new byte[] {0, 0, 0, 1, 0}));
+    // EUI48 with 7 bytes
+    assertThrows(DnsDecodeException.class, () -> decode(108, new byte[7]));
+    // HIP with a HIT length beyond the rdata
+    assertThrows(DnsDecodeException.class, () -> decode(55, new byte[] {9, 2, 0, 0, 1}));
+  }
+
+  private static DescriptorResourceRecord decode(int type, byte[] rdata) {
+    NetworkData buffer = new NetworkData(512);
+    DNSStringUtil.writeName("example.nl.", buffer);
+    buffer.writeChar(type);
+    buffer.writeChar(1);
+    buffer.writeInt(300);
+    buffer.writeChar(rdata.length);
+    buffer.writeBytes(rdata);
+
+    ResourceRecord rr = ResourceRecordFactory.getInstance().createResourceRecord(type);
+    rr.decode(new NetworkData(buffer.write()), false);
+    return (DescriptorResourceRecord) rr;
+  }
+
+}
@@ -0,0 +1,102 @@
+package nl.sidnlabs.dnslib.message.records;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.exception.DnsDecodeException;
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+
+public class SVCBResourceRecordTest {
+
+  private static final byte[] PARAMS = new byte[] {
+      // mandatory=alpn,ipv4hint
+      0, 0, 0, 4, 0, 1, 0, 4,
+      // alpn=h2,h3-19
+      0, 1, 0, 9, 2, 'h', '2', 5, 'h', '3', '-', '1', '9',
+      // port=8443
+      0, 3, 0, 2, 0x20, (byte) 0xFB,
+      // ipv4hint=192.0.2.1
+      0, 4, 0, 4, (byte) 192, 0, 2, 1,
+      // ech
+      0, 5, 0, 3, 1, 2, 3,
+      // ipv6hint=2001:db8::1
+      0, 6, 0, 16, 0x20, 0x01, 0x0D, (byte) 0xB8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1};
+
+  private static byte[] wire(int type, byte[] params) {
+    NetworkData buffer = new NetworkData(512);
+    DNSStringUtil.writeName("example.com.", buffer);
+    buffer.writeChar(type);
+    buffer.writeChar(1);
+    buffer.writeInt(300);
+    byte[] target = DNSStringUtil.writeName("foo.example.org.");
+    buffer.writeChar(2 + target.length + params.length);
+    buffer.writeChar(16);
+    buffer.writeBytes(target);
+    buffer.writeBytes(params);
+    return buffer.write();
+  }
+
+  private static ResourceRecord decode(byte[] wire) {
+    ResourceRecord rr = ResourceRecordFactory.getInstance().createResourceRecord(65);
+    rr.decode(new NetworkData(wire), false);
+    return rr;
+  }
+
+  @Test
+  public void decodeParams() {
+    byte[] wire = wire(65, PARAMS);
+    HTTPSResourceRecord rr = (HTTPSResourceRecord) decode(wire);
+
+    assertEquals(ResourceRecordType.HTTPS, rr.getType());
+    assertEquals(16, rr.getSvcPriority());
+    assertFalse(rr.isAliasMode());
+    assertEquals("foo.example.org.", rr.getTargetName());
+    assertEquals(6, rr.getParamCount());
+    assertArrayEquals(new int[] {1, 4}, rr.getMandatory());
+    assertEquals(Arrays.asList("h2", "h3-19"), rr.getAlpn());
+    assertFalse(rr.isNoDefaultAlpn());
+    assertEquals(8443, rr.getPort());
+    assertEquals(Collections.singletonList("192.0.2.1"), rr.getIpv4Hint());
+    assertEquals(Collections.singletonList("2001:db8::1"), rr.getIpv6Hint());
+    assertArrayEquals(new byte[] {1, 2, 3}, rr.getEch());
+    assertTrue(rr.toZone(0).endsWith("16 foo.example.org. mandatory=alpn,ipv4hint alpn=h2,h3-19 "
+        + "port=8443 ipv4hint=192.0.2.1 ech=AQID ipv6hint=2001:db8::1"));
+
+    NetworkData out = new NetworkData(512);
+    rr.encode(out);
+    assertArrayEquals(wire, out.write());
+  }
+
+  @Test
+  public void aliasMode() {
+    byte[] wire = wire(64, new byte[0]);
+    wire[wire.length - DNSStringUtil.writeName("foo.example.org.").length - 1] = 0;
+    SVCBResourceRecord rr = new SVCBResourceRecord();
+    rr.decode(new NetworkData(wire), false);
+    assertTrue(rr.isAliasMode());
+    assertEquals(0, rr.getParamCount());
+    assertEquals(-1, rr.getPort());
+    assertTrue(rr.getAlpn().isEmpty());
+  }
+
+  @Test
+  public void malformed() {
+    // keys not in increasing order
+    byte[] params = new byte[] {0, 3, 0, 2, 1, (byte) 0xBB, 0, 1, 0, 3, 2, 'h', '2'};
+    assertThrows(DnsDecodeException.class, () -> decode(wire(65, params)));
+    // value longer than the rdata
+    byte[] truncated = new byte[] {0, 3, 0, 4, 1, (byte) 0xBB};
+    assertThrows(DnsDecodeException.class, () -> decode(wire(65, truncated)));
+  }
+
+}
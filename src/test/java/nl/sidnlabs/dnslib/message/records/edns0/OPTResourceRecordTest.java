@@ -0,0 +1,142 @@
+package nl.sidnlabs.dnslib.message.records.edns0;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.metrics.DefaultDecodeMetrics;
+
+public class OPTResourceRecordTest {
+
+  // OPT RR with DO bit, ECS 192.0.2.0/24, a cookie and 5 bytes padding
+  private static final byte[] OPT = new byte[] {0, 0, 41, 16, 0, 0, 0, -128, 0, 0, 32,
+      // ecs
+      0, 8, 0, 7, 0, 1, 24, 0, -64, 0, 2,
+      // cookie
+      0, 10, 0, 8, 1, 2, 3, 4, 5, 6, 7, 8,
+      // padding
+      0, 12, 0, 5, 0, 0, 0, 0, 0};
+
+  @Test
+  public void decodeOptionsOnDemand() {
+    NetworkData buffer = new NetworkData(OPT);
+    OPTResourceRecord opt = new OPTResourceRecord();
+    opt.decode(buffer, false);
+
+    assertEquals(OPT.length, buffer.getReaderIndex());
+    assertTrue(opt.isDnssecDo());
+    assertEquals(3, opt.getOptionCount());
+    assertEquals(5, opt.getPaddingLength());
+    assertTrue(opt.hasOption(10));
+    assertFalse(opt.hasOption(3));
+
+    ClientSubnetOption ecs = opt.getClientSubnet();
+    assertEquals("192.0.2.0", ecs.getAddress());
+    assertEquals(24, ecs.getSourcenetmask());
+
+    assertEquals(3, opt.getOptions().size());
+    assertEquals(10, opt.getOptions().get(1).getCode());
+  }
+
+  @Test
+  public void readClientSubnet() {
+    OPTResourceRecord opt = new OPTResourceRecord();
+    opt.decode(new NetworkData(OPT), false);
+
+    byte[] address = new byte[16];
+    assertEquals(ClientSubnetOption.FAMILY_IPV4, opt.getClientSubnetFamily());
+    assertEquals(24, opt.getClientSubnetSourcePrefix());
+    assertEquals(0, opt.getClientSubnetScopePrefix());
+    assertEquals(4, opt.getClientSubnetAddress(address));
+    assertArrayEquals(new byte[] {-64, 0, 2, 0}, Arrays.copyOf(address, 4));
+
+    // same result from the decoded option
+    assertEquals(3, opt.getOptions().size());
+    address = new byte[16];
+    assertEquals(24, opt.getClientSubnetSourcePrefix());
+    assertEquals(4, opt.getClientSubnetAddress(address));
+    assertArrayEquals(new byte[] {-64, 0, 2, 0}, Arrays.copyOf(address, 4));
+
+    // no ECS option
+    opt = new OPTResourceRecord();
+    opt.decode(new NetworkData(OPT, 0, 11), false);
+    assertEquals(-1, opt.getClientSubnetFamily());
+    assertEquals(-1, opt.getClientSubnetAddress(address));
+  }
+
+  @Test
+  public void encodeDecodedOptions() {
+    OPTResourceRecord opt = new OPTResourceRecord();
+    opt.decode(new NetworkData(OPT), false);
+
+    // options not decoded, rdata is copied
+    NetworkData buffer = new NetworkData(64);
+    opt.encode(buffer);
+    assertArrayEquals(OPT, buffer.write());
+
+    // encode all decoded options
+    assertEquals(3, opt.getOptions().size());
+    buffer = new NetworkData(64);
+    opt.encode(buffer);
+    assertArrayEquals(OPT, buffer.write());
+  }
+
+  @Test
+  public void encodeNewOptions() {
+    OPTResourceRecord opt = new OPTResourceRecord();
+    opt.addOption(new TcpKeepaliveOption()).addOption(new PaddingOption(2));
+
+    NetworkData buffer = new NetworkData(64);
+    opt.encode(buffer);
+    // DO bit is not set
+    assertArrayEquals(new byte[] {0, 0, 41, 16, 0, 0, 0, 0, 0, 0, 10, 0, 11, 0, 0, 0, 12, 0, 2, 0, 0},
+        buffer.write());
+  }
+
+  @Test
+  public void decodeRegisteredOption() {
+    EDNS0OptionRegistry
+        .getInstance()
+        .register(65001, (code, len, buffer) -> new TcpKeepaliveOption(code, 2, buffer));
+    byte[] data = new byte[] {0, 0, 41, 16, 0, 0, 0, 0, 0, 0, 6, -3, -23, 0, 2, 1, 44};
+
+    OPTResourceRecord opt = new OPTResourceRecord();
+    opt.decode(new NetworkData(data), false);
+    assertEquals(300, ((TcpKeepaliveOption) opt.getOption(65001)).getTimeout());
+  }
+
+  @Test
+  public void ignoreOptionLongerThanRdata() {
+    byte[] data = OPT.clone();
+    // length of the padding option
+    data[data.length - 6] = 6;
+    OPTResourceRecord opt = new OPTResourceRecord();
+    opt.decode(new NetworkData(data), false);
+
+    assertEquals(2, opt.getOptionCount());
+    assertEquals(-1, opt.getPaddingLength());
+  }
+
+  @Test
+  public void countMalformedOption() {
+    // ECS option with only the family
+    byte[] data = new byte[] {0, 0, 41, 16, 0, 0, 0, 0, 0, 0, 6, 0, 8, 0, 2, 0, 1};
+    DefaultDecodeMetrics metrics = new DefaultDecodeMetrics();
+    OPTResourceRecord opt = new OPTResourceRecord();
+    opt.decode(new NetworkData(data), false);
+    opt.setMetrics(metrics);
+
+    assertEquals(1, opt.getOptionCount());
+    assertNull(opt.getClientSubnet());
+    assertEquals(0, opt.getOptions().size());
+    assertEquals(2, metrics.getOptionFailures());
+  }
+
+}
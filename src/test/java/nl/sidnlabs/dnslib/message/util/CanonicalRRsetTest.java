@@ -0,0 +1,104 @@
+package nl.sidnlabs.dnslib.message.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.ResourceRecordFactory;
+import nl.sidnlabs.dnslib.zone.ZoneTestUtil;
+
+public class CanonicalRRsetTest {
+
+  @Test
+  public void compareNamesInCanonicalOrder() {
+    // example from RFC 4034 section 6.1
+    List<String> expected = Arrays.asList("example.", "a.example.", "yljkjljk.a.example.",
+        "Z.a.example.", "zABC.a.EXAMPLE.", "z.example.", "*.z.example.", "x.z.example.");
+
+    List<byte[]> names = new ArrayList<>();
+    for (String name : expected) {
+      byte[] wire = DNSStringUtil.writeName(name);
+      if (name.startsWith("x")) {
+        // \200 label
+        wire[1] = (byte) 200;
+      }
+      names.add(wire);
+    }
+    List<byte[]> sorted = new ArrayList<>(names);
+    Collections.shuffle(sorted);
+    sorted.sort(CanonicalForm.NAME_ORDER);
+    for (int i = 0; i < names.size(); i++) {
+      assertArrayEquals(names.get(i), sorted.get(i), expected.get(i));
+    }
+
+    assertEquals(0, CanonicalForm.compareNames(DNSStringUtil.writeName("WWW.Example.NL."), 0,
+        DNSStringUtil.writeName("www.example.nl"), 0));
+    assertArrayEquals(DNSStringUtil.writeName("www.example.nl."),
+        CanonicalForm.name("WWW.Example.NL"));
+    assertArrayEquals(new byte[] {0}, CanonicalForm.name("."));
+  }
+
+  @Test
+  public void sortAndRemoveDuplicates() {
+    StringBuilder zone = new StringBuilder("$ORIGIN example.nl.\n");
+    for (int i = 9; i >= 0; i--) {
+      zone.append("@ 3600 NS NS").append(i).append(".Example.NL.\n");
+    }
+    // duplicate with different case
+    zone.append("@ 3600 NS ns5.example.nl.\n");
+    List<ResourceRecord> rrs = ZoneTestUtil.parse(zone.toString());
+
+    CanonicalRRset canonical = new CanonicalRRset(true).set("Example.NL.", rrs);
+    assertEquals(10, canonical.size());
+    assertArrayEquals(DNSStringUtil.writeName("example.nl."),
+        Arrays.copyOf(canonical.getOwner(), canonical.getOwnerLength()));
+    for (int i = 0; i < canonical.size(); i++) {
+      assertArrayEquals(DNSStringUtil.writeName("ns" + i + ".example.nl."),
+          canonical.getRdata(i));
+    }
+
+    // reuse for a smaller RRset
+    canonical.set("example.nl.", rrs.subList(0, 2));
+    assertEquals(2, canonical.size());
+    assertArrayEquals(DNSStringUtil.writeName("ns8.example.nl."), canonical.getRdata(0));
+    assertTrue(canonical.getRecord(1) == rrs.get(0));
+  }
+
+  @Test
+  public void decompressRdata() {
+    NetworkData buffer = new NetworkData(512);
+    DNSStringUtil.writeName("Example.NL.", buffer);
+    int rrOffset = buffer.getWriterIndex();
+    // MX with compressed owner and exchange
+    buffer.writeChar(0xC000);
+    buffer.writeChar(15);
+    buffer.writeChar(1);
+    buffer.writeInt(300);
+    buffer.writeChar(9);
+    buffer.writeChar(10);
+    buffer.writeByte(4);
+    buffer.writeBytes("MAIL".getBytes());
+    buffer.writeChar(0xC000);
+
+    NetworkData in = new NetworkData(buffer.write());
+    in.setReaderIndex(rrOffset);
+    ResourceRecord mx = ResourceRecordFactory.getInstance().createResourceRecord(15);
+    mx.decode(in, false);
+
+    byte[] expected = new byte[] {0, 10, 4, 'm', 'a', 'i', 'l', 7, 'e', 'x', 'a', 'm', 'p', 'l',
+        'e', 2, 'n', 'l', 0};
+    assertArrayEquals(expected, CanonicalForm.rdata(mx));
+    // the decoded rdata has a compressed name and is not used
+    assertArrayEquals(expected,
+        new CanonicalRRset(true).set("example.nl.", Collections.singletonList(mx)).getRdata(0));
+  }
+
+}
@@ -0,0 +1,58 @@
+package nl.sidnlabs.dnslib.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.message.records.edns0.ClientSubnetOption;
+
+public class ClientSubnetAggregatorTest {
+
+  @Test
+  public void countPerPrefix() {
+    ClientSubnetAggregator aggregator = new ClientSubnetAggregator(24, 48);
+    aggregator.add(ecs("192.0.2.1", 32));
+    aggregator.add(ecs("192.0.2.200", 24));
+    aggregator.add(ecs("198.51.100.0", 24));
+    aggregator.add(ecs("2001:db8:1:2::", 56));
+    aggregator.add(ecs("2001:db8:1:3::", 64));
+    aggregator.add(null);
+
+    assertEquals(3, aggregator.size());
+    assertEquals(5, aggregator.getTotal());
+
+    Map<String, Long> counts = aggregator.toMap();
+    assertEquals(2, counts.get("192.0.2.0/24").longValue());
+    assertEquals(1, counts.get("198.51.100.0/24").longValue());
+    assertEquals(2, counts.get("2001:db8:1:0:0:0:0:0/48").longValue());
+  }
+
+  @Test
+  public void growAndMerge() {
+    ClientSubnetAggregator first = new ClientSubnetAggregator();
+    ClientSubnetAggregator second = new ClientSubnetAggregator();
+    for (int i = 0; i < 5000; i++) {
+      ClientSubnetOption ecs = ecs("10." + (i >> 8) + "." + (i & 0xFF) + ".0", 24);
+      first.add(ecs);
+      second.add(ecs);
+    }
+    first.merge(second);
+
+    assertEquals(5000, first.size());
+    assertEquals(10000, first.getTotal());
+    ClientSubnetOption ecs = ecs("10.19.135.0", 24);
+    assertEquals(2, first
+        .getCount(ecs.getFam(), ecs.getSourcenetmask(), ecs.getAddressHigh(),
+            ecs.getAddressLow()));
+  }
+
+  private ClientSubnetOption ecs(String address, int prefix) {
+    ClientSubnetOption ecs = new ClientSubnetOption();
+    ecs.setAddress(address);
+    ecs.setSourcenetmask(prefix);
+    return ecs;
+  }
+
+}
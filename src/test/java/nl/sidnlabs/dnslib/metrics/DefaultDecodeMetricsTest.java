@@ -0,0 +1,61 @@
+package nl.sidnlabs.dnslib.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.exception.DecodeFailureType;
+import nl.sidnlabs.dnslib.message.Message;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.MessageSection;
+
+public class DefaultDecodeMetricsTest {
+
+  // response for www.e-gezondheid.be with 2 NS records in authority and an OPT record
+  private final static byte[] REFERRAL = new byte[] {111, -121, -128, 0, 0, 1, 0, 0, 0, 2, 0, 1, 3,
+      119, 119, 119, 12, 101, 45, 103, 101, 122, 111, 110, 100, 104, 101, 105, 100, 2, 98, 101, 0,
+      0, 1, 0, 1, -64, 16, 0, 2, 0, 1, 0, 1, 81, -128, 0, 25, 7, 103, 97, 110, 100, 97, 108, 102,
+      12, 115, 101, 110, 105, 111, 114, 112, 108, 97, 110, 101, 116, 2, 102, 114, 0, -64, 16, 0, 2,
+      0, 1, 0, 1, 81, -128, 0, 7, 4, 110, 115, 115, 112, -64, 57, 0, 0, 41, 16, 0, 0, 0, 0, 0, 0,
+      0};
+
+  @Test
+  public void countDecodedMessage() {
+    DefaultDecodeMetrics metrics = new DefaultDecodeMetrics(true);
+    new Message(new NetworkData(REFERRAL), false, false, metrics);
+    Message partial = new Message(new NetworkData(REFERRAL), true, false, metrics);
+
+    // the OPT record must be found after skipping the authority section
+    assertNotNull(partial.getPseudo());
+
+    assertEquals(2, metrics.getMessages());
+    assertEquals(1, metrics.getPartialMessages());
+    assertEquals(2L * REFERRAL.length, metrics.getBytes());
+    assertEquals(2, metrics.getRecords(MessageSection.QUESTION));
+    assertEquals(4, metrics.getRecords(MessageSection.AUTHORITY));
+    assertEquals(2, metrics.getRecords(MessageSection.ADDITIONAL));
+    assertEquals(4, metrics.getRecordsByType(2));
+    assertEquals(2, metrics.getRecordsByType(41));
+    assertEquals(2, Arrays.stream(metrics.getLatencyHistogram()).sum());
+    assertEquals(0, metrics.getFailures());
+  }
+
+  @Test
+  public void countFailures() {
+    DefaultDecodeMetrics metrics = new DefaultDecodeMetrics();
+    byte[] truncated = Arrays.copyOf(REFERRAL, 60);
+
+    new Message(new NetworkData(truncated), false, true, metrics);
+    assertThrows(RuntimeException.class,
+        () -> new Message(new NetworkData(truncated), false, false, metrics));
+
+    assertEquals(0, metrics.getMessages());
+    assertEquals(2, metrics.getFailures(DecodeFailureType.TRUNCATED));
+    assertEquals(1, metrics.getAllowedFailures());
+  }
+
+}
@@ -0,0 +1,96 @@
+package nl.sidnlabs.dnslib.store;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.message.RRset;
+import nl.sidnlabs.dnslib.message.records.AResourceRecord;
+import nl.sidnlabs.dnslib.message.records.MXResourceRecord;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.types.ResourceRecordClass;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+import nl.sidnlabs.dnslib.zone.ZoneTestUtil;
+
+public class RecordStoreTest {
+
+  private static final String ZONE = String.join("\n",
+      "$ORIGIN example.nl.",
+      "$TTL 60",
+      "@ SOA ns1 hostmaster 1 2 3 4 5",
+      "@ NS ns1",
+      "@ MX 10 mail",
+      "ns1 A 192.0.2.1",
+      "www A 192.0.2.2",
+      "www 120 A 192.0.2.3",
+      "mail A 192.0.2.4",
+      "www AAAA 2001:db8::1",
+      "");
+
+  private static List<ResourceRecord> records() {
+    return ZoneTestUtil.parse(ZONE);
+  }
+
+  @Test
+  public void addAndRead() {
+    try (RecordStore store = new RecordStore()) {
+      List<ResourceRecord> records = records();
+      records.forEach(store::add);
+
+      assertEquals(records.size(), store.size());
+      assertEquals(7, store.getRRsetCount());
+      // example.nl, ns1, www and mail
+      assertEquals(4, store.getNames().size());
+
+      RecordView view = store.view();
+      for (int i = 0; i < records.size(); i++) {
+        ResourceRecord rr = records.get(i);
+        view.moveTo(i);
+        assertEquals(rr.getName(), view.getName());
+        assertEquals(rr.getType(), view.getType());
+        assertEquals(rr.getClassz(), view.getClassz());
+        assertEquals(rr.getTtl(), view.getTtl());
+        assertEquals(rr.toZone(60), view.toResourceRecord().toZone(60));
+      }
+
+      RRset www = store.getRRset("WWW.example.nl.", ResourceRecordType.A, ResourceRecordClass.IN);
+      assertEquals(2, www.size());
+      assertEquals("192.0.2.2", ((AResourceRecord) www.getAll().get(0)).getAddress());
+      assertEquals("192.0.2.3", ((AResourceRecord) www.getAll().get(1)).getAddress());
+
+      int mx = store.find("example.nl", ResourceRecordType.MX, ResourceRecordClass.IN);
+      assertEquals(-1, view.moveTo(mx).getNext());
+      assertEquals("mail.example.nl.",
+          ((MXResourceRecord) view.toResourceRecord()).getExchange());
+
+      assertNull(store.getRRset("www.example.nl.", ResourceRecordType.MX, ResourceRecordClass.IN));
+      assertEquals(-1, store.find("nope.example.nl.", ResourceRecordType.A, ResourceRecordClass.IN));
+    }
+  }
+
+  @Test
+  public void rawRdata() {
+    try (RecordStore store = new RecordStore()) {
+      byte[] rdata = new byte[] {1, 2, 3};
+      // enough RRs to rehash the tables
+      for (int i = 0; i < 5000; i++) {
+        store.add("n" + i + ".example.nl.", ResourceRecordType.TXT, ResourceRecordClass.IN, i,
+            rdata);
+      }
+      assertEquals(5000, store.getNames().size());
+      assertEquals(5000, store.getRRsetCount());
+
+      RecordView view = store.view();
+      int id = store.find("N4321.example.nl.", ResourceRecordType.TXT, ResourceRecordClass.IN);
+      assertEquals(4321, view.moveTo(id).getTtl());
+      assertEquals("n4321.example.nl.", view.getName());
+      assertArrayEquals(rdata, view.getRdata());
+      assertEquals(3, view.getRdataSegment().byteSize());
+    }
+  }
+
+}
@@ -0,0 +1,112 @@
+package nl.sidnlabs.dnslib.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.dnssec.DNSKEYResourceRecord;
+import nl.sidnlabs.dnslib.message.records.dnssec.DSResourceRecord;
+import nl.sidnlabs.dnslib.types.AlgorithmType;
+import nl.sidnlabs.dnslib.types.DigestType;
+import nl.sidnlabs.dnslib.zone.ZoneTestUtil;
+
+public class KeyIndexTest {
+
+  // examples from RFC 4034 section 5.4 and RFC 4509 section 2.3
+  private static final String ZONE = String.join("\n",
+      "dskey.example.com. 86400 IN DNSKEY 256 3 5 ( AQOeiiR0GOMYkDshWoSKz9Xz",
+      "    fwJr1AYtsmx3TGkJaNXVbfi/2pHm822aJ5iI9BMzNXxeYCmZDRD99WYwYqUSdjMmmAphXdvx",
+      "    egXd/M5+X7OrzKBaMbCVdFLUUh6DhweJBjEVv5f2wwjM9XzcnOf+EPbtG9DMBmADjFDc2w/r",
+      "    ljwvFw== ) ; key id = 60485",
+      "DSKEY.example.com. 86400 IN DS 60485 5 1 2BB183AF5F22588179A53B0A98631FAD1A292118",
+      "dskey.example.com. 86400 IN DS 60485 5 2 ( D4B7D520E7BB5F0F67674A0CCEB1E3E0",
+      "    614B93C4F9E99B8383F6A1E4469DA50A )",
+      "dskey.example.com. 86400 IN DS 60485 5 2 ( D4B7D520E7BB5F0F67674A0CCEB1E3E0",
+      "    614B93C4F9E99B8383F6A1E4469DA50B )",
+      "");
+
+  @Test
+  public void createDigest() throws Exception {
+    List<ResourceRecord> rrs = ZoneTestUtil.parse(ZONE);
+    DNSKEYResourceRecord key = (DNSKEYResourceRecord) rrs.get(0);
+    assertEquals(60485, key.getKeytag());
+
+    assertArrayEquals(Hex.decodeHex("2BB183AF5F22588179A53B0A98631FAD1A292118"),
+        key.getDigest(DigestType.SHA1));
+    // digest is cached
+    assertSame(key.getDigest(DigestType.SHA256), key.getDigest(DigestType.SHA256));
+    assertEquals(48, key.getDigest(DigestType.SHA384).length);
+    assertNull(key.getDigest(DigestType.GOST));
+
+    assertTrue(KeyUtil.isKeyandDSDigestMatch(key, (DSResourceRecord) rrs.get(1)));
+    assertTrue(KeyUtil.isKeyandDSDigestMatch(key, (DSResourceRecord) rrs.get(2)));
+    // same key tag but wrong digest
+    assertTrue(KeyUtil.isKeyandDSmatch(key, (DSResourceRecord) rrs.get(3)));
+    assertFalse(KeyUtil.isKeyandDSDigestMatch(key, (DSResourceRecord) rrs.get(3)));
+  }
+
+  @Test
+  public void resetDigest() {
+    List<ResourceRecord> rrs = ZoneTestUtil.parse(ZONE);
+    DNSKEYResourceRecord key = (DNSKEYResourceRecord) rrs.get(0);
+    DSResourceRecord ds = (DSResourceRecord) rrs.get(2);
+    assertTrue(KeyUtil.isKeyandDSDigestMatch(key, ds));
+
+    key.setName("other.example.com.");
+    assertFalse(MessageDigest.isEqual(ds.getDigest(), key.getDigest(DigestType.SHA256)));
+    key.setName("dskey.example.com.");
+    key.setFlags((char) 257);
+    assertFalse(MessageDigest.isEqual(ds.getDigest(), key.getDigest(DigestType.SHA256)));
+    key.setFlags((char) 256);
+    assertTrue(KeyUtil.isKeyandDSDigestMatch(key, ds));
+
+    PublicKey publicKey = key.getPublicKey();
+    key.setAlgorithm(AlgorithmType.RSASHA256);
+    assertNotSame(publicKey, key.getPublicKey());
+    assertFalse(MessageDigest.isEqual(ds.getDigest(), key.getDigest(DigestType.SHA256)));
+  }
+
+  @Test
+  public void unknownAlgorithm() {
+    String zone = ZONE.replace(" 3 5 (", " 3 17 (").replace(" 60485 5 ", " 60485 17 ");
+    List<ResourceRecord> rrs = ZoneTestUtil.parse(zone);
+    DNSKEYResourceRecord key = (DNSKEYResourceRecord) rrs.get(0);
+    DSResourceRecord ds = (DSResourceRecord) rrs.get(2);
+    assertNull(key.getAlgorithm());
+    assertNull(ds.getAlgorithm());
+
+    assertNull(key.getDigest(DigestType.SHA256));
+    assertFalse(KeyUtil.isKeyandDSmatch(key, ds));
+    assertFalse(KeyUtil.isKeyandDSDigestMatch(key, ds));
+  }
+
+  @Test
+  public void matchDS() {
+    List<ResourceRecord> rrs = ZoneTestUtil.parse(ZONE);
+    DNSKEYResourceRecord key = (DNSKEYResourceRecord) rrs.get(0);
+
+    KeyIndex index = new KeyIndex(Collections.singletonList(key));
+    assertEquals(1, index.size());
+    assertEquals(1, index.find("DSKEY.example.com", 60485, 5).size());
+    assertTrue(index.find("dskey.example.com.", 60485, 8).isEmpty());
+
+    List<DSResourceRecord> ds = Arrays.asList((DSResourceRecord) rrs.get(1),
+        (DSResourceRecord) rrs.get(2), (DSResourceRecord) rrs.get(3));
+    assertEquals(Arrays.asList(key, key, null), index.match(ds));
+  }
+
+}
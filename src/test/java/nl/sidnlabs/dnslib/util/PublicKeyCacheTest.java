@@ -0,0 +1,111 @@
+package nl.sidnlabs.dnslib.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.math.BigInteger;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.message.records.ResourceRecordFactory;
+import nl.sidnlabs.dnslib.message.records.dnssec.DNSKEYResourceRecord;
+import nl.sidnlabs.dnslib.message.util.DNSStringUtil;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+
+public class PublicKeyCacheTest {
+
+  // ECDSA P-256 key from RFC 6605 section 6.1
+  private static final byte[] P256 = Base64.getDecoder().decode(
+      "GojIhhXUN/u4v54ZQqGSnyhWJwaubCvTmeexv7bR6edbkrSqQpF64cYbcB7wNcP+e+MAnLr+Wi9xMWyQLc8NAA==");
+  // Ed25519 key from RFC 8080 section 6.1
+  private static final byte[] ED25519 =
+      Base64.getDecoder().decode("l02Woi0iS8Aa25FQkUd9RMzZHJpBoRQwAQEX1SxZJA4=");
+
+  private static DNSKEYResourceRecord dnskey(int algorithm, byte[] keydata) {
+    NetworkData buffer = new NetworkData(1024);
+    DNSStringUtil.writeName("example.nl.", buffer);
+    buffer.writeChar(48);
+    buffer.writeChar(1);
+    buffer.writeInt(3600);
+    buffer.writeChar(4 + keydata.length);
+    buffer.writeChar(257);
+    buffer.writeByte(3);
+    buffer.writeByte(algorithm);
+    buffer.writeBytes(keydata);
+
+    DNSKEYResourceRecord rr =
+        (DNSKEYResourceRecord) ResourceRecordFactory.getInstance().createResourceRecord(48);
+    rr.decode(new NetworkData(buffer.write()), false);
+    return rr;
+  }
+
+  @Test
+  public void createKeyOnFirstUse() {
+    PublicKeyCache shared = PublicKeyCache.getShared();
+    shared.clear();
+    long misses = shared.getMisses();
+
+    DNSKEYResourceRecord a = dnskey(13, P256);
+    DNSKEYResourceRecord b = dnskey(13, P256.clone());
+    // decoding does not create the key
+    assertEquals(0, shared.size());
+    assertEquals(misses, shared.getMisses());
+
+    assertNotNull(a.getPublicKey());
+    // same key data results in the same key object
+    assertSame(a.getPublicKey(), b.getPublicKey());
+    assertEquals(misses + 1, shared.getMisses());
+    assertEquals(1, shared.size());
+  }
+
+  @Test
+  public void supportedFormats() throws Exception {
+    PublicKeyCache cache = new PublicKeyCache(10);
+
+    KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+    generator.initialize(1024);
+    RSAPublicKey rsa = (RSAPublicKey) generator.generateKeyPair().getPublic();
+    byte[] exponent = unsigned(rsa.getPublicExponent());
+    byte[] modulus = unsigned(rsa.getModulus());
+    byte[] keydata = new byte[1 + exponent.length + modulus.length];
+    keydata[0] = (byte) exponent.length;
+    System.arraycopy(exponent, 0, keydata, 1, exponent.length);
+    System.arraycopy(modulus, 0, keydata, 1 + exponent.length, modulus.length);
+    assertEquals(rsa, cache.get(keydata, 8));
+
+    ECPublicKey ec = (ECPublicKey) cache.get(P256, 13);
+    assertEquals(new BigInteger(1, Arrays.copyOf(P256, 32)), ec.getW().getAffineX());
+    assertEquals("EdDSA", cache.get(ED25519, 15).getAlgorithm());
+
+    // wrong length for the algorithm and unsupported algorithm
+    assertNull(cache.get(ED25519, 13));
+    assertNull(cache.get(ED25519, 3));
+    // the invalid key is cached as well
+    assertNull(cache.get(ED25519, 13));
+    assertEquals(1, cache.getHits());
+  }
+
+  @Test
+  public void bounded() {
+    PublicKeyCache cache = new PublicKeyCache(2);
+    for (int i = 0; i < 10; i++) {
+      byte[] keydata = ED25519.clone();
+      keydata[0] = (byte) i;
+      cache.get(keydata, 15);
+    }
+    assertEquals(2, cache.size());
+  }
+
+  private static byte[] unsigned(BigInteger value) {
+    byte[] bytes = value.toByteArray();
+    return bytes[0] == 0 ? Arrays.copyOfRange(bytes, 1, bytes.length) : bytes;
+  }
+
+}
@@ -0,0 +1,78 @@
+package nl.sidnlabs.dnslib.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.apache.commons.codec.DecoderException;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.message.records.edns0.CookieOption;
+import nl.sidnlabs.dnslib.util.ServerCookieGenerator.Status;
+
+public class ServerCookieGeneratorTest {
+
+  // test vector from rfc9018 appendix A.1
+  private static final byte[] SECRET = hex("e5e973e5a6b2a43f48e7dc849e37bfcf");
+  private static final byte[] CLIENT_COOKIE = hex("2464c4abcf10c957");
+  private static final byte[] CLIENT_ADDRESS = new byte[] {(byte) 198, 51, 100, 100};
+  private static final long TIMESTAMP = 1559731985;
+  private static final byte[] SERVER_COOKIE = hex("010000005cf79f111f8130c3eee29480");
+
+  @Test
+  public void sipHashReferenceVector() {
+    // key 00..0f and message 00..0e from the SipHash paper
+    byte[] key = new byte[16];
+    byte[] data = new byte[15];
+    for (int i = 0; i < key.length; i++) {
+      key[i] = (byte) i;
+    }
+    System.arraycopy(key, 0, data, 0, data.length);
+    long[] k = SipHash.key(key);
+
+    assertEquals(0xa129ca6149be45e5L, SipHash.hash(k[0], k[1], data, 0, data.length));
+  }
+
+  @Test
+  public void generateServerCookie() {
+    ServerCookieGenerator generator = new ServerCookieGenerator(SECRET);
+    assertArrayEquals(SERVER_COOKIE, generator.generate(CLIENT_COOKIE, CLIENT_ADDRESS, TIMESTAMP));
+  }
+
+  @Test
+  public void verifyServerCookie() {
+    ServerCookieGenerator generator = new ServerCookieGenerator(SECRET);
+    CookieOption cookie = new CookieOption(CLIENT_COOKIE, SERVER_COOKIE);
+
+    assertEquals(Status.VALID, generator.verify(cookie, CLIENT_ADDRESS, TIMESTAMP + 10));
+    assertEquals(Status.VALID_REISSUE, generator.verify(cookie, CLIENT_ADDRESS, TIMESTAMP + 2000));
+    assertEquals(Status.EXPIRED, generator.verify(cookie, CLIENT_ADDRESS, TIMESTAMP + 4000));
+    assertEquals(Status.INVALID, generator.verify(cookie, new byte[] {1, 2, 3, 4}, TIMESTAMP));
+
+    generator.rotate(new byte[16]);
+    assertEquals(Status.VALID_REISSUE, generator.verify(cookie, CLIENT_ADDRESS, TIMESTAMP));
+    generator.rotate(new byte[16]);
+    assertEquals(Status.INVALID, generator.verify(cookie, CLIENT_ADDRESS, TIMESTAMP));
+  }
+
+  @Test
+  public void verifyBatch() {
+    ServerCookieGenerator generator = new ServerCookieGenerator(SECRET);
+    CookieOption[] cookies = new CookieOption[] {new CookieOption(CLIENT_COOKIE, SERVER_COOKIE),
+        new CookieOption(CLIENT_COOKIE, null), null};
+    byte[][] addresses = new byte[][] {CLIENT_ADDRESS, CLIENT_ADDRESS, CLIENT_ADDRESS};
+    Status[] results = new Status[3];
+
+    assertEquals(1, generator.verify(cookies, addresses, 3, TIMESTAMP, results));
+    assertArrayEquals(new Status[] {Status.VALID, Status.NO_SERVER_COOKIE, null}, results);
+  }
+
+  private static byte[] hex(String value) {
+    try {
+      return Hex.decodeHex(value);
+    } catch (DecoderException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+}
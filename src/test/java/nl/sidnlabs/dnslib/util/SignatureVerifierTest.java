@@ -0,0 +1,142 @@
+package nl.sidnlabs.dnslib.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.message.RRset;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.dnssec.DNSKEYResourceRecord;
+import nl.sidnlabs.dnslib.message.records.dnssec.RRSIGResourceRecord;
+import nl.sidnlabs.dnslib.util.SignatureVerifier.Result;
+import nl.sidnlabs.dnslib.util.SignatureVerifier.Task;
+import nl.sidnlabs.dnslib.zone.ZoneTestUtil;
+
+public class SignatureVerifierTest {
+
+  // example from RFC 6605 section 6.1
+  private static final String ECDSA = String.join("\n",
+      "example.net. 3600 IN DNSKEY 257 3 13 (",
+      "    GojIhhXUN/u4v54ZQqGSnyhWJwaubCvTmeexv7bR6edb",
+      "    krSqQpF64cYbcB7wNcP+e+MAnLr+Wi9xMWyQLc8NAA== )",
+      "www.example.net. 3600 IN A 192.0.2.1",
+      "www.example.net. 3600 IN RRSIG A 13 3 3600 (",
+      "    20100909100439 20100812100439 55648 example.net.",
+      "    qx6wLYqmh+l9oCKTN6qIc+bw6ya+KJ8oMz0YP107epXA",
+      "    yGmt+3SNruPFKG7tZoLBLlUzGGus7ZwmwWep666VCw== )",
+      "");
+
+  // example from RFC 8080 section 6.1
+  private static final String ED25519 = String.join("\n",
+      "example.com. 3600 IN DNSKEY 257 3 15 (",
+      "    l02Woi0iS8Aa25FQkUd9RMzZHJpBoRQwAQEX1SxZJA4= )",
+      "example.com. 3600 IN MX 10 mail.example.com.",
+      "example.com. 3600 IN RRSIG MX 15 2 3600 (",
+      "    1440021600 1438207200 3613 example.com.",
+      "    oL9krJun7xfBOIWcGHi7mag5/hdZrKWw15jPGrHpjQeRAvTdszaPD+QL",
+      "    s3fx8A4M3e23mRZ9VrbpMngwcrqNAg== )",
+      "");
+
+  private static final long ECDSA_NOW = 1282000000L;
+  private static final long ED25519_NOW = 1439000000L;
+
+  private static Task task(String zone) {
+    List<ResourceRecord> rrs = ZoneTestUtil.parse(zone);
+    return new Task(RRset.createAs(rrs.get(1)), (RRSIGResourceRecord) rrs.get(2),
+        Collections.singletonList((DNSKEYResourceRecord) rrs.get(0)));
+  }
+
+  @Test
+  public void verifyEcdsa() {
+    SignatureVerifier verifier = new SignatureVerifier();
+    Task task = task(ECDSA);
+    assertEquals(Result.VALID,
+        verifier.verify(task.getRrset(), task.getRrsig(), task.getKeys(), ECDSA_NOW));
+
+    assertEquals(Result.EXPIRED,
+        verifier.verify(task.getRrset(), task.getRrsig(), task.getKeys(), 1300000000L));
+    assertEquals(Result.NOT_YET_VALID,
+        verifier.verify(task.getRrset(), task.getRrsig(), task.getKeys(), 1270000000L));
+
+    // changed signature
+    byte[] signature = task.getRrsig().getSignature();
+    signature[10] ^= 1;
+    assertEquals(Result.INVALID,
+        verifier.verify(task.getRrset(), task.getRrsig(), task.getKeys(), ECDSA_NOW));
+    signature[10] ^= 1;
+  }
+
+  @Test
+  public void verifyEd25519() {
+    SignatureVerifier verifier = new SignatureVerifier();
+    Task task = task(ED25519);
+    assertEquals(Result.VALID, verifier.verify(task.getRrset(), task.getRrsig(),
+        task.getKeys().get(0), ED25519_NOW));
+
+    // RRset with the owner in uppercase, the canonical form is the same
+    Task upper = task(ED25519.replace("example.com. 3600 IN MX", "EXAMPLE.com. 3600 IN MX")
+        .replace("mail.example.com.", "MAIL.Example.com."));
+    assertEquals(Result.VALID, verifier.verify(upper.getRrset(), upper.getRrsig(),
+        upper.getKeys(), ED25519_NOW));
+  }
+
+  @Test
+  public void rejectMismatch() {
+    SignatureVerifier verifier = new SignatureVerifier();
+    Task ecdsa = task(ECDSA);
+    Task ed25519 = task(ED25519);
+
+    // RRSIG for another RRset
+    assertEquals(Result.MISMATCH,
+        verifier.verify(ed25519.getRrset(), ecdsa.getRrsig(), ecdsa.getKeys(), ECDSA_NOW));
+    // key of another zone
+    assertEquals(Result.NO_KEY,
+        verifier.verify(ecdsa.getRrset(), ecdsa.getRrsig(), ed25519.getKeys(), ECDSA_NOW));
+  }
+
+  @Test
+  public void verifyWildcard() {
+    // the A record was created from *.example.net, the RRSIG has 2 labels
+    String zone = ECDSA.replace("RRSIG A 13 3", "RRSIG A 13 2");
+    Task task = task(zone);
+    // signature was created over www.example.net, not *.example.net
+    SignatureVerifier verifier = new SignatureVerifier();
+    assertEquals(Result.INVALID,
+        verifier.verify(task.getRrset(), task.getRrsig(), task.getKeys(), ECDSA_NOW));
+  }
+
+  @Test
+  public void verifyBatch() {
+    SignatureVerifier verifier = new SignatureVerifier();
+    List<Task> tasks = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      tasks.add(task(i % 2 == 0 ? ECDSA : ED25519));
+    }
+    Result[] results = verifier.verify(tasks, ECDSA_NOW, true);
+    for (int i = 0; i < results.length; i++) {
+      assertEquals(i % 2 == 0 ? Result.VALID : Result.NOT_YET_VALID, results[i]);
+    }
+
+    // the public key is created once for all tasks, by the shared cache
+    long misses = PublicKeyCache.getShared().getMisses();
+    tasks.clear();
+    for (int i = 0; i < 10; i++) {
+      tasks.add(task(ECDSA));
+    }
+    verifier.verify(tasks, ECDSA_NOW, false);
+    assertTrue(PublicKeyCache.getShared().getMisses() - misses <= 1);
+
+    Result[] expected = new Result[4];
+    Arrays.fill(expected, Result.VALID);
+    List<Task> ed = Collections.nCopies(4, task(ED25519));
+    assertArrayEquals(expected, verifier.verify(ed, ED25519_NOW, false));
+  }
+
+}
@@ -0,0 +1,184 @@
+package nl.sidnlabs.dnslib.zone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.message.Header;
+import nl.sidnlabs.dnslib.message.Message;
+import nl.sidnlabs.dnslib.message.Question;
+import nl.sidnlabs.dnslib.message.RRset;
+import nl.sidnlabs.dnslib.message.records.CNAMEResourceRecord;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.edns0.OPTResourceRecord;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.OpcodeType;
+import nl.sidnlabs.dnslib.types.RcodeType;
+import nl.sidnlabs.dnslib.types.ResourceRecordClass;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+
+public class AnswerEngineTest {
+
+  private static final String ZONE = String.join("\n",
+      "$ORIGIN example.nl.",
+      "$TTL 60",
+      "@ SOA ns1 hostmaster 1 2 3 4 5",
+      "@ NS ns1",
+      "@ NSEC alias SOA NS RRSIG NSEC",
+      "alias CNAME www",
+      "alias NSEC ns1 CNAME RRSIG NSEC",
+      "ns1 A 192.0.2.1",
+      "ns1 NSEC sub A RRSIG NSEC",
+      "sub NS ns.sub",
+      "sub NSEC *.wild NS RRSIG NSEC",
+      "ns.sub A 192.0.2.4",
+      "*.wild TXT \"wildcard\"",
+      "*.wild NSEC www TXT RRSIG NSEC",
+      "www A 192.0.2.2",
+      "www RRSIG A 13 3 60 20300101000000 20200101000000 12345 example.nl. AAAA",
+      "www NSEC example.nl. A RRSIG NSEC",
+      "old DNAME new.example.com.",
+      "");
+
+  private final AnswerEngine engine = new AnswerEngine(zone());
+
+  private Zone zone() {
+    Zone zone = new Zone("example.nl");
+    ZoneTestUtil.parse(ZONE, zone::add);
+    return zone;
+  }
+
+  private Message query(String qname, ResourceRecordType qtype, boolean dnssec) {
+    Message query = new Message();
+    Header header = new Header();
+    header.setId((char) 42);
+    header.setOpCode(OpcodeType.STANDARD);
+    header.setRd(true);
+    query.setHeader(header);
+    query.addQuestion(new Question(qname, qtype, ResourceRecordClass.IN));
+    if (dnssec) {
+      OPTResourceRecord opt = new OPTResourceRecord();
+      opt.setDnssecDo(true);
+      query.setPseudo(opt);
+    }
+    return query;
+  }
+
+  private static List<String> names(List<RRset> section) {
+    return section
+        .stream()
+        .map(rrset -> rrset.getOwner() + " " + rrset.getType())
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  public void answer() {
+    Message response = engine.answer(query("WWW.example.nl.", ResourceRecordType.A, false));
+    assertEquals(42, response.getHeader().getId());
+    assertTrue(response.getHeader().isAa());
+    assertTrue(response.getHeader().isRd());
+    assertEquals(RcodeType.NO_ERROR, response.getHeader().getRcode());
+    assertEquals(List.of("www.example.nl. A"), names(response.getAnswer()));
+
+    // signatures are only added with the DO bit
+    response = engine.answer(query("alias.example.nl.", ResourceRecordType.A, true));
+    assertEquals(List.of("alias.example.nl. CNAME", "www.example.nl. A", "www.example.nl. RRSIG"),
+        names(response.getAnswer()));
+
+    // the response can be encoded and decoded again
+    NetworkData out = new NetworkData(1024);
+    response.encode(out);
+    Message decoded = new Message(new NetworkData(out.write()));
+    assertEquals(3, decoded.getHeader().getAnCount());
+    assertTrue(decoded.getPseudo().isDnssecDo());
+  }
+
+  @Test
+  public void wildcard() {
+    Message response = engine.answer(query("a.b.wild.example.nl.", ResourceRecordType.TXT, true));
+    assertEquals(List.of("a.b.wild.example.nl. TXT"), names(response.getAnswer()));
+    ResourceRecord txt = response.getAnswer().get(0).getAll().get(0);
+    assertEquals("a.b.wild.example.nl.", txt.getName());
+    // the RR in the zone keeps its owner and shares the rdata with the copy
+    ResourceRecord wildcard =
+        engine.getZone().getRRset("*.wild.example.nl.", ResourceRecordType.TXT).getAll().get(0);
+    assertEquals("*.wild.example.nl.", wildcard.getName());
+    assertSame(wildcard.getRdata(), txt.getRdata());
+    assertEquals(wildcard.rDataToString(), txt.rDataToString());
+    // NSEC proving a.b.wild.example.nl does not exist
+    assertEquals(List.of("*.wild.example.nl. NSEC"), names(response.getAuthority()));
+  }
+
+  @Test
+  public void referral() {
+    Message response = engine.answer(query("www.sub.example.nl.", ResourceRecordType.A, true));
+    assertFalse(response.getHeader().isAa());
+    assertTrue(response.getAnswer().isEmpty());
+    // no DS, so the NSEC record for the delegation is added
+    assertEquals(List.of("sub.example.nl. NS", "sub.example.nl. NSEC"),
+        names(response.getAuthority()));
+    assertEquals(List.of("ns.sub.example.nl. A"), names(response.getAdditional()));
+  }
+
+  @Test
+  public void negative() {
+    Message response = engine.answer(query("nope.example.nl.", ResourceRecordType.A, true));
+    assertEquals(RcodeType.NXDOMAIN, response.getHeader().getRcode());
+    assertTrue(response.getHeader().isAa());
+    // covering NSEC for the name and for the wildcard at the closest encloser
+    assertEquals(
+        List.of("example.nl. SOA", "alias.example.nl. NSEC", "example.nl. NSEC"),
+        names(response.getAuthority()));
+
+    response = engine.answer(query("ns1.example.nl.", ResourceRecordType.AAAA, true));
+    assertEquals(RcodeType.NO_ERROR, response.getHeader().getRcode());
+    assertTrue(response.getAnswer().isEmpty());
+    assertEquals(List.of("example.nl. SOA", "ns1.example.nl. NSEC"),
+        names(response.getAuthority()));
+
+    response = engine.answer(query("www.example.com.", ResourceRecordType.A, false));
+    assertEquals(RcodeType.REFUSED, response.getHeader().getRcode());
+  }
+
+  @Test
+  public void dname() {
+    Message response = engine.answer(query("www.old.example.nl.", ResourceRecordType.A, false));
+    assertEquals(List.of("old.example.nl. DNAME", "www.old.example.nl. CNAME"),
+        names(response.getAnswer()));
+
+    // qname without trailing dot
+    response = engine.answer(query("www.old.example.nl", ResourceRecordType.A, false));
+    assertEquals("www.new.example.com.",
+        ((CNAMEResourceRecord) response.getAnswer().get(1).getAll().get(0)).getCname());
+  }
+
+  @Test
+  public void nsec3() {
+    Zone zone = new Zone("example.nl");
+    ZoneTestUtil.parse(String.join("\n",
+        "$ORIGIN example.nl.",
+        "$TTL 60",
+        "@ SOA ns1 hostmaster 1 2 3 4 5",
+        "@ NS ns1",
+        "@ NSEC3PARAM 1 0 0 -",
+        "ns1 A 192.0.2.1",
+        // hashes of example.nl. and ns1.example.nl.
+        "lnge26f688i1mu8ergk64rvettnmpllb NSEC3 1 0 0 - ukuc113ookr2b8d6k8ajt8lgi19l0ca1 SOA NS",
+        "ukuc113ookr2b8d6k8ajt8lgi19l0ca1 NSEC3 1 0 0 - lnge26f688i1mu8ergk64rvettnmpllb A",
+        ""), zone::add);
+    AnswerEngine nsec3 = new AnswerEngine(zone);
+
+    // closest encloser example.nl., next closer name and wildcard are covered
+    Message response = nsec3.answer(query("nope.example.nl", ResourceRecordType.A, true));
+    assertEquals(RcodeType.NXDOMAIN, response.getHeader().getRcode());
+    assertEquals(List.of("example.nl. SOA", "lnge26f688i1mu8ergk64rvettnmpllb.example.nl. NSEC3",
+        "ukuc113ookr2b8d6k8ajt8lgi19l0ca1.example.nl. NSEC3"), names(response.getAuthority()));
+  }
+
+}
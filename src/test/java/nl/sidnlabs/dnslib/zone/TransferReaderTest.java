@@ -0,0 +1,136 @@
+package nl.sidnlabs.dnslib.zone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.exception.DnsDecodeException;
+import nl.sidnlabs.dnslib.message.Header;
+import nl.sidnlabs.dnslib.message.Message;
+import nl.sidnlabs.dnslib.message.RRset;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.SOAResourceRecord;
+import nl.sidnlabs.dnslib.message.util.NetworkData;
+import nl.sidnlabs.dnslib.types.OpcodeType;
+import nl.sidnlabs.dnslib.types.RcodeType;
+
+public class TransferReaderTest {
+
+  private static List<ResourceRecord> records(String... lines) {
+    List<ResourceRecord> records = new ArrayList<>();
+    String zone = "$ORIGIN example.nl.\n$TTL 60\n" + String.join("\n", lines) + "\n";
+    ZoneTestUtil.parse(zone, records::add);
+    return records;
+  }
+
+  /**
+   * Create a TCP stream with a message for every group of RRs.
+   */
+  @SafeVarargs
+  private static ByteArrayInputStream stream(List<ResourceRecord>... messages) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (List<ResourceRecord> rrs : messages) {
+      Message message = new Message();
+      Header header = Header.createResponseHeader((char) 1);
+      header.setOpCode(OpcodeType.STANDARD);
+      header.setRcode(RcodeType.NO_ERROR);
+      message.setHeader(header);
+      // every RR in its own RRset, to keep the order of the SOA records
+      rrs.forEach(rr -> message.addAnswer(RRset.createAs(rr)));
+      NetworkData buffer = new NetworkData(4096);
+      message.encode(buffer);
+      byte[] data = buffer.write();
+      out.write(data.length >> 8);
+      out.write(data.length);
+      out.write(data, 0, data.length);
+    }
+    return new ByteArrayInputStream(out.toByteArray());
+  }
+
+  private static class Events implements TransferHandler {
+
+    private final List<String> events = new ArrayList<>();
+
+    @Override
+    public void start(SOAResourceRecord soa, boolean incremental) {
+      events.add((incremental ? "ixfr " : "axfr ") + soa.getSerial());
+    }
+
+    @Override
+    public void startDelete(SOAResourceRecord from) {
+      events.add("delete " + from.getSerial());
+    }
+
+    @Override
+    public void startAdd(SOAResourceRecord to) {
+      events.add("add " + to.getSerial());
+    }
+
+    @Override
+    public void delete(ResourceRecord rr) {
+      events.add("-" + rr.getName() + " " + rr.getType());
+    }
+
+    @Override
+    public void add(ResourceRecord rr) {
+      events.add("+" + rr.getName() + " " + rr.getType());
+    }
+
+    @Override
+    public void end(SOAResourceRecord soa) {
+      events.add("end " + soa.getSerial());
+    }
+  }
+
+  @Test
+  public void axfr() throws IOException {
+    ByteArrayInputStream in = stream(records("@ SOA ns1 hostmaster 3 2 3 4 5", "@ NS ns1"),
+        records("ns1 A 192.0.2.1", "@ SOA ns1 hostmaster 3 2 3 4 5"));
+    Events events = new Events();
+    TransferReader reader = new TransferReader(in);
+    reader.read(events);
+
+    assertEquals(Arrays.asList("axfr 3", "+example.nl. SOA", "+example.nl. NS", "+ns1.example.nl. A",
+        "end 3"), events.events);
+    assertEquals(2, reader.getMessages());
+    assertEquals(4, reader.getRecords());
+  }
+
+  @Test
+  public void ixfr() throws IOException {
+    ByteArrayInputStream in = stream(records("@ SOA ns1 hostmaster 3 2 3 4 5",
+        "@ SOA ns1 hostmaster 1 2 3 4 5", "old A 192.0.2.1", "@ SOA ns1 hostmaster 2 2 3 4 5",
+        "new A 192.0.2.2"),
+        records("@ SOA ns1 hostmaster 2 2 3 4 5", "@ SOA ns1 hostmaster 3 2 3 4 5",
+            "www A 192.0.2.3", "@ SOA ns1 hostmaster 3 2 3 4 5"));
+    Events events = new Events();
+    new TransferReader(in).read(events, 1);
+
+    assertEquals(Arrays.asList("ixfr 3", "delete 1", "-old.example.nl. A", "add 2",
+        "+new.example.nl. A", "delete 2", "add 3", "+www.example.nl. A", "end 3"), events.events);
+
+    // zone is up to date
+    events = new Events();
+    new TransferReader(stream(records("@ SOA ns1 hostmaster 3 2 3 4 5"))).read(events, 3);
+    assertEquals(Arrays.asList("ixfr 3", "end 3"), events.events);
+  }
+
+  @Test
+  public void errors() {
+    // stream ends before the final SOA record
+    assertThrows(DnsDecodeException.class,
+        () -> new TransferReader(stream(records("@ SOA ns1 hostmaster 3 2 3 4 5", "@ NS ns1")))
+            .read(new Events()));
+    assertThrows(DnsDecodeException.class,
+        () -> new TransferReader(stream(records("@ NS ns1"))).read(new Events()));
+  }
+
+}
@@ -0,0 +1,148 @@
+package nl.sidnlabs.dnslib.zone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.message.RRset;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+
+public class ZoneDiffTest {
+
+  private static final String FROM = String.join("\n",
+      "$ORIGIN example.nl.",
+      "$TTL 60",
+      "@ SOA ns1 hostmaster 1 2 3 4 5",
+      "@ NS ns1",
+      "ns1 A 192.0.2.1",
+      "www A 192.0.2.2",
+      "www A 192.0.2.3",
+      "old.sub A 192.0.2.4",
+      "mail 60 MX 10 mx1",
+      "");
+
+  private static final String TO = String.join("\n",
+      "$ORIGIN example.nl.",
+      "$TTL 60",
+      "@ SOA ns1 hostmaster 2 2 3 4 5",
+      "@ NS ns1",
+      "ns1 A 192.0.2.1",
+      "www A 192.0.2.3",
+      "www A 192.0.2.5",
+      "new.sub A 192.0.2.6",
+      "mail 120 MX 10 mx1",
+      "");
+
+  private static Zone zone(String text) {
+    Zone zone = new Zone("example.nl");
+    ZoneTestUtil.parse(text, zone::add);
+    return zone;
+  }
+
+  private static List<String> names(List<ResourceRecord> rrs) {
+    return rrs.stream().map(rr -> rr.toZone(60)).collect(Collectors.toList());
+  }
+
+  /**
+   * Write the zone in canonical order and parse it again, as a sorted stream.
+   */
+  private static List<ResourceRecord> sorted(Zone zone) throws IOException {
+    List<RRset> rrsets = new ArrayList<>();
+    zone.forEach(rrsets::add);
+    StringWriter out = new StringWriter();
+    ZoneWriter writer = new ZoneWriter(out);
+    writer.setCanonical(true);
+    for (RRset rrset : rrsets) {
+      writer.write(rrset);
+    }
+    writer.flush();
+    return ZoneTestUtil.parse(out.toString());
+  }
+
+  @Test
+  public void diffZones() throws IOException {
+    Zone from = zone(FROM);
+    Zone to = zone(TO);
+    ZoneDelta delta = ZoneDiff.diff(from, to);
+
+    assertEquals(1, delta.getFrom().getSerial());
+    assertEquals(2, delta.getTo().getSerial());
+    assertEquals(names(deleted()), names(delta.getDeleted()));
+    assertEquals(3, delta.getAdded().size());
+
+    // the streaming diff gives the same result
+    ZoneDelta streamed = ZoneDiff.diff(ZoneDiff.rrsets(sorted(from).iterator()),
+        ZoneDiff.rrsets(sorted(to).iterator()));
+    assertEquals(2, streamed.getTo().getSerial());
+    assertEquals(names(delta.getDeleted()), names(streamed.getDeleted()));
+    assertEquals(names(delta.getAdded()), names(streamed.getAdded()));
+
+    // applying the delta gives the new version
+    delta.apply(from);
+    assertTrue(ZoneDiff.diff(from, to).isEmpty());
+    assertEquals(2, from.getSoa().getSerial());
+  }
+
+  @Test
+  public void applySameLengthRdata() {
+    String rrs = "$ORIGIN example.nl.\n$TTL 60\n@ SOA ns1 hostmaster %d 2 3 4 5\n%s";
+    String old = String.format(rrs, 1, "t TXT aaa\nt TXT bbb\n"
+        + "t RRSIG TXT 8 3 60 20300101000000 20200101000000 1 example.nl. AAAA\n"
+        + "t RRSIG TXT 8 3 60 20300101000000 20200101000000 1 example.nl. BBBB\n");
+    Zone from = zone(old);
+    Zone to = zone(String.format(rrs, 2, "t TXT aaa\n"
+        + "t RRSIG TXT 8 3 60 20300101000000 20200101000000 1 example.nl. AAAA\n"));
+    ZoneDelta delta = ZoneDiff.diff(from, to);
+    assertEquals(2, delta.getDeleted().size());
+
+    // apply to a copy of the old version that does not share the RR instances
+    Zone copy = zone(old);
+    delta.apply(copy);
+    assertTrue(ZoneDiff.diff(copy, to).isEmpty());
+  }
+
+  @Test
+  public void diffMultipleClasses() throws IOException {
+    // canonical order is by class before type: the IN TXT RRset is written before the CH A RRset
+    String text = "$TTL 60\nwww.example.nl. CH A 192.0.2.1\nwww.example.nl. IN TXT a\n";
+    List<ResourceRecord> rrs = ZoneTestUtil.parse(text);
+    StringWriter out = new StringWriter();
+    ZoneWriter writer = new ZoneWriter(out);
+    writer.setCanonical(true);
+    for (ResourceRecord rr : rrs) {
+      writer.write(rr);
+    }
+    writer.flush();
+    List<ResourceRecord> sorted = ZoneTestUtil.parse(out.toString());
+    assertEquals(ResourceRecordType.TXT, sorted.get(0).getType());
+
+    // only the TXT RRset is deleted, the CH A RRset is in both versions
+    ZoneDelta delta = ZoneDiff.diff(ZoneDiff.rrsets(sorted.iterator()),
+        ZoneDiff.rrsets(sorted.subList(1, 2).iterator()));
+    assertEquals(1, delta.getDeleted().size());
+    assertEquals(ResourceRecordType.TXT, delta.getDeleted().get(0).getType());
+    assertTrue(delta.getAdded().isEmpty());
+  }
+
+  private static List<ResourceRecord> deleted() {
+    return ZoneTestUtil.parse("$ORIGIN example.nl.\n$TTL 60\n"
+        + "mail MX 10 mx1\nold.sub A 192.0.2.4\nwww A 192.0.2.2\n");
+  }
+
+  @Test
+  public void rrsets() throws IOException {
+    List<RRset> rrsets = new ArrayList<>();
+    ZoneDiff.rrsets(sorted(zone(FROM)).iterator()).forEachRemaining(rrsets::add);
+    assertEquals(6, rrsets.size());
+    assertEquals(2, rrsets.get(rrsets.size() - 1).size());
+  }
+
+}
@@ -0,0 +1,85 @@
+package nl.sidnlabs.dnslib.zone;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.message.RRset;
+import nl.sidnlabs.dnslib.message.records.AResourceRecord;
+import nl.sidnlabs.dnslib.message.records.ZONEMDResourceRecord;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+
+public class ZoneDigestTest {
+
+  // RFC 8976 appendix A.1
+  private static final String SIMPLE = String.join("\n",
+      "example.      86400  IN  SOA     ns1 admin 2018031900 (",
+      "                                 1800 900 604800 86400 )",
+      "              86400  IN  NS      ns1",
+      "              86400  IN  NS      ns2",
+      "              86400  IN  ZONEMD  2018031900 1 1 (",
+      "                                 c68090d90a7aed71",
+      "                                 6bc459f9340e3d7c",
+      "                                 1370d4d24b7e2fc3",
+      "                                 a1ddc0b9a87153b9",
+      "                                 a9713b3c9ae5cc27",
+      "                                 777f98b8e730044c )",
+      "ns1           3600   IN  A       203.0.113.63",
+      "ns2           3600   IN  AAAA    2001:db8::63",
+      "");
+
+  private static Zone zone() {
+    Zone zone = new Zone("example.");
+    ZoneTestUtil.parse(SIMPLE, "example.", zone::add);
+    return zone;
+  }
+
+  @Test
+  public void verify() {
+    Zone zone = zone();
+    assertTrue(ZoneDigest.verify(zone));
+
+    ZONEMDResourceRecord zonemd = (ZONEMDResourceRecord) zone
+        .getApex()
+        .getRRset(ResourceRecordType.ZONEMD)
+        .getAll()
+        .get(0);
+    assertArrayEquals(zonemd.getDigest(),
+        ZoneDigest.create(zone, ZoneDigest.HASH_SHA384).getDigest());
+
+    // streaming digest over the RRsets in canonical order
+    List<RRset> rrsets = new ArrayList<>();
+    zone.forEach(rrsets::add);
+    assertArrayEquals(zonemd.getDigest(),
+        ZoneDigest.digest(rrsets.iterator(), "example", ZoneDigest.HASH_SHA384));
+
+    // SHA-512 digest of the same zone
+    assertEquals(64, ZoneDigest.digest(zone, ZoneDigest.HASH_SHA512).length);
+
+    AResourceRecord a =
+        (AResourceRecord) zone.getRRset("ns1.example.", ResourceRecordType.A).getAll().get(0);
+    a.setAddress("203.0.113.64");
+    assertFalse(ZoneDigest.verify(zone));
+  }
+
+  @Test
+  public void largeZone() {
+    Zone zone = zone();
+    for (int i = 0; i < 2000; i++) {
+      String rr = "$ORIGIN example.\nh" + i + " 60 A 192.0.2." + i % 250 + "\n";
+      ZoneTestUtil.parse(rr, zone::add);
+    }
+    List<RRset> rrsets = new ArrayList<>();
+    zone.forEach(rrsets::add);
+    // parallel and sequential digests are the same
+    assertArrayEquals(ZoneDigest.digest(rrsets.iterator(), "example.", ZoneDigest.HASH_SHA384),
+        ZoneDigest.digest(zone, ZoneDigest.HASH_SHA384));
+  }
+
+}
@@ -0,0 +1,159 @@
+package nl.sidnlabs.dnslib.zone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import nl.sidnlabs.dnslib.exception.ZoneParseException;
+import nl.sidnlabs.dnslib.message.records.LOCResourceRecord;
+import nl.sidnlabs.dnslib.message.records.NotImplementedResourceRecord;
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.SOAResourceRecord;
+import nl.sidnlabs.dnslib.message.records.dnssec.NSEC3ResourceRecord;
+import nl.sidnlabs.dnslib.message.records.dnssec.RRSIGResourceRecord;
+
+public class ZoneParserTest {
+
+  private static final String ZONE = String.join("\n",
+      "$ORIGIN example.nl.",
+      "$TTL 1h",
+      "@  IN SOA ns1 hostmaster.example.nl. (",
+      "        2024010101 ; serial",
+      "        2h 1h 1w 300 )",
+      "   NS ns1",
+      "   NS ns2.example.com.",
+      "   MX 10 mail",
+      "ns1 600 A 192.0.2.1",
+      "    IN 600 AAAA 2001:db8::1",
+      "txt TXT \"hello world\" \"a\\\"b\" c\\059d",
+      "_sip._udp SRV 10 20 5060 sip",
+      "sub DS 12345 13 2 ( 0123456789abcdef0123456789abcdef",
+      "                    0123456789abcdef0123456789abcdef )",
+      "sub RRSIG DS 13 3 3600 20240201000000 20240101000000 12345 example.nl. AAECAw==",
+      "abc NSEC3 1 0 10 aabb 0123456789abcdefghijklmnopqrstuv A RRSIG",
+      "loc LOC 52 22 23.000 N 4 53 32.000 E -2.00m 0.00m 10000m 10m",
+      "unk TYPE65280 \\# 3 abcdef",
+      "a\\.b CNAME .",
+      "");
+
+  private List<String> parse(ZoneParser parser) {
+    List<String> result = new ArrayList<>();
+    try (parser) {
+      parser.parse(rr -> result.add(rr.toZone(0)));
+    }
+    return result;
+  }
+
+  @Test
+  public void parseZone() {
+    List<String> rrs = parse(new ZoneParser(new StringReader(ZONE), null));
+
+    assertEquals(14, rrs.size());
+    assertEquals("example.nl.\t3600\tIN\tSOA\tns1.example.nl. hostmaster.example.nl. 2024010101 "
+        + "7200 3600 604800 300", rrs.get(0));
+    assertEquals("example.nl.\t3600\tIN\tNS\tns2.example.com.", rrs.get(2));
+    assertEquals("example.nl.\t3600\tIN\tMX\t10 mail.example.nl.", rrs.get(3));
+    assertEquals("ns1.example.nl.\t600\tIN\tA\t192.0.2.1", rrs.get(4));
+    assertEquals("ns1.example.nl.\t600\tIN\tAAAA\t2001:db8::1", rrs.get(5));
+  }
+
+  @Test
+  public void parseRecords() {
+    ZoneParser parser = new ZoneParser(new StringReader(ZONE), null);
+    ResourceRecord rr;
+    List<ResourceRecord> rrs = new ArrayList<>();
+    while ((rr = parser.next()) != null) {
+      rrs.add(rr);
+    }
+    assertNull(parser.next());
+
+    SOAResourceRecord soa = (SOAResourceRecord) rrs.get(0);
+    assertEquals(2024010101L, soa.getSerial());
+    assertEquals(300, soa.getMinimum());
+
+    RRSIGResourceRecord rrsig = (RRSIGResourceRecord) rrs.get(9);
+    assertEquals(1706745600L, rrsig.getSignatureExpiration());
+
+    NSEC3ResourceRecord nsec3 = (NSEC3ResourceRecord) rrs.get(10);
+    assertEquals(10, nsec3.getIterations());
+    assertEquals(2, nsec3.getTypes().size());
+
+    LOCResourceRecord loc = (LOCResourceRecord) rrs.get(11);
+    assertEquals(10000000 - 200, loc.getAltitude());
+    assertEquals(0x16, loc.getHorizontalPrecision());
+    assertEquals(0x13, loc.getVerticalPrecision());
+
+    NotImplementedResourceRecord unknown = (NotImplementedResourceRecord) rrs.get(12);
+    assertEquals(65280, unknown.getRawType());
+    assertEquals(3, unknown.getRdata().length);
+  }
+
+  @Test
+  public void parseWithoutTtlUsesSoaMinimum() {
+    String zone = "example.nl. SOA ns1.example.nl. h.example.nl. 1 2 3 4 5\n"
+        + "example.nl. NS ns1.example.nl.\n";
+    List<String> rrs = parse(new ZoneParser(new StringReader(zone), null));
+    assertTrue(rrs.get(1).startsWith("example.nl.\t5\tIN\tNS"));
+  }
+
+  @Test
+  public void parseErrors() {
+    ZoneParseException e = assertThrows(ZoneParseException.class,
+        () -> parse(new ZoneParser(new StringReader("$TTL 60\nwww A 192.0.2.1\n"), null)));
+    assertEquals(2, e.getLine());
+
+    assertThrows(ZoneParseException.class, () -> parse(
+        new ZoneParser(new StringReader("www.nl. 60 A 192.0.2.1 ( \n"), null)));
+    assertThrows(ZoneParseException.class,
+        () -> parse(new ZoneParser(new StringReader("www.nl. 60 A 192.0.2.256\n"), null)));
+    assertThrows(ZoneParseException.class,
+        () -> parse(new ZoneParser(new StringReader("www.nl. 60 TYPE999 01\n"), null)));
+  }
+
+  @Test
+  public void parseInclude(@TempDir Path dir) throws IOException {
+    Files.writeString(dir.resolve("hosts.zone"), "$TTL 60\nwww A 192.0.2.1\n");
+    Files.writeString(dir.resolve("main.zone"),
+        "$TTL 300\n$ORIGIN example.nl.\n$INCLUDE hosts.zone sub.example.nl.\nmail A 192.0.2.2\n");
+
+    List<String> rrs = parse(new ZoneParser(dir.resolve("main.zone"), null));
+    assertEquals(List.of("www.sub.example.nl.\t60\tIN\tA\t192.0.2.1",
+        "mail.example.nl.\t300\tIN\tA\t192.0.2.2"), rrs);
+  }
+
+  @Test
+  public void parseParallel(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("large.zone");
+    try (Writer writer = Files.newBufferedWriter(file)) {
+      writer.write("$ORIGIN nl.\n$TTL 3600\n@ SOA ns1.dns.nl. hostmaster.dns.nl. 1 2 3 4 5\n");
+      for (int i = 0; i < 100000; i++) {
+        writer.write("domain" + i + " NS ns1.domain" + i + "\n\tNS ( ns2.example.com. )\n");
+        if (i % 1000 == 0) {
+          writer.write("$ORIGIN sub" + i + ".nl.\n");
+        }
+      }
+    }
+
+    List<String> sequential = parse(new ZoneParser(file, null));
+    List<String> parallel = Collections.synchronizedList(new ArrayList<>());
+    ZoneParser.parseParallel(file, null, 4, rr -> parallel.add(rr.toZone(0)));
+
+    assertEquals(200001, sequential.size());
+    assertEquals(sequential.stream().sorted().collect(Collectors.toList()),
+        parallel.stream().sorted().collect(Collectors.toList()));
+  }
+}
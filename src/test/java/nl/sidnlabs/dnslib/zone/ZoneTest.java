@@ -0,0 +1,185 @@
+package nl.sidnlabs.dnslib.zone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+import nl.sidnlabs.dnslib.types.ResourceRecordType;
+import nl.sidnlabs.dnslib.zone.ZoneLookup.Match;
+
+public class ZoneTest {
+
+  private static final String ZONE = String.join("\n",
+      "$ORIGIN example.nl.",
+      "$TTL 60",
+      "@ SOA ns1 hostmaster 1 2 3 4 5",
+      "@ NS ns1",
+      "ns1 A 192.0.2.1",
+      "www.a.b A 192.0.2.2",
+      "*.wild A 192.0.2.3",
+      "sub NS ns.sub",
+      "ns.sub A 192.0.2.4",
+      "old DNAME new.example.com.",
+      "");
+
+  private Zone zone() {
+    Zone zone = new Zone("example.nl");
+    ZoneTestUtil.parse(ZONE, zone::add);
+    return zone;
+  }
+
+  @Test
+  public void lookup() {
+    Zone zone = zone();
+    ZoneLookup result = new ZoneLookup();
+
+    zone.lookup("NS1.Example.NL.", result);
+    assertEquals(Match.EXACT, result.getMatch());
+    assertTrue(result.isExact());
+    assertEquals("ns1.example.nl.", result.getNode().getName());
+    assertNotNull(result.getNode().getRRset(ResourceRecordType.A));
+
+    // empty non-terminal
+    zone.lookup("a.b.example.nl.", result);
+    assertEquals(Match.EXACT, result.getMatch());
+    assertTrue(result.getNode().isEmpty());
+
+    zone.lookup("x.y.wild.example.nl", result);
+    assertEquals(Match.WILDCARD, result.getMatch());
+    assertEquals("*.wild.example.nl.", result.getNode().getName());
+    assertEquals("wild.example.nl.", result.getClosestEncloser().getName());
+
+    zone.lookup("sub.example.nl.", result);
+    assertEquals(Match.DELEGATION, result.getMatch());
+    assertTrue(result.isExact());
+    zone.lookup("www.ns.sub.example.nl.", result);
+    assertEquals(Match.DELEGATION, result.getMatch());
+    assertFalse(result.isExact());
+    assertEquals("sub.example.nl.", result.getNode().getName());
+
+    zone.lookup("x.old.example.nl.", result);
+    assertEquals(Match.DNAME, result.getMatch());
+
+    zone.lookup("x.b.example.nl.", result);
+    assertEquals(Match.NXDOMAIN, result.getMatch());
+    assertEquals("b.example.nl.", result.getClosestEncloser().getName());
+
+    zone.lookup("example.com.", result);
+    assertEquals(Match.NOT_IN_ZONE, result.getMatch());
+    zone.lookup("xexample.nl.", result);
+    assertEquals(Match.NOT_IN_ZONE, result.getMatch());
+
+    // glue below the zone cut
+    assertNotNull(zone.getRRset("ns.sub.example.nl.", ResourceRecordType.A));
+    assertEquals(5, zone.getSoa().getMinimum());
+  }
+
+  @Test
+  public void removePrunesEmptyNodes() {
+    Zone zone = zone();
+    int nodes = zone.getNodeCount();
+    ResourceRecord www = zone.getRRset("www.a.b.example.nl.", ResourceRecordType.A).getAll().get(0);
+
+    assertTrue(zone.remove(www));
+    assertFalse(zone.remove(www));
+    assertNull(zone.find("a.b.example.nl."));
+    assertEquals(nodes - 3, zone.getNodeCount());
+    assertEquals(Match.NXDOMAIN, zone.lookup("www.a.b.example.nl.").getMatch());
+  }
+
+  @Test
+  public void removeMatchesRdata() {
+    Zone zone = new Zone("example.nl");
+    String rrs = String.join("\n",
+        "$ORIGIN example.nl.",
+        "$TTL 60",
+        "t TXT aaa",
+        "t TXT bbb",
+        "t RRSIG TXT 8 3 60 20300101000000 20200101000000 1 example.nl. AAAA",
+        "t RRSIG TXT 8 3 60 20300101000000 20200101000000 1 example.nl. BBBB",
+        "");
+    ZoneTestUtil.parse(rrs, zone::add);
+    // other instances with the same rdata length, the TTL is ignored
+    List<ResourceRecord> copy = ZoneTestUtil.parse(rrs.replace("$TTL 60", "$TTL 120"));
+
+    for (ResourceRecord rr : Arrays.asList(copy.get(1), copy.get(3))) {
+      assertTrue(zone.remove(rr));
+      assertFalse(zone.remove(rr));
+    }
+    ZoneNode node = zone.find("t.example.nl.");
+    assertEquals(1, node.getRRset(ResourceRecordType.TXT).size());
+    assertTrue(node.getRRset(ResourceRecordType.TXT).getAll().get(0).toZone(0).contains("aaa"));
+    assertEquals(1, node.getSignatures(ResourceRecordType.TXT).size());
+    assertSame(zone.getRRset("t.example.nl.", ResourceRecordType.RRSIG).getAll().get(0),
+        node.getSignatures(ResourceRecordType.TXT).getAll().get(0));
+    assertEquals(2, zone.getRecordCount());
+  }
+
+  @Test
+  public void escapedLabels() {
+    Zone zone = new Zone("example.nl");
+    ZoneTestUtil.parse(String.join("\n",
+        "$ORIGIN example.nl.",
+        "$TTL 60",
+        "x A 192.0.2.1",
+        "c.b A 192.0.2.2",
+        ""), rr -> {
+          if (rr.getName().startsWith("x.")) {
+            rr.setName("a\\.b.example.nl.");
+          }
+          zone.add(rr);
+        });
+
+    // a\.b is a single label below the apex
+    ZoneNode node = zone.find("A\\.B.example.nl");
+    assertNotNull(node);
+    assertSame(zone.getApex(), node.getParent());
+    assertEquals("a\\.b.example.nl.", node.getName());
+    assertSame(node, zone.find("a\\046b.example.nl."));
+    assertSame(node, zone.find(node.getName()));
+    assertEquals(Match.EXACT, zone.lookup("a\\.b.example.nl.").getMatch());
+    assertEquals(Match.NXDOMAIN, zone.lookup("a.b.example.nl.").getMatch());
+    assertNull(zone.find("b.example.nl\\."));
+    assertEquals(4, zone.getNodeCount());
+    assertSame(node, zone.findCovering("a\\.c.example.nl.", ResourceRecordType.A));
+  }
+
+  @Test
+  public void manyChildren() {
+    StringBuilder b = new StringBuilder("$ORIGIN nl.\n$TTL 60\n");
+    for (int i = 0; i < 10000; i++) {
+      b.append("d").append(i).append(" NS ns.d").append(i).append(".com.\n");
+    }
+    Zone zone = new Zone(".");
+    List<ResourceRecord> rrs = new ArrayList<>();
+    ZoneTestUtil.parse(b.toString(), rr -> {
+      zone.add(rr);
+      rrs.add(rr);
+    });
+
+    assertEquals(10002, zone.getNodeCount());
+    assertEquals("d9999.nl.", zone.find("D9999.NL").getName());
+    for (int i = 0; i < 10000; i += 2) {
+      assertTrue(zone.remove(rrs.get(i)));
+    }
+    for (int i = 0; i < 10000; i++) {
+      assertEquals(i % 2 == 1, zone.find("d" + i + ".nl.") != null);
+    }
+
+    List<String> owners = new ArrayList<>();
+    zone.forEach(rrset -> owners.add(rrset.getOwner()));
+    assertEquals(5000, owners.size());
+    assertEquals("d1.nl.", owners.get(0));
+    assertEquals("d1001.nl.", owners.get(1));
+  }
+}
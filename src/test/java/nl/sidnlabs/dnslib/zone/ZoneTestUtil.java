@@ -0,0 +1,46 @@
+package nl.sidnlabs.dnslib.zone;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import nl.sidnlabs.dnslib.message.records.ResourceRecord;
+
+/**
+ * Parses zone file text for tests, the parser is always closed.
+ */
+public final class ZoneTestUtil {
+
+  private ZoneTestUtil() {}
+
+  /**
+   * @param text zone file text, using only absolute names or $ORIGIN
+   * @return the RRs in the text
+   */
+  public static List<ResourceRecord> parse(String text) {
+    List<ResourceRecord> rrs = new ArrayList<>();
+    parse(text, null, rrs::add);
+    return rrs;
+  }
+
+  /**
+   * @param text zone file text, using only absolute names or $ORIGIN
+   * @param consumer receives the RRs in the text
+   */
+  public static void parse(String text, Consumer<ResourceRecord> consumer) {
+    parse(text, null, consumer);
+  }
+
+  /**
+   * @param text zone file text
+   * @param origin initial origin, may be null
+   * @param consumer receives the RRs in the text
+   */
+  public static void parse(String text, String origin, Consumer<ResourceRecord> consumer) {
+    try (ZoneParser parser = new ZoneParser(new StringReader(text), origin)) {
+      parser.parse(consumer);
+    }
+  }
+
+}
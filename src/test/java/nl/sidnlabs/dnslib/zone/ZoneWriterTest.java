@@ -0,0 +1,117 @@
+package nl.sidnlabs.dnslib.zone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+public class ZoneWriterTest {
+
+  private static final String ZONE = String.join("\n",
+      "$ORIGIN example.nl.",
+      "$TTL 60",
+      "z A 192.0.2.3",
+      "www A 192.0.2.2",
+      "www A 192.0.2.1",
+      "@ NS ns1",
+      "a.b.www A 192.0.2.4",
+      "");
+
+  private String write(ZoneWriter writer, StringWriter out) throws IOException {
+    try (writer) {
+      ZoneTestUtil.parse(ZONE, rr -> {
+        try {
+          writer.write(rr);
+        } catch (IOException e) {
+          throw new IllegalStateException(e);
+        }
+      });
+    }
+    return out.toString();
+  }
+
+  @Test
+  public void writeCanonical() throws IOException {
+    StringWriter out = new StringWriter();
+    ZoneWriter writer = new ZoneWriter(out);
+    writer.setCanonical(true);
+
+    assertEquals(String.join("\n",
+        "example.nl.\t60\tIN\tNS\tns1.example.nl.",
+        "www.example.nl.\t60\tIN\tA\t192.0.2.1",
+        "www.example.nl.\t60\tIN\tA\t192.0.2.2",
+        "a.b.www.example.nl.\t60\tIN\tA\t192.0.2.4",
+        "z.example.nl.\t60\tIN\tA\t192.0.2.3",
+        ""), write(writer, out));
+  }
+
+  @Test
+  public void writeCanonicalRdata() throws IOException {
+    StringWriter out = new StringWriter();
+    ZoneWriter writer = new ZoneWriter(out);
+    writer.setCanonical(true);
+    try (writer) {
+      ZoneTestUtil.parse(String.join("\n",
+          "example.nl. 60 NS B.example.nl.",
+          "example.nl. 60 NS a.example.nl.",
+          "example.nl. 60 TXT \"aaaa\"",
+          "example.nl. 60 TXT \"bbb\"",
+          ""), rr -> {
+            try {
+              writer.write(rr);
+            } catch (IOException e) {
+              throw new IllegalStateException(e);
+            }
+          });
+    }
+
+    // rdata is compared in wire format, strings including their length byte
+    assertEquals(String.join("\n",
+        "example.nl.\t60\tIN\tNS\ta.example.nl.",
+        "example.nl.\t60\tIN\tNS\tb.example.nl.",
+        "example.nl.\t60\tIN\tTXT\tbbb",
+        "example.nl.\t60\tIN\tTXT\taaaa",
+        ""), out.toString());
+  }
+
+  @Test
+  public void writeAlignedBlocks() throws IOException {
+    StringWriter out = new StringWriter();
+    ZoneWriter writer = new ZoneWriter(out);
+    writer.setAlign(true);
+    writer.setBlockSize(2);
+
+    String[] lines = write(writer, out).split("\n");
+    assertEquals(5, lines.length);
+    // first block is aligned to www.example.nl.
+    assertTrue(lines[0].startsWith("z.example.nl.  \t"));
+    // last block only contains a.b.www.example.nl.
+    assertTrue(lines[4].startsWith("a.b.www.example.nl.\t"));
+
+    // round trip
+    StringWriter copy = new StringWriter();
+    ZoneWriter copyWriter = new ZoneWriter(copy);
+    ZoneTestUtil.parse(out.toString(), rr -> {
+      try {
+        copyWriter.write(rr);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    copyWriter.close();
+    assertEquals(out.toString().replaceAll(" +\t", "\t"), copy.toString());
+  }
+
+  @Test
+  public void compareNames() {
+    assertTrue(ZoneWriter.compareNames("example.", "a.example.") < 0);
+    assertTrue(ZoneWriter.compareNames("a.example.", "Z.a.example.") < 0);
+    assertTrue(ZoneWriter.compareNames("Z.a.example.", "zABC.a.EXAMPLE.") < 0);
+    assertTrue(ZoneWriter.compareNames("z.example.", "\u0001.z.example.") < 0);
+    assertEquals(0, ZoneWriter.compareNames("Example.nl.", "example.nl"));
+    assertTrue(ZoneWriter.compareNames(".", "nl.") < 0);
+  }
+}